@@ -65,14 +65,13 @@ public class CloudWatchMetricConfig {
      */
     static final int MAX_METRICS_DATUM_SIZE = 20;
     /**
-     * Default metrics queue size. If the queue size
-     * exceeds this value, then excessive metrics will be dropped to prevent
-     * resource exhaustion.
+     * Default metrics queue size. No longer used: metrics are aggregated as
+     * they are collected rather than queued, and so are never dropped.
      */
     public static final int DEFAULT_METRICS_QSIZE = 1000;
     /**
-     * Default timeout in millisecond for queue polling.  Set to one-minute
-     * which is the finest granularity of Amazon CloudWatch. 
+     * Default interval in millisecond between the uploads of the metrics.
+     * Set to one-minute which is the finest granularity of Amazon CloudWatch.
      */
     public static final int DEFAULT_QUEUE_POLL_TIMEOUT_MILLI = (int)TimeUnit.MINUTES.toMillis(1);
 
@@ -80,8 +79,7 @@ public class CloudWatchMetricConfig {
     private AWSCredentialsProvider credentialsProvider;
 
     /**
-     * Number of milliseconds to wait before the polling of the metrics queue
-     * times out.
+     * Number of milliseconds between the uploads of the metrics.
      */
     private long queuePollTimeoutMilli = DEFAULT_QUEUE_POLL_TIMEOUT_MILLI;
 
@@ -93,6 +91,12 @@ public class CloudWatchMetricConfig {
     
     private int metricQueueSize = DEFAULT_METRICS_QSIZE;
 
+    /**
+     * Percentiles of each metric uploaded in addition to its statistic set,
+     * between 0 and 100; none by default.
+     */
+    private double[] percentiles = {};
+
     /**
      * Returns the credential provider that holds the credentials to connect to
      * Amazon CloudWatch.
@@ -115,15 +119,16 @@ public class CloudWatchMetricConfig {
     }
 
     /**
-     * Returns the metrics queue polling timeout in millisecond.
+     * Returns the interval in millisecond between the uploads of the metrics.
      */
     public long getQueuePollTimeoutMilli() {
         return queuePollTimeoutMilli;
     }
 
     /**
-     * Sets the metric queue polling timeout in millisecond. The default set
-     * set to one-minute per the finest granularity of Amazon CloudWatch
+     * Sets the interval in millisecond between the uploads of the metrics.
+     * The default is set to one-minute per the finest granularity of Amazon
+     * CloudWatch
      */
     public void setQueuePollTimeoutMilli(long queuePollTimeoutMilli) {
         this.queuePollTimeoutMilli = queuePollTimeoutMilli;
@@ -153,13 +158,18 @@ public class CloudWatchMetricConfig {
         return this;
     }
 
+    /**
+     * Returns the metric queue size; no longer used, since metrics are
+     * aggregated as they are collected rather than queued.
+     */
     public int getMetricQueueSize() {
         return metricQueueSize;
     }
 
     /**
      * Configure the metric queue size, overriding the default. Must be at
-     * least 1.
+     * least 1. No longer used, since metrics are aggregated as they are
+     * collected rather than queued.
      * 
      * @see #DEFAULT_METRICS_QSIZE
      */
@@ -174,4 +184,36 @@ public class CloudWatchMetricConfig {
         setMetricQueueSize(metricQueueSize);
         return this;
     }
+
+    /**
+     * Returns the percentiles of each metric uploaded in addition to its
+     * statistic set.
+     */
+    public double[] getPercentiles() {
+        return percentiles.clone();
+    }
+
+    /**
+     * Sets the percentiles of each metric uploaded in addition to its
+     * statistic set, such as 50 and 99; none by default. Each percentile is
+     * uploaded as a single value of the metric, estimated within about 10%,
+     * with an additional "Percentile" dimension such as "p99".
+     */
+    public void setPercentiles(double... percentiles) {
+        if (percentiles == null) {
+            percentiles = new double[0];
+        }
+        for (double percentile : percentiles) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException(
+                        "Percentile " + percentile + " must be between 0 and 100");
+            }
+        }
+        this.percentiles = percentiles.clone();
+    }
+
+    public CloudWatchMetricConfig withPercentiles(double... percentiles) {
+        setPercentiles(percentiles);
+        return this;
+    }
 }
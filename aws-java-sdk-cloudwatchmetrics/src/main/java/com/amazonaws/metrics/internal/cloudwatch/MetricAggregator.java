@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.metrics.internal.cloudwatch.spi.Dimensions;
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+
+/**
+ * Aggregates metric data points into the statistics uploaded to Amazon
+ * CloudWatch. Each data point is recorded, on the thread that produces it,
+ * into the histogram of its metric, identified by its name, unit and
+ * dimensions; the uploader thread periodically takes the statistics of all the
+ * metrics and resets them. No data point is ever dropped, and recording one
+ * never blocks.
+ */
+@ThreadSafe
+public final class MetricAggregator {
+    private final ConcurrentMap<MetricKey, MetricHistogram> histograms =
+        new ConcurrentHashMap<MetricKey, MetricHistogram>();
+
+    /**
+     * Records the value of the given metric data point; data points without a
+     * value are ignored.
+     */
+    public void record(MetricDatum datum) {
+        Double value = datum.getValue();
+        if (value == null) {
+            return;
+        }
+        List<Dimension> dims = datum.getDimensions();
+        if (dims != null) {
+            Collections.sort(dims, DimensionComparator.INSTANCE);
+        }
+        MetricKey key = new MetricKey(datum.getMetricName(), datum.getUnit(), dims);
+        MetricHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            histogram = new MetricHistogram();
+            key = new MetricKey(key.metricName, key.unit,
+                    dims == null ? null : new ArrayList<Dimension>(dims));
+            MetricHistogram existing = histograms.putIfAbsent(key, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        histogram.record(value);
+    }
+
+    /**
+     * Returns the statistics of the metrics recorded since the previous call,
+     * and resets them. Each metric with data points is summarized into a
+     * statistic set; in addition, each of the given percentiles of a metric
+     * is returned as a single value, with a {@link Dimensions#Percentile}
+     * dimension such as "p99".
+     *
+     * @param percentiles
+     *            The percentiles to return for each metric, between 0 and
+     *            100.
+     */
+    List<MetricDatum> snapshotAndReset(double[] percentiles) {
+        List<MetricDatum> data = new ArrayList<MetricDatum>();
+        for (Map.Entry<MetricKey, MetricHistogram> entry : histograms.entrySet()) {
+            MetricHistogram.Snapshot snapshot = entry.getValue().snapshotAndReset();
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+            MetricKey key = entry.getKey();
+            data.add(new MetricDatum()
+                .withDimensions(key.dimensions)
+                .withMetricName(key.metricName)
+                .withUnit(key.unit)
+                .withStatisticValues(new StatisticSet()
+                    .withMaximum(snapshot.getMax())
+                    .withMinimum(snapshot.getMin())
+                    .withSampleCount((double) snapshot.getCount())
+                    .withSum(snapshot.getSum())));
+            for (double percentile : percentiles) {
+                data.add(new MetricDatum()
+                    .withDimensions(key.dimensions)
+                    .withDimensions(new Dimension()
+                        .withName(Dimensions.Percentile.name())
+                        .withValue(percentileName(percentile)))
+                    .withMetricName(key.metricName)
+                    .withUnit(key.unit)
+                    .withValue(snapshot.getPercentile(percentile)));
+            }
+        }
+        return data;
+    }
+
+    /** Returns the name of the given percentile, such as "p99" or "p99.9". */
+    static String percentileName(double percentile) {
+        if (percentile == Math.rint(percentile)) {
+            return "p" + (long) percentile;
+        }
+        return "p" + percentile;
+    }
+
+    /** Identifies a metric by its name, unit and sorted dimensions. */
+    private static final class MetricKey {
+        private final String metricName;
+        private final String unit;
+        private final List<Dimension> dimensions;
+        private final int hashCode;
+
+        MetricKey(String metricName, String unit, List<Dimension> dimensions) {
+            this.metricName = metricName;
+            this.unit = unit;
+            this.dimensions = dimensions;
+            int hash = metricName == null ? 0 : metricName.hashCode();
+            hash = 31 * hash + (unit == null ? 0 : unit.hashCode());
+            hash = 31 * hash + (dimensions == null ? 0 : dimensions.hashCode());
+            this.hashCode = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof MetricKey)) {
+                return false;
+            }
+            MetricKey other = (MetricKey) obj;
+            return hashCode == other.hashCode
+                && equal(metricName, other.metricName)
+                && equal(unit, other.unit)
+                && equal(dimensions, other.dimensions);
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * Lock-free histogram of the values of a metric, with the sample count, sum,
+ * minimum and maximum of the values.
+ * <p>
+ * Values are counted in buckets of exponentially increasing width, four per
+ * power of two, so that percentiles are estimated within about 10% of the
+ * actual value. To keep concurrent threads from contending on the same
+ * counters, the histogram is striped: each thread records its values into one
+ * of several stripes, picked from its id, which are only added up when a
+ * snapshot is taken. Recording a value is a few atomic operations, and never
+ * blocks.
+ * <p>
+ * A stripe is about 1.6KB of counters. Since a metric is recorded at most a
+ * few times per request, far less often than the counters could be contended,
+ * the stripes are capped at four, for about 6.5KB per metric.
+ */
+@ThreadSafe
+final class MetricHistogram {
+    /** Number of bits of the mantissa used to pick the bucket of a value. */
+    private static final int SUB_BUCKET_BITS = 2;
+
+    /** Values below 2 to the power of this exponent go to the first bucket. */
+    private static final int MIN_EXPONENT = -10;
+
+    /**
+     * Values of 2 to the power of this exponent or more go to the last
+     * bucket.
+     */
+    private static final int MAX_EXPONENT = 40;
+
+    /** Index, in the bits of a double, of the first bucket above zero. */
+    private static final long FIRST_BUCKET_BITS =
+        Double.doubleToRawLongBits(Math.pow(2, MIN_EXPONENT)) >>> (52 - SUB_BUCKET_BITS);
+
+    /**
+     * Number of buckets: one for the values below the minimum, one for the
+     * values above the maximum, and those in between.
+     */
+    static final int BUCKET_COUNT = ((MAX_EXPONENT - MIN_EXPONENT) << SUB_BUCKET_BITS) + 2;
+
+    private static final int MAX_STRIPE_COUNT = 4;
+
+    private static final long ZERO_BITS = Double.doubleToRawLongBits(0.0);
+    private static final long POSITIVE_INFINITY_BITS = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+    private static final long NEGATIVE_INFINITY_BITS = Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY);
+
+    private final Stripe[] stripes;
+
+    MetricHistogram() {
+        int stripeCount = 1;
+        int processors = Runtime.getRuntime().availableProcessors();
+        while (stripeCount < processors && stripeCount < MAX_STRIPE_COUNT) {
+            stripeCount <<= 1;
+        }
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /** Records the given value. */
+    void record(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        // The value is counted last, so that a snapshot counting it has
+        // its sum, minimum and maximum too, unless a concurrent snapshot has
+        // taken them in between
+        long bits;
+        do {
+            bits = stripe.sum.get();
+        } while (!stripe.sum.compareAndSet(bits,
+                Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + value)));
+        while (value < Double.longBitsToDouble(bits = stripe.min.get())) {
+            if (stripe.min.compareAndSet(bits, Double.doubleToRawLongBits(value)))
+                break;
+        }
+        while (value > Double.longBitsToDouble(bits = stripe.max.get())) {
+            if (stripe.max.compareAndSet(bits, Double.doubleToRawLongBits(value)))
+                break;
+        }
+        stripe.counts.incrementAndGet(bucketIndex(value));
+    }
+
+    /**
+     * Returns a snapshot of the values recorded since the previous snapshot,
+     * and resets the histogram. Each recorded value is part of exactly one
+     * snapshot, even if recorded concurrently; but the statistics of a value
+     * recorded while the snapshot is taken may be split across this snapshot
+     * and the previous one. If the minimum or maximum of the values counted
+     * went to the previous snapshot that way, it is estimated from the bounds
+     * of their buckets.
+     */
+    Snapshot snapshotAndReset() {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                if (stripe.counts.get(i) != 0) {
+                    long bucketCount = stripe.counts.getAndSet(i, 0);
+                    counts[i] += bucketCount;
+                    count += bucketCount;
+                }
+            }
+            sum += Double.longBitsToDouble(stripe.sum.getAndSet(ZERO_BITS));
+            min = Math.min(min, Double.longBitsToDouble(stripe.min.getAndSet(POSITIVE_INFINITY_BITS)));
+            max = Math.max(max, Double.longBitsToDouble(stripe.max.getAndSet(NEGATIVE_INFINITY_BITS)));
+        }
+        if (count > 0 && min == Double.POSITIVE_INFINITY) {
+            int lowest = 0;
+            while (counts[lowest] == 0) {
+                lowest++;
+            }
+            min = lowest == 0 ? 0 : bucketLowerBound(lowest);
+        }
+        if (count > 0 && max == Double.NEGATIVE_INFINITY) {
+            int highest = BUCKET_COUNT - 1;
+            while (counts[highest] == 0) {
+                highest--;
+            }
+            max = highest == 0 ? bucketLowerBound(1) : bucketLowerBound(Math.min(highest + 1, BUCKET_COUNT - 1));
+        }
+        return new Snapshot(counts, count, sum, min, max);
+    }
+
+    /** Returns the index of the bucket of the given value. */
+    static int bucketIndex(double value) {
+        if (!(value > 0)) {
+            return 0;
+        }
+        long index = (Double.doubleToRawLongBits(value) >>> (52 - SUB_BUCKET_BITS))
+                - FIRST_BUCKET_BITS + 1;
+        if (index < 0) {
+            return 0;
+        }
+        return (int) Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Returns the smallest value of the bucket of the given index, which must
+     * not be the first; for the last bucket, this is the smallest value above
+     * all the other buckets.
+     */
+    static double bucketLowerBound(int index) {
+        return Double.longBitsToDouble((FIRST_BUCKET_BITS + index - 1) << (52 - SUB_BUCKET_BITS));
+    }
+
+    /** The counters of a stripe. */
+    private static final class Stripe {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        /** Sum of the values, as the bits of a double. */
+        private final AtomicLong sum = new AtomicLong(ZERO_BITS);
+        /** Minimum value, as the bits of a double. */
+        private final AtomicLong min = new AtomicLong(POSITIVE_INFINITY_BITS);
+        /** Maximum value, as the bits of a double. */
+        private final AtomicLong max = new AtomicLong(NEGATIVE_INFINITY_BITS);
+    }
+
+    /** Statistics of the values recorded between two snapshots. */
+    static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final double sum;
+        private final double min;
+        private final double max;
+
+        Snapshot(long[] counts, long count, double sum, double min, double max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        /** Returns the number of values. */
+        long getCount() { return count; }
+
+        /** Returns the sum of the values. */
+        double getSum() { return sum; }
+
+        /** Returns the minimum value; only meaningful if there are values. */
+        double getMin() { return min; }
+
+        /** Returns the maximum value; only meaningful if there are values. */
+        double getMax() { return max; }
+
+        /**
+         * Returns an estimate of the given percentile of the values: the
+         * middle of the bucket holding that percentile, within the minimum and
+         * maximum values. The 100th percentile is the maximum value.
+         *
+         * @param percentile
+         *            The percentile, between 0 and 100.
+         */
+        double getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            if (rank < 1) {
+                return min;
+            }
+            if (rank >= count) {
+                return max;
+            }
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    if (i == 0) {
+                        return min;
+                    }
+                    if (i == counts.length - 1) {
+                        return max;
+                    }
+                    double middle = (bucketLowerBound(i) + bucketLowerBound(i + 1)) / 2;
+                    return Math.max(min, Math.min(max, middle));
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -72,6 +72,9 @@ public class PredefinedMetricTransformer {
                 case HttpClientPoolAvailableCount:
                 case HttpClientPoolLeasedCount:
                 case HttpClientPoolPendingCount:
+                case HttpClientPoolReapedCount:
+                case HttpClientStaleConnectionCount:
+                case HttpClientStaleConnectionRetryCount:
                     return metricOfCount(predefined, request, response);
                 case RequestCount:  // intentionally fall thru to reuse the same routine as RetryCount
                 case RetryCount:
@@ -83,6 +86,10 @@ public class PredefinedMetricTransformer {
                     return latencyOfClientExecuteTime(request, response);
                 case HttpClientSendRequestTime:
                 case HttpClientReceiveResponseTime:
+                case HttpClientPoolLeaseTime:
+                case HttpClientDnsResolutionTime:
+                case HttpClientConnectTime:
+                case HttpClientTlsHandshakeTime:
                 case HttpRequestTime:
                     return latencyMetricOf(predefined, request, response, INCLUDE_REQUEST_TYPE);
                 case Exception:
@@ -14,8 +14,6 @@
  */
 package com.amazonaws.metrics.internal.cloudwatch;
 
-import java.util.concurrent.BlockingQueue;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.annotation.ThreadSafe;
@@ -39,18 +37,18 @@ import com.amazonaws.util.AWSRequestMetrics;
 public class RequestMetricCollectorSupport extends RequestMetricCollector 
 {
     protected final static Log log = LogFactory.getLog(RequestMetricCollectorSupport.class);
-    private final BlockingQueue<MetricDatum> queue;
+    private final MetricAggregator aggregator;
     private final PredefinedMetricTransformer transformer = new PredefinedMetricTransformer();
 
-    protected RequestMetricCollectorSupport(BlockingQueue<MetricDatum> queue) {
-        this.queue = queue;
+    protected RequestMetricCollectorSupport(MetricAggregator aggregator) {
+        this.aggregator = aggregator;
     }
 
     /**
      * Collects the metrics at the end of a request/response cycle, transforms
      * the metric data points into a cloud watch metric datum representation,
-     * and then adds it to a memory queue so it will get summarized into the
-     * necessary statistics and uploaded to Amazon CloudWatch.
+     * and then records it into the in-memory statistics uploaded to Amazon
+     * CloudWatch.
      */
     @Override
     public void collectMetrics(Request<?> request, Response<?> response) {
@@ -73,16 +71,9 @@ public class RequestMetricCollectorSupport extends RequestMetricCollector
             PredefinedMetricTransformer transformer = getTransformer();
             for (MetricDatum datum : transformer.toMetricData(type, request, response)) {
                 try {
-                    if (!addMetricsToQueue(datum)) {
-                        if (log.isDebugEnabled()) {
-                            log.debug("Failed to add to the metrics queue (due to no space available) for "
-                                    + type.name()
-                                    + ":"
-                                    + request.getServiceName());
-                        }
-                    }
+                    addMetrics(datum);
                 } catch(RuntimeException ex) {
-                    log.warn("Failed to add to the metrics queue for "
+                    log.warn("Failed to record the metrics for "
                         + type.name() + ":" + request.getServiceName(),
                         ex);
                 }
@@ -91,11 +82,10 @@ public class RequestMetricCollectorSupport extends RequestMetricCollector
     }
 
     /**
-     * Adds the given metric to the queue, returning true if successful or false
-     * if no space available.
+     * Records the given metric into the statistics to be uploaded.
      */
-    protected boolean addMetricsToQueue(MetricDatum metric) {
-        return queue.offer(metric); 
+    protected void addMetrics(MetricDatum metric) {
+        aggregator.record(metric);
     }
     /** Returns the predefined metrics transformer. */
     protected PredefinedMetricTransformer getTransformer() { return transformer; }
@@ -38,5 +38,9 @@ public enum Dimensions {
      * JVM used for per-JVM level metrics with a single metric namespace.
      */
     JVM,
+    /**
+     * Percentile of the values of a metric, such as p50 or p99.
+     */
+    Percentile,
     ;
 }
\ No newline at end of file
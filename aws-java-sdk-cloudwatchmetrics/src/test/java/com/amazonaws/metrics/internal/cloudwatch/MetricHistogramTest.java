@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class MetricHistogramTest {
+
+    @Test
+    public void testBucketIndex() {
+        int last = MetricHistogram.BUCKET_COUNT - 1;
+        assertEquals(0, MetricHistogram.bucketIndex(-1));
+        assertEquals(0, MetricHistogram.bucketIndex(0));
+        assertEquals(0, MetricHistogram.bucketIndex(Math.pow(2, -11)));
+        assertEquals(1, MetricHistogram.bucketIndex(Math.pow(2, -10)));
+        assertEquals(last, MetricHistogram.bucketIndex(Math.pow(2, 40)));
+        assertEquals(last, MetricHistogram.bucketIndex(Double.POSITIVE_INFINITY));
+
+        // Four buckets per power of two
+        int one = MetricHistogram.bucketIndex(1);
+        assertEquals(one + 1, MetricHistogram.bucketIndex(1.25));
+        assertEquals(one + 2, MetricHistogram.bucketIndex(1.5));
+        assertEquals(one + 3, MetricHistogram.bucketIndex(1.75));
+        assertEquals(one + 4, MetricHistogram.bucketIndex(2));
+        assertEquals(one + 3, MetricHistogram.bucketIndex(Math.nextAfter(2, 0)));
+    }
+
+    @Test
+    public void testValuesAreWithinTheBoundsOfTheirBucket() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            double value = Math.pow(2, -10 + 50 * random.nextDouble());
+            int index = MetricHistogram.bucketIndex(value);
+            assertTrue(index > 0 && index < MetricHistogram.BUCKET_COUNT - 1);
+            assertTrue(MetricHistogram.bucketLowerBound(index) <= value);
+            assertTrue(value < MetricHistogram.bucketLowerBound(index + 1));
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        MetricHistogram histogram = new MetricHistogram();
+        for (int value = 1000; value >= 1; value--) {
+            histogram.record(value);
+        }
+        histogram.record(Double.NaN);
+        MetricHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500500, snapshot.getSum(), 0);
+        assertEquals(1, snapshot.getMin(), 0);
+        assertEquals(1000, snapshot.getMax(), 0);
+        assertEquals(1, snapshot.getPercentile(0), 0);
+        assertEquals(500, snapshot.getPercentile(50), 50);
+        assertEquals(990, snapshot.getPercentile(99), 99);
+        assertEquals(1000, snapshot.getPercentile(100), 0);
+
+        assertEquals(0, histogram.snapshotAndReset().getCount());
+    }
+
+    @Test
+    public void testOutlierPercentilesAreTheMinimumAndMaximum() {
+        MetricHistogram histogram = new MetricHistogram();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(1e15);
+        MetricHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+
+        assertEquals(0, snapshot.getPercentile(1), 0);
+        assertEquals(1e15, snapshot.getPercentile(100), 0);
+    }
+
+    /**
+     * Takes snapshots while values are recorded concurrently: every value is
+     * counted once, and no snapshot counting values lacks their minimum or
+     * maximum.
+     */
+    @Test(timeout = 60 * 1000)
+    public void testSnapshotsTakenConcurrentlyHaveFiniteStatistics() throws Exception {
+        final MetricHistogram histogram = new MetricHistogram();
+        final int threadCount = 4;
+        final int valueCount = 200000;
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        final AtomicBoolean failed = new AtomicBoolean();
+        for (int i = 0; i < threadCount; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < valueCount; j++) {
+                            histogram.record(1 + j % 100);
+                        }
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        long count = 0;
+        while (done.getCount() > 0) {
+            count += checkSnapshot(histogram.snapshotAndReset());
+        }
+        count += checkSnapshot(histogram.snapshotAndReset());
+        assertFalse(failed.get());
+        assertEquals((long) threadCount * valueCount, count);
+    }
+
+    private static long checkSnapshot(MetricHistogram.Snapshot snapshot) {
+        if (snapshot.getCount() > 0) {
+            assertFalse(Double.isInfinite(snapshot.getMin()));
+            assertFalse(Double.isInfinite(snapshot.getMax()));
+            // Within the bounds of the buckets of the values, 1 to 100
+            assertTrue(snapshot.getMin() >= 1 && snapshot.getMax() <= 112);
+        }
+        return snapshot.getCount();
+    }
+}
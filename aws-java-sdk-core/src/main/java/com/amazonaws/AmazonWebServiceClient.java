@@ -21,24 +21,38 @@ import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
 
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.RegionAwareSigner;
 import com.amazonaws.auth.Signer;
 import com.amazonaws.auth.SignerFactory;
+import com.amazonaws.handlers.AsyncHandler;
 import com.amazonaws.handlers.RequestHandler;
 import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.http.AmazonHttpClient;
+import com.amazonaws.http.ConnectionWarmUpResult;
 import com.amazonaws.http.ExecutionContext;
 import com.amazonaws.http.HttpMethodName;
 import com.amazonaws.http.HttpRequest;
+import com.amazonaws.http.HttpResponseHandler;
 import com.amazonaws.log.CommonsLogFactory;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
+import com.amazonaws.transform.Marshaller;
 import com.amazonaws.util.AWSRequestMetrics;
 import com.amazonaws.util.AWSRequestMetrics.Field;
 import com.amazonaws.util.AwsHostNameUtils;
@@ -444,6 +458,23 @@ public abstract class AmazonWebServiceClient {
         this.client = new AmazonHttpClient(clientConfiguration, requestMetricCollector);
     }
 
+    /**
+     * Opens connections to the endpoint of this client ahead of its first
+     * requests, so that they don't have to wait for the connection and TLS
+     * handshake. The connections are opened in parallel, up to the maximum
+     * number of connections of the client configuration, and are reused by
+     * the following requests until they are idle for too long.
+     *
+     * @param connections
+     *            the number of connections to open, including those already
+     *            open in the pool of this client
+     * @return the number of connections opened and the time taken to open
+     *         them
+     */
+    public ConnectionWarmUpResult warmUpConnections(int connections) {
+        return client.warmUpConnections(endpoint, connections);
+    }
+
     /**
      * Shuts down this client object, releasing any resources that might be held
      * open. This is an optional method, and callers are not expected to call
@@ -703,6 +734,189 @@ public abstract class AmazonWebServiceClient {
         }
     }
 
+    /**
+     * Returns true if this client sends its requests through a non-blocking
+     * transport, as configured by {@link ClientConfiguration#useNonBlockingIo()};
+     * false otherwise.
+     */
+    protected final boolean isNonBlocking() {
+        return client.isNonBlocking();
+    }
+
+    /**
+     * Common routine to marshal and execute a request asynchronously over this
+     * client's transport, without holding any thread while the request is in
+     * flight when the transport is non-blocking. Failures, including those
+     * that occur before the request is sent, are reported through the returned
+     * future and the given handler.
+     *
+     * @param originalRequest
+     *            the request passed in from the user
+     * @param marshaller
+     *            the marshaller of the request
+     * @param responseHandler
+     *            the handler of a successful response
+     * @param errorResponseHandler
+     *            the handler of an error response
+     * @param credentialsProvider
+     *            the provider of the credentials used to sign the request,
+     *            unless the request specifies its own credentials
+     * @param asyncHandler
+     *            an optional handler to be notified once the request has
+     *            completed; or null if there is none.
+     * @param executor
+     *            the executor from which the attempts of the request are sent;
+     *            or null to send them from the calling thread, or the I/O
+     *            threads of a non-blocking transport.
+     * @param handlerExecutor
+     *            the executor on which the handler is notified, so that it
+     *            doesn't run on an I/O thread of a non-blocking transport; or
+     *            null to notify it on the thread that completes the request.
+     * @return a future for the result of the request
+     * @see AmazonHttpClient#executeAsync(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext, FutureCallback, Executor)
+     */
+    protected final <X, Y extends AmazonWebServiceRequest> Future<X> invokeAsync(
+            final Y originalRequest,
+            Marshaller<Request<Y>, Y> marshaller,
+            HttpResponseHandler<AmazonWebServiceResponse<X>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            AWSCredentialsProvider credentialsProvider,
+            final AsyncHandler<Y, X> asyncHandler,
+            Executor executor,
+            final Executor handlerExecutor) {
+        ExecutionContext executionContext = createExecutionContext(originalRequest);
+        final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        awsRequestMetrics.startEvent(Field.ClientExecuteTime);
+        Request<Y> request = null;
+        try {
+            awsRequestMetrics.startEvent(Field.RequestMarshallTime);
+            try {
+                request = marshaller.marshall(beforeMarshalling(originalRequest));
+                // Binds the request metrics to the current request.
+                request.setAWSRequestMetrics(awsRequestMetrics);
+            } finally {
+                awsRequestMetrics.endEvent(Field.RequestMarshallTime);
+            }
+            request.setEndpoint(endpoint);
+            request.setTimeOffset(timeOffset);
+
+            AWSCredentials credentials;
+            awsRequestMetrics.startEvent(Field.CredentialsRequestTime);
+            try {
+                credentials = credentialsProvider.getCredentials();
+            } finally {
+                awsRequestMetrics.endEvent(Field.CredentialsRequestTime);
+            }
+            if (originalRequest.getRequestCredentials() != null) {
+                credentials = originalRequest.getRequestCredentials();
+            }
+            executionContext.setCredentials(credentials);
+        } catch (Exception e) {
+            endClientExecution(awsRequestMetrics, request, null);
+            AmazonClientException ace = e instanceof AmazonClientException
+                ? (AmazonClientException) e
+                : new AmazonClientException("Unable to marshall request: " + e.getMessage(), e);
+            if (asyncHandler != null) {
+                asyncHandler.onError(ace);
+            }
+            BasicFuture<X> failed = new BasicFuture<X>(null);
+            failed.failed(ace);
+            return failed;
+        }
+
+        final Request<Y> marshalled = request;
+        Future<Response<X>> future = client.executeAsync(request,
+                responseHandler, errorResponseHandler, executionContext,
+                new FutureCallback<Response<X>>() {
+                    @Override
+                    public void completed(final Response<X> response) {
+                        endClientExecution(awsRequestMetrics, marshalled, response);
+                        if (asyncHandler != null) {
+                            notifyHandler(handlerExecutor, new Runnable() {
+                                @Override
+                                public void run() {
+                                    asyncHandler.onSuccess(originalRequest, response.getAwsResponse());
+                                }
+                            });
+                        }
+                    }
+
+                    @Override
+                    public void failed(final Exception ex) {
+                        endClientExecution(awsRequestMetrics, marshalled, null);
+                        if (asyncHandler != null) {
+                            notifyHandler(handlerExecutor, new Runnable() {
+                                @Override
+                                public void run() {
+                                    asyncHandler.onError(ex);
+                                }
+                            });
+                        }
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        endClientExecution(awsRequestMetrics, marshalled, null);
+                    }
+                }, executor);
+        return new AwsResponseFuture<X>(future);
+    }
+
+    /**
+     * Runs the given notification of an async handler on the given executor;
+     * or on the current thread if there is no executor, or if it rejects the
+     * notification.
+     */
+    private static void notifyHandler(Executor executor, Runnable notification) {
+        if (executor != null) {
+            try {
+                executor.execute(notification);
+                return;
+            } catch (RejectedExecutionException e) {
+                log.debug("The notification of an async handler was rejected", e);
+            }
+        }
+        notification.run();
+    }
+
+    /**
+     * Future of the result of an asynchronous request, as unwrapped from the
+     * future of its response.
+     */
+    private static final class AwsResponseFuture<X> implements Future<X> {
+        private final Future<Response<X>> future;
+
+        AwsResponseFuture(Future<Response<X>> future) {
+            this.future = future;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return future.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return future.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        @Override
+        public X get() throws InterruptedException, ExecutionException {
+            return future.get().getAwsResponse();
+        }
+
+        @Override
+        public X get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return future.get(timeout, unit).getAwsResponse();
+        }
+    }
+
     /**
      * @deprecated by {@link #getServiceName()}.
      */
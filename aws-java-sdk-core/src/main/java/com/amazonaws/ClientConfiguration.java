@@ -74,11 +74,68 @@ public class ClientConfiguration {
      */
     public static final long DEFAULT_CONNECTION_TTL = -1;
 
+    /**
+     * The default maximum time (in milliseconds) a connection can be idle in
+     * the connection pool before it is closed.
+     */
+    public static final long DEFAULT_CONNECTION_MAX_IDLE_MILLIS = 60 * 1000;
+
+    /**
+     * The default time (in milliseconds) a connection must have been idle in
+     * the connection pool before it is validated when leased.
+     */
+    public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY_MILLIS = 5 * 1000;
+
     /**
      * The default on whether to use TCP KeepAlive.
      */
     public static final boolean DEFAULT_TCP_KEEP_ALIVE = false;
 
+    /**
+     * The default on whether to use non-blocking I/O for the transport.
+     */
+    public static final boolean DEFAULT_USE_NON_BLOCKING_IO = false;
+
+    /**
+     * The default number of I/O threads used by the non-blocking transport.
+     */
+    public static final int DEFAULT_NON_BLOCKING_IO_THREADS =
+            Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The default on whether to schedule the retries of asynchronous requests.
+     */
+    public static final boolean DEFAULT_USE_SCHEDULED_RETRIES = false;
+
+    /**
+     * The default on whether to limit retries with a client-wide token bucket.
+     */
+    public static final boolean DEFAULT_USE_RETRY_TOKEN_BUCKET = false;
+
+    /**
+     * The default capacity of the retry token bucket, which allows for 100
+     * retries in a row.
+     */
+    public static final int DEFAULT_RETRY_TOKEN_BUCKET_CAPACITY = 500;
+
+    /**
+     * The default on whether to deny the retries to endpoints that keep
+     * failing.
+     */
+    public static final boolean DEFAULT_USE_CIRCUIT_BREAKER = false;
+
+    /**
+     * The default number of consecutive failed attempts to an endpoint which
+     * opens its circuit.
+     */
+    public static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 10;
+
+    /**
+     * The default time, in milliseconds, a circuit stays open before a retry is
+     * let through as a probe.
+     */
+    public static final long DEFAULT_CIRCUIT_BREAKER_OPEN_TIME = 10 * 1000;
+
     /** The HTTP user agent header passed with all HTTP requests. */
     private String userAgent = DEFAULT_USER_AGENT;
 
@@ -186,6 +243,19 @@ public class ClientConfiguration {
      */
     private long connectionTTL = DEFAULT_CONNECTION_TTL;
 
+    /**
+     * The maximum time a connection can be idle in the connection pool before
+     * it is closed, unless the service advertises a shorter timeout with a
+     * Keep-Alive header.
+     */
+    private long connectionMaxIdleMillis = DEFAULT_CONNECTION_MAX_IDLE_MILLIS;
+
+    /**
+     * The time a connection must have been idle in the connection pool before
+     * it is checked for having been closed by the service when leased.
+     */
+    private int validateAfterInactivityMillis = DEFAULT_VALIDATE_AFTER_INACTIVITY_MILLIS;
+
     /**
      * Optional override to enable support for TCP KeepAlive (not to be confused
      * with HTTP KeepAlive). TCP KeepAlive can be used to detect misbehaving routers
@@ -195,7 +265,57 @@ public class ClientConfiguration {
      * the operating system (sysctl on Linux, and Registry values on Windows).
      */
     private boolean tcpKeepAlive = DEFAULT_TCP_KEEP_ALIVE;
-    
+
+    /**
+     * Optional override to send requests through a non-blocking, selector
+     * driven transport instead of the default blocking one. With non-blocking
+     * I/O, the asynchronous clients that support it complete their futures
+     * from a small, fixed number of I/O threads, rather than parking a thread
+     * for every request in flight.
+     * <p>
+     * Requires org.apache.httpcomponents:httpasyncclient on the classpath.
+     */
+    private boolean useNonBlockingIo = DEFAULT_USE_NON_BLOCKING_IO;
+
+    /** The number of I/O threads used by the non-blocking transport. */
+    private int nonBlockingIoThreads = DEFAULT_NON_BLOCKING_IO_THREADS;
+
+    /**
+     * Optional override to wait the back-off delay between the retries of
+     * asynchronous requests on a shared scheduler, instead of a sleeping
+     * thread of the async client's executor. Retries are always scheduled
+     * this way with non-blocking I/O.
+     */
+    private boolean useScheduledRetries = DEFAULT_USE_SCHEDULED_RETRIES;
+
+    /**
+     * Optional override to limit the retries of all the requests of the
+     * client with a token bucket, so that the retry volume scales down when
+     * most requests fail.
+     */
+    private boolean useRetryTokenBucket = DEFAULT_USE_RETRY_TOKEN_BUCKET;
+
+    /** The capacity of the retry token bucket. */
+    private int retryTokenBucketCapacity = DEFAULT_RETRY_TOKEN_BUCKET_CAPACITY;
+
+    /**
+     * Optional override to deny the retries to an endpoint once a number of
+     * consecutive attempts to it have failed.
+     */
+    private boolean useCircuitBreaker = DEFAULT_USE_CIRCUIT_BREAKER;
+
+    /**
+     * The number of consecutive failed attempts to an endpoint which opens
+     * its circuit.
+     */
+    private int circuitBreakerFailureThreshold = DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD;
+
+    /**
+     * The time, in milliseconds, a circuit stays open before a retry is let
+     * through as a probe.
+     */
+    private long circuitBreakerOpenTime = DEFAULT_CIRCUIT_BREAKER_OPEN_TIME;
+
     /**
      * Can be used to specify custom specific Apache HTTP client configurations.
      */
@@ -226,6 +346,18 @@ public class ClientConfiguration {
         this.socketReceiveBufferSizeHint = other.socketReceiveBufferSizeHint;
         this.socketSendBufferSizeHint    = other.socketSendBufferSizeHint;
         this.signerOverride              = other.signerOverride;
+        this.connectionTTL               = other.connectionTTL;
+        this.connectionMaxIdleMillis     = other.connectionMaxIdleMillis;
+        this.validateAfterInactivityMillis = other.validateAfterInactivityMillis;
+        this.tcpKeepAlive                = other.tcpKeepAlive;
+        this.useNonBlockingIo            = other.useNonBlockingIo;
+        this.nonBlockingIoThreads        = other.nonBlockingIoThreads;
+        this.useScheduledRetries         = other.useScheduledRetries;
+        this.useRetryTokenBucket         = other.useRetryTokenBucket;
+        this.retryTokenBucketCapacity    = other.retryTokenBucketCapacity;
+        this.useCircuitBreaker           = other.useCircuitBreaker;
+        this.circuitBreakerFailureThreshold = other.circuitBreakerFailureThreshold;
+        this.circuitBreakerOpenTime      = other.circuitBreakerOpenTime;
         this.apacheHttpClientConfig =
             new ApacheHttpClientConfig(other.apacheHttpClientConfig);
     }
@@ -1117,6 +1249,73 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the maximum time (in milliseconds) a connection can be idle in
+     * the connection pool before it is closed.
+     */
+    public long getConnectionMaxIdleMillis() {
+        return connectionMaxIdleMillis;
+    }
+
+    /**
+     * Sets the maximum time (in milliseconds) a connection can be idle in the
+     * connection pool before it is closed. A connection whose last response
+     * advertised a shorter timeout in its Keep-Alive header is kept idle no
+     * longer than that timeout. Idle connections are closed by the
+     * {@link IdleConnectionReaper}, if used, and when leased. A non-positive
+     * value keeps connections for as long as the service allows, but for the
+     * reaper which then closes them after the default time. By default, it is
+     * set to 60 seconds.
+     */
+    public void setConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        this.connectionMaxIdleMillis = connectionMaxIdleMillis;
+    }
+
+    /**
+     * Sets the maximum time (in milliseconds) a connection can be idle in the
+     * connection pool before it is closed.
+     *
+     * @see #setConnectionMaxIdleMillis(long)
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        setConnectionMaxIdleMillis(connectionMaxIdleMillis);
+        return this;
+    }
+
+    /**
+     * Returns the time (in milliseconds) a connection must have been idle in
+     * the connection pool before it is validated when leased.
+     */
+    public int getValidateAfterInactivityMillis() {
+        return validateAfterInactivityMillis;
+    }
+
+    /**
+     * Sets the time (in milliseconds) a connection must have been idle in the
+     * connection pool before it is checked for having been closed by the
+     * service when leased, and replaced if so. The check costs a read with a
+     * short timeout on the connection, which is not worth it for connections
+     * in constant use. Zero validates connections every time they are leased;
+     * a negative value never validates them. By default, it is set to 5
+     * seconds.
+     */
+    public void setValidateAfterInactivityMillis(int validateAfterInactivityMillis) {
+        this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+    }
+
+    /**
+     * Sets the time (in milliseconds) a connection must have been idle in the
+     * connection pool before it is validated when leased.
+     *
+     * @see #setValidateAfterInactivityMillis(int)
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withValidateAfterInactivityMillis(int validateAfterInactivityMillis) {
+        setValidateAfterInactivityMillis(validateAfterInactivityMillis);
+        return this;
+    }
+
     /**
      * Returns whether or not TCP KeepAlive support is enabled.
      */
@@ -1140,6 +1339,297 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns whether requests are sent through the non-blocking transport.
+     */
+    public boolean useNonBlockingIo() {
+        return useNonBlockingIo;
+    }
+
+    /**
+     * Sets whether requests are sent through a non-blocking, selector driven
+     * transport instead of the default blocking one. Requires
+     * org.apache.httpcomponents:httpasyncclient on the classpath.
+     * <p>
+     * The responses of the requests executed asynchronously are fully
+     * buffered in memory before they are unmarshalled, so that the I/O
+     * threads never block; the asynchronous clients only execute requests
+     * with small responses that way. The responses of the synchronous
+     * requests, such as the content of an Amazon S3 object, are streamed to
+     * the calling thread as they are received.
+     *
+     * @param use
+     *            whether the non-blocking transport should be used
+     *
+     * @see #setNonBlockingIoThreads(int)
+     */
+    public void setUseNonBlockingIo(boolean use) {
+        this.useNonBlockingIo = use;
+    }
+
+    /**
+     * Sets whether requests are sent through a non-blocking, selector driven
+     * transport instead of the default blocking one. Requires
+     * org.apache.httpcomponents:httpasyncclient on the classpath.
+     *
+     * @param use
+     *            whether the non-blocking transport should be used
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withNonBlockingIo(boolean use) {
+        setUseNonBlockingIo(use);
+        return this;
+    }
+
+    /**
+     * Returns the number of I/O threads used by the non-blocking transport.
+     */
+    public int getNonBlockingIoThreads() {
+        return nonBlockingIoThreads;
+    }
+
+    /**
+     * Sets the number of I/O threads used by the non-blocking transport. All
+     * the connections of a client are multiplexed over these threads, so a
+     * small number, by default the number of available processors, is
+     * usually sufficient regardless of {@link #getMaxConnections()}.
+     *
+     * @param nonBlockingIoThreads
+     *            the number of I/O threads
+     */
+    public void setNonBlockingIoThreads(int nonBlockingIoThreads) {
+        this.nonBlockingIoThreads = nonBlockingIoThreads;
+    }
+
+    /**
+     * Sets the number of I/O threads used by the non-blocking transport.
+     *
+     * @param nonBlockingIoThreads
+     *            the number of I/O threads
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withNonBlockingIoThreads(int nonBlockingIoThreads) {
+        setNonBlockingIoThreads(nonBlockingIoThreads);
+        return this;
+    }
+
+    /**
+     * Returns whether the back-off delay between the retries of asynchronous
+     * requests is waited on a shared scheduler rather than a sleeping thread.
+     *
+     * @see com.amazonaws.retry.RetryScheduler
+     */
+    public boolean useScheduledRetries() {
+        return useScheduledRetries;
+    }
+
+    /**
+     * Sets whether the back-off delay between the retries of asynchronous
+     * requests is waited on a shared scheduler, so that no thread of the
+     * async client's executor sits idle while a request is backing off. The
+     * next attempt is then re-submitted to the executor once the delay has
+     * elapsed. Has no effect on synchronous requests.
+     *
+     * @param use
+     *            whether retries should be scheduled
+     *
+     * @see com.amazonaws.retry.RetryScheduler
+     */
+    public void setUseScheduledRetries(boolean use) {
+        this.useScheduledRetries = use;
+    }
+
+    /**
+     * Sets whether the back-off delay between the retries of asynchronous
+     * requests is waited on a shared scheduler.
+     *
+     * @param use
+     *            whether retries should be scheduled
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withScheduledRetries(boolean use) {
+        setUseScheduledRetries(use);
+        return this;
+    }
+
+    /**
+     * Returns whether the retries of the client are limited by a token bucket.
+     *
+     * @see com.amazonaws.retry.RetryTokenBucket
+     */
+    public boolean useRetryTokenBucket() {
+        return useRetryTokenBucket;
+    }
+
+    /**
+     * Sets whether the retries of all the requests of the client are limited
+     * by a token bucket, which failures drain and successes refill. When most
+     * requests fail, the bucket runs out of tokens and retries are denied, so
+     * that the client does not multiply its load on a degraded service.
+     *
+     * @param use
+     *            whether retries should be limited by a token bucket
+     *
+     * @see #setRetryTokenBucketCapacity(int)
+     * @see com.amazonaws.retry.RetryTokenBucket
+     */
+    public void setUseRetryTokenBucket(boolean use) {
+        this.useRetryTokenBucket = use;
+    }
+
+    /**
+     * Sets whether the retries of all the requests of the client are limited
+     * by a token bucket.
+     *
+     * @param use
+     *            whether retries should be limited by a token bucket
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withRetryTokenBucket(boolean use) {
+        setUseRetryTokenBucket(use);
+        return this;
+    }
+
+    /**
+     * Returns the capacity of the retry token bucket.
+     */
+    public int getRetryTokenBucketCapacity() {
+        return retryTokenBucketCapacity;
+    }
+
+    /**
+     * Sets the capacity of the retry token bucket. Each retry costs
+     * {@value com.amazonaws.retry.RetryTokenBucket#RETRY_COST} tokens.
+     *
+     * @param retryTokenBucketCapacity
+     *            the capacity of the retry token bucket
+     */
+    public void setRetryTokenBucketCapacity(int retryTokenBucketCapacity) {
+        this.retryTokenBucketCapacity = retryTokenBucketCapacity;
+    }
+
+    /**
+     * Sets the capacity of the retry token bucket.
+     *
+     * @param retryTokenBucketCapacity
+     *            the capacity of the retry token bucket
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withRetryTokenBucketCapacity(int retryTokenBucketCapacity) {
+        setRetryTokenBucketCapacity(retryTokenBucketCapacity);
+        return this;
+    }
+
+    /**
+     * Returns whether the retries to endpoints that keep failing are denied.
+     *
+     * @see com.amazonaws.retry.CircuitBreaker
+     */
+    public boolean useCircuitBreaker() {
+        return useCircuitBreaker;
+    }
+
+    /**
+     * Sets whether the retries to an endpoint are denied once a number of
+     * consecutive attempts to that endpoint have failed, until a probe
+     * succeeds.
+     *
+     * @param use
+     *            whether a per-endpoint circuit breaker should be used
+     *
+     * @see #setCircuitBreakerFailureThreshold(int)
+     * @see #setCircuitBreakerOpenTime(long)
+     * @see com.amazonaws.retry.CircuitBreaker
+     */
+    public void setUseCircuitBreaker(boolean use) {
+        this.useCircuitBreaker = use;
+    }
+
+    /**
+     * Sets whether the retries to an endpoint are denied once a number of
+     * consecutive attempts to that endpoint have failed.
+     *
+     * @param use
+     *            whether a per-endpoint circuit breaker should be used
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withCircuitBreaker(boolean use) {
+        setUseCircuitBreaker(use);
+        return this;
+    }
+
+    /**
+     * Returns the number of consecutive failed attempts to an endpoint which
+     * opens its circuit.
+     */
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failed attempts to an endpoint which
+     * opens its circuit.
+     *
+     * @param circuitBreakerFailureThreshold
+     *            the number of consecutive failed attempts
+     */
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failed attempts to an endpoint which
+     * opens its circuit.
+     *
+     * @param circuitBreakerFailureThreshold
+     *            the number of consecutive failed attempts
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        setCircuitBreakerFailureThreshold(circuitBreakerFailureThreshold);
+        return this;
+    }
+
+    /**
+     * Returns the time, in milliseconds, a circuit stays open before a retry
+     * is let through as a probe.
+     */
+    public long getCircuitBreakerOpenTime() {
+        return circuitBreakerOpenTime;
+    }
+
+    /**
+     * Sets the time, in milliseconds, a circuit stays open before a retry is
+     * let through as a probe.
+     *
+     * @param circuitBreakerOpenTime
+     *            the open time, in milliseconds
+     */
+    public void setCircuitBreakerOpenTime(long circuitBreakerOpenTime) {
+        this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+    }
+
+    /**
+     * Sets the time, in milliseconds, a circuit stays open before a retry is
+     * let through as a probe.
+     *
+     * @param circuitBreakerOpenTime
+     *            the open time, in milliseconds
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withCircuitBreakerOpenTime(long circuitBreakerOpenTime) {
+        setCircuitBreakerOpenTime(circuitBreakerOpenTime);
+        return this;
+    }
+
     /**
      * Returns a non-null object that can be used to specify Apache HTTP client
      * specific custom configurations.
@@ -32,6 +32,16 @@ public final class RequestClientOptions {
      * BufferedInputStream.
      */
     public static final int DEFAULT_STREAM_BUFFER_SIZE = (1 << 17)+1;
+    /**
+     * Default size of the chunks of a payload signed chunk by chunk with
+     * Signature Version 4 ("aws-chunked" encoding): 128K.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+    /**
+     * Minimum size of the chunks of a payload signed chunk by chunk: 8K, as
+     * required by the service for all the chunks but the last one.
+     */
+    public static final int MINIMUM_CHUNK_SIZE = 8 * 1024;
     public static enum Marker {
         /** 
          * Used to specify the http user_agent value.
@@ -46,6 +56,10 @@ public final class RequestClientOptions {
      * Used for mark-and-reset purposes during retry.
      */
     private int readLimit = DEFAULT_STREAM_BUFFER_SIZE;
+    /**
+     * Size of the chunks of a payload signed chunk by chunk.
+     */
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
     
     /**
      * @deprecated by {@link #getClientMarker(Marker)}.
@@ -125,12 +139,36 @@ public final class RequestClientOptions {
         this.readLimit = readLimit;
     }
 
+    /**
+     * Returns the size of the chunks of the payload, if it is signed chunk by
+     * chunk with Signature Version 4; defaults to {@value #DEFAULT_CHUNK_SIZE}.
+     */
+    public final int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the size of the chunks of the payload, if it is signed chunk by
+     * chunk with Signature Version 4, as are the uploads to Amazon S3 over
+     * HTTP. Larger chunks take fewer signatures, and so less CPU, to upload
+     * the same data, at the cost of as much memory per upload; the size of
+     * the chunks must be at least {@value #MINIMUM_CHUNK_SIZE}.
+     */
+    public final void setChunkSize(int chunkSize) {
+        if (chunkSize < MINIMUM_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size " + chunkSize
+                    + " must be at least " + MINIMUM_CHUNK_SIZE);
+        }
+        this.chunkSize = chunkSize;
+    }
+
     /**
      * Copy the internal states of this <code>RequestClientOptions</code> to the
      * target <code>RequestClientOptions</code>.
      */
     void copyTo(RequestClientOptions target) {
         target.setReadLimit(getReadLimit());
+        target.setChunkSize(getChunkSize());
         for (Marker marker: Marker.values())
             target.putClientMarker(marker, getClientMarker(marker));
     }
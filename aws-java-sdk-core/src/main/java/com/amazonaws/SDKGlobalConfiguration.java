@@ -128,6 +128,17 @@ public class SDKGlobalConfiguration {
     public static final String DEFAULT_S3_STREAM_BUFFER_SIZE =
         "com.amazonaws.sdk.s3.defaultStreamBufferSize";
 
+    /**
+     * System property to set the size, in bytes, of the largest scratch buffer
+     * kept for reuse by each thread marshalling JSON requests.
+     * <p>
+     * If not set, the default value of 8 MB will be used, which covers the
+     * largest documented requests, such as a Kinesis PutRecords request of
+     * 5 MB of data once base64 encoded.
+     */
+    public static final String JSON_MAX_POOLED_BUFFER_SIZE_SYSTEM_PROPERTY =
+        "com.amazonaws.sdk.json.maxPooledBufferSize";
+
     /**
      * @deprecated by {@link #DEFAULT_METRICS_SYSTEM_PROPERTY}.
      *
@@ -46,7 +46,7 @@ import com.amazonaws.SignableRequest;
 import com.amazonaws.auth.internal.AWS4SignerRequestParams;
 import com.amazonaws.auth.internal.AWS4SignerUtils;
 import com.amazonaws.auth.internal.SignerKey;
-import com.amazonaws.internal.FIFOCache;
+import com.amazonaws.internal.ConcurrentFIFOCache;
 import com.amazonaws.log.InternalLogApi;
 import com.amazonaws.log.InternalLogFactory;
 import com.amazonaws.util.BinaryUtils;
@@ -61,7 +61,26 @@ public class AWS4Signer extends AbstractAWSSigner implements
 
     protected static final InternalLogApi log = InternalLogFactory.getLog(AWS4Signer.class);
     private static final int SIGNER_CACHE_MAX_SIZE = 300;
-    private static final FIFOCache<SignerKey> signerCache = new FIFOCache<SignerKey>(SIGNER_CACHE_MAX_SIZE);
+    private static final ConcurrentFIFOCache<SignerKey> signerCache = new ConcurrentFIFOCache<SignerKey>(SIGNER_CACHE_MAX_SIZE);
+
+    /**
+     * Maximum capacity of the builders kept for reuse by each thread; larger
+     * builders, needed by requests with unusually long headers or query
+     * strings, are dropped once used.
+     */
+    private static final int MAX_REUSED_BUILDER_CAPACITY = 16 * 1024;
+
+    /**
+     * Builders of the canonical request and of the string to sign, one per
+     * thread, so that their buffers aren't grown from scratch for every
+     * request.
+     */
+    private static final ThreadLocal<StringBuilder> stringBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(1024);
+        }
+    };
 
     /**
      * Service name override for use when the endpoint can't be used to
@@ -279,8 +298,8 @@ public class AWS4Signer extends AbstractAWSSigner implements
         final String path = SdkHttpUtils.appendUri(
                 request.getEndpoint().getPath(), request.getResourcePath());
 
-        final StringBuilder canonicalRequestBuilder = new StringBuilder(request
-                .getHttpMethod().toString());
+        final StringBuilder canonicalRequestBuilder = reusableStringBuilder()
+                .append(request.getHttpMethod().toString());
 
         canonicalRequestBuilder.append(LINE_SEPARATOR)
                 // This would optionally double url-encode the resource path
@@ -309,14 +328,15 @@ public class AWS4Signer extends AbstractAWSSigner implements
     protected String createStringToSign(String canonicalRequest,
             AWS4SignerRequestParams signerParams) {
 
-        final StringBuilder stringToSignBuilder = new StringBuilder(
-                signerParams.getSigningAlgorithm());
+        final byte[] canonicalRequestHash = hash(canonicalRequest);
+        final StringBuilder stringToSignBuilder = reusableStringBuilder()
+                .append(signerParams.getSigningAlgorithm());
         stringToSignBuilder.append(LINE_SEPARATOR)
                 .append(signerParams.getFormattedSigningDateTime())
                 .append(LINE_SEPARATOR)
                 .append(signerParams.getScope())
                 .append(LINE_SEPARATOR)
-                .append(BinaryUtils.toHex(hash(canonicalRequest)));
+                .append(BinaryUtils.toHex(canonicalRequestHash));
 
         final String stringToSign = stringToSignBuilder.toString();
 
@@ -450,12 +470,11 @@ public class AWS4Signer extends AbstractAWSSigner implements
         final Map<String, String> requestHeaders = request.getHeaders();
         StringBuilder buffer = new StringBuilder();
         for (String header : sortedHeaders) {
-            String key = header.toLowerCase().replaceAll("\\s+", " ");
+            appendCompactedString(buffer, header.toLowerCase());
+            buffer.append(":");
             String value = requestHeaders.get(header);
-
-            buffer.append(key).append(":");
             if (value != null) {
-                buffer.append(value.replaceAll("\\s+", " "));
+                appendCompactedString(buffer, value);
             }
 
             buffer.append("\n");
@@ -464,6 +483,56 @@ public class AWS4Signer extends AbstractAWSSigner implements
         return buffer.toString();
     }
 
+    /**
+     * Appends the given string to the builder, with each run of whitespace
+     * replaced by a single space; same as appending
+     * <code>source.replaceAll("\\s+", " ")</code>, without compiling a
+     * pattern for every header.
+     */
+    private static void appendCompactedString(final StringBuilder destination,
+            final String source) {
+        boolean previousIsWhiteSpace = false;
+        int length = source.length();
+
+        for (int i = 0; i < length; i++) {
+            char ch = source.charAt(i);
+            if (isWhiteSpace(ch)) {
+                if (previousIsWhiteSpace) {
+                    continue;
+                }
+                destination.append(' ');
+                previousIsWhiteSpace = true;
+            } else {
+                destination.append(ch);
+                previousIsWhiteSpace = false;
+            }
+        }
+    }
+
+    /**
+     * Tests a char to see if is it whitespace, as matched by \s in a regular
+     * expression.
+     */
+    private static boolean isWhiteSpace(final char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000b'
+                || ch == '\r' || ch == '\f';
+    }
+
+    /**
+     * Returns the builder of the current thread, emptied, for building the
+     * canonical request or the string to sign; it must not be used again
+     * until its content has been copied into a string.
+     */
+    private static StringBuilder reusableStringBuilder() {
+        StringBuilder builder = stringBuilder.get();
+        if (builder.capacity() > MAX_REUSED_BUILDER_CAPACITY) {
+            builder = new StringBuilder(1024);
+            stringBuilder.set(builder);
+        }
+        builder.setLength(0);
+        return builder;
+    }
+
     protected String getSignedHeadersString(SignableRequest<?> request) {
         final List<String> sortedHeaders = new ArrayList<String>(request
                 .getHeaders().keySet());
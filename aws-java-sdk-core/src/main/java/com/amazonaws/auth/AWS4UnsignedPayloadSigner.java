@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import static com.amazonaws.auth.internal.SignerConstants.UNSIGNED_PAYLOAD;
+import static com.amazonaws.auth.internal.SignerConstants.X_AMZ_CONTENT_SHA256;
+
+import com.amazonaws.SignableRequest;
+
+/**
+ * AWS4 signer that leaves the payload of requests sent over HTTPS unsigned,
+ * for the services that accept it. The integrity of the payload is then
+ * ensured by TLS, and the payload is read only once, when it is sent, rather
+ * than once more to compute its hash before the request is signed. Requests
+ * sent over plain HTTP are signed as by {@link AWS4Signer}.
+ * <p>
+ * This signer can be selected with
+ * {@link com.amazonaws.ClientConfiguration#setSignerOverride(String)} and the
+ * signer type "AWS4UnsignedPayloadSignerType".
+ */
+public class AWS4UnsignedPayloadSigner extends AWS4Signer {
+
+    /**
+     * Construct a new AWS4 unsigned payload signer instance. By default,
+     * enable double url-encoding.
+     */
+    public AWS4UnsignedPayloadSigner() {
+        super();
+    }
+
+    /**
+     * Construct a new AWS4 unsigned payload signer instance.
+     *
+     * @param doubleUrlEncoding
+     *            Whether double url-encode the resource path when constructing
+     *            the canonical request.
+     */
+    public AWS4UnsignedPayloadSigner(boolean doubleUrlEncoding) {
+        super(doubleUrlEncoding);
+    }
+
+    @Override
+    protected String calculateContentHash(SignableRequest<?> request) {
+        if (isHttps(request)) {
+            // The header is required for the service to expect an unsigned
+            // payload; AWS4Signer.sign() fills it with the returned value
+            request.addHeader(X_AMZ_CONTENT_SHA256, "required");
+            return UNSIGNED_PAYLOAD;
+        }
+        return super.calculateContentHash(request);
+    }
+
+    /**
+     * Returns true if the request is sent over HTTPS.
+     */
+    protected static boolean isHttps(SignableRequest<?> request) {
+        return "https".equalsIgnoreCase(request.getEndpoint().getScheme());
+    }
+}
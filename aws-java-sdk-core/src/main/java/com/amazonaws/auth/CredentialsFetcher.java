@@ -0,0 +1,35 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+/**
+ * Fetches new credentials from their source, such as the AWS Security Token
+ * Service or the Amazon EC2 Instance Metadata Service, on behalf of
+ * {@link RefreshingCredentials}.
+ *
+ * @see CredentialsRefreshScheduler#register(Object, CredentialsFetcher, long)
+ */
+public interface CredentialsFetcher {
+
+    /**
+     * Fetches new credentials from their source.
+     *
+     * @return The new credentials, with the time they expire.
+     * @throws com.amazonaws.AmazonClientException
+     *             If the credentials couldn't be fetched.
+     */
+    public ExpiringCredentials fetchCredentials();
+
+}
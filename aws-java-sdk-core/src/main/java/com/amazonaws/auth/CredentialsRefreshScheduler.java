@@ -0,0 +1,219 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * Process-wide scheduler of the background refreshes of the credentials
+ * vended by the credentials providers that fetch short-lived credentials, such
+ * as the AWS Security Token Service and Amazon EC2 Instance Metadata Service
+ * providers.
+ * <p>
+ * Providers register the source of their credentials, and get back the
+ * {@link RefreshingCredentials} of that source, which fetches new credentials
+ * some time before the current ones expire. Providers that register equal
+ * source keys share the same {@link RefreshingCredentials}, so that the
+ * credentials of a source are fetched once for all of them. The refreshes of
+ * all the sources run on a few daemon threads, at randomly spread times so
+ * that sources registered together don't all refresh at once.
+ * <p>
+ * A source is only weakly referenced by the scheduler: once the providers
+ * using it are garbage collected, it isn't refreshed anymore, and its fetcher
+ * is closed if it is {@link Closeable}.
+ */
+@ThreadSafe
+public final class CredentialsRefreshScheduler {
+
+    private static final Log log = LogFactory.getLog(CredentialsRefreshScheduler.class);
+
+    /** Number of threads fetching credentials in the background. */
+    private static final int REFRESH_THREAD_COUNT = 2;
+
+    /** Interval between the removals of the sources no longer used. */
+    private static final long EXPUNGE_INTERVAL_MILLIS = 60 * 1000;
+
+    private static final CredentialsRefreshScheduler instance =
+        new CredentialsRefreshScheduler();
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    /** The registered sources, by source key. */
+    private final ConcurrentMap<Object, SourceReference> sources =
+        new ConcurrentHashMap<Object, SourceReference>();
+
+    /** Queue of the sources which have been garbage collected. */
+    private final ReferenceQueue<RefreshingCredentials> collectedSources =
+        new ReferenceQueue<RefreshingCredentials>();
+
+    private final Random random = new Random();
+
+    private CredentialsRefreshScheduler() {
+        executor = new ScheduledThreadPoolExecutor(REFRESH_THREAD_COUNT,
+            new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r);
+                    thread.setName("aws-credentials-refresh-"
+                            + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        // So that the fetchers of unused sources are closed even if no other
+        // source is registered
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                expungeCollectedSources();
+            }
+        }, EXPUNGE_INTERVAL_MILLIS, EXPUNGE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Returns the process-wide credentials refresh scheduler. */
+    public static CredentialsRefreshScheduler getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registers a source of credentials, and returns its refreshing
+     * credentials. If a source with an equal key is already registered, its
+     * refreshing credentials are returned, and the given fetcher is not used.
+     * <p>
+     * The key must identify everything that determines the credentials
+     * fetched: for example the role, session name and endpoint of a role
+     * session, as well as the identity of the caller assuming the role and
+     * the configuration of the client used to assume it.
+     * <p>
+     * If the fetcher is {@link Closeable}, it is closed once it isn't used:
+     * right away if a source with an equal key is already registered, or else
+     * after its source has been garbage collected. Fetchers should therefore
+     * only acquire resources, such as a client, when they first fetch.
+     *
+     * @param sourceKey
+     *            The key identifying the source of the credentials.
+     * @param fetcher
+     *            Fetches new credentials from the source.
+     * @param expiryThresholdMillis
+     *            The time before expiry, in milliseconds, within which callers
+     *            wait for new credentials rather than use the current ones.
+     *            Credentials are fetched in the background a few minutes
+     *            before that.
+     * @return The refreshing credentials of the source.
+     */
+    public RefreshingCredentials register(Object sourceKey,
+            CredentialsFetcher fetcher, long expiryThresholdMillis) {
+        if (sourceKey == null || fetcher == null) {
+            throw new IllegalArgumentException(
+                    "sourceKey and fetcher must not be null");
+        }
+        expungeCollectedSources();
+        for (;;) {
+            SourceReference reference = sources.get(sourceKey);
+            RefreshingCredentials registered = reference == null ? null : reference.get();
+            if (registered != null) {
+                close(fetcher);
+                return registered;
+            }
+            RefreshingCredentials source = new RefreshingCredentials(this,
+                    fetcher, expiryThresholdMillis);
+            SourceReference newReference = new SourceReference(sourceKey, source,
+                    fetcher, collectedSources);
+            boolean added = reference == null
+                    ? sources.putIfAbsent(sourceKey, newReference) == null
+                    : sources.replace(sourceKey, reference, newReference);
+            if (added) {
+                return source;
+            }
+        }
+    }
+
+    /** Returns the number of sources currently registered. */
+    int getSourceCount() {
+        expungeCollectedSources();
+        return sources.size();
+    }
+
+    /** Runs the given task on a refresh thread after the given delay. */
+    void schedule(Runnable task, long delayMillis) {
+        executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a random delay between zero, inclusive, and the given delay,
+     * exclusive, in milliseconds.
+     */
+    long jitter(long maxDelayMillis) {
+        if (maxDelayMillis <= 0) {
+            return 0;
+        }
+        return (long) (random.nextDouble() * maxDelayMillis);
+    }
+
+    /** Removes the sources which have been garbage collected. */
+    private void expungeCollectedSources() {
+        SourceReference reference;
+        while ((reference = (SourceReference) collectedSources.poll()) != null) {
+            sources.remove(reference.sourceKey, reference);
+            close(reference.fetcher);
+        }
+    }
+
+    /** Closes the given fetcher, if it is closeable. */
+    private static void close(CredentialsFetcher fetcher) {
+        if (fetcher instanceof Closeable) {
+            try {
+                ((Closeable) fetcher).close();
+            } catch (IOException e) {
+                log.debug("Unable to close credentials fetcher " + fetcher, e);
+            } catch (RuntimeException e) {
+                log.debug("Unable to close credentials fetcher " + fetcher, e);
+            }
+        }
+    }
+
+    /**
+     * Weak reference to a source, which keeps track of its key and of its
+     * fetcher, to be closed once the source is garbage collected.
+     */
+    private static final class SourceReference extends WeakReference<RefreshingCredentials> {
+        private final Object sourceKey;
+        private final CredentialsFetcher fetcher;
+
+        SourceReference(Object sourceKey, RefreshingCredentials source,
+                CredentialsFetcher fetcher, ReferenceQueue<RefreshingCredentials> queue) {
+            super(source, queue);
+            this.sourceKey = sourceKey;
+            this.fetcher = fetcher;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import java.util.Date;
+
+/**
+ * AWS credentials with the time they expire, as fetched by a
+ * {@link CredentialsFetcher}.
+ */
+public final class ExpiringCredentials {
+
+    private final AWSCredentials credentials;
+    private final Date expiration;
+
+    /**
+     * @param credentials
+     *            The credentials.
+     * @param expiration
+     *            The time the credentials expire; or null if they don't.
+     */
+    public ExpiringCredentials(AWSCredentials credentials, Date expiration) {
+        if (credentials == null) {
+            throw new IllegalArgumentException("credentials must not be null");
+        }
+        this.credentials = credentials;
+        this.expiration = expiration;
+    }
+
+    /** Returns the credentials. */
+    public AWSCredentials getCredentials() {
+        return credentials;
+    }
+
+    /** Returns the time the credentials expire; or null if they don't. */
+    public Date getExpiration() {
+        return expiration;
+    }
+}
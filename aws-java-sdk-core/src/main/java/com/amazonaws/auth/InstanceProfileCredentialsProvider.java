@@ -15,9 +15,8 @@
 package com.amazonaws.auth;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.Date;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
@@ -33,6 +32,12 @@ import com.fasterxml.jackson.databind.JsonNode;
 /**
  * Credentials provider implementation that loads credentials from the Amazon
  * EC2 Instance Metadata Service.
+ * <p>
+ * The credentials of the Instance Metadata Service are registered with the
+ * {@link CredentialsRefreshScheduler}, and so are shared by all the instances
+ * of this provider: a provider which needs to load credentials reuses those
+ * loaded by another one since its own last attempt, and the shared credentials
+ * are refreshed in the background before they expire.
  */
 public class InstanceProfileCredentialsProvider implements AWSCredentialsProvider {
 
@@ -65,6 +70,8 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
      */
     private static final int ASYNC_REFRESH_INTERVAL_TIME_MINUTES= 1;
 
+    /** The key of the Instance Metadata Service credentials source. */
+    private static final String INSTANCE_METADATA_SOURCE = "instance-metadata";
 
     /** The current instance profile credentials */
     protected volatile AWSCredentials credentials;
@@ -76,41 +83,60 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
     protected volatile Date lastInstanceProfileCheck;
 
     /**
-     * The executor service used for refreshing the credentials in the
-     * background.
+     * The credentials of the Instance Metadata Service, shared by all the
+     * instances of this provider.
      */
-    private volatile ScheduledExecutorService executor;
+    private final RefreshingCredentials instanceMetadataCredentials;
+
+    /**
+     * The time this provider last loaded credentials, or was created; only
+     * credentials fetched after that are new to this provider.
+     */
+    private volatile long lastLoadTime = System.currentTimeMillis();
 
     public InstanceProfileCredentialsProvider() {
         this(false);
     }
 
     /**
-     * Spins up a new thread to refresh the credentials asynchronously if
-     * refreshCredentialsAsync is set to true, otherwise the credentials will be
-     * refreshed from the instance metadata service synchronously,
+     * Refreshes the credentials asynchronously, on the threads of the
+     * {@link CredentialsRefreshScheduler}, if refreshCredentialsAsync is set to
+     * true, otherwise the credentials will be refreshed from the instance
+     * metadata service synchronously,
      *
      * @param refreshCredentialsAsync
      *            true if credentials needs to be refreshed asynchronously else
      *            false.
      */
     public InstanceProfileCredentialsProvider(boolean refreshCredentialsAsync) {
+        instanceMetadataCredentials = CredentialsRefreshScheduler.getInstance()
+                .register(INSTANCE_METADATA_SOURCE,
+                        new InstanceMetadataCredentialsFetcher(),
+                        EXPIRATION_THRESHOLD);
         if (refreshCredentialsAsync) {
-            executor = Executors.newScheduledThreadPool(1);
-            executor.scheduleWithFixedDelay(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        getCredentials();
-                    } catch (AmazonClientException ace) {
-                        handleError(ace);
-                    } catch (RuntimeException re) {
-                        handleError(re);
-                    } catch (Error e) {
-                        handleError(e);
-                    }
-                }
-            }, 0, ASYNC_REFRESH_INTERVAL_TIME_MINUTES, TimeUnit.MINUTES);
+            CredentialsRefreshScheduler.getInstance().schedule(
+                    new AsyncRefreshTask(this), 0);
+        }
+    }
+
+    /**
+     * Returns the credentials of the Instance Metadata Service shared by all
+     * the instances of this provider, with their refresh statistics.
+     */
+    public RefreshingCredentials getRefreshingCredentials() {
+        return instanceMetadataCredentials;
+    }
+
+    /** Loads credentials in the background, if needed. */
+    private void refreshAsync() {
+        try {
+            getCredentials();
+        } catch (AmazonClientException ace) {
+            handleError(ace);
+        } catch (RuntimeException re) {
+            handleError(re);
+        } catch (Error e) {
+            handleError(e);
         }
     }
 
@@ -177,52 +203,16 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
     private synchronized void loadCredentials() {
         if (!needsToLoadCredentials()) return;
 
-        JsonNode accessKey;
-        JsonNode secretKey;
-        JsonNode node;
-        JsonNode token;
         try {
             lastInstanceProfileCheck = new Date();
-            String credentialsResponse = new EC2MetadataClient()
-                    .getDefaultCredentials();
-
-            node = Jackson.jsonNodeOf(credentialsResponse);
-            accessKey = node.get(ACCESS_KEY_ID);
-            secretKey = node.get(SECRET_ACCESS_KEY);
-            token = node.get(TOKEN);
-
-            if (null == accessKey || null == secretKey) {
-                throw new AmazonClientException("Unable to load credentials.");
-            }
-
-            if (null != token) {
-                credentials = new BasicSessionCredentials(accessKey.asText(),
-                        secretKey.asText(), token.asText());
-            } else {
-                credentials = new BasicAWSCredentials(accessKey.asText(),
-                        secretKey.asText());
-            }
-
-            JsonNode expirationJsonNode = node.get("Expiration");
-            if (null != expirationJsonNode) {
-                /*
-                 * TODO: The expiration string comes in a different format
-                 * than what we deal with in other parts of the SDK, so we
-                 * have to convert it to the ISO8601 syntax we expect.
-                 */
-                String expiration = expirationJsonNode.asText();
-                expiration = expiration.replaceAll("\\+0000$", "Z");
-
-                try {
-                    credentialsExpiration = DateUtils.parseISO8601Date(expiration);
-                } catch(Exception ex) {
-                    handleError("Unable to parse credentials expiration date from Amazon EC2 metadata service", ex);
-                }
-            }
-        } catch (JsonMappingException e) {
-            handleError("Unable to parse credentials from Amazon EC2 metadata service", e);
-        } catch (IOException e) {
-            handleError("Unable to load credentials from Amazon EC2 metadata service", e);
+            // Credentials loaded by another provider since our last load will do
+            ExpiringCredentials loaded = instanceMetadataCredentials
+                    .getCredentialsFetchedAfter(lastLoadTime);
+            lastLoadTime = System.currentTimeMillis();
+            credentials = loaded.getCredentials();
+            credentialsExpiration = loaded.getExpiration();
+        } catch (AmazonClientException e) {
+            handleError(e);
         }
     }
 
@@ -233,18 +223,16 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
      * we need to gracefully handle falling back to valid credentials if they're
      * available, and only throw exceptions if we really can't recover.
      *
-     * @param errorMessage
-     *            A human readable description of the error.
      * @param e
      *            The error that occurred.
      */
-    private void handleError(String errorMessage, Exception e) {
-        // If we don't have any valid credentials to fall back on, then throw an exception
+    private void handleError(AmazonClientException e) {
+        // If we don't have any valid credentials to fall back on, then throw the exception
         if (credentials == null || expired())
-            throw new AmazonClientException(errorMessage, e);
+            throw e;
 
         // Otherwise, just log the error and continuing using the current credentials
-        LOG.debug(errorMessage, e);
+        LOG.debug(e.getMessage(), e);
     }
 
     @Override
@@ -252,10 +240,92 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
         return getClass().getSimpleName();
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        if (executor != null) {
-            executor.shutdownNow();
+    /** Loads credentials from the Amazon EC2 Instance Metadata Service. */
+    private static final class InstanceMetadataCredentialsFetcher implements CredentialsFetcher {
+
+        @Override
+        public ExpiringCredentials fetchCredentials() {
+            JsonNode accessKey;
+            JsonNode secretKey;
+            JsonNode node;
+            JsonNode token;
+            try {
+                String credentialsResponse = new EC2MetadataClient()
+                        .getDefaultCredentials();
+
+                node = Jackson.jsonNodeOf(credentialsResponse);
+                accessKey = node.get(ACCESS_KEY_ID);
+                secretKey = node.get(SECRET_ACCESS_KEY);
+                token = node.get(TOKEN);
+
+                if (null == accessKey || null == secretKey) {
+                    throw new AmazonClientException("Unable to load credentials.");
+                }
+
+                AWSCredentials credentials;
+                if (null != token) {
+                    credentials = new BasicSessionCredentials(accessKey.asText(),
+                            secretKey.asText(), token.asText());
+                } else {
+                    credentials = new BasicAWSCredentials(accessKey.asText(),
+                            secretKey.asText());
+                }
+
+                Date credentialsExpiration = null;
+                JsonNode expirationJsonNode = node.get("Expiration");
+                if (null != expirationJsonNode) {
+                    /*
+                     * TODO: The expiration string comes in a different format
+                     * than what we deal with in other parts of the SDK, so we
+                     * have to convert it to the ISO8601 syntax we expect.
+                     */
+                    String expiration = expirationJsonNode.asText();
+                    expiration = expiration.replaceAll("\\+0000$", "Z");
+
+                    try {
+                        credentialsExpiration = DateUtils.parseISO8601Date(expiration);
+                    } catch(Exception ex) {
+                        LOG.debug("Unable to parse credentials expiration date from Amazon EC2 metadata service", ex);
+                    }
+                }
+                return new ExpiringCredentials(credentials, credentialsExpiration);
+            } catch (JsonMappingException e) {
+                throw new AmazonClientException("Unable to parse credentials from Amazon EC2 metadata service", e);
+            } catch (IOException e) {
+                throw new AmazonClientException("Unable to load credentials from Amazon EC2 metadata service", e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Amazon EC2 metadata service";
+        }
+    }
+
+    /**
+     * Periodic background loading of the credentials of a provider, at
+     * randomly spread intervals. It only holds a weak reference to the
+     * provider, so that the provider can be garbage collected once no longer
+     * used.
+     */
+    private static final class AsyncRefreshTask implements Runnable {
+        private final WeakReference<InstanceProfileCredentialsProvider> providerReference;
+
+        AsyncRefreshTask(InstanceProfileCredentialsProvider provider) {
+            this.providerReference = new WeakReference<InstanceProfileCredentialsProvider>(provider);
+        }
+
+        @Override
+        public void run() {
+            InstanceProfileCredentialsProvider provider = providerReference.get();
+            if (provider == null) {
+                return;
+            }
+            provider.refreshAsync();
+
+            long interval = TimeUnit.MINUTES.toMillis(ASYNC_REFRESH_INTERVAL_TIME_MINUTES);
+            CredentialsRefreshScheduler scheduler = CredentialsRefreshScheduler.getInstance();
+            scheduler.schedule(this, interval / 2 + scheduler.jitter(interval));
         }
     }
 }
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import java.lang.ref.WeakReference;
+import java.util.Date;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.metrics.ServiceLatencyProvider;
+import com.amazonaws.util.AWSServiceMetrics;
+
+/**
+ * The credentials of a source registered with the
+ * {@link CredentialsRefreshScheduler}, shared by all the providers using that
+ * source.
+ * <p>
+ * New credentials are fetched in the background a few minutes before the
+ * current ones come within the expiry threshold, at a random time, while
+ * {@link #getCredentials()} keeps returning the current credentials. Callers
+ * only wait for new credentials when there are none yet, or when the current
+ * ones are within the expiry threshold because they couldn't be refreshed in
+ * time. At most one fetch is in progress at a time.
+ * <p>
+ * The latency of each fetch is reported to the service metric collector as
+ * {@link AWSServiceMetrics#CredentialsRefreshTime}, or
+ * {@link AWSServiceMetrics#CredentialsRefreshFailureTime} if it failed; the
+ * statistics of the source can also be read from this object.
+ */
+@ThreadSafe
+public final class RefreshingCredentials {
+
+    private static final Log log = LogFactory.getLog(RefreshingCredentials.class);
+
+    /**
+     * Time, in milliseconds, before the expiry threshold at which credentials
+     * start to be refreshed in the background. The actual time is picked at
+     * random in the first half of this window.
+     */
+    static final long PREFETCH_TIME_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * Minimum delay between a successful fetch and the next background one,
+     * for sources which keep returning the same credentials until shortly
+     * before they expire.
+     */
+    static final long MINIMUM_REFRESH_INTERVAL_MILLIS = 60 * 1000;
+
+    /**
+     * Maximum delay before a failed background refresh is attempted again. The
+     * actual delay is picked at random up to this value.
+     */
+    static final long RETRY_DELAY_MILLIS = 10 * 1000;
+
+    private final CredentialsRefreshScheduler scheduler;
+
+    private final CredentialsFetcher fetcher;
+
+    /**
+     * The time before expiry within which callers wait for new credentials;
+     * only ever raised, by callers passing a larger threshold.
+     */
+    private volatile long expiryThresholdMillis;
+
+    /** The current credentials; or null if none has been fetched yet. */
+    private volatile Fetched current;
+
+    /** Held while credentials are being fetched, so only one fetch is at a time. */
+    private final ReentrantLock fetchLock = new ReentrantLock();
+
+    // Statistics, only updated with the fetch lock held
+    private volatile long refreshCount;
+    private volatile long refreshFailureCount;
+    private volatile long lastRefreshLatencyMillis = -1;
+
+    RefreshingCredentials(CredentialsRefreshScheduler scheduler,
+            CredentialsFetcher fetcher, long expiryThresholdMillis) {
+        this.scheduler = scheduler;
+        this.fetcher = fetcher;
+        this.expiryThresholdMillis = expiryThresholdMillis;
+    }
+
+    /**
+     * Returns the current credentials, fetching new ones if there are none or
+     * if they are within the expiry threshold given at registration.
+     */
+    public AWSCredentials getCredentials() {
+        return getCredentials(expiryThresholdMillis);
+    }
+
+    /**
+     * Returns the current credentials, fetching new ones if there are none or
+     * if they are within the given expiry threshold. A threshold larger than
+     * the one given at registration also applies to the background refreshes
+     * from then on.
+     *
+     * @param expiryThresholdMillis
+     *            The time before expiry, in milliseconds, within which new
+     *            credentials are fetched.
+     */
+    public AWSCredentials getCredentials(long expiryThresholdMillis) {
+        if (expiryThresholdMillis > this.expiryThresholdMillis) {
+            this.expiryThresholdMillis = expiryThresholdMillis;
+        }
+        Fetched fetched = current;
+        if (needsFetch(fetched, expiryThresholdMillis)) {
+            fetchLock.lock();
+            try {
+                // Credentials may have been fetched by another thread meanwhile
+                fetched = current;
+                if (needsFetch(fetched, expiryThresholdMillis)) {
+                    fetched = fetch();
+                }
+            } finally {
+                fetchLock.unlock();
+            }
+        }
+        return fetched.credentials.getCredentials();
+    }
+
+    /**
+     * Returns credentials fetched after the given time, fetching new ones if
+     * the current credentials are older. This lets providers which decide
+     * themselves when to reload credentials share the fetches of a source.
+     *
+     * @param timeMillis
+     *            The time, in milliseconds since the epoch, after which the
+     *            returned credentials must have been fetched.
+     */
+    public ExpiringCredentials getCredentialsFetchedAfter(long timeMillis) {
+        Fetched fetched = current;
+        if (fetched == null || fetched.timeMillis <= timeMillis) {
+            fetchLock.lock();
+            try {
+                fetched = current;
+                if (fetched == null || fetched.timeMillis <= timeMillis) {
+                    fetched = fetch();
+                }
+            } finally {
+                fetchLock.unlock();
+            }
+        }
+        return fetched.credentials;
+    }
+
+    /**
+     * Returns the current credentials with their expiration, without fetching
+     * any; or null if none has been fetched yet.
+     */
+    public ExpiringCredentials getCurrentCredentials() {
+        Fetched fetched = current;
+        return fetched == null ? null : fetched.credentials;
+    }
+
+    /** Fetches new credentials, whatever the state of the current ones. */
+    public void refresh() {
+        fetchLock.lock();
+        try {
+            fetch();
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    /** Returns the number of successful fetches of credentials. */
+    public long getRefreshCount() {
+        return refreshCount;
+    }
+
+    /** Returns the number of failed fetches of credentials. */
+    public long getRefreshFailureCount() {
+        return refreshFailureCount;
+    }
+
+    /**
+     * Returns the time taken by the last successful fetch of credentials, in
+     * milliseconds; or -1 if there has been none.
+     */
+    public long getLastRefreshLatencyMillis() {
+        return lastRefreshLatencyMillis;
+    }
+
+    /**
+     * Returns the age of the current credentials, in milliseconds since they
+     * were fetched; or -1 if none has been fetched yet.
+     */
+    public long getStalenessMillis() {
+        Fetched fetched = current;
+        return fetched == null ? -1 : System.currentTimeMillis() - fetched.timeMillis;
+    }
+
+    private static boolean needsFetch(Fetched fetched, long expiryThresholdMillis) {
+        if (fetched == null) {
+            return true;
+        }
+        Date expiration = fetched.credentials.getExpiration();
+        return expiration != null
+                && expiration.getTime() - System.currentTimeMillis() < expiryThresholdMillis;
+    }
+
+    /**
+     * Fetches new credentials, makes them current and schedules their
+     * background refresh. Must be called with the fetch lock held.
+     */
+    private Fetched fetch() {
+        ServiceLatencyProvider latencyProvider = new ServiceLatencyProvider(
+                AWSServiceMetrics.CredentialsRefreshTime);
+        ServiceLatencyProvider failureLatencyProvider = new ServiceLatencyProvider(
+                AWSServiceMetrics.CredentialsRefreshFailureTime);
+        ExpiringCredentials credentials;
+        try {
+            credentials = fetcher.fetchCredentials();
+            if (credentials == null) {
+                throw new AmazonClientException("No credentials fetched from " + fetcher);
+            }
+        } catch (RuntimeException e) {
+            refreshFailureCount++;
+            AwsSdkMetrics.getServiceMetricCollector().collectLatency(
+                    failureLatencyProvider.endTiming());
+            throw e;
+        }
+        AwsSdkMetrics.getServiceMetricCollector().collectLatency(
+                latencyProvider.endTiming());
+        lastRefreshLatencyMillis = (long) latencyProvider.getDurationMilli();
+        refreshCount++;
+
+        Fetched fetched = new Fetched(credentials, System.currentTimeMillis());
+        current = fetched;
+        Date expiration = credentials.getExpiration();
+        if (expiration != null) {
+            long refreshTime = expiration.getTime() - expiryThresholdMillis
+                    - PREFETCH_TIME_MILLIS + scheduler.jitter(PREFETCH_TIME_MILLIS / 2);
+            scheduleRefresh(fetched, Math.max(MINIMUM_REFRESH_INTERVAL_MILLIS,
+                    refreshTime - fetched.timeMillis));
+        }
+        return fetched;
+    }
+
+    private void scheduleRefresh(Fetched expiring, long delayMillis) {
+        scheduler.schedule(new RefreshTask(this, expiring), delayMillis);
+    }
+
+    /**
+     * Fetches new credentials to replace the given ones, unless they have
+     * already been replaced, or credentials are being fetched by another
+     * thread. If the fetch fails, it is attempted again later as long as the
+     * given credentials aren't within the expiry threshold; after that,
+     * callers fetch new credentials themselves.
+     */
+    private void refreshInBackground(Fetched expiring) {
+        if (current != expiring || !fetchLock.tryLock()) {
+            return;
+        }
+        try {
+            if (current == expiring) {
+                fetch();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to refresh credentials from " + fetcher
+                    + " in the background: " + e.getMessage(), e);
+            long timeLeft = expiring.credentials.getExpiration().getTime()
+                    - expiryThresholdMillis - System.currentTimeMillis();
+            if (timeLeft > 0) {
+                scheduleRefresh(expiring, Math.min(timeLeft,
+                        1 + scheduler.jitter(RETRY_DELAY_MILLIS)));
+            }
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    /** Fetched credentials, with the time they were fetched. */
+    private static final class Fetched {
+        private final ExpiringCredentials credentials;
+        private final long timeMillis;
+
+        Fetched(ExpiringCredentials credentials, long timeMillis) {
+            this.credentials = credentials;
+            this.timeMillis = timeMillis;
+        }
+    }
+
+    /**
+     * Background refresh of credentials. It only holds a weak reference to
+     * them, so that they can be garbage collected once no longer used.
+     */
+    private static final class RefreshTask implements Runnable {
+        private final WeakReference<RefreshingCredentials> reference;
+        private final Fetched expiring;
+
+        RefreshTask(RefreshingCredentials credentials, Fetched expiring) {
+            this.reference = new WeakReference<RefreshingCredentials>(credentials);
+            this.expiring = expiring;
+        }
+
+        @Override
+        public void run() {
+            RefreshingCredentials credentials = reference.get();
+            if (credentials != null) {
+                credentials.refreshInBackground(expiring);
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ public final class SignerFactory {
     private static final String QUERY_STRING_SIGNER = "QueryStringSignerType";
     private static final String VERSION_THREE_SIGNER = "AWS3SignerType";
     private static final String VERSION_FOUR_SIGNER = "AWS4SignerType";
+    private static final String VERSION_FOUR_UNSIGNED_PAYLOAD_SIGNER = "AWS4UnsignedPayloadSignerType";
     private static final String NO_OP_SIGNER = "NoOpSignerType";
 
     private static final Map<String, Class<? extends Signer>> SIGNERS
@@ -36,6 +37,7 @@ public final class SignerFactory {
         SIGNERS.put(QUERY_STRING_SIGNER, QueryStringSigner.class);
         SIGNERS.put(VERSION_THREE_SIGNER, AWS3Signer.class);
         SIGNERS.put(VERSION_FOUR_SIGNER, AWS4Signer.class);
+        SIGNERS.put(VERSION_FOUR_UNSIGNED_PAYLOAD_SIGNER, AWS4UnsignedPayloadSigner.class);
         SIGNERS.put(NO_OP_SIGNER, NoOpSigner.class);
     }
 
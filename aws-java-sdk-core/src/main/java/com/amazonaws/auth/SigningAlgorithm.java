@@ -14,9 +14,39 @@
  */
 package com.amazonaws.auth;
 
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Mac;
+
+import com.amazonaws.AmazonClientException;
+
 public enum SigningAlgorithm {
     
     HmacSHA1,
     HmacSHA256;
 
+    /**
+     * Mac instances of this algorithm, one per thread, since looking up a
+     * provider for every signature is comparatively costly.
+     */
+    private final ThreadLocal<Mac> macReference = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try {
+                return Mac.getInstance(name());
+            } catch (NoSuchAlgorithmException e) {
+                throw new AmazonClientException("Unable to fetch Mac instance for Algorithm "
+                        + name() + ": " + e.getMessage(), e);
+            }
+        }
+    };
+
+    /**
+     * Returns the thread local reference for the crypto algorithm. The
+     * instance must be initialized with a key before each use, and must not
+     * be shared with other threads.
+     */
+    public Mac getMac() {
+        return macReference.get();
+    }
 }
@@ -37,6 +37,12 @@ public final class SignerConstants {
 
     public static final String X_AMZ_CONTENT_SHA256 = "x-amz-content-sha256";
 
+    /**
+     * Value of the content hash of a request whose payload isn't signed,
+     * which is allowed by some services over HTTPS.
+     */
+    public static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+
     public static final String X_AMZ_SIGNATURE = "X-Amz-Signature";
 
     public static final String X_AMZ_ALGORITHM = "X-Amz-Algorithm";
@@ -24,6 +24,8 @@ import static com.amazonaws.util.AWSRequestMetrics.Field.Exception;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolAvailableCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolLeasedCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolPendingCount;
+import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolReapedCount;
+import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientStaleConnectionRetryCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpRequestTime;
 import static com.amazonaws.util.AWSRequestMetrics.Field.RedirectLocation;
 import static com.amazonaws.util.AWSRequestMetrics.Field.RequestCount;
@@ -47,6 +49,10 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 
@@ -56,19 +62,21 @@ import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpStatus;
+import org.apache.http.NoHttpResponseException;
 import org.apache.http.StatusLine;
 import org.apache.http.annotation.ThreadSafe;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
-import org.apache.http.pool.ConnPoolControl;
 import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 
+import com.amazonaws.AbortedException;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.AmazonServiceException.ErrorType;
@@ -96,7 +104,11 @@ import com.amazonaws.internal.ResettableInputStream;
 import com.amazonaws.internal.SdkBufferedInputStream;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.retry.CircuitBreaker;
+import com.amazonaws.retry.RetryAdmin;
 import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryScheduler;
+import com.amazonaws.retry.RetryTokenBucket;
 import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.retry.internal.AuthErrorRetryStrategy;
 import com.amazonaws.retry.internal.AuthRetryParameters;
@@ -143,8 +155,8 @@ public class AmazonHttpClient {
         }
     }
 
-    /** Internal client for sending HTTP requests */
-    private final HttpClient httpClient;
+    /** Internal transport for sending HTTP requests */
+    private final HttpEngine httpEngine;
 
     /** Client configuration options, such as proxy settings, max retries, etc. */
     private final ClientConfiguration config;
@@ -161,6 +173,12 @@ public class AmazonHttpClient {
      */
     private final RequestMetricCollector requestMetricCollector;
 
+    /** Client-wide retry budget; or null if retries are not limited. */
+    private final RetryTokenBucket retryTokenBucket;
+
+    /** Per-endpoint retry circuit breaker; or null if not used. */
+    private final CircuitBreaker circuitBreaker;
+
     /** The time difference in seconds between this client and AWS. */
     private volatile int timeOffset = SDKGlobalTime.getGlobalTimeOffset();
 
@@ -190,7 +208,39 @@ public class AmazonHttpClient {
      *            is none.
      */
     public AmazonHttpClient(ClientConfiguration config, RequestMetricCollector requestMetricCollector) {
-        this(config, httpClientFactory.createHttpClient(config), requestMetricCollector);
+        this(config, httpClientFactory.createHttpEngine(config), requestMetricCollector);
+    }
+
+    /**
+     * Constructs a new AWS client using the specified client configuration
+     * options, transport, and request metric collector.
+     *
+     * @param config
+     *            Configuration options specifying how this client will
+     *            communicate with AWS (ex: proxy settings, retry count, etc.).
+     * @param httpEngine
+     *            the transport used to send the HTTP requests; owned and shut
+     *            down by this client.
+     * @param requestMetricCollector
+     *            client specific request metric collector, which takes
+     *            precedence over the one at the AWS SDK level; or null if there
+     *            is none.
+     */
+    public AmazonHttpClient(ClientConfiguration config, HttpEngine httpEngine,
+            RequestMetricCollector requestMetricCollector) {
+        this.config = config;
+        this.httpEngine = httpEngine;
+        this.requestMetricCollector = requestMetricCollector;
+        this.retryTokenBucket = config.useRetryTokenBucket()
+            ? new RetryTokenBucket(config.getRetryTokenBucketCapacity())
+            : null;
+        this.circuitBreaker = config.useCircuitBreaker()
+            ? new CircuitBreaker(config.getCircuitBreakerFailureThreshold(),
+                    config.getCircuitBreakerOpenTime())
+            : null;
+        if (retryTokenBucket != null || circuitBreaker != null) {
+            RetryAdmin.registerMBean();
+        }
     }
 
     /**
@@ -200,10 +250,7 @@ public class AmazonHttpClient {
             ClientConfiguration config,
             HttpClient httpClient,
             RequestMetricCollector requestMetricCollector) {
-
-        this.config = config;
-        this.httpClient = httpClient;
-        this.requestMetricCollector = requestMetricCollector;
+        this(config, new ApacheHttpEngine(httpClient), requestMetricCollector);
     }
 
     /**
@@ -224,6 +271,33 @@ public class AmazonHttpClient {
         return responseMetadataCache.get(request);
     }
 
+    /**
+     * Opens connections to the given endpoint in parallel, so that the pool
+     * of this client holds at least the given number of open connections to
+     * it, within the maximum number of connections of the client
+     * configuration. Each connection must be leased from the pool within the
+     * connection timeout of the client configuration.
+     *
+     * @param endpoint
+     *            the endpoint to connect to
+     * @param connections
+     *            the number of open connections to the endpoint wanted in the
+     *            pool
+     * @return the number of connections opened and the time taken to open
+     *         them
+     */
+    public ConnectionWarmUpResult warmUpConnections(URI endpoint, int connections) {
+        if (connections < 0)
+            throw new IllegalArgumentException("connections must not be negative");
+        if (!(httpEngine instanceof ApacheHttpEngine)) {
+            log.warn("Connection warm-up is not supported by "
+                    + httpEngine.getClass().getName());
+            return new ConnectionWarmUpResult(connections, 0, 0, 0);
+        }
+        return ((ApacheHttpEngine) httpEngine).warmUpConnections(endpoint,
+                connections, config.getConnectionTimeout());
+    }
+
     /**
      * Disables the default strict hostname verification in this client and
      * instead uses a browser compatible hostname verification strategy (i.e.
@@ -239,7 +313,14 @@ public class AmazonHttpClient {
             return;
         }
 
+        if (!(httpEngine instanceof ApacheHttpEngine)) {
+            log.warn("Browser compatible hostname verification is not supported by "
+                    + httpEngine.getClass().getName());
+            return;
+        }
+
         try {
+            HttpClient httpClient = ((ApacheHttpEngine) httpEngine).getHttpClient();
             SchemeRegistry schemeRegistry = httpClient.getConnectionManager().getSchemeRegistry();
             SSLSocketFactory sf = config.getApacheHttpClientConfig().getSslSocketFactory();
             if (sf == null) {
@@ -310,6 +391,353 @@ public class AmazonHttpClient {
         }
     }
 
+    /**
+     * Executes the request asynchronously. When this client is backed by a
+     * non-blocking transport (see {@link #isNonBlocking()}), this method
+     * returns as soon as the first attempt has been handed over to the
+     * transport; responses are handled, and retries scheduled, without
+     * blocking any thread. Otherwise, the request is executed on the calling
+     * thread before this method returns.
+     *
+     * @see #executeAsync(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext, FutureCallback, Executor)
+     *
+     * @param request
+     *            The AmazonWebServices request to send to the remote server
+     * @param responseHandler
+     *            A response handler to accept a successful response from the
+     *            remote server
+     * @param errorResponseHandler
+     *            A response handler to accept an unsuccessful response from the
+     *            remote server
+     * @param executionContext
+     *            Additional information about the context of this web service
+     *            call
+     * @param callback
+     *            an optional callback to be notified once the execution has
+     *            completed; or null if there is none.
+     * @return a future for the response of the request; the future fails with
+     *         an {@link AmazonClientException} if the request cannot be
+     *         completed.
+     */
+    public <T> Future<Response<T>> executeAsync(Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext,
+            FutureCallback<Response<T>> callback) {
+        return executeAsync(request, responseHandler, errorResponseHandler,
+                executionContext, callback, null);
+    }
+
+    /**
+     * Executes the request asynchronously, sending each attempt from the given
+     * executor. The back-off delay before a retry is waited on the
+     * {@link RetryScheduler}, after which the next attempt is re-submitted to
+     * the executor; no thread is therefore held while the request is backing
+     * off, even over a blocking transport.
+     *
+     * @param request
+     *            The AmazonWebServices request to send to the remote server
+     * @param responseHandler
+     *            A response handler to accept a successful response from the
+     *            remote server
+     * @param errorResponseHandler
+     *            A response handler to accept an unsuccessful response from the
+     *            remote server
+     * @param executionContext
+     *            Additional information about the context of this web service
+     *            call
+     * @param callback
+     *            an optional callback to be notified once the execution has
+     *            completed; or null if there is none.
+     * @param executor
+     *            the executor from which the attempts are sent; or null to send
+     *            the first attempt from the calling thread, and wait the delay
+     *            before a retry on the thread that completed the previous
+     *            attempt unless the transport is non-blocking.
+     * @return a future for the response of the request; the future fails with
+     *         an {@link AmazonClientException} if the request cannot be
+     *         completed.
+     */
+    public <T> Future<Response<T>> executeAsync(Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext,
+            FutureCallback<Response<T>> callback,
+            Executor executor) {
+        if (executionContext == null)
+            throw new AmazonClientException("Internal SDK Error: No execution context parameter specified.");
+        AsyncExecution<T> execution = new AsyncExecution<T>(request,
+                responseHandler, errorResponseHandler, executionContext,
+                callback, executor);
+        execution.start();
+        return execution.future;
+    }
+
+    /**
+     * State of an asynchronous execution, driven by the completion of the HTTP
+     * exchanges of its successive attempts. Mirrors {@link #execute} and
+     * {@link #executeHelper}, with each iteration of the retry loop of the
+     * latter run as a separate step.
+     */
+    private final class AsyncExecution<T>
+            implements FutureCallback<org.apache.http.HttpResponse>, Runnable {
+        private final Request<?> request;
+        private final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler;
+        private final HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+        private final ExecutionContext executionContext;
+        private final Executor executor;
+        private final BasicFuture<Response<T>> future;
+        private final ExecOneRequestParams p = new ExecOneRequestParams();
+
+        private List<RequestHandler2> requestHandler2s;
+        private AWSRequestMetrics awsRequestMetrics;
+        private InputStream origContent;
+        private InputStream toBeClosed;
+        private Map<String, String> originalParameters;
+        private Map<String, String> originalHeaders;
+        private InputStream originalContent;
+
+        AsyncExecution(Request<?> request,
+                HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+                HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+                ExecutionContext executionContext,
+                FutureCallback<Response<T>> callback,
+                Executor executor) {
+            this.request = request;
+            this.responseHandler = responseHandler;
+            this.errorResponseHandler = errorResponseHandler;
+            this.executionContext = executionContext;
+            this.executor = executor;
+            this.future = new BasicFuture<Response<T>>(callback);
+        }
+
+        /** Same preparation as {@link #execute} and {@link #executeHelper}. */
+        void start() {
+            try {
+                requestHandler2s = requestHandler2s(request, executionContext);
+                AmazonWebServiceRequest awsreq = request.getOriginalRequest();
+                Map<String, String> customHeaders = awsreq.getCustomRequestHeaders();
+                if (customHeaders != null) {
+                    request.getHeaders().putAll(customHeaders);
+                }
+                origContent = request.getContent();
+                toBeClosed = beforeRequest(request);
+                request.setContent(toBeClosed == null
+                        ? null
+                        : ReleasableInputStream.wrap(toBeClosed).disableClose());
+                publishProgress(awsreq.getGeneralProgressListener(),
+                        ProgressEventType.CLIENT_REQUEST_STARTED_EVENT);
+                awsRequestMetrics = executionContext.getAwsRequestMetrics()
+                    .addPropertyWith(ServiceName, request.getServiceName())
+                    .addPropertyWith(ServiceEndpoint, request.getEndpoint())
+                    ;
+                setUserAgent(request);
+                originalParameters =
+                    new LinkedHashMap<String, String>(request.getParameters());
+                originalHeaders = new HashMap<String, String>(request.getHeaders());
+                originalContent = request.getContent();
+                if (originalContent != null && originalContent.markSupported()) {
+                    final int readLimit = awsreq.getRequestClientOptions().getReadLimit();
+                    originalContent.mark(readLimit);
+                }
+            } catch (AmazonClientException e) {
+                fail(e);
+                return;
+            }
+            if (executor == null) {
+                run();
+            } else {
+                resume();
+            }
+        }
+
+        /** Sends the next attempt of the request. */
+        @Override
+        public void run() {
+            if (future.isCancelled()) {
+                fail(new AbortedException());
+                return;
+            }
+            p.initPerRetry();
+            try {
+                beforeAttempt(request, awsRequestMetrics, p, originalParameters,
+                        originalHeaders, originalContent);
+                HttpContext httpContext = prepareOneRequest(request,
+                        executionContext, awsRequestMetrics, p, false);
+                httpEngine.execute(p.apacheRequest, httpContext, this);
+            } catch (IOException ioe) {
+                releaseConnection(p);
+                retryOrFail(ioe);
+            } catch (RuntimeException e) {
+                releaseConnection(p);
+                fail(lastReset(captureExceptionMetrics(e, awsRequestMetrics), request));
+            } catch (Error e) {
+                releaseConnection(p);
+                fail(lastReset(captureExceptionMetrics(e, awsRequestMetrics), request));
+                throw e;
+            }
+        }
+
+        @Override
+        public void completed(org.apache.http.HttpResponse response) {
+            awsRequestMetrics.endEvent(HttpRequestTime);
+            publishProgress(request.getOriginalRequest().getGeneralProgressListener(),
+                    ProgressEventType.HTTP_REQUEST_COMPLETED_EVENT);
+            p.apacheResponse = response;
+            Response<T> result;
+            try {
+                result = handleOneResponse(request, responseHandler,
+                        errorResponseHandler, executionContext,
+                        awsRequestMetrics, p);
+            } catch (IOException ioe) {
+                retryOrFail(ioe);
+                return;
+            } catch (RuntimeException e) {
+                fail(lastReset(captureExceptionMetrics(e, awsRequestMetrics), request));
+                return;
+            } catch (Error e) {
+                fail(lastReset(captureExceptionMetrics(e, awsRequestMetrics), request));
+                throw e;
+            } finally {
+                releaseConnection(p);
+            }
+            if (result != null) {
+                succeed(result);
+            } else {
+                retry();
+            }
+        }
+
+        @Override
+        public void failed(java.lang.Exception ex) {
+            awsRequestMetrics.endEvent(HttpRequestTime);
+            if (ex instanceof IOException) {
+                retryOrFail((IOException) ex);
+            } else if (ex instanceof AmazonClientException) {
+                fail(lastReset(captureExceptionMetrics((AmazonClientException) ex,
+                        awsRequestMetrics), request));
+            } else {
+                fail(lastReset(captureExceptionMetrics(new AmazonClientException(
+                        "Unable to execute HTTP request: " + ex.getMessage(), ex),
+                        awsRequestMetrics), request));
+            }
+        }
+
+        @Override
+        public void cancelled() {
+            awsRequestMetrics.endEvent(HttpRequestTime);
+            fail(new AbortedException("The HTTP request has been cancelled"));
+        }
+
+        private void retryOrFail(IOException ioe) {
+            AmazonClientException ace = handleIOException(ioe, request,
+                    awsRequestMetrics, p);
+            if (ace != null) {
+                fail(ace);
+            } else {
+                retry();
+            }
+        }
+
+        /**
+         * Sends the next attempt, after the back-off delay if the retry is
+         * not due to a redirection. The delay is waited on the retry scheduler
+         * when the attempts are sent from an executor or a non-blocking
+         * transport, so that no thread is held meanwhile.
+         */
+        private void retry() {
+            if (p.retriedException == null) {
+                run();
+                return;
+            }
+            if (executor == null && !httpEngine.isNonBlocking()) {
+                awsRequestMetrics.startEvent(RetryPauseTime);
+                try {
+                    pauseBeforeNextRetry(request.getOriginalRequest(),
+                        p.retriedException, p.requestCount + 1,
+                        config.getRetryPolicy());
+                } catch (AmazonClientException e) {
+                    fail(e);
+                    return;
+                } finally {
+                    awsRequestMetrics.endEvent(RetryPauseTime);
+                }
+                run();
+                return;
+            }
+            long delay = delayBeforeNextRetry(request.getOriginalRequest(),
+                    p.retriedException, p.requestCount + 1,
+                    config.getRetryPolicy());
+            awsRequestMetrics.startEvent(RetryPauseTime);
+            try {
+                RetryScheduler.getDefault().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        awsRequestMetrics.endEvent(RetryPauseTime);
+                        resume();
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                awsRequestMetrics.endEvent(RetryPauseTime);
+                fail(new AmazonClientException("Unable to schedule the retry", e));
+            }
+        }
+
+        /** Sends the next attempt from the executor, if any. */
+        private void resume() {
+            if (executor == null) {
+                run();
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                fail(new AbortedException("The executor rejected the request", e));
+            }
+        }
+
+        private void succeed(Response<T> response) {
+            publishProgress(request.getOriginalRequest().getGeneralProgressListener(),
+                    ProgressEventType.CLIENT_REQUEST_SUCCESS_EVENT);
+            TimingInfo timingInfo = awsRequestMetrics.getTimingInfo().endTiming();
+            try {
+                afterResponse(request, requestHandler2s, response, timingInfo);
+            } catch (AmazonClientException e) {
+                fail(e);
+                return;
+            }
+            finish();
+            future.completed(response);
+        }
+
+        private void fail(RuntimeException e) {
+            try {
+                if (e instanceof AmazonClientException) {
+                    publishProgress(request.getOriginalRequest().getGeneralProgressListener(),
+                            ProgressEventType.CLIENT_REQUEST_FAILED_EVENT);
+                    if (requestHandler2s != null) {
+                        afterError(request, null, requestHandler2s,
+                                (AmazonClientException) e);
+                    }
+                }
+            } finally {
+                finish();
+                future.failed(e);
+            }
+        }
+
+        private void fail(Error e) {
+            finish();
+            future.failed(new AmazonClientException(e.getMessage(), e));
+        }
+
+        private void finish() {
+            // Always close so any progress tracking would get the final events propagated.
+            closeQuietly(toBeClosed, log);
+            request.setContent(origContent); // restore the original content
+        }
+    }
+
     /**
      * Publishes the "request content length" event, and returns an input
      * stream, which will be made mark-and-resettable if possible, for progress
@@ -436,27 +864,8 @@ public class AmazonHttpClient {
         final ExecOneRequestParams p = new ExecOneRequestParams();
         while (true) {
             p.initPerRetry();
-            if (p.redirectedURI != null) {
-                /*
-                 * [scheme:][//authority][path][?query][#fragment]
-                 */
-                String scheme = p.redirectedURI.getScheme();
-                String beforeAuthority = scheme == null ? "" : scheme + "://";
-                String authority = p.redirectedURI.getAuthority();
-                String path = p.redirectedURI.getPath();
-
-                request.setEndpoint(URI.create(beforeAuthority + authority));
-                request.setResourcePath(path);
-            }
-            if (p.authRetryParam != null) {
-                request.setEndpoint(p.authRetryParam.getEndpointForRetry());
-            }
-            awsRequestMetrics.setCounter(RequestCount, p.requestCount);
-            if (p.isRetry()) {
-                request.setParameters(originalParameters);
-                request.setHeaders(originalHeaders);
-                request.setContent(originalContent);
-            }
+            beforeAttempt(request, awsRequestMetrics, p, originalParameters,
+                    originalHeaders, originalContent);
             try {
                 Response<T> response = executeOneRequest(request, responseHandler,
                     errorResponseHandler, executionContext, awsRequestMetrics,
@@ -464,23 +873,11 @@ public class AmazonHttpClient {
                 if (response != null)
                     return response;
             } catch (IOException ioe) {
-                if (log.isInfoEnabled()) {
-                    log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
-                }
-                captureExceptionMetrics(ioe, awsRequestMetrics);
-                awsRequestMetrics.addProperty(AWSRequestID, null);
-                AmazonClientException ace = new AmazonClientException(
-                        "Unable to execute HTTP request: " + ioe.getMessage(),
-                        ioe);
-                if (!shouldRetry(request.getOriginalRequest(),
-                                p.apacheRequest,
-                                ace,
-                                p.requestCount,
-                                config.getRetryPolicy())) {
-                    throw lastReset(ace, request);
+                AmazonClientException ace = handleIOException(ioe, request,
+                        awsRequestMetrics, p);
+                if (ace != null) {
+                    throw ace;
                 }
-                // Cache the retryable exception
-                p.retriedException = ace;
             } catch(RuntimeException e) {
                 throw lastReset(
                         captureExceptionMetrics(e, awsRequestMetrics),
@@ -490,27 +887,99 @@ public class AmazonHttpClient {
                         captureExceptionMetrics(e, awsRequestMetrics),
                         request);
             } finally {
-                /*
-                 * Some response handlers need to manually manage the HTTP
-                 * connection and will take care of releasing the connection on
-                 * their own, but if this response handler doesn't need the
-                 * connection left open, we go ahead and release the it to free
-                 * up resources.
-                 */
-                if (!p.leaveHttpConnectionOpen) {
-                    if (p.apacheResponse != null) {
-                        HttpEntity entity = p.apacheResponse.getEntity();
-                        if (entity != null) {
-                            try {
-                                closeQuietly(entity.getContent(), log);
-                            } catch (IOException e) {
-                                log.warn("Cannot close the response content.", e);
-                            }
-                        }
+                releaseConnection(p);
+            }
+        } /* end while (true) */
+    }
+
+    /**
+     * Points the request to the redirected location or auth retry endpoint,
+     * if any, and restores the original parameters, headers and content of the
+     * request before a retry.
+     */
+    private void beforeAttempt(final Request<?> request,
+            final AWSRequestMetrics awsRequestMetrics,
+            final ExecOneRequestParams p,
+            final Map<String, String> originalParameters,
+            final Map<String, String> originalHeaders,
+            final InputStream originalContent) {
+        if (p.redirectedURI != null) {
+            /*
+             * [scheme:][//authority][path][?query][#fragment]
+             */
+            String scheme = p.redirectedURI.getScheme();
+            String beforeAuthority = scheme == null ? "" : scheme + "://";
+            String authority = p.redirectedURI.getAuthority();
+            String path = p.redirectedURI.getPath();
+
+            request.setEndpoint(URI.create(beforeAuthority + authority));
+            request.setResourcePath(path);
+        }
+        if (p.authRetryParam != null) {
+            request.setEndpoint(p.authRetryParam.getEndpointForRetry());
+        }
+        awsRequestMetrics.setCounter(RequestCount, p.requestCount);
+        if (p.isRetry()) {
+            request.setParameters(originalParameters);
+            request.setHeaders(originalHeaders);
+            request.setContent(originalContent);
+        }
+    }
+
+    /**
+     * Records the given I/O failure of the current attempt, and returns the
+     * exception to be thrown; or null if the request should be retried.
+     */
+    private AmazonClientException handleIOException(IOException ioe,
+            final Request<?> request,
+            final AWSRequestMetrics awsRequestMetrics,
+            final ExecOneRequestParams p) {
+        if (log.isInfoEnabled()) {
+            log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+        }
+        captureExceptionMetrics(ioe, awsRequestMetrics);
+        awsRequestMetrics.addProperty(AWSRequestID, null);
+        AmazonClientException ace = new AmazonClientException(
+                "Unable to execute HTTP request: " + ioe.getMessage(),
+                ioe);
+        if (circuitBreaker != null) {
+            circuitBreaker.onFailure(request.getEndpoint());
+        }
+        if (!shouldRetry(request.getOriginalRequest(),
+                        request.getEndpoint(),
+                        p.apacheRequest,
+                        ace,
+                        p.requestCount,
+                        config.getRetryPolicy())) {
+            return lastReset(ace, request);
+        }
+        if (ioe instanceof NoHttpResponseException) {
+            awsRequestMetrics.incrementCounter(HttpClientStaleConnectionRetryCount);
+        }
+        // Cache the retryable exception
+        p.retriedException = ace;
+        return null;
+    }
+
+    /**
+     * Some response handlers need to manually manage the HTTP connection and
+     * will take care of releasing the connection on their own, but if this
+     * response handler doesn't need the connection left open, we go ahead and
+     * release the it to free up resources.
+     */
+    private void releaseConnection(ExecOneRequestParams p) {
+        if (!p.leaveHttpConnectionOpen) {
+            if (p.apacheResponse != null) {
+                HttpEntity entity = p.apacheResponse.getEntity();
+                if (entity != null) {
+                    try {
+                        closeQuietly(entity.getContent(), log);
+                    } catch (IOException e) {
+                        log.warn("Cannot close the response content.", e);
                     }
                 }
             }
-        } /* end while (true) */
+        }
     }
 
     /**
@@ -626,6 +1095,33 @@ public class AmazonHttpClient {
             final AWSRequestMetrics awsRequestMetrics,
             ExecOneRequestParams p)
             throws IOException {
+        HttpContext httpContext = prepareOneRequest(request, execContext,
+                awsRequestMetrics, p, true);
+        try {
+            p.apacheResponse = httpEngine.execute(p.apacheRequest, httpContext);
+        } finally {
+            awsRequestMetrics.endEvent(HttpRequestTime);
+        }
+        publishProgress(request.getOriginalRequest().getGeneralProgressListener(),
+                ProgressEventType.HTTP_REQUEST_COMPLETED_EVENT);
+        return handleOneResponse(request, responseHandler,
+                errorResponseHandler, execContext, awsRequestMetrics, p);
+    }
+
+    /**
+     * Resets the content of the request, signs it and creates the Apache
+     * request of the next attempt, pausing beforehand if the attempt is a
+     * retry and <code>pauseBeforeRetry</code> is true. On return, the
+     * {@link Field#HttpRequestTime} event has been started.
+     *
+     * @return the context for the HTTP exchange of the attempt
+     */
+    private HttpContext prepareOneRequest(final Request<?> request,
+            final ExecutionContext execContext,
+            final AWSRequestMetrics awsRequestMetrics,
+            ExecOneRequestParams p,
+            boolean pauseBeforeRetry)
+            throws IOException {
         // Reset the request input stream
         if (p.isRetry()) {
             InputStream requestInputStream = request.getContent();
@@ -660,21 +1156,23 @@ public class AmazonHttpClient {
 
         if (p.isRetry()) {
             publishProgress(listener, ProgressEventType.CLIENT_REQUEST_RETRY_EVENT);
-            // Notify the progress listener of the retry
-            awsRequestMetrics.startEvent(RetryPauseTime);
-            try {
-                // don't pause if the retry was not due to a redirection
-                // ie when retried exception is null
-                if (p.retriedException != null) {
-                    pauseBeforeNextRetry(request.getOriginalRequest(),
-                        p.retriedException, p.requestCount,
-                        config.getRetryPolicy());
+            if (pauseBeforeRetry) {
+                // Notify the progress listener of the retry
+                awsRequestMetrics.startEvent(RetryPauseTime);
+                try {
+                    // don't pause if the retry was not due to a redirection
+                    // ie when retried exception is null
+                    if (p.retriedException != null) {
+                        pauseBeforeNextRetry(request.getOriginalRequest(),
+                            p.retriedException, p.requestCount,
+                            config.getRetryPolicy());
+                    }
+                } finally {
+                    awsRequestMetrics.endEvent(RetryPauseTime);
                 }
-            } finally {
-                awsRequestMetrics.endEvent(RetryPauseTime);
             }
         }
-        captureConnectionPoolMetrics(httpClient.getConnectionManager(), awsRequestMetrics);
+        captureConnectionPoolMetrics(awsRequestMetrics);
         HttpContext httpContext = new BasicHttpContext();
         httpContext.setAttribute(
             AWSRequestMetrics.class.getSimpleName(),
@@ -682,12 +1180,20 @@ public class AmazonHttpClient {
         p.resetBeforeHttpRequest();
         publishProgress(listener, ProgressEventType.HTTP_REQUEST_STARTED_EVENT);
         awsRequestMetrics.startEvent(HttpRequestTime);
-        try {
-            p.apacheResponse = httpClient.execute(p.apacheRequest, httpContext);
-        } finally {
-            awsRequestMetrics.endEvent(HttpRequestTime);
-        }
-        publishProgress(listener, ProgressEventType.HTTP_REQUEST_COMPLETED_EVENT);
+        return httpContext;
+    }
+
+    /**
+     * Returns the response from the completed HTTP exchange of the current
+     * attempt; or null for retry.
+     */
+    private <T> Response<T> handleOneResponse(final Request<?> request,
+            final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            final HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            final ExecutionContext execContext,
+            final AWSRequestMetrics awsRequestMetrics,
+            ExecOneRequestParams p)
+            throws IOException {
         final StatusLine statusLine = p.apacheResponse.getStatusLine();
         final int statusCode = statusLine == null ? -1 : statusLine.getStatusCode();
         if (isRequestSuccessful(p.apacheResponse)) {
@@ -702,6 +1208,12 @@ public class AmazonHttpClient {
             T response = handleResponse(request, responseHandler,
                     p.apacheRequest, httpResponse, p.apacheResponse,
                     execContext);
+            if (retryTokenBucket != null) {
+                retryTokenBucket.onSuccess(p.requestCount > 1);
+            }
+            if (circuitBreaker != null) {
+                circuitBreaker.onSuccess(request.getEndpoint());
+            }
             return new Response<T>(response, httpResponse);
         }
         if (isTemporaryRedirect(p.apacheResponse)) {
@@ -729,6 +1241,15 @@ public class AmazonHttpClient {
             .addPropertyWith(AWSRequestID, ase.getRequestId())
             .addPropertyWith(AWSErrorCode, ase.getErrorCode())
             .addPropertyWith(StatusCode, ase.getStatusCode());
+        if (circuitBreaker != null) {
+            if (ase.getErrorType() == ErrorType.Service
+                    || RetryUtils.isThrottlingException(ase)) {
+                circuitBreaker.onFailure(request.getEndpoint());
+            } else {
+                // The endpoint is healthy, even if the request is not
+                circuitBreaker.onSuccess(request.getEndpoint());
+            }
+        }
         // Check whether we should internally retry the auth error
         p.authRetryParam = null;
         AuthErrorRetryStrategy authRetry = execContext.getAuthErrorRetryStrategy();
@@ -737,6 +1258,7 @@ public class AmazonHttpClient {
         }
         if (p.authRetryParam == null &&
             !shouldRetry(request.getOriginalRequest(),
+                request.getEndpoint(),
                 p.apacheRequest,
                 ase,
                 p.requestCount,
@@ -767,18 +1289,24 @@ public class AmazonHttpClient {
     /**
      * Captures the connection pool metrics.
      */
-    private void captureConnectionPoolMetrics(ClientConnectionManager connectionManager,
-            AWSRequestMetrics awsRequestMetrics) {
-        if (awsRequestMetrics.isEnabled()
-                && connectionManager instanceof ConnPoolControl) {
-            ConnPoolControl<?> control = (ConnPoolControl<?>) connectionManager;
-            PoolStats stats = control.getTotalStats();
+    private void captureConnectionPoolMetrics(AWSRequestMetrics awsRequestMetrics) {
+        if (!awsRequestMetrics.isEnabled()) {
+            return;
+        }
+        PoolStats stats = httpEngine.getConnectionPoolStats();
+        if (stats != null) {
             awsRequestMetrics
                 .withCounter(HttpClientPoolAvailableCount, stats.getAvailable())
                 .withCounter(HttpClientPoolLeasedCount, stats.getLeased())
                 .withCounter(HttpClientPoolPendingCount, stats.getPending())
                 ;
         }
+        // Only the connections closed since the last sample, so that the
+        // counts can be summed across requests
+        long reaped = IdleConnectionReaper.pollReapedConnectionCount();
+        if (reaped > 0) {
+            awsRequestMetrics.withCounter(HttpClientPoolReapedCount, reaped);
+        }
     }
 
     /**
@@ -839,8 +1367,37 @@ public class AmazonHttpClient {
      * Once a client has been shutdown, it cannot be used to make more requests.
      */
     public void shutdown() {
-        IdleConnectionReaper.removeConnectionManager(httpClient.getConnectionManager());
-        httpClient.getConnectionManager().shutdown();
+        httpEngine.shutdown();
+    }
+
+    /**
+     * Returns the retry token bucket of this client; or null if its retries
+     * are not limited by a token bucket.
+     *
+     * @see ClientConfiguration#setUseRetryTokenBucket(boolean)
+     */
+    public RetryTokenBucket getRetryTokenBucket() {
+        return retryTokenBucket;
+    }
+
+    /**
+     * Returns the retry circuit breaker of this client; or null if it does
+     * not use one.
+     *
+     * @see ClientConfiguration#setUseCircuitBreaker(boolean)
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Returns true if this client sends requests through a non-blocking
+     * transport, in which case
+     * {@link #executeAsync(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext, FutureCallback)}
+     * returns without waiting for the request to complete; false otherwise.
+     */
+    public boolean isNonBlocking() {
+        return httpEngine.isNonBlocking();
     }
 
     /**
@@ -848,6 +1405,8 @@ public class AmazonHttpClient {
      *
      * @param originalRequest
      *            The original service request that is being executed.
+     * @param endpoint
+     *            The endpoint the failed request was sent to.
      * @param method
      *            The current HTTP method being executed.
      * @param exception
@@ -858,6 +1417,7 @@ public class AmazonHttpClient {
      * @return True if the failed request should be retried.
      */
     private boolean shouldRetry(AmazonWebServiceRequest originalRequest,
+                                URI endpoint,
                                 HttpRequestBase method,
                                 AmazonClientException exception,
                                 int requestCount,
@@ -890,9 +1450,27 @@ public class AmazonHttpClient {
 
         // Pass all the context information to the RetryCondition and let it
         // decide whether it should be retried.
-        return retryPolicy.getRetryCondition().shouldRetry(originalRequest,
-                                                           exception,
-                                                           retries);
+        if (!retryPolicy.getRetryCondition().shouldRetry(originalRequest,
+                                                         exception,
+                                                         retries)) {
+            return false;
+        }
+
+        // Finally, deny the retry if the endpoint keeps failing, or if the
+        // client has run out of retry budget.
+        if (circuitBreaker != null && !circuitBreaker.allowRetry(endpoint)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Retry denied: circuit open for " + endpoint);
+            }
+            return false;
+        }
+        if (retryTokenBucket != null && !retryTokenBucket.tryAcquireRetry()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Retry denied: retry token bucket exhausted");
+            }
+            return false;
+        }
+        return true;
     }
 
     private static boolean isTemporaryRedirect(org.apache.http.HttpResponse response) {
@@ -1128,6 +1706,26 @@ public class AmazonHttpClient {
                                     AmazonClientException previousException,
                                     int requestCount,
                                     RetryPolicy retryPolicy) {
+        long delay = delayBeforeNextRetry(originalRequest, previousException,
+                requestCount, retryPolicy);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the delay (in milliseconds) before the next retry.
+     *
+     * @param requestCount
+     *            current request count (including the next attempt after the delay)
+     */
+    private long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+                                      AmazonClientException previousException,
+                                      int requestCount,
+                                      RetryPolicy retryPolicy) {
         final int retries = requestCount // including next attempt
                             - 1          // number of attempted requests
                             - 1;         // number of attempted retries
@@ -1139,13 +1737,7 @@ public class AmazonHttpClient {
             log.debug("Retriable error detected, " +
                     "will retry in " + delay + "ms, attempt number: " + retries);
         }
-
-        try {
-            Thread.sleep(delay);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new AmazonClientException(e.getMessage(), e);
-        }
+        return delay;
     }
 
     // SWF: Signature not yet current: 20140819T173921Z is still later than 20140819T173829Z (20140819T173329Z + 5 min.)
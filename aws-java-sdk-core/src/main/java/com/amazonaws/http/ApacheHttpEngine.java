@@ -0,0 +1,248 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.impl.conn.DefaultHttpRoutePlanner;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.params.HttpParams;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * The default {@link HttpEngine}, backed by a blocking Apache HttpClient.
+ * Asynchronous executions are carried out on the calling thread.
+ */
+@ThreadSafe
+class ApacheHttpEngine implements HttpEngine {
+    private static final Log log = LogFactory.getLog(ApacheHttpEngine.class);
+
+    private final HttpClient httpClient;
+
+    ApacheHttpEngine(HttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /** Returns the underlying Apache HttpClient. */
+    HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequestBase request, HttpContext context)
+            throws IOException {
+        return httpClient.execute(request, context);
+    }
+
+    @Override
+    public void execute(HttpRequestBase request, HttpContext context,
+            FutureCallback<HttpResponse> callback) {
+        HttpResponse response;
+        try {
+            response = httpClient.execute(request, context);
+        } catch (IOException e) {
+            callback.failed(e);
+            return;
+        } catch (RuntimeException e) {
+            callback.failed(e);
+            return;
+        }
+        callback.completed(response);
+    }
+
+    @Override
+    public boolean isNonBlocking() {
+        return false;
+    }
+
+    @Override
+    public PoolStats getConnectionPoolStats() {
+        ClientConnectionManager connectionManager = httpClient.getConnectionManager();
+        if (connectionManager instanceof ConnPoolControl) {
+            return ((ConnPoolControl<?>) connectionManager).getTotalStats();
+        }
+        return null;
+    }
+
+    /**
+     * Opens connections to the given endpoint in parallel, so that the pool
+     * holds at least the given number of open connections to it, within the
+     * maximum number of connections per route.
+     *
+     * @param timeoutMillis
+     *            the maximum time to wait for each connection to be leased
+     *            from the pool
+     */
+    @SuppressWarnings("deprecation")
+    ConnectionWarmUpResult warmUpConnections(URI endpoint, int connections,
+            long timeoutMillis) {
+        final long startNano = System.nanoTime();
+        final ClientConnectionManager connectionManager = httpClient.getConnectionManager();
+        final HttpParams params = httpClient.getParams();
+        HttpHost target = URIUtils.extractHost(endpoint);
+        if (target == null)
+            throw new IllegalArgumentException("No host in endpoint " + endpoint);
+        final HttpRoute route;
+        try {
+            HttpRoutePlanner routePlanner = httpClient instanceof AbstractHttpClient
+                    ? ((AbstractHttpClient) httpClient).getRoutePlanner()
+                    : new DefaultHttpRoutePlanner(connectionManager.getSchemeRegistry());
+            BasicHttpRequest request = new BasicHttpRequest("HEAD", "/");
+            request.setParams(params);
+            route = routePlanner.determineRoute(target, request, new BasicHttpContext());
+        } catch (HttpException e) {
+            throw new AmazonClientException("Unable to determine the route to " + endpoint, e);
+        }
+        if (route.isTunnelled()) {
+            // The tunnel through the proxy is only established by a request
+            log.warn("Connection warm-up is not supported through a tunneling proxy");
+            return new ConnectionWarmUpResult(connections, 0, 0, elapsedMillisSince(startNano));
+        }
+        if (connectionManager instanceof ConnPoolControl) {
+            @SuppressWarnings("unchecked")
+            ConnPoolControl<HttpRoute> pool = (ConnPoolControl<HttpRoute>) connectionManager;
+            connections = Math.min(connections, pool.getMaxPerRoute(route));
+        }
+
+        // Lease all the connections at once, so that they are all distinct
+        final List<ManagedClientConnection> leased = new ArrayList<ManagedClientConnection>();
+        final List<ManagedClientConnection> closed = new ArrayList<ManagedClientConnection>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                ManagedClientConnection conn = connectionManager
+                        .requestConnection(route, null)
+                        .getConnection(timeoutMillis, TimeUnit.MILLISECONDS);
+                leased.add(conn);
+                if (!conn.isOpen())
+                    closed.add(conn);
+            }
+        } catch (ConnectionPoolTimeoutException e) {
+            log.debug("Connection pool exhausted during warm-up: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        final List<ManagedClientConnection> opened = new ArrayList<ManagedClientConnection>();
+        try {
+            opened.addAll(openInParallel(closed, route, params));
+        } finally {
+            for (ManagedClientConnection conn : leased) {
+                boolean open = !closed.contains(conn) || opened.contains(conn);
+                if (open)
+                    conn.markReusable();
+                else
+                    conn.unmarkReusable();
+                connectionManager.releaseConnection(conn, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+        ConnectionWarmUpResult result = new ConnectionWarmUpResult(connections,
+                leased.size() - closed.size() + opened.size(), opened.size(),
+                elapsedMillisSince(startNano));
+        if (log.isDebugEnabled())
+            log.debug("Warmed up connections to " + endpoint + ": " + result);
+        return result;
+    }
+
+    /**
+     * Opens the given connections in parallel, and returns those that have
+     * been successfully opened.
+     */
+    private List<ManagedClientConnection> openInParallel(
+            List<ManagedClientConnection> connections, final HttpRoute route,
+            final HttpParams params) {
+        List<ManagedClientConnection> opened = new ArrayList<ManagedClientConnection>();
+        if (connections.isEmpty())
+            return opened;
+        ExecutorService executor = Executors.newFixedThreadPool(connections.size(),
+                new ThreadFactory() {
+                    private final AtomicInteger threadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r);
+                        thread.setName("aws-connection-warm-up-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final ManagedClientConnection conn : connections) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        conn.open(route, new BasicHttpContext(), params);
+                        return null;
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                    opened.add(connections.get(i));
+                } catch (ExecutionException e) {
+                    log.debug("Unable to open a connection during warm-up", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return opened;
+    }
+
+    private static long elapsedMillisSince(long startNano) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNano);
+    }
+
+    @Override
+    public void shutdown() {
+        IdleConnectionReaper.removeConnectionManager(httpClient.getConnectionManager());
+        httpClient.getConnectionManager().shutdown();
+    }
+}
@@ -21,18 +21,27 @@ import org.apache.http.impl.conn.SchemeRegistryFactory;
 import org.apache.http.params.HttpParams;
 
 import com.amazonaws.ClientConfiguration;
+import com.amazonaws.http.conn.SdkDnsResolver;
+import com.amazonaws.http.conn.SdkPoolingClientConnectionManager;
 
 /** Responsible for creating and configuring instances of Apache HttpClient4's Connection Manager. */
 class ConnectionManagerFactory {
 
     public static PoolingClientConnectionManager createPoolingClientConnManager( ClientConfiguration config, HttpParams httpClientParams ) {
-        PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager(
+        PoolingClientConnectionManager connectionManager = new SdkPoolingClientConnectionManager(
                 SchemeRegistryFactory.createDefault(),
-                config.getConnectionTTL(), TimeUnit.MILLISECONDS);
+                config.getConnectionTTL(), TimeUnit.MILLISECONDS,
+                new SdkDnsResolver(),
+                config.getValidateAfterInactivityMillis());
         connectionManager.setDefaultMaxPerRoute(config.getMaxConnections());
         connectionManager.setMaxTotal(config.getMaxConnections());
         if (config.useReaper()) {
-            IdleConnectionReaper.registerConnectionManager(connectionManager);
+            long maxIdleMillis = config.getConnectionMaxIdleMillis();
+            if (maxIdleMillis > 0) {
+                IdleConnectionReaper.registerConnectionManager(connectionManager, maxIdleMillis);
+            } else {
+                IdleConnectionReaper.registerConnectionManager(connectionManager);
+            }
         }
         return connectionManager;
     }
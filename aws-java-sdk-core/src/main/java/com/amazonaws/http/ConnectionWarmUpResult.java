@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import org.apache.http.annotation.Immutable;
+
+/**
+ * The outcome of warming up the connection pool of a client.
+ *
+ * @see AmazonHttpClient#warmUpConnections(java.net.URI, int)
+ */
+@Immutable
+public final class ConnectionWarmUpResult {
+    private final int requestedConnections;
+    private final int openConnections;
+    private final int newConnections;
+    private final long elapsedTimeMillis;
+
+    ConnectionWarmUpResult(int requestedConnections, int openConnections,
+            int newConnections, long elapsedTimeMillis) {
+        this.requestedConnections = requestedConnections;
+        this.openConnections = openConnections;
+        this.newConnections = newConnections;
+        this.elapsedTimeMillis = elapsedTimeMillis;
+    }
+
+    /** Returns the number of connections that were requested to be open. */
+    public int getRequestedConnections() {
+        return requestedConnections;
+    }
+
+    /**
+     * Returns the number of connections to the endpoint left open in the pool
+     * by the warm-up, including those that were already open.
+     */
+    public int getOpenConnections() {
+        return openConnections;
+    }
+
+    /** Returns the number of connections opened by the warm-up. */
+    public int getNewConnections() {
+        return newConnections;
+    }
+
+    /** Returns the number of milliseconds taken by the warm-up. */
+    public long getElapsedTimeMillis() {
+        return elapsedTimeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "{requested=" + requestedConnections + ", open=" + openConnections
+                + ", new=" + newConnections + ", elapsedMillis=" + elapsedTimeMillis + "}";
+    }
+}
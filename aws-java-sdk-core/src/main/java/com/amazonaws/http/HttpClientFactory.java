@@ -67,6 +67,7 @@ import org.apache.http.protocol.HttpContext;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.ClientConfiguration;
+import com.amazonaws.http.conn.SdkConnectionKeepAliveStrategy;
 import com.amazonaws.http.conn.ssl.SdkTLSSocketFactory;
 import com.amazonaws.http.impl.client.HttpRequestNoRetryHandler;
 import com.amazonaws.http.impl.client.SdkHttpClient;
@@ -74,6 +75,28 @@ import com.amazonaws.http.impl.client.SdkHttpClient;
 /** Responsible for creating and configuring instances of Apache HttpClient4. */
 class HttpClientFactory {
 
+    /**
+     * Creates a new HttpEngine using the specified AWS ClientConfiguration to
+     * select and configure the underlying transport.
+     *
+     * @param config
+     *            Client configuration options (ex: proxy settings, connection
+     *            limits, non-blocking I/O, etc).
+     *
+     * @return The new, configured HttpEngine.
+     */
+    public HttpEngine createHttpEngine(ClientConfiguration config) {
+        if (!config.useNonBlockingIo()) {
+            return new ApacheHttpEngine(createHttpClient(config));
+        }
+        try {
+            return new NioHttpEngine(config);
+        } catch (NoClassDefFoundError e) {
+            throw new AmazonClientException(
+                    "Non-blocking I/O requires org.apache.httpcomponents:httpasyncclient on the classpath",
+                    e);
+        }
+    }
 
     /**
      * Creates a new HttpClient object using the specified AWS
@@ -90,7 +113,8 @@ class HttpClientFactory {
         HttpParams httpClientParams = new BasicHttpParams();
         HttpConnectionParams.setConnectionTimeout(httpClientParams, config.getConnectionTimeout());
         HttpConnectionParams.setSoTimeout(httpClientParams, config.getSocketTimeout());
-        HttpConnectionParams.setStaleCheckingEnabled(httpClientParams, true);
+        // Stale connections are checked when leased, after some inactivity
+        HttpConnectionParams.setStaleCheckingEnabled(httpClientParams, false);
         HttpConnectionParams.setTcpNoDelay(httpClientParams, true);
         HttpConnectionParams.setSoKeepalive(httpClientParams, config.useTcpKeepAlive());
 
@@ -106,6 +130,8 @@ class HttpClientFactory {
         SdkHttpClient httpClient = new SdkHttpClient(connectionManager, httpClientParams);
         httpClient.setHttpRequestRetryHandler(HttpRequestNoRetryHandler.Singleton);
         httpClient.setRedirectStrategy(new NeverFollowRedirectStrategy());
+        httpClient.setKeepAliveStrategy(new SdkConnectionKeepAliveStrategy(
+                config.getConnectionMaxIdleMillis()));
 
         if (config.getLocalAddress() != null) {
             ConnRouteParams.setLocalAddress(httpClientParams, config.getLocalAddress());
@@ -284,7 +310,7 @@ class HttpClientFactory {
      * Simple implementation of X509TrustManager that trusts all certificates.
      * This class is only intended to be used for testing purposes.
      */
-    private static class TrustingX509TrustManager implements X509TrustManager {
+    static class TrustingX509TrustManager implements X509TrustManager {
         private static final X509Certificate[] X509_CERTIFICATES = new X509Certificate[0];
 
         public X509Certificate[] getAcceptedIssuers() {
@@ -306,7 +332,7 @@ class HttpClientFactory {
      * HttpRequestInterceptor implementation to set up pre-emptive
      * authentication against a defined basic proxy server.
      */
-    private static class PreemptiveProxyAuth implements HttpRequestInterceptor {
+    static class PreemptiveProxyAuth implements HttpRequestInterceptor {
         private final HttpHost proxyHost;
 
         public PreemptiveProxyAuth(HttpHost proxyHost) {
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import java.io.IOException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Transport used by {@link AmazonHttpClient} to exchange a single HTTP request
+ * and response with a service endpoint.
+ * <p>
+ * Everything above the wire exchange (signing, retries, error handling,
+ * unmarshalling and metrics) stays in {@link AmazonHttpClient}; an engine is
+ * only responsible for connection management and moving bytes. The default
+ * engine is backed by a blocking Apache HttpClient; a selector based engine is
+ * used instead when {@link com.amazonaws.ClientConfiguration#useNonBlockingIo()}
+ * is enabled. Custom engines can be plugged in through
+ * {@link AmazonHttpClient#AmazonHttpClient(com.amazonaws.ClientConfiguration, HttpEngine, com.amazonaws.metrics.RequestMetricCollector)}.
+ * <p>
+ * Implementations must be thread safe.
+ */
+public interface HttpEngine {
+
+    /**
+     * Sends the given request and blocks the calling thread until the response
+     * is available.
+     *
+     * @param request
+     *            the request to send
+     * @param context
+     *            the context of the current execution
+     * @return the response received from the endpoint
+     * @throws IOException
+     *             if the request could not be sent or the response could not
+     *             be read
+     */
+    HttpResponse execute(HttpRequestBase request, HttpContext context)
+            throws IOException;
+
+    /**
+     * Sends the given request, notifying the given callback once the exchange
+     * has completed or failed.
+     * <p>
+     * Non-blocking engines return immediately and notify the callback from one
+     * of their I/O threads; the entity of the response passed to
+     * {@link FutureCallback#completed(Object)} must then be fully buffered, so
+     * the callback can consume it without blocking on the network. Blocking
+     * engines may complete the exchange, and notify the callback, on the
+     * calling thread.
+     *
+     * @param request
+     *            the request to send
+     * @param context
+     *            the context of the current execution
+     * @param callback
+     *            the callback to be notified of the outcome of the exchange
+     */
+    void execute(HttpRequestBase request, HttpContext context,
+            FutureCallback<HttpResponse> callback);
+
+    /**
+     * Returns true if {@link #execute(HttpRequestBase, HttpContext, FutureCallback)}
+     * returns without waiting for the exchange to complete; false otherwise.
+     */
+    boolean isNonBlocking();
+
+    /**
+     * Returns a snapshot of the total statistics of the underlying connection
+     * pool; or null if not available.
+     */
+    PoolStats getConnectionPoolStats();
+
+    /**
+     * Releases all the resources, such as connections and I/O threads, held by
+     * this engine. Once shut down, an engine cannot be used to send any more
+     * requests.
+     */
+    void shutdown();
+}
@@ -14,13 +14,17 @@
  */
 package com.amazonaws.http;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.pool.ConnPoolControl;
+
+import com.amazonaws.ClientConfiguration;
 
 /**
  * Daemon thread to periodically check connection pools for idle connections.
@@ -39,17 +43,35 @@ import org.apache.http.conn.ClientConnectionManager;
  * cleaning up old/inactive HTTP connections, we'd see more IO exceptions when
  * stale connections (i.e. closed on the AWS side) are left in the connection
  * pool, and requests grab one of them to begin executing a request.
+ * <p>
+ * Each connection manager is registered with its own maximum idle time, and
+ * has its expired connections closed as well, such as those whose Keep-Alive
+ * timeout advertised by the service has elapsed. The reaper runs as often as
+ * needed by the shortest maximum idle time registered, within bounds.
  */
 public final class IdleConnectionReaper extends Thread {
 
-    /** The period between invocations of the idle connection reaper. */
+    /** The maximum period between invocations of the idle connection reaper. */
     private static final int PERIOD_MILLISECONDS = 1000 * 60 * 1;
 
+    /** The minimum period between invocations of the idle connection reaper. */
+    private static final int MIN_PERIOD_MILLISECONDS = 1000;
+
     /**
-     * The list of registered connection managers, whose connections
-     * will be periodically checked and idle connections closed.
+     * The registered connection managers, whose connections will be
+     * periodically checked and idle connections closed, with the maximum idle
+     * time of their connections in milliseconds.
      */
-    private static final ArrayList<ClientConnectionManager> connectionManagers = new ArrayList<ClientConnectionManager>();
+    private static final Map<ClientConnectionManager, Long> connectionManagers = new ConcurrentHashMap<ClientConnectionManager, Long>();
+
+    /** The number of connections closed by the reaper so far. */
+    private static final AtomicLong reapedConnectionCount = new AtomicLong();
+
+    /**
+     * The number of closed connections already returned by
+     * {@link #pollReapedConnectionCount()}.
+     */
+    private static final AtomicLong polledReapedConnectionCount = new AtomicLong();
     /**
      * Set to true when shutting down the reaper;  Once set to true, this
      * flag is never set back to false.
@@ -69,17 +91,37 @@ public final class IdleConnectionReaper extends Thread {
     }
 
     /**
-     * Registers the given connection manager with this reaper;
+     * Registers the given connection manager with this reaper, to close the
+     * connections idle for more than
+     * {@link ClientConfiguration#DEFAULT_CONNECTION_MAX_IDLE_MILLIS};
+     * 
+     * @return true if the connection manager has been successfully registered;
+     * false otherwise.
+     */
+    public static boolean registerConnectionManager(ClientConnectionManager connectionManager) {
+        return registerConnectionManager(connectionManager,
+                ClientConfiguration.DEFAULT_CONNECTION_MAX_IDLE_MILLIS);
+    }
+
+    /**
+     * Registers the given connection manager with this reaper, to close the
+     * connections idle for more than the given time;
      * 
+     * @param maxIdleMillis
+     *            the maximum time in milliseconds a connection can be idle
      * @return true if the connection manager has been successfully registered;
      * false otherwise.
      */
-    public static synchronized boolean registerConnectionManager(ClientConnectionManager connectionManager) {
+    public static synchronized boolean registerConnectionManager(
+            ClientConnectionManager connectionManager, long maxIdleMillis) {
+        if (maxIdleMillis <= 0)
+            throw new IllegalArgumentException("maxIdleMillis must be positive");
         if (instance == null) {
             instance = new IdleConnectionReaper();
             instance.start();
         }
-        return connectionManagers.add(connectionManager);
+        connectionManagers.put(connectionManager, maxIdleMillis);
+        return true;
     }
 
     /**
@@ -90,7 +132,7 @@ public final class IdleConnectionReaper extends Thread {
      * false otherwise.
      */
     public static synchronized boolean removeConnectionManager(ClientConnectionManager connectionManager) {
-        boolean b = connectionManagers.remove(connectionManager);
+        boolean b = connectionManagers.remove(connectionManager) != null;
         if (connectionManagers.isEmpty())
             shutdown();
         return b;
@@ -100,7 +142,6 @@ public final class IdleConnectionReaper extends Thread {
         shuttingDown = true;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void run() {
         while (true) {
@@ -109,22 +150,17 @@ public final class IdleConnectionReaper extends Thread {
                 return;
             }
             try {
-                Thread.sleep(PERIOD_MILLISECONDS);
-
-                // Copy the list of managed ConnectionManagers to avoid possible
-                // ConcurrentModificationExceptions if registerConnectionManager or
-                // removeConnectionManager are called while we're iterating (rather
-                // than block/lock while this loop executes).
-                List<ClientConnectionManager> connectionManagers = null;
-                synchronized (IdleConnectionReaper.class) {
-                    connectionManagers = (List<ClientConnectionManager>)IdleConnectionReaper.connectionManagers.clone();
-                }
-                for (ClientConnectionManager connectionManager : connectionManagers) {
+                Thread.sleep(periodMillis());
+
+                // The map of managed ConnectionManagers is concurrent, so that
+                // registerConnectionManager or removeConnectionManager can be
+                // called while we're iterating.
+                for (Map.Entry<ClientConnectionManager, Long> e : connectionManagers.entrySet()) {
                     // When we release connections, the connection manager leaves them
                     // open so they can be reused.  We want to close out any idle
                     // connections so that they don't sit around in CLOSE_WAIT.
                     try {
-                        connectionManager.closeIdleConnections(60, TimeUnit.SECONDS);
+                        reap(e.getKey(), e.getValue());
                     } catch (Exception t) {
                         log.warn("Unable to close idle connections", t);
                     }
@@ -135,6 +171,65 @@ public final class IdleConnectionReaper extends Thread {
         }
     }
 
+    /**
+     * Returns the time to wait before the next run, which is half the
+     * shortest maximum idle time of the registered connection managers,
+     * within bounds.
+     */
+    private static long periodMillis() {
+        long period = PERIOD_MILLISECONDS;
+        for (Long maxIdleMillis : connectionManagers.values()) {
+            period = Math.min(period, maxIdleMillis / 2);
+        }
+        return Math.max(period, MIN_PERIOD_MILLISECONDS);
+    }
+
+    /**
+     * Closes the expired connections of the given connection manager, and
+     * those idle for more than the given time.
+     */
+    private static void reap(ClientConnectionManager connectionManager, long maxIdleMillis) {
+        ConnPoolControl<?> pool = connectionManager instanceof ConnPoolControl
+                ? (ConnPoolControl<?>) connectionManager : null;
+        int available = pool == null ? 0 : pool.getTotalStats().getAvailable();
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(maxIdleMillis, TimeUnit.MILLISECONDS);
+        if (pool != null) {
+            // Approximate, as connections may be released meanwhile
+            int reaped = available - pool.getTotalStats().getAvailable();
+            if (reaped > 0) {
+                reapedConnectionCount.addAndGet(reaped);
+                if (log.isDebugEnabled())
+                    log.debug("Closed " + reaped + " idle or expired connections");
+            }
+        }
+    }
+
+    /**
+     * Returns the number of idle or expired connections closed by the reaper
+     * so far, across all the registered connection managers.
+     */
+    public static long getReapedConnectionCount() {
+        return reapedConnectionCount.get();
+    }
+
+    /**
+     * Returns the number of idle or expired connections closed by the reaper
+     * since the last call to this method, across all the registered connection
+     * managers; so that, summed over all the calls, each closed connection is
+     * counted exactly once.
+     */
+    static long pollReapedConnectionCount() {
+        long reaped = reapedConnectionCount.get();
+        for (;;) {
+            long polled = polledReapedConnectionCount.get();
+            if (reaped <= polled)
+                return 0;
+            if (polledReapedConnectionCount.compareAndSet(polled, reaped))
+                return reaped - polled;
+        }
+    }
+
     /**
      * Shuts down the thread, allowing the class and instance to be collected.
      * <p>
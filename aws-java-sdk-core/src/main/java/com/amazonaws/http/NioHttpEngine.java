@@ -0,0 +1,499 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static com.amazonaws.SDKGlobalConfiguration.DISABLE_CERT_CHECKING_SYSTEM_PROPERTY;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.NTCredentials;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.entity.ContentInputStream;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SharedInputBuffer;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+
+/**
+ * An {@link HttpEngine} backed by Apache HttpAsyncClient, which multiplexes
+ * all the connections of the pool over a small, fixed number of selector
+ * driven I/O threads, as configured by
+ * {@link ClientConfiguration#getNonBlockingIoThreads()}.
+ * <p>
+ * The entity of a response passed to a completion callback is fully buffered
+ * by the I/O threads beforehand. The entity of a response returned to a
+ * blocked caller is streamed instead, through a bounded buffer: the I/O
+ * threads stop reading from the connection while the buffer is full, so that
+ * large responses, such as Amazon S3 objects, are never held in memory.
+ * Connections closed by the remote end while idle in the pool are detected by
+ * the selector, so this engine doesn't rely on the
+ * {@link IdleConnectionReaper}.
+ * <p>
+ * Requires <code>org.apache.httpcomponents:httpasyncclient</code> to be on the
+ * classpath.
+ */
+@ThreadSafe
+class NioHttpEngine implements HttpEngine {
+
+    /** Size of the buffer of a response entity streamed to a blocked caller. */
+    private static final int STREAMING_BUFFER_SIZE = 64 * 1024;
+
+    private final PoolingNHttpClientConnectionManager connectionManager;
+    private final CloseableHttpAsyncClient httpAsyncClient;
+    private final boolean useGzip;
+
+    NioHttpEngine(ClientConfiguration config) {
+        IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(config.getNonBlockingIoThreads())
+                .setConnectTimeout(config.getConnectionTimeout())
+                .setSoTimeout(config.getSocketTimeout())
+                .setTcpNoDelay(true)
+                .setSoKeepAlive(config.useTcpKeepAlive());
+        int socketSendBufferSizeHint = config.getSocketBufferSizeHints()[0];
+        int socketReceiveBufferSizeHint = config.getSocketBufferSizeHints()[1];
+        if (socketSendBufferSizeHint > 0) {
+            ioReactorConfig.setSndBufSize(socketSendBufferSizeHint);
+        }
+        if (socketReceiveBufferSizeHint > 0) {
+            ioReactorConfig.setRcvBufSize(socketReceiveBufferSizeHint);
+        }
+        DefaultConnectingIOReactor ioReactor;
+        try {
+            ioReactor = new DefaultConnectingIOReactor(ioReactorConfig.build(),
+                    new DaemonThreadFactory("java-sdk-nio-io"));
+        } catch (IOReactorException e) {
+            throw new AmazonClientException("Unable to create the I/O reactor: " + e.getMessage(), e);
+        }
+
+        Registry<SchemeIOSessionStrategy> registry = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", createSSLStrategy())
+                .build();
+        connectionManager = new PoolingNHttpClientConnectionManager(ioReactor,
+                null, registry, null, null,
+                config.getConnectionTTL(), TimeUnit.MILLISECONDS);
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnections());
+        connectionManager.setMaxTotal(config.getMaxConnections());
+
+        RequestConfig.Builder requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.getConnectionTimeout())
+                .setSocketTimeout(config.getSocketTimeout())
+                .setRedirectsEnabled(false);
+        if (config.getLocalAddress() != null) {
+            requestConfig.setLocalAddress(config.getLocalAddress());
+        }
+
+        HttpAsyncClientBuilder builder = HttpAsyncClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setThreadFactory(new DaemonThreadFactory("java-sdk-nio-dispatcher"))
+                .disableCookieManagement();
+
+        /* Set proxy if configured */
+        String proxyHost = config.getProxyHost();
+        int proxyPort = config.getProxyPort();
+        if (proxyHost != null && proxyPort > 0) {
+            AmazonHttpClient.log.info("Configuring Proxy. Proxy Host: " + proxyHost + " " + "Proxy Port: " + proxyPort);
+            HttpHost proxyHttpHost = new HttpHost(proxyHost, proxyPort);
+            builder.setProxy(proxyHttpHost);
+
+            String proxyUsername = config.getProxyUsername();
+            String proxyPassword = config.getProxyPassword();
+            if (proxyUsername != null && proxyPassword != null) {
+                BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+                credentialsProvider.setCredentials(
+                        new AuthScope(proxyHost, proxyPort),
+                        new NTCredentials(proxyUsername, proxyPassword,
+                                config.getProxyWorkstation(), config.getProxyDomain()));
+                builder.setDefaultCredentialsProvider(credentialsProvider);
+            }
+            if (config.isPreemptiveBasicProxyAuth()) {
+                builder.addInterceptorFirst(new HttpClientFactory.PreemptiveProxyAuth(proxyHttpHost));
+            }
+        }
+
+        /* Accept Gzip response if configured */
+        useGzip = config.useGzip();
+        if (useGzip) {
+            builder.addInterceptorLast(new HttpRequestInterceptor() {
+                public void process(final HttpRequest request,
+                        final HttpContext context) throws HttpException,
+                        IOException {
+                    if (!request.containsHeader("Accept-Encoding")) {
+                        request.addHeader("Accept-Encoding", "gzip");
+                    }
+                }
+            });
+        }
+
+        httpAsyncClient = builder.setDefaultRequestConfig(requestConfig.build()).build();
+        httpAsyncClient.start();
+    }
+
+    /**
+     * Returns the strategy used to upgrade connections to TLS, enforcing the
+     * same preferred protocols as {@link com.amazonaws.http.conn.ssl.SdkTLSSocketFactory}.
+     */
+    private static SchemeIOSessionStrategy createSSLStrategy() {
+        try {
+            SSLContext sslContext;
+            if (System.getProperty(DISABLE_CERT_CHECKING_SYSTEM_PROPERTY) != null) {
+                sslContext = SSLContext.getInstance("TLS");
+                sslContext.init(null,
+                        new TrustManager[] { new HttpClientFactory.TrustingX509TrustManager() },
+                        null);
+                return new SSLIOSessionStrategy(sslContext,
+                        SSLIOSessionStrategy.ALLOW_ALL_HOSTNAME_VERIFIER);
+            }
+            sslContext = SSLContext.getDefault();
+            return new SSLIOSessionStrategy(sslContext,
+                    preferredProtocols(sslContext), null,
+                    SSLSocketFactory.STRICT_HOSTNAME_VERIFIER);
+        } catch (Exception e) {
+            throw new AmazonClientException("Unable to access default SSL context", e);
+        }
+    }
+
+    /**
+     * TLS protocols in descending order of preference, as enforced by
+     * {@link com.amazonaws.http.conn.ssl.SdkTLSSocketFactory} for the blocking
+     * transport.
+     */
+    private static final String[] PREFERRED_TLS_PROTOCOLS = {
+        "TLSv1.2", "TLSv1.1", "TLSv1", "TLS"
+    };
+
+    /**
+     * Returns the supported protocols of the given context, with the preferred
+     * TLS protocols first; or null if the defaults should be used.
+     */
+    private static String[] preferredProtocols(SSLContext sslContext) {
+        String[] supported = sslContext.getSupportedSSLParameters().getProtocols();
+        String[] enabled = sslContext.getDefaultSSLParameters().getProtocols();
+        List<String> target = new ArrayList<String>();
+        for (String protocol : PREFERRED_TLS_PROTOCOLS) {
+            for (String s : supported) {
+                if (s.equals(protocol)) {
+                    target.add(s);
+                    break;
+                }
+            }
+        }
+        for (String s : enabled) {
+            if (!target.contains(s)) {
+                target.add(s);
+            }
+        }
+        return target.isEmpty() ? null : target.toArray(new String[target.size()]);
+    }
+
+    /**
+     * Returns as soon as the head of the response is received; its entity is
+     * then streamed as it is read by the caller. Aborting the request cancels
+     * the exchange.
+     */
+    @Override
+    public HttpResponse execute(HttpRequestBase request, HttpContext context)
+            throws IOException {
+        HttpHost target = URIUtils.extractHost(request.getURI());
+        if (target == null) {
+            throw new ClientProtocolException("URI does not specify a valid host name: "
+                    + request.getURI());
+        }
+        final StreamingResponseConsumer consumer = new StreamingResponseConsumer();
+        httpAsyncClient.execute(HttpAsyncMethods.create(target, request),
+                consumer, context, null);
+        request.setCancellable(new Cancellable() {
+            @Override
+            public boolean cancel() {
+                return consumer.abort();
+            }
+        });
+        try {
+            return decompress(consumer.responseHead.get());
+        } catch (InterruptedException e) {
+            consumer.abort();
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public void execute(HttpRequestBase request, HttpContext context,
+            final FutureCallback<HttpResponse> callback) {
+        httpAsyncClient.execute(request, context, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                callback.completed(decompress(response));
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                callback.failed(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                callback.cancelled();
+            }
+        });
+    }
+
+    /**
+     * Transparently decompresses the buffered entity of the given response if
+     * gzip is enabled and the response is gzip encoded.
+     */
+    private HttpResponse decompress(HttpResponse response) {
+        if (!useGzip) {
+            return response;
+        }
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            Header ceheader = entity.getContentEncoding();
+            if (ceheader != null) {
+                for (HeaderElement codec : ceheader.getElements()) {
+                    if (codec.getName().equalsIgnoreCase("gzip")) {
+                        response.setEntity(new GzipDecompressingEntity(entity));
+                        break;
+                    }
+                }
+            }
+        }
+        return response;
+    }
+
+    @Override
+    public boolean isNonBlocking() {
+        return true;
+    }
+
+    @Override
+    public PoolStats getConnectionPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    @Override
+    public void shutdown() {
+        try {
+            httpAsyncClient.close();
+        } catch (IOException e) {
+            AmazonHttpClient.log.debug("Unable to shut down the I/O reactor cleanly", e);
+        }
+    }
+
+    /**
+     * Consumes a response by handing it to the caller as soon as its head is
+     * received, with an entity streaming the content through a bounded
+     * buffer, which suspends the input from the connection while it is full.
+     * <p>
+     * Cancelling the future of the exchange doesn't stop it, so an aborted
+     * exchange is stopped by closing its connection, if any, from here.
+     */
+    private static final class StreamingResponseConsumer
+            extends AbstractAsyncResponseConsumer<HttpResponse> {
+        /** Completed once the head of the response is received. */
+        private final BasicFuture<HttpResponse> responseHead = new BasicFuture<HttpResponse>(null);
+        private final SharedInputBuffer buffer = new SharedInputBuffer(
+                STREAMING_BUFFER_SIZE, HeapByteBufferAllocator.INSTANCE);
+        private volatile HttpResponse response;
+        private volatile IOControl ioctrl;
+        /** Set before the buffer is shut down, if the exchange fails or is aborted. */
+        private volatile boolean aborted;
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+            BasicHttpEntity streamingEntity = new BasicHttpEntity();
+            streamingEntity.setContent(new StreamingContent());
+            streamingEntity.setContentLength(entity.getContentLength());
+            streamingEntity.setContentType(entity.getContentType());
+            streamingEntity.setContentEncoding(entity.getContentEncoding());
+            streamingEntity.setChunked(entity.isChunked());
+            response.setEntity(streamingEntity);
+            responseHead.completed(response);
+        }
+
+        @Override
+        protected void onContentReceived(ContentDecoder decoder, IOControl ioctrl)
+                throws IOException {
+            this.ioctrl = ioctrl;
+            if (isDone()) {
+                // Aborted before the content started
+                ioctrl.shutdown();
+                return;
+            }
+            buffer.consumeContent(decoder, ioctrl);
+        }
+
+        /**
+         * The content of the response, whose end fails to be read if the
+         * exchange has failed or been aborted, rather than let the reader take
+         * a truncated content for the whole of it.
+         */
+        private final class StreamingContent extends ContentInputStream {
+            StreamingContent() {
+                super(buffer);
+            }
+
+            @Override
+            public int read() throws IOException {
+                return checkEnd(super.read());
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return checkEnd(super.read(b, off, len));
+            }
+
+            @Override
+            public int read(byte[] b) throws IOException {
+                return checkEnd(super.read(b));
+            }
+
+            private int checkEnd(int result) throws IOException {
+                if (result == -1 && aborted) {
+                    Exception cause = getException();
+                    throw cause == null
+                        ? new InterruptedIOException("The request has been aborted")
+                        : new IOException("Unable to read the response: " + cause.getMessage(), cause);
+                }
+                return result;
+            }
+        }
+
+        /**
+         * Aborts the exchange, failing the reads of the content, and closes
+         * the connection if the content is being received.
+         *
+         * @return false if the exchange had already completed
+         */
+        boolean abort() {
+            boolean cancelled = cancel();
+            IOControl ioctrl = this.ioctrl;
+            if (cancelled && ioctrl != null) {
+                try {
+                    ioctrl.shutdown();
+                } catch (IOException e) {
+                    AmazonHttpClient.log.debug("Unable to close the connection of an aborted request", e);
+                }
+            }
+            return cancelled;
+        }
+
+        @Override
+        protected HttpResponse buildResult(HttpContext context) {
+            // A response without an entity is only complete now
+            responseHead.completed(response);
+            return response;
+        }
+
+        @Override
+        protected void releaseResources() {
+            if (getResult() != null) {
+                // Completed: the content left in the buffer can still be read
+                buffer.close();
+                return;
+            }
+            if (getException() != null) {
+                responseHead.failed(getException());
+            } else {
+                responseHead.cancel();
+            }
+            // Fails the pending and later reads of the content
+            aborted = true;
+            buffer.shutdown();
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so that the I/O threads of an engine that
+     * is never shut down don't prevent the JVM from exiting.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, namePrefix + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
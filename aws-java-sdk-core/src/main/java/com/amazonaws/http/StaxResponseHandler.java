@@ -19,7 +19,6 @@ import java.io.InputStream;
 import java.util.Map;
 
 import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 
 import org.apache.commons.logging.Log;
@@ -30,6 +29,7 @@ import com.amazonaws.ResponseMetadata;
 import com.amazonaws.transform.StaxUnmarshallerContext;
 import com.amazonaws.transform.Unmarshaller;
 import com.amazonaws.transform.VoidStaxUnmarshaller;
+import com.amazonaws.util.XmlUtils;
 
 /**
  * Default implementation of HttpResponseHandler that handles a successful
@@ -47,8 +47,12 @@ public class StaxResponseHandler<T> implements HttpResponseHandler<AmazonWebServ
     /** Shared logger for profiling information */
     private static final Log log = LogFactory.getLog("com.amazonaws.request");
 
-    /** Shared factory for creating XML event readers */
-    private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+    /**
+     * Unmarshaller context of each thread, reset and reused for every response
+     * handled on that thread.
+     */
+    private static final ThreadLocal<StaxUnmarshallerContext> unmarshallerContexts =
+        new ThreadLocal<StaxUnmarshallerContext>();
 
 
     /**
@@ -84,14 +88,22 @@ public class StaxResponseHandler<T> implements HttpResponseHandler<AmazonWebServ
         InputStream content = response.getContent();
         if (content == null) content = new ByteArrayInputStream("<eof/>".getBytes());
 
-        XMLEventReader eventReader;
-        synchronized (xmlInputFactory) {
-            eventReader = xmlInputFactory.createXMLEventReader(content);
+        XMLEventReader eventReader = XmlUtils.getXmlInputFactory().createXMLEventReader(content);
+
+        /*
+         * Taken out of the thread local until we are done with it, in case a
+         * response is handled on this thread meanwhile.
+         */
+        StaxUnmarshallerContext unmarshallerContext = unmarshallerContexts.get();
+        if (unmarshallerContext == null) {
+            unmarshallerContext = new StaxUnmarshallerContext(eventReader, response.getHeaders());
+        } else {
+            unmarshallerContexts.remove();
+            unmarshallerContext.reset(eventReader, response.getHeaders());
         }
 
         try {
             AmazonWebServiceResponse<T> awsResponse = new AmazonWebServiceResponse<T>();
-            StaxUnmarshallerContext unmarshallerContext = new StaxUnmarshallerContext(eventReader, response.getHeaders());
             unmarshallerContext.registerMetadataExpression("ResponseMetadata/RequestId", 2, ResponseMetadata.AWS_REQUEST_ID);
             unmarshallerContext.registerMetadataExpression("requestId", 2, ResponseMetadata.AWS_REQUEST_ID);
             registerAdditionalMetadataExpressions(unmarshallerContext);
@@ -117,6 +129,8 @@ public class StaxResponseHandler<T> implements HttpResponseHandler<AmazonWebServ
             } catch (XMLStreamException e) {
                 log.warn("Error closing xml parser", e);
             }
+            unmarshallerContext.reset(null, null);
+            unmarshallerContexts.set(unmarshallerContext);
         }
     }
 
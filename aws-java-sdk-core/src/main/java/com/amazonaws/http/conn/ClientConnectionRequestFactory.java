@@ -26,6 +26,7 @@ import org.apache.http.conn.ClientConnectionRequest;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.ServiceLatencyProvider;
 import com.amazonaws.util.AWSServiceMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
 
 class ClientConnectionRequestFactory {
     private static final Log log = LogFactory.getLog(ClientConnectionRequestFactory.class);
@@ -66,9 +67,11 @@ class ClientConnectionRequestFactory {
                 if ("getConnection".equals(method.getName())) {
                     ServiceLatencyProvider latencyProvider = new ServiceLatencyProvider(
                             AWSServiceMetrics.HttpClientGetConnectionTime);
+                    CurrentRequestMetrics.startEvent(Field.HttpClientPoolLeaseTime);
                     try {
                         return method.invoke(orig, args);
                     } finally {
+                        CurrentRequestMetrics.endEvent(Field.HttpClientPoolLeaseTime);
                         AwsSdkMetrics.getServiceMetricCollector()
                                 .collectLatency(latencyProvider.endTiming());
                     }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+/**
+ * Holds the metrics of the request being executed by the blocking http client
+ * on the current thread, so that the phases of the exchange that take place
+ * below the http client API, such as leasing a connection from the pool,
+ * resolving the host name, connecting and the TLS handshake, can be timed for
+ * that request.
+ */
+public final class CurrentRequestMetrics {
+    private static final ThreadLocal<AWSRequestMetrics> current = new ThreadLocal<AWSRequestMetrics>();
+
+    private CurrentRequestMetrics() {}
+
+    /**
+     * Sets the metrics of the request executed by the current thread; or null
+     * if there is none.
+     *
+     * @return the metrics previously set, to be restored once the request has
+     *         been executed
+     */
+    public static AWSRequestMetrics set(AWSRequestMetrics awsRequestMetrics) {
+        AWSRequestMetrics previous = current.get();
+        if (awsRequestMetrics == null) {
+            current.remove();
+        } else {
+            current.set(awsRequestMetrics);
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the metrics of the request executed by the current thread; or
+     * null if there is none.
+     */
+    public static AWSRequestMetrics get() {
+        return current.get();
+    }
+
+    /**
+     * Starts the given event in the metrics of the request executed by the
+     * current thread, if any.
+     */
+    public static void startEvent(Field f) {
+        AWSRequestMetrics awsRequestMetrics = current.get();
+        if (awsRequestMetrics != null)
+            awsRequestMetrics.startEvent(f);
+    }
+
+    /**
+     * Ends the given event in the metrics of the request executed by the
+     * current thread, if any.
+     */
+    public static void endEvent(Field f) {
+        AWSRequestMetrics awsRequestMetrics = current.get();
+        if (awsRequestMetrics != null)
+            awsRequestMetrics.endEvent(f);
+    }
+}
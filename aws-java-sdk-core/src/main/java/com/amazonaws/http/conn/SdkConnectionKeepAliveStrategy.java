@@ -0,0 +1,51 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.annotation.Immutable;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Keeps a connection alive for the timeout advertised by the Keep-Alive
+ * header of its last response, if any, but no longer than the maximum idle
+ * time of the client, so that a connection is closed before the service
+ * closes it rather than after.
+ */
+@Immutable
+public class SdkConnectionKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+    private final long maxIdleMillis;
+
+    /**
+     * @param maxIdleMillis
+     *            the maximum time in milliseconds a connection can be kept
+     *            alive when idle; or a non-positive value for no maximum
+     */
+    public SdkConnectionKeepAliveStrategy(long maxIdleMillis) {
+        this.maxIdleMillis = maxIdleMillis;
+    }
+
+    @Override
+    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+                .getKeepAliveDuration(response, context);
+        if (maxIdleMillis <= 0)
+            return duration;
+        // A non-positive duration means the service advertised no timeout
+        return duration > 0 && duration < maxIdleMillis ? duration : maxIdleMillis;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+/**
+ * Used to capture the host name resolution latency of the request for which
+ * a connection is being opened.
+ */
+@ThreadSafe
+public class SdkDnsResolver implements DnsResolver {
+    private final DnsResolver resolver;
+
+    public SdkDnsResolver() {
+        this(SystemDefaultDnsResolver.INSTANCE);
+    }
+
+    public SdkDnsResolver(DnsResolver resolver) {
+        if (resolver == null)
+            throw new IllegalArgumentException();
+        this.resolver = resolver;
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        CurrentRequestMetrics.startEvent(Field.HttpClientDnsResolutionTime);
+        try {
+            return resolver.resolve(host);
+        } finally {
+            CurrentRequestMetrics.endEvent(Field.HttpClientDnsResolutionTime);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+/**
+ * Validates a pooled connection when it is leased only if it has been idle
+ * for some time, instead of before every request, as the check costs a read
+ * with a short timeout on the connection. A connection found to have been
+ * closed by the service is closed, so that a new one is opened in its place,
+ * and counted in the {@link Field#HttpClientStaleConnectionCount} of the
+ * request, if any.
+ */
+@ThreadSafe
+@SuppressWarnings("deprecation")
+public class SdkPoolingClientConnectionManager extends PoolingClientConnectionManager {
+    private static final Log log = LogFactory.getLog(SdkPoolingClientConnectionManager.class);
+
+    private final long validateAfterInactivityNanos;
+
+    /**
+     * The time, in nanoseconds, at which each open connection was last
+     * released to the pool, by socket, as a connection is leased through a
+     * different adapter every time.
+     */
+    private final Map<Socket, Long> releasedNanos =
+            Collections.synchronizedMap(new WeakHashMap<Socket, Long>());
+
+    /**
+     * @param validateAfterInactivityMillis
+     *            the time in milliseconds a connection must have been idle
+     *            before it is validated when leased; zero to validate every
+     *            connection leased, or a negative value to never validate
+     */
+    public SdkPoolingClientConnectionManager(SchemeRegistry schemeRegistry,
+            long timeToLive, TimeUnit tunit, DnsResolver dnsResolver,
+            int validateAfterInactivityMillis) {
+        super(schemeRegistry, timeToLive, tunit, dnsResolver);
+        this.validateAfterInactivityNanos = validateAfterInactivityMillis < 0
+                ? -1
+                : TimeUnit.MILLISECONDS.toNanos(validateAfterInactivityMillis);
+    }
+
+    @Override
+    public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+        final ClientConnectionRequest request = super.requestConnection(route, state);
+        if (validateAfterInactivityNanos < 0)
+            return request;
+        return new ClientConnectionRequest() {
+            @Override
+            public ManagedClientConnection getConnection(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ConnectionPoolTimeoutException {
+                ManagedClientConnection conn = request.getConnection(timeout, tunit);
+                validateIfInactive(conn);
+                return conn;
+            }
+
+            @Override
+            public void abortRequest() {
+                request.abortRequest();
+            }
+        };
+    }
+
+    @Override
+    public void releaseConnection(ManagedClientConnection conn, long keepalive, TimeUnit tunit) {
+        if (validateAfterInactivityNanos >= 0 && conn.isOpen()) {
+            releasedNanos.put(conn.getSocket(), System.nanoTime());
+        }
+        super.releaseConnection(conn, keepalive, tunit);
+    }
+
+    /**
+     * Closes the given connection if it has been idle for long enough to be
+     * validated, and it has been closed by the service meanwhile.
+     */
+    private void validateIfInactive(ManagedClientConnection conn) {
+        if (!conn.isOpen())
+            return;
+        Long releasedNano = releasedNanos.get(conn.getSocket());
+        if (releasedNano == null
+                || System.nanoTime() - releasedNano < validateAfterInactivityNanos) {
+            return;
+        }
+        if (conn.isStale()) {
+            log.debug("Stale connection detected");
+            try {
+                conn.close();
+            } catch (IOException e) {
+                log.debug("Unable to close the stale connection", e);
+            }
+            AWSRequestMetrics awsRequestMetrics = CurrentRequestMetrics.get();
+            if (awsRequestMetrics != null)
+                awsRequestMetrics.incrementCounter(Field.HttpClientStaleConnectionCount);
+        }
+    }
+}
@@ -34,12 +34,17 @@ import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ssl.X509HostnameVerifier;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
 
+import com.amazonaws.http.conn.CurrentRequestMetrics;
 import com.amazonaws.internal.SdkSSLSocket;
 import com.amazonaws.internal.SdkSocket;
+import com.amazonaws.util.AWSRequestMetrics.Field;
 
 /**
- * Used to enforce the preferred TLS protocol during SSL handshake.
+ * Used to enforce the preferred TLS protocol during SSL handshake, and to
+ * capture the connect and TLS handshake latency of the request for which a
+ * connection is being opened.
  */
 @ThreadSafe
 public class SdkTLSSocketFactory extends SSLSocketFactory {
@@ -105,6 +110,40 @@ public class SdkTLSSocketFactory extends SSLSocketFactory {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The returned socket is wrapped to capture the latency of connecting and
+     * of the TLS handshake.
+     */
+    @Override
+    public Socket createSocket(final HttpContext context) throws IOException {
+        Socket socket = super.createSocket(context);
+        if (socket instanceof SSLSocket && !(socket instanceof SdkSSLSocket))
+            return new SdkSSLSocket((SSLSocket)socket);
+        return socket;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Used to capture the TLS handshake latency of a connection layered over
+     * an existing one, such as a tunnel through a proxy.
+     */
+    @Override
+    public Socket createLayeredSocket(
+            final Socket socket,
+            final String target,
+            final int port,
+            final HttpContext context) throws IOException {
+        CurrentRequestMetrics.startEvent(Field.HttpClientTlsHandshakeTime);
+        try {
+            return super.createLayeredSocket(socket, target, port, context);
+        } finally {
+            CurrentRequestMetrics.endEvent(Field.HttpClientTlsHandshakeTime);
+        }
+    }
+
     @Override
     public Socket connectSocket(
             final Socket socket,
@@ -117,6 +156,8 @@ public class SdkTLSSocketFactory extends SSLSocketFactory {
                     + remoteAddress.getPort());
         verifyMasterSecret(
             super.connectSocket(socket, remoteAddress, localAddress, params));
+        if (socket instanceof SdkSSLSocket)
+            return socket;
         if (socket instanceof SSLSocket)
             return new SdkSSLSocket((SSLSocket)socket);
         return new SdkSocket(socket);
@@ -14,14 +14,32 @@
  */
 package com.amazonaws.http.impl.client;
 
+import java.io.IOException;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpRequestExecutor;
 
 import com.amazonaws.http.conn.ClientConnectionManagerFactory;
+import com.amazonaws.http.conn.CurrentRequestMetrics;
 import com.amazonaws.http.protocol.SdkHttpRequestExecutor;
+import com.amazonaws.util.AWSRequestMetrics;
 
+/**
+ * Makes the request metrics found in the context of an execution available to
+ * the connection management of the http client library, which runs on the
+ * calling thread, so that the time taken to lease and open a connection can
+ * be captured for the request.
+ *
+ * @see CurrentRequestMetrics
+ */
 public class SdkHttpClient extends DefaultHttpClient {
     public SdkHttpClient(
             final ClientConnectionManager conman,
@@ -29,6 +47,33 @@ public class SdkHttpClient extends DefaultHttpClient {
         super(ClientConnectionManagerFactory.wrap(conman), params);
     }
 
+    @Override
+    public CloseableHttpResponse execute(HttpUriRequest request,
+            HttpContext context) throws IOException, ClientProtocolException {
+        AWSRequestMetrics previous = CurrentRequestMetrics.set(metricsOf(context));
+        try {
+            return super.execute(request, context);
+        } finally {
+            CurrentRequestMetrics.set(previous);
+        }
+    }
+
+    @Override
+    public CloseableHttpResponse execute(HttpHost target, HttpRequest request,
+            HttpContext context) throws IOException, ClientProtocolException {
+        AWSRequestMetrics previous = CurrentRequestMetrics.set(metricsOf(context));
+        try {
+            return super.execute(target, request, context);
+        } finally {
+            CurrentRequestMetrics.set(previous);
+        }
+    }
+
+    private static AWSRequestMetrics metricsOf(HttpContext context) {
+        return context == null ? null : (AWSRequestMetrics) context
+                .getAttribute(AWSRequestMetrics.class.getSimpleName());
+    }
+
     @Override
     protected HttpRequestExecutor createRequestExecutor() {
         return new SdkHttpRequestExecutor();
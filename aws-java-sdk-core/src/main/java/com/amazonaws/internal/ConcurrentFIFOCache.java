@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * A bounded cache that evicts its earliest entries when it is full, like
+ * {@link FIFOCache}, but without any lock: lookups never block, and so don't
+ * contend with each other on a hot path. Since entries are added and evicted
+ * concurrently, the cache may briefly hold a few more entries than its
+ * maximum size.
+ *
+ * @param <T>
+ *            value type
+ */
+@ThreadSafe
+public final class ConcurrentFIFOCache<T> {
+    private final ConcurrentHashMap<String, T> map;
+    /** Keys of the entries, in the order they were added. */
+    private final Queue<String> keys = new ConcurrentLinkedQueue<String>();
+    private final int maxSize;
+
+    /**
+     * @param maxSize
+     *            the maximum number of entries of the cache
+     */
+    public ConcurrentFIFOCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize " + maxSize
+                    + " must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.map = new ConcurrentHashMap<String, T>(Math.min(maxSize, 1024));
+    }
+
+    /**
+     * Adds an entry to the cache, evicting the earliest entries if necessary.
+     */
+    public T add(String key, T value) {
+        T previous = map.put(key, value);
+        if (previous == null) {
+            keys.add(key);
+            while (map.size() > maxSize) {
+                String eldest = keys.poll();
+                if (eldest == null)
+                    break;
+                map.remove(eldest);
+            }
+        }
+        return previous;
+    }
+
+    /** Returns the value of the given key; or null if no such entry exists. */
+    public T get(String key) {
+        return map.get(key);
+    }
+
+    /**
+     * Returns the current size of the cache.
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns the maximum size of the cache.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return map.toString();
+    }
+}
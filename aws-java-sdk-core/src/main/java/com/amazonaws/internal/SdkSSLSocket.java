@@ -29,6 +29,9 @@ import javax.net.ssl.SSLSocket;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.http.conn.CurrentRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
 public class SdkSSLSocket extends SSLSocket {
     private static final Log log = LogFactory.getLog(SdkSSLSocket.class);
 
@@ -51,7 +54,12 @@ public class SdkSSLSocket extends SSLSocket {
     public void connect(SocketAddress endpoint) throws IOException {
         if (log.isDebugEnabled())
             log.debug("connecting to: " + endpoint);
-        sock.connect(endpoint);
+        CurrentRequestMetrics.startEvent(Field.HttpClientConnectTime);
+        try {
+            sock.connect(endpoint);
+        } finally {
+            CurrentRequestMetrics.endEvent(Field.HttpClientConnectTime);
+        }
         if (log.isDebugEnabled())
             log.debug("connected to: " + endpoint());
     }
@@ -60,7 +68,12 @@ public class SdkSSLSocket extends SSLSocket {
     public void connect(SocketAddress endpoint, int timeout) throws IOException {
         if (log.isDebugEnabled())
             log.debug("connecting to: " + endpoint);
-        sock.connect(endpoint, timeout);
+        CurrentRequestMetrics.startEvent(Field.HttpClientConnectTime);
+        try {
+            sock.connect(endpoint, timeout);
+        } finally {
+            CurrentRequestMetrics.endEvent(Field.HttpClientConnectTime);
+        }
         if (log.isDebugEnabled())
             log.debug("connected to: " + endpoint());
     }
@@ -316,7 +329,12 @@ public class SdkSSLSocket extends SSLSocket {
 
     @Override
     public void startHandshake() throws IOException {
-        sock.startHandshake();
+        CurrentRequestMetrics.startEvent(Field.HttpClientTlsHandshakeTime);
+        try {
+            sock.startHandshake();
+        } finally {
+            CurrentRequestMetrics.endEvent(Field.HttpClientTlsHandshakeTime);
+        }
     }
 
     @Override
@@ -16,10 +16,12 @@ package com.amazonaws.jmx;
 
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.jmx.spi.RetryAdminMBeanRegistry;
 import com.amazonaws.jmx.spi.SdkMBeanRegistry;
 import com.amazonaws.metrics.MetricAdmin;
+import com.amazonaws.retry.RetryAdmin;
 
-public class SdkMBeanRegistrySupport implements SdkMBeanRegistry {
+public class SdkMBeanRegistrySupport implements SdkMBeanRegistry, RetryAdminMBeanRegistry {
     ;
     @Override
     public boolean registerMetricAdminMBean(String objectName) {
@@ -31,6 +33,16 @@ public class SdkMBeanRegistrySupport implements SdkMBeanRegistry {
         return false;
     }
 
+    @Override
+    public boolean registerRetryAdminMBean(String objectName) {
+        try {
+            return MBeans.registerMBean(objectName, new RetryAdmin());
+        } catch(Exception ex) {
+            LogFactory.getLog(SdkMBeanRegistrySupport.class).warn("", ex);
+        }
+        return false;
+    }
+
     @Override
     public boolean unregisterMBean(String objectName) {
         try {
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2011-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.jmx.spi;
+
+/**
+ * Optional SPI, implemented by the {@link SdkMBeanRegistry} implementations
+ * which can also register the retry admin MBean. It is kept separate so that
+ * the existing implementations of {@link SdkMBeanRegistry} don't have to
+ * implement it.
+ */
+public interface RetryAdminMBeanRegistry {
+    /**
+     * Returns true if the registration of the retry admin MBean under the
+     * given object name succeeded; false otherwise.
+     */
+    public boolean registerRetryAdminMBean(String objectName);
+}
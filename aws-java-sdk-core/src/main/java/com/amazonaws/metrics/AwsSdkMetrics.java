@@ -829,6 +829,8 @@ public enum AwsSdkMetrics {
             metricTypes.add(Field.HttpClientPoolLeasedCount);
             metricTypes.add(Field.HttpClientPoolPendingCount);
             metricTypes.add(AWSServiceMetrics.HttpClientGetConnectionTime);
+            metricTypes.add(AWSServiceMetrics.CredentialsRefreshTime);
+            metricTypes.add(AWSServiceMetrics.CredentialsRefreshFailureTime);
             syncReadOnly();
         }
 
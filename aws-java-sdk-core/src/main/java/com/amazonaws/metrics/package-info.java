@@ -59,6 +59,22 @@
  * to get sent to AWS. Captured on a per request type level.</li>
  * <li>HttpClientReceiveResponseTime - Number of milliseconds taken for a physical response
  * to get received from AWS. Captured on a per request type level.</li>
+ * <li>HttpClientPoolLeaseTime, HttpClientDnsResolutionTime,
+ * HttpClientConnectTime, HttpClientTlsHandshakeTime - Number of milliseconds
+ * taken by a physical request to lease a connection from the pool of the
+ * underlying httpclient, and to resolve the host name, connect and complete
+ * the TLS handshake when a new secure connection is opened. Captured on a per
+ * request type level. These metrics are not collected by default, and can be
+ * enabled via {@link com.amazonaws.metrics.AwsSdkMetrics#add(MetricType)}.
+ * They are not available with non-blocking I/O.</li>
+ * <li>HttpClientStaleConnectionCount, HttpClientStaleConnectionRetryCount -
+ * Number of pooled connections found closed by AWS when leased after some
+ * inactivity, and number of retries after no response was received on a
+ * connection. HttpClientPoolReapedCount - Number of idle or expired connections
+ * closed by the idle connection reaper since the previous request that
+ * reported it, so that its sum is the number of connections closed. Captured on a per service
+ * client type level. These metrics are not collected by default, and can be
+ * enabled via {@link com.amazonaws.metrics.AwsSdkMetrics#add(MetricType)}.</li>
  * <li>HttpClientRetryCount - Number of retries per physical request. Captured on a per service 
  * client type level. </li>
  * <li>RequestCount - Number of logical requests. Captured on a per service 
@@ -75,6 +91,11 @@
  * <ol>
  * <li>HttpClientGetConnectionTime - Total number of milliseconds taken for the
  * underlying http client library to get a connection.
+ * <li>CredentialsRefreshTime - Number of milliseconds taken to refresh session
+ * credentials, such as from the AWS Security Token Service.</li>
+ * <li>CredentialsRefreshFailureTime - Number of milliseconds taken by a failed
+ * attempt to refresh session credentials; its sample count is the number of
+ * failures.</li>
  * <li>S3DownloadThroughput - Number of bytes downloaded from S3 per second.</li>
  * <li>S3DownloadByteCount - Number of bytes downloaded from S3.</li>
  * <li>S3UploadThroughput - Number of bytes uploaded to S3 per second.</li>
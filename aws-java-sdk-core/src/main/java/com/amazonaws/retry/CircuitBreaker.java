@@ -0,0 +1,176 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.ClientConfiguration;
+
+/**
+ * Per-endpoint circuit breaker for retries. The circuit of an endpoint opens
+ * once a number of consecutive attempts to that endpoint have failed; while it
+ * is open, failed requests to that endpoint are no longer retried. Once the
+ * open time has elapsed, a single retry is let through as a probe: the circuit
+ * closes again as soon as a request to the endpoint succeeds, or re-opens if
+ * the probe fails.
+ * <p>
+ * Only the retries are affected; the first attempt of every request is always
+ * sent.
+ *
+ * @see ClientConfiguration#setUseCircuitBreaker(boolean)
+ */
+@ThreadSafe
+public class CircuitBreaker {
+    /** Total number of retries denied by all the circuit breakers. */
+    private static final AtomicLong totalDeniedRetryCount = new AtomicLong();
+
+    private final int failureThreshold;
+    private final long openTimeMillis;
+    private final ConcurrentMap<String, Circuit> circuits =
+        new ConcurrentHashMap<String, Circuit>();
+    private final AtomicLong deniedRetryCount = new AtomicLong();
+
+    /**
+     * Constructs a circuit breaker.
+     *
+     * @param failureThreshold
+     *            the number of consecutive failed attempts to an endpoint
+     *            which opens its circuit
+     * @param openTimeMillis
+     *            the time, in milliseconds, a circuit stays open before a
+     *            retry is let through as a probe
+     */
+    public CircuitBreaker(int failureThreshold, long openTimeMillis) {
+        if (failureThreshold < 1)
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        if (openTimeMillis < 0)
+            throw new IllegalArgumentException("openTimeMillis must not be negative");
+        this.failureThreshold = failureThreshold;
+        this.openTimeMillis = openTimeMillis;
+    }
+
+    /**
+     * Returns true if a failed request to the given endpoint may be retried;
+     * false if the retry is denied because the circuit of the endpoint is
+     * open.
+     */
+    public boolean allowRetry(URI endpoint) {
+        Circuit circuit = circuits.get(key(endpoint));
+        if (circuit == null || circuit.allowRetry()) {
+            return true;
+        }
+        deniedRetryCount.incrementAndGet();
+        totalDeniedRetryCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Records a failed attempt to the given endpoint, such as an I/O error, a
+     * server error or a throttled request.
+     */
+    public void onFailure(URI endpoint) {
+        String key = key(endpoint);
+        Circuit circuit = circuits.get(key);
+        if (circuit == null) {
+            Circuit existing = circuits.putIfAbsent(key, circuit = new Circuit());
+            if (existing != null)
+                circuit = existing;
+        }
+        circuit.onFailure();
+    }
+
+    /**
+     * Records a successful request to the given endpoint, which closes its
+     * circuit.
+     */
+    public void onSuccess(URI endpoint) {
+        Circuit circuit = circuits.get(key(endpoint));
+        if (circuit != null) {
+            circuit.onSuccess();
+        }
+    }
+
+    /** Returns true if the circuit of the given endpoint is currently open. */
+    public boolean isOpen(URI endpoint) {
+        Circuit circuit = circuits.get(key(endpoint));
+        return circuit != null && circuit.openedAt != 0;
+    }
+
+    /** Returns the number of endpoints whose circuit is currently open. */
+    public int getOpenCircuitCount() {
+        int count = 0;
+        for (Circuit circuit : circuits.values()) {
+            if (circuit.openedAt != 0)
+                count++;
+        }
+        return count;
+    }
+
+    /** Returns the number of retries denied by this circuit breaker. */
+    public long getDeniedRetryCount() {
+        return deniedRetryCount.get();
+    }
+
+    /** Returns the number of retries denied by all the circuit breakers. */
+    public static long getTotalDeniedRetryCount() {
+        return totalDeniedRetryCount.get();
+    }
+
+    private static String key(URI endpoint) {
+        return endpoint.getScheme() + "://" + endpoint.getAuthority();
+    }
+
+    /** State of the circuit of a single endpoint. */
+    private final class Circuit {
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        /** Time at which the circuit opened (or the last probe was let through); 0 if closed. */
+        private volatile long openedAt;
+
+        void onFailure() {
+            if (consecutiveFailures.incrementAndGet() >= failureThreshold
+                    && openedAt == 0) {
+                openedAt = System.currentTimeMillis();
+            }
+        }
+
+        void onSuccess() {
+            consecutiveFailures.set(0);
+            openedAt = 0;
+        }
+
+        boolean allowRetry() {
+            long opened = openedAt;
+            if (opened == 0)
+                return true;
+            long now = System.currentTimeMillis();
+            if (now - opened < openTimeMillis)
+                return false;
+            // Half open: let a single retry through as a probe, and keep the
+            // circuit open for another period unless the probe succeeds.
+            synchronized (this) {
+                if (openedAt != opened)
+                    return openedAt == 0;
+                openedAt = now;
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.jmx.spi.RetryAdminMBeanRegistry;
+import com.amazonaws.jmx.spi.SdkMBeanRegistry;
+
+/**
+ * Exposes the retry statistics of the clients as an MBean, registered under
+ * {@value #MBEAN_OBJECT_NAME} when the first client with a retry token bucket
+ * or circuit breaker is created.
+ */
+public class RetryAdmin implements RetryAdminMBean {
+    private static final String MBEAN_OBJECT_NAME =
+        "com.amazonaws.management:type=AwsSdkRetries";
+
+    /**
+     * Object name under which the MBean of the current classloader is
+     * registered; or null if not registered.
+     */
+    private static volatile String registeredMBeanName;
+
+    @Override
+    public long getTokenBucketDeniedRetryCount() {
+        return RetryTokenBucket.getTotalDeniedRetryCount();
+    }
+
+    @Override
+    public long getCircuitBreakerDeniedRetryCount() {
+        return CircuitBreaker.getTotalDeniedRetryCount();
+    }
+
+    @Override
+    public long getScheduledRetryCount() {
+        return RetryScheduler.getDefault().getScheduledRetryCount();
+    }
+
+    @Override
+    public int getPendingRetryCount() {
+        return RetryScheduler.getDefault().getPendingRetryCount();
+    }
+
+    @Override
+    public long getRetryWaitTimeMillis() {
+        return RetryScheduler.getDefault().getRetryWaitTimeMillis();
+    }
+
+    /**
+     * Registers the retry admin MBean for JMX access for the current
+     * classloader, unless already registered. As for the metric admin MBean,
+     * a suffix in the format of "/<count>" is appended to the object name if
+     * the MBean of a different classloader is already registered under it.
+     * The MBean is only registered if the {@link SdkMBeanRegistry} in use
+     * also implements {@link RetryAdminMBeanRegistry}.
+     *
+     * @return true if the registration succeeded; false otherwise.
+     */
+    public static boolean registerMBean() {
+        if (registeredMBeanName != null)
+            return false;
+        SdkMBeanRegistry registry = SdkMBeanRegistry.Factory.getMBeanRegistry();
+        if (!(registry instanceof RetryAdminMBeanRegistry))
+            return false;
+        synchronized (RetryAdmin.class) {
+            if (registeredMBeanName != null)
+                return false;   // already registered
+            try {
+                String mbeanName = MBEAN_OBJECT_NAME;
+                int count = 0;
+                while (registry.isMBeanRegistered(mbeanName)) {
+                    mbeanName = MBEAN_OBJECT_NAME + "/" + ++count;
+                }
+                if (((RetryAdminMBeanRegistry) registry).registerRetryAdminMBean(mbeanName)) {
+                    registeredMBeanName = mbeanName;
+                    return true;
+                }
+            } catch (Exception ex) {
+                LogFactory.getLog(RetryAdmin.class).warn("", ex);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns the name of the registered retry admin MBean; or null if it is
+     * not currently registered.
+     */
+    public static String getRegisteredMBeanName() {
+        return registeredMBeanName;
+    }
+}
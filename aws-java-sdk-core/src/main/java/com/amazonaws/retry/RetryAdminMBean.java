@@ -0,0 +1,50 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+/**
+ * JMX view of the retries of all the clients in the current classloader.
+ */
+public interface RetryAdminMBean {
+    /**
+     * Returns the number of retries denied because the retry token bucket of
+     * their client had run out of tokens.
+     */
+    public long getTokenBucketDeniedRetryCount();
+
+    /**
+     * Returns the number of retries denied because the circuit of their
+     * endpoint was open.
+     */
+    public long getCircuitBreakerDeniedRetryCount();
+
+    /**
+     * Returns the number of retries scheduled so far on the default retry
+     * scheduler.
+     */
+    public long getScheduledRetryCount();
+
+    /**
+     * Returns the number of retries currently waiting on the default retry
+     * scheduler for their back-off delay to elapse.
+     */
+    public int getPendingRetryCount();
+
+    /**
+     * Returns the total time, in milliseconds, that the retries scheduled on
+     * the default retry scheduler have waited.
+     */
+    public long getRetryWaitTimeMillis();
+}
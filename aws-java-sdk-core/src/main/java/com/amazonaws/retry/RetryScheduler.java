@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.ClientConfiguration;
+
+/**
+ * Waits the back-off delay before the retries of asynchronous executions on a
+ * scheduler, so that no thread is held while a request is waiting to be
+ * retried. Retries are scheduled this way when the client uses non-blocking
+ * I/O, or when {@link ClientConfiguration#useScheduledRetries()} is enabled.
+ * <p>
+ * All the clients share the {@link #getDefault() default} scheduler, which
+ * runs on a single daemon thread; the retries themselves are sent from the
+ * executor of the async client, or the I/O threads of the transport, rather
+ * than from that thread.
+ */
+@ThreadSafe
+public class RetryScheduler {
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong scheduledRetryCount = new AtomicLong();
+    private final AtomicLong retryWaitTimeMillis = new AtomicLong();
+    private final AtomicInteger pendingRetryCount = new AtomicInteger();
+
+    /**
+     * Returns the retry scheduler shared by all the clients.
+     */
+    public static RetryScheduler getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Constructs a retry scheduler that waits the back-off delays on the given
+     * scheduled executor service. The caller remains responsible for shutting
+     * down the given service.
+     */
+    public RetryScheduler(ScheduledExecutorService scheduler) {
+        if (scheduler == null)
+            throw new IllegalArgumentException("scheduler must not be null");
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Schedules the given retry to be run after the given delay.
+     *
+     * @param retry
+     *            sends the next attempt of the request; expected to return
+     *            quickly, and handle its own failures.
+     * @param delay
+     *            the back-off delay before the retry
+     * @param unit
+     *            the unit of the delay
+     * @throws RejectedExecutionException
+     *             if the retry cannot be scheduled
+     */
+    public void schedule(final Runnable retry, long delay, TimeUnit unit) {
+        final long scheduledAt = System.nanoTime();
+        pendingRetryCount.incrementAndGet();
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    pendingRetryCount.decrementAndGet();
+                    retryWaitTimeMillis.addAndGet(TimeUnit.NANOSECONDS
+                            .toMillis(System.nanoTime() - scheduledAt));
+                    retry.run();
+                }
+            }, delay, unit);
+        } catch (RejectedExecutionException e) {
+            pendingRetryCount.decrementAndGet();
+            throw e;
+        }
+        scheduledRetryCount.incrementAndGet();
+    }
+
+    /**
+     * Returns the total number of retries scheduled so far.
+     */
+    public long getScheduledRetryCount() {
+        return scheduledRetryCount.get();
+    }
+
+    /**
+     * Returns the number of retries that are currently waiting for their
+     * back-off delay to elapse.
+     */
+    public int getPendingRetryCount() {
+        return pendingRetryCount.get();
+    }
+
+    /**
+     * Returns the total time, in milliseconds, that the scheduled retries have
+     * waited before being run.
+     */
+    public long getRetryWaitTimeMillis() {
+        return retryWaitTimeMillis.get();
+    }
+
+    private static final class DefaultHolder {
+        static final RetryScheduler INSTANCE = new RetryScheduler(
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "java-sdk-retry-scheduler");
+                    t.setDaemon(true);
+                    return t;
+                }
+            }));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.ClientConfiguration;
+
+/**
+ * Client-wide retry budget. Every retry draws {@link #RETRY_COST} tokens from
+ * the bucket, and is denied if not enough tokens are left; every successful
+ * request puts tokens back: {@link #RETRY_COST} tokens if it needed retries,
+ * {@link #NO_RETRY_INCREMENT} otherwise. While most requests succeed the
+ * bucket stays full and retries are unaffected, but when most requests fail
+ * the bucket drains, and the retry volume falls to what the successes pay for
+ * instead of multiplying the load on a degraded service.
+ *
+ * @see ClientConfiguration#setUseRetryTokenBucket(boolean)
+ */
+@ThreadSafe
+public class RetryTokenBucket {
+    /** The number of tokens drawn by a retry. */
+    public static final int RETRY_COST = 5;
+
+    /** The number of tokens put back by a request that succeeded first time. */
+    public static final int NO_RETRY_INCREMENT = 1;
+
+    /** Total number of retries denied by all the token buckets. */
+    private static final AtomicLong totalDeniedRetryCount = new AtomicLong();
+
+    private final int capacity;
+    private final AtomicInteger availableTokens;
+    private final AtomicLong deniedRetryCount = new AtomicLong();
+
+    /**
+     * Constructs a full token bucket of the given capacity.
+     *
+     * @param capacity
+     *            the maximum number of tokens in the bucket
+     */
+    public RetryTokenBucket(int capacity) {
+        if (capacity < RETRY_COST)
+            throw new IllegalArgumentException("capacity must be at least " + RETRY_COST);
+        this.capacity = capacity;
+        this.availableTokens = new AtomicInteger(capacity);
+    }
+
+    /**
+     * Draws the tokens for a retry from the bucket.
+     *
+     * @return true if the retry may proceed; false if it is denied because the
+     *         bucket has run out of tokens.
+     */
+    public boolean tryAcquireRetry() {
+        for (;;) {
+            int available = availableTokens.get();
+            if (available < RETRY_COST) {
+                deniedRetryCount.incrementAndGet();
+                totalDeniedRetryCount.incrementAndGet();
+                return false;
+            }
+            if (availableTokens.compareAndSet(available, available - RETRY_COST))
+                return true;
+        }
+    }
+
+    /**
+     * Puts tokens back into the bucket after a successful request.
+     *
+     * @param retried
+     *            whether the request needed retries to succeed
+     */
+    public void onSuccess(boolean retried) {
+        int increment = retried ? RETRY_COST : NO_RETRY_INCREMENT;
+        for (;;) {
+            int available = availableTokens.get();
+            if (available >= capacity)
+                return;
+            int refilled = Math.min(capacity, available + increment);
+            if (availableTokens.compareAndSet(available, refilled))
+                return;
+        }
+    }
+
+    /** Returns the maximum number of tokens in the bucket. */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Returns the number of tokens currently left in the bucket. */
+    public int getAvailableTokens() {
+        return availableTokens.get();
+    }
+
+    /** Returns the number of retries denied by this bucket. */
+    public long getDeniedRetryCount() {
+        return deniedRetryCount.get();
+    }
+
+    /** Returns the number of retries denied by all the token buckets. */
+    public static long getTotalDeniedRetryCount() {
+        return totalDeniedRetryCount.get();
+    }
+}
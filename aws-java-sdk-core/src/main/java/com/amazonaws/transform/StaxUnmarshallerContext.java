@@ -38,16 +38,18 @@ import javax.xml.stream.events.XMLEvent;
 public class StaxUnmarshallerContext {
 
     private XMLEvent currentEvent;
-    private final XMLEventReader eventReader;
+    private XMLEventReader eventReader;
 
     public final Stack<String> stack = new Stack<String>();
+    /** The path of each element in the stack, so it needn't be rebuilt when an element ends. */
+    private final Stack<String> pathStack = new Stack<String>();
     private String stackString = "";
 
     private Map<String, String> metadata = new HashMap<String, String>();
     private List<MetadataExpression> metadataExpressions = new ArrayList<MetadataExpression>();
 
     private Iterator<?> attributeIterator;
-    private final Map<String, String> headers;
+    private Map<String, String> headers;
 
     /**
      * Constructs a new unmarshaller context using the specified source of XML events.
@@ -74,6 +76,30 @@ public class StaxUnmarshallerContext {
         this.headers = headers;
     }
 
+    /**
+     * Resets this unmarshaller context so that it can be reused to parse
+     * another document, from the specified source of XML events. All the
+     * parsing state, metadata and metadata expressions are discarded; the map
+     * previously returned by {@link #getMetadata()} is left untouched.
+     *
+     * @param eventReader
+     *            The source of XML events for this unmarshalling context.
+     * @param headers
+     *            The set of response headers associated with this unmarshaller
+     *            context.
+     */
+    public void reset(XMLEventReader eventReader, Map<String, String> headers) {
+        this.eventReader = eventReader;
+        this.headers = headers;
+        currentEvent = null;
+        attributeIterator = null;
+        stack.clear();
+        pathStack.clear();
+        stackString = "";
+        metadata = new HashMap<String, String>();
+        metadataExpressions.clear();
+    }
+
     /**
      * Returns the value of the header with the specified name from the
      * response, or null if not present.
@@ -167,8 +193,14 @@ public class StaxUnmarshallerContext {
         }
 
 
-        return (startingStackDepth == getCurrentDepth()
-                && stackString.endsWith("/" + expression));
+        if (startingStackDepth != getCurrentDepth()) return false;
+
+        // Same as stackString.endsWith("/" + expression), without building
+        // a new string for each of the many expressions tested per event
+        int separator = stackString.length() - expression.length() - 1;
+        return separator >= 0
+                && stackString.charAt(separator) == '/'
+                && stackString.endsWith(expression);
     }
 
     /**
@@ -272,21 +304,22 @@ public class StaxUnmarshallerContext {
 
         if (event.isEndElement()) {
             stack.pop();
-            stackString = "";
-            for (String s : stack) {
-                stackString += "/" + s;
-            }
+            pathStack.pop();
+            stackString = currentPath();
         } else if (event.isStartElement()) {
-            stack.push(event.asStartElement().getName().getLocalPart());
-            stackString += "/" + event.asStartElement().getName().getLocalPart();
+            String localPart = event.asStartElement().getName().getLocalPart();
+            pathStack.push(currentPath() + "/" + localPart);
+            stack.push(localPart);
+            stackString += "/" + localPart;
         } else if (event.isAttribute()) {
             Attribute attribute = (Attribute)event;
-            stackString = "";
-            for (String s : stack) {
-                stackString += "/" + s;
-            }
-            stackString += "/@" + attribute.getName().getLocalPart();
+            stackString = currentPath() + "/@" + attribute.getName().getLocalPart();
         }
     }
 
+    /** Returns the path of the current element, without any attribute. */
+    private String currentPath() {
+        return pathStack.isEmpty() ? "" : pathStack.peek();
+    }
+
 }
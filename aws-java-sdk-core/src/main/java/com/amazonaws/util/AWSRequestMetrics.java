@@ -101,9 +101,43 @@ public class AWSRequestMetrics {
         HttpClientSendRequestTime,
         /**
          * Time taken to receive a response from AWS by the http client library,
-         * excluding any retry. 
+         * excluding any retry. This is the time from the request being sent
+         * to the head of the response being received, ie the time to first
+         * byte, including the processing time of the service.
          */
         HttpClientReceiveResponseTime,
+        /**
+         * Time taken to lease a connection from the connection pool of the
+         * http client library, including any wait for a connection to be
+         * released by another request.
+         */
+        HttpClientPoolLeaseTime,
+        /**
+         * Time taken to resolve the host name of AWS when opening a new
+         * connection.
+         */
+        HttpClientDnsResolutionTime,
+        /**
+         * Time taken to establish the TCP connection to AWS when opening a new
+         * secure connection.
+         */
+        HttpClientConnectTime,
+        /**
+         * Time taken by the TLS handshake when opening a new secure
+         * connection.
+         */
+        HttpClientTlsHandshakeTime,
+        /**
+         * Number of pooled connections found to have been closed by AWS when
+         * leased for a request, and replaced by new connections.
+         */
+        HttpClientStaleConnectionCount,
+        /**
+         * Number of retries of AWS SDK sending a request to AWS after no
+         * response was received, which typically happens when a pooled
+         * connection is closed by AWS as the request is sent on it.
+         */
+        HttpClientStaleConnectionRetryCount,
 
         /**
          * The number of idle persistent connections.
@@ -130,6 +164,13 @@ public class AWSRequestMetrics {
          * /apidocs/org/apache/http/pool/PoolStats.html
          */
         HttpClientPoolPendingCount,
+        /**
+         * The number of idle or expired persistent connections closed by the
+         * {@link com.amazonaws.http.IdleConnectionReaper}, across the clients
+         * using it, since the previous request which captured it; only
+         * captured when some were closed.
+         */
+        HttpClientPoolReapedCount,
         RetryPauseTime,
 //      S3DownloadThroughput, // migrated to S3RequestMetric in the S3 clint library
 //      S3UploadThroughput,   // migrated to S3RequestMetric in the S3 clint library
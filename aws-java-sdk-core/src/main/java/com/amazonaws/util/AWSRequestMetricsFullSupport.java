@@ -16,6 +16,8 @@
 package com.amazonaws.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,14 +39,32 @@ import com.amazonaws.metrics.RequestMetricCollector;
  * This class is instantiated instead of {@link AWSRequestMetrics} when request
  * metric collection is required during a particular service request/response
  * cycle.
+ * <p>
+ * The properties, events and counters of the predefined {@link Field}s are
+ * recorded in arrays indexed by the ordinal of the field, with the timings as
+ * primitive nano times, so that a request, including all its retries, is
+ * measured with a fixed handful of allocations. They are exposed under the
+ * name of the field through the same methods as any other metric, the lists
+ * and {@link TimingInfo}s being created as they are read.
  */
 @NotThreadSafe
 public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
+    private static final Field[] FIELDS = Field.values();
+    /* Marks an event of a predefined field that isn't started. */
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
     /* Stores some key value pairs. */
     private final Map<String, List<Object>> properties = new HashMap<String, List<Object>>();
-    
+    /* Number of values of each predefined field property, by ordinal. */
+    private final int[] fieldPropertyCounts = new int[FIELDS.length];
+    /* The only value of each predefined field property, or the list of its values. */
+    private final Object[] fieldProperties = new Object[FIELDS.length];
+
     /* A map to store events that are being profiled. */
     private final Map<String, TimingInfo> eventsBeingProfiled = new HashMap<String, TimingInfo>();
+    /* Start nano time of each predefined field event, by ordinal. */
+    private final long[] fieldEventStartNanos = new long[FIELDS.length];
+    private final TimingInfoFullSupport fullTimingInfo;
     /* Latency Logger */
     private static final Log latencyLogger = LogFactory.getLog("com.amazonaws.latency");
     private static final Object KEY_VALUE_SEPARATOR = "=";
@@ -58,6 +78,8 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
      */
     public AWSRequestMetricsFullSupport() {
         super(TimingInfo.startTimingFullSupport());
+        this.fullTimingInfo = (TimingInfoFullSupport) timingInfo;
+        Arrays.fill(fieldEventStartNanos, NOT_STARTED);
     }
     
     /**
@@ -81,6 +103,11 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
      */
     @Override
     public void startEvent(String eventName) {
+        Field field = TimingInfoFullSupport.fieldNamed(eventName);
+        if (field != null) {
+            startEvent(field);
+            return;
+        }
         /* This will overwrite past events */
         eventsBeingProfiled.put // ignoring the wall clock time
             (eventName, TimingInfo.startTimingFullSupport(System.nanoTime()));
@@ -88,7 +115,12 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void startEvent(MetricType f) {
-        startEvent(f.name());
+        if (f instanceof Field) {
+            /* This will overwrite past events */
+            fieldEventStartNanos[((Field) f).ordinal()] = System.nanoTime();
+        } else {
+            startEvent(f.name());
+        }
     }
 
     /**
@@ -101,6 +133,11 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
      */
     @Override
     public void endEvent(String eventName) {
+        Field field = TimingInfoFullSupport.fieldNamed(eventName);
+        if (field != null) {
+            endEvent(field);
+            return;
+        }
         TimingInfo event = eventsBeingProfiled.get(eventName);
         /* Somebody tried to end an event that was not started. */
         if (event == null) {
@@ -118,7 +155,19 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void endEvent(MetricType f) {
-        endEvent(f.name());
+        if (!(f instanceof Field)) {
+            endEvent(f.name());
+            return;
+        }
+        Field field = (Field) f;
+        long startTimeNano = fieldEventStartNanos[field.ordinal()];
+        /* Somebody tried to end an event that was not started. */
+        if (startTimeNano == NOT_STARTED) {
+            LogFactory.getLog(getClass()).warn
+                ("Trying to end an event which was never started: " + field);
+            return;
+        }
+        fullTimingInfo.addSubMeasurement(field, startTimeNano, System.nanoTime());
     }
 
     /**
@@ -140,7 +189,11 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void incrementCounter(MetricType f) {
-        incrementCounter(f.name());
+        if (f instanceof Field) {
+            fullTimingInfo.incrementCounter((Field) f);
+        } else {
+            incrementCounter(f.name());
+        }
     }
     
     @Override
@@ -150,7 +203,11 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void setCounter(MetricType f, long count) {
-        setCounter(f.name(), count);
+        if (f instanceof Field) {
+            fullTimingInfo.setCounter((Field) f, count);
+        } else {
+            setCounter(f.name(), count);
+        }
     }
     
     /**
@@ -169,6 +226,11 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
      */
     @Override
     public void addProperty(String propertyName, Object value) {
+        Field field = TimingInfoFullSupport.fieldNamed(propertyName);
+        if (field != null) {
+            addProperty(field, value);
+            return;
+        }
         List<Object> propertyList = properties.get(propertyName);
         if (propertyList == null) {
             propertyList = new ArrayList<Object>();
@@ -180,7 +242,27 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void addProperty(MetricType f, Object value) {
-        addProperty(f.name(), value);
+        if (!(f instanceof Field)) {
+            addProperty(f.name(), value);
+            return;
+        }
+        int i = ((Field) f).ordinal();
+        int count = fieldPropertyCounts[i]++;
+        if (count == 0) {
+            fieldProperties[i] = value;
+        } else {
+            List<Object> propertyList;
+            if (count == 1) {
+                propertyList = new ArrayList<Object>();
+                propertyList.add(fieldProperties[i]);
+                fieldProperties[i] = propertyList;
+            } else {
+                @SuppressWarnings("unchecked")
+                List<Object> values = (List<Object>) fieldProperties[i];
+                propertyList = values;
+            }
+            propertyList.add(value);
+        }
     }
 
     @Override
@@ -191,6 +273,11 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
             for (Entry<String, List<Object>> entry : properties.entrySet()) {
                 keyValueFormat(entry.getKey(), entry.getValue(), builder);
             }
+            for (Field field : FIELDS) {
+                if (fieldPropertyCounts[field.ordinal()] > 0) {
+                    keyValueFormat(field, getProperty(field), builder);
+                }
+            }
 
             for (Entry<String, Number> entry : timingInfo.getAllCounters()
                     .entrySet()) {
@@ -210,12 +297,29 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public List<Object> getProperty(String propertyName){
+        Field field = TimingInfoFullSupport.fieldNamed(propertyName);
+        if (field != null) {
+            return getProperty(field);
+        }
     	return properties.get(propertyName);
     }
 
     @Override
     public List<Object> getProperty(MetricType f){
-        return getProperty(f.name());
+        if (!(f instanceof Field)) {
+            return getProperty(f.name());
+        }
+        int i = ((Field) f).ordinal();
+        switch (fieldPropertyCounts[i]) {
+        case 0:
+            return null;
+        case 1:
+            return Collections.singletonList(fieldProperties[i]);
+        default:
+            @SuppressWarnings("unchecked")
+            List<Object> values = (List<Object>) fieldProperties[i];
+            return values;
+        }
     }
 
     /** Always returns true. */
@@ -27,6 +27,16 @@ public enum AWSServiceMetrics implements ServiceMetricType {
      * Time taken to get a connection by the http client library.
      */
     HttpClientGetConnectionTime("HttpClient"),
+    /**
+     * Time taken to refresh session credentials, such as from the AWS
+     * Security Token Service.
+     */
+    CredentialsRefreshTime("Credentials"),
+    /**
+     * Time taken by the failed attempts to refresh session credentials; the
+     * number of samples is the number of failures.
+     */
+    CredentialsRefreshFailureTime("Credentials"),
     ;
 
     private final String serviceName;
@@ -15,6 +15,7 @@
 package com.amazonaws.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +23,8 @@ import java.util.Map;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.annotation.NotThreadSafe;
 
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
 /**
  * In contrast to {@link TimingInfo}, which is intended to be a minimal support
  * of the timing info, this class is the full support of timing info including
@@ -30,11 +33,36 @@ import org.apache.http.annotation.NotThreadSafe;
  * This class is instantiated instead of {@link TimingInfo} when
  * request metric collection is required during a particular service
  * request/response cycle.
+ * <p>
+ * The counters and sub-measurements of the predefined {@link Field}s are kept
+ * in primitive arrays indexed by the ordinal of the field, so that recording
+ * them doesn't allocate any object; the {@link TimingInfo} views of the
+ * sub-measurements, and the maps of all the counters and sub-measurements, are
+ * only created when they are read. Other names are kept in maps.
  */
 @NotThreadSafe
 class TimingInfoFullSupport extends TimingInfo {
-    private final Map<String, List<TimingInfo>> subMeasurementsByName = new HashMap<String, List<TimingInfo>>();
-    private final Map<String, Number> countersByName = new HashMap<String, Number>();
+    private static final Field[] FIELDS = Field.values();
+    private static final Map<String, Field> FIELDS_BY_NAME = new HashMap<String, Field>();
+    static {
+        for (Field field : FIELDS) {
+            FIELDS_BY_NAME.put(field.name(), field);
+        }
+    }
+    /** Marks a counter that isn't set, or a start time since epoch that isn't known. */
+    private static final long NONE = Long.MIN_VALUE;
+    private static final int INITIAL_SUB_MEASUREMENT_CAPACITY = 16;
+
+    /* Counters of the predefined fields, by ordinal; NONE if not set. */
+    private long[] fieldCounters;
+    /* Ordinal of the field of each sub-measurement, in the order added. */
+    private int[] subMeasurementFields;
+    /* Start time since epoch (or NONE), start and end nano time of each sub-measurement. */
+    private long[] subMeasurementTimes;
+    private int subMeasurementCount;
+
+    private Map<String, List<TimingInfo>> subMeasurementsByName;
+    private Map<String, Number> countersByName;
 
     /**
      * A private ctor to facilitate the deprecation of using millisecond and
@@ -53,15 +81,95 @@ class TimingInfoFullSupport extends TimingInfo {
         super(startEpochTimeMilli, startTimeNano, endTimeNano);
     }
 
+    /**
+     * Returns the predefined field of the given name; or null if there is
+     * none.
+     */
+    static Field fieldNamed(String name) {
+        return FIELDS_BY_NAME.get(name);
+    }
+
+    /**
+     * Adds a sub-measurement of the given predefined field, with no start time
+     * since epoch.
+     */
+    void addSubMeasurement(Field field, long startTimeNano, long endTimeNano) {
+        addSubMeasurement(field, NONE, startTimeNano, endTimeNano);
+    }
+
+    /**
+     * Adds a sub-measurement of the given predefined field, without allocating
+     * any object unless the sub-measurements need more room.
+     *
+     * @param startEpochTimeMilli start time since epoch in millisecond; or
+     *            Long.MIN_VALUE if not known
+     */
+    void addSubMeasurement(Field field, long startEpochTimeMilli,
+            long startTimeNano, long endTimeNano) {
+        if (subMeasurementFields == null) {
+            subMeasurementFields = new int[INITIAL_SUB_MEASUREMENT_CAPACITY];
+            subMeasurementTimes = new long[3 * INITIAL_SUB_MEASUREMENT_CAPACITY];
+        } else if (subMeasurementCount == subMeasurementFields.length) {
+            subMeasurementFields = Arrays.copyOf(subMeasurementFields, 2 * subMeasurementCount);
+            subMeasurementTimes = Arrays.copyOf(subMeasurementTimes, 6 * subMeasurementCount);
+        }
+        subMeasurementFields[subMeasurementCount] = field.ordinal();
+        int i = 3 * subMeasurementCount;
+        subMeasurementTimes[i] = startEpochTimeMilli;
+        subMeasurementTimes[i + 1] = startTimeNano;
+        subMeasurementTimes[i + 2] = endTimeNano;
+        subMeasurementCount++;
+    }
+
+    /** Returns a view of the sub-measurement at the given position. */
+    private TimingInfo subMeasurementAt(int position) {
+        int i = 3 * position;
+        long startEpochTimeMilli = subMeasurementTimes[i];
+        return new TimingInfoUnmodifiable(
+                startEpochTimeMilli == NONE ? null : Long.valueOf(startEpochTimeMilli),
+                subMeasurementTimes[i + 1],
+                Long.valueOf(subMeasurementTimes[i + 2]));
+    }
+
+    /**
+     * Returns the views of the sub-measurements of the given predefined field;
+     * or null if there is none.
+     */
+    private List<TimingInfo> subMeasurementsOf(Field field) {
+        List<TimingInfo> timings = null;
+        for (int position = 0; position < subMeasurementCount; position++) {
+            if (subMeasurementFields[position] == field.ordinal()) {
+                if (timings == null) {
+                    timings = new ArrayList<TimingInfo>();
+                }
+                timings.add(subMeasurementAt(position));
+            }
+        }
+        return timings;
+    }
+
     @Override
     public void addSubMeasurement(String subMeasurementName, TimingInfo ti) {
-        List<TimingInfo> timings = subMeasurementsByName.get(subMeasurementName);
-        if (timings == null) {
-            timings = new ArrayList<TimingInfo>();
-            subMeasurementsByName.put(subMeasurementName, timings);
+        Field field = fieldNamed(subMeasurementName);
+        List<TimingInfo> timings = null;
+        if (field == null) {
+            if (subMeasurementsByName == null) {
+                subMeasurementsByName = new HashMap<String, List<TimingInfo>>();
+            }
+            timings = subMeasurementsByName.get(subMeasurementName);
+            if (timings == null) {
+                timings = new ArrayList<TimingInfo>();
+                subMeasurementsByName.put(subMeasurementName, timings);
+            }
         }
         if (ti.isEndTimeKnown()) {
-            timings.add(ti);
+            if (field == null) {
+                timings.add(ti);
+            } else {
+                addSubMeasurement(field,
+                    ti.isStartEpochTimeMilliKnown() ? ti.getStartEpochTimeMilli() : NONE,
+                    ti.getStartTimeNano(), ti.getEndTimeNano());
+            }
         } else {
             LogFactory.getLog(getClass()).debug(
                 "Skip submeasurement timing info with no end time for "
@@ -76,8 +184,20 @@ class TimingInfoFullSupport extends TimingInfo {
 
     @Override
     public TimingInfo getSubMeasurement(String subMesurementName, int index) {
+        Field field = fieldNamed(subMesurementName);
+        if (field != null) {
+            if (index < 0) {
+                return null;
+            }
+            for (int position = 0; position < subMeasurementCount; position++) {
+                if (subMeasurementFields[position] == field.ordinal() && index-- == 0) {
+                    return subMeasurementAt(position);
+                }
+            }
+            return null;
+        }
 
-        List<TimingInfo> timings = subMeasurementsByName.get(subMesurementName);
+        List<TimingInfo> timings = getAllSubMeasurements(subMesurementName);
         if (index < 0 || timings == null || timings.size() == 0
                 || index >= timings.size()) {
             return null;
@@ -88,12 +208,17 @@ class TimingInfoFullSupport extends TimingInfo {
 
     @Override
     public TimingInfo getLastSubMeasurement(String subMeasurementName) {
-
-        if (subMeasurementsByName == null || subMeasurementsByName.size() == 0) {
+        Field field = fieldNamed(subMeasurementName);
+        if (field != null) {
+            for (int position = subMeasurementCount - 1; position >= 0; position--) {
+                if (subMeasurementFields[position] == field.ordinal()) {
+                    return subMeasurementAt(position);
+                }
+            }
             return null;
         }
 
-        List<TimingInfo> timings = subMeasurementsByName.get(subMeasurementName);
+        List<TimingInfo> timings = getAllSubMeasurements(subMeasurementName);
         if (timings == null || timings.size() == 0) {
             return null;
         }
@@ -103,31 +228,98 @@ class TimingInfoFullSupport extends TimingInfo {
 
     @Override
     public List<TimingInfo> getAllSubMeasurements(String subMeasurementName) {
-        return subMeasurementsByName.get(subMeasurementName);
+        Field field = fieldNamed(subMeasurementName);
+        if (field != null) {
+            return subMeasurementsOf(field);
+        }
+        return subMeasurementsByName == null ? null : subMeasurementsByName.get(subMeasurementName);
     }
 
     @Override
     public Map<String, List<TimingInfo>> getSubMeasurementsByName() {
-        return subMeasurementsByName;
+        Map<String, List<TimingInfo>> all = subMeasurementsByName == null
+            ? new HashMap<String, List<TimingInfo>>()
+            : new HashMap<String, List<TimingInfo>>(subMeasurementsByName);
+        for (int position = 0; position < subMeasurementCount; position++) {
+            String name = FIELDS[subMeasurementFields[position]].name();
+            List<TimingInfo> timings = all.get(name);
+            if (timings == null) {
+                timings = new ArrayList<TimingInfo>();
+                all.put(name, timings);
+            }
+            timings.add(subMeasurementAt(position));
+        }
+        return all;
+    }
+
+    /**
+     * Returns the counter of the given predefined field; or null if it is not
+     * set.
+     */
+    Long getCounter(Field field) {
+        if (fieldCounters == null || fieldCounters[field.ordinal()] == NONE) {
+            return null;
+        }
+        return Long.valueOf(fieldCounters[field.ordinal()]);
+    }
+
+    void setCounter(Field field, long count) {
+        if (fieldCounters == null) {
+            fieldCounters = new long[FIELDS.length];
+            Arrays.fill(fieldCounters, NONE);
+        }
+        fieldCounters[field.ordinal()] = count;
+    }
+
+    void incrementCounter(Field field) {
+        long count = fieldCounters == null ? NONE : fieldCounters[field.ordinal()];
+        setCounter(field, count == NONE ? 1 : count + 1);
     }
 
     @Override
     public Number getCounter(String key) {
-        return countersByName.get(key);
+        Field field = fieldNamed(key);
+        if (field != null) {
+            return getCounter(field);
+        }
+        return countersByName == null ? null : countersByName.get(key);
     }
 
     @Override
     public Map<String, Number> getAllCounters() {
-        return countersByName;
+        Map<String, Number> all = countersByName == null
+            ? new HashMap<String, Number>()
+            : new HashMap<String, Number>(countersByName);
+        if (fieldCounters != null) {
+            for (Field field : FIELDS) {
+                if (fieldCounters[field.ordinal()] != NONE) {
+                    all.put(field.name(), Long.valueOf(fieldCounters[field.ordinal()]));
+                }
+            }
+        }
+        return all;
     }
 
     @Override
     public void setCounter(String key, long count) {
+        Field field = fieldNamed(key);
+        if (field != null) {
+            setCounter(field, count);
+            return;
+        }
+        if (countersByName == null) {
+            countersByName = new HashMap<String, Number>();
+        }
         countersByName.put(key, count);
     }
 
     @Override
     public void incrementCounter(String key) {
+        Field field = fieldNamed(key);
+        if (field != null) {
+            incrementCounter(field);
+            return;
+        }
 
         int count = 0;
         Number counter = getCounter(key);
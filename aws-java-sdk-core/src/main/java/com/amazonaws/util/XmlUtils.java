@@ -17,6 +17,8 @@ package com.amazonaws.util;
 import java.io.IOException;
 import java.io.InputStream;
 
+import javax.xml.stream.XMLInputFactory;
+
 import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -25,6 +27,19 @@ import org.xml.sax.helpers.XMLReaderFactory;
 
 public class XmlUtils {
 
+    /**
+     * XMLInputFactory implementations are not guaranteed to be thread safe,
+     * so each thread gets its own factory rather than sharing one behind a
+     * lock.
+     */
+    private static final ThreadLocal<XMLInputFactory> xmlInputFactory =
+        new ThreadLocal<XMLInputFactory>() {
+            @Override
+            protected XMLInputFactory initialValue() {
+                return XMLInputFactory.newInstance();
+            }
+        };
+
     public static XMLReader parse(InputStream in, ContentHandler handler)
             throws SAXException, IOException {
 
@@ -35,4 +50,12 @@ public class XmlUtils {
         return reader;
     }
 
+    /**
+     * Returns the XMLInputFactory of the current thread, which can be used
+     * without synchronization but must not be handed to other threads.
+     */
+    public static XMLInputFactory getXmlInputFactory() {
+        return xmlInputFactory.get();
+    }
+
 }
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.NotThreadSafe;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.SDKGlobalConfiguration;
+import com.amazonaws.util.DateUtils;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Streaming replacement for {@link JSONWriter} used by the request
+ * marshallers of JSON protocol services. The JSON document is encoded by a
+ * Jackson {@link JsonGenerator} straight to UTF-8 bytes, instead of going
+ * through a <code>StringWriter</code>, a <code>String</code> and then a byte
+ * array.
+ * <p>
+ * The bytes are accumulated in a scratch buffer that is reused by the next
+ * generator created on the same thread; once the document is complete, it is
+ * copied once into an array of the exact size, which is owned by the request
+ * content. The scratch buffer cannot be handed to the request itself, since the
+ * content outlives the marshaller call (it is re-read on every retry, and may
+ * be sent from another thread).
+ * <p>
+ * The writing methods mirror those of {@link JSONWriter}, so that marshallers
+ * can switch from one to the other without further changes:
+ *
+ * <pre>
+ * SdkJsonGenerator jsonWriter = new SdkJsonGenerator();
+ * jsonWriter.object();
+ * jsonWriter.key(&quot;TableName&quot;).value(tableName);
+ * jsonWriter.endObject();
+ * byte[] content = jsonWriter.getBytes();
+ * </pre>
+ */
+@NotThreadSafe
+public class SdkJsonGenerator {
+    private static final int DEFAULT_MAX_POOLED_BUFFER_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Scratch buffers larger than this are not kept for reuse, so that a
+     * single unusually large request does not pin its buffer to the thread.
+     * The default of 8 MB covers the largest documented requests, such as a
+     * Kinesis PutRecords request of 5 MB of data once base64 encoded; it can
+     * be changed with the
+     * {@link SDKGlobalConfiguration#JSON_MAX_POOLED_BUFFER_SIZE_SYSTEM_PROPERTY}
+     * system property.
+     */
+    static final int MAX_POOLED_BUFFER_SIZE = maxPooledBufferSize();
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    /** Thread safe and meant to be shared; also recycles the encoding buffers of its generators per thread. */
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private static final ThreadLocal<SoftReference<byte[]>> scratchBuffers =
+        new ThreadLocal<SoftReference<byte[]>>();
+
+    private final ScratchOutputStream out = new ScratchOutputStream();
+    private final JsonGenerator generator;
+    private byte[] bytes;
+
+    public SdkJsonGenerator() {
+        try {
+            generator = jsonFactory.createGenerator(out);
+        } catch (IOException e) {
+            throw new AmazonClientException("Unable to create JSON generator", e);
+        }
+    }
+
+    /** Begins a JSON object. */
+    public SdkJsonGenerator object() {
+        try {
+            generator.writeStartObject();
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    /** Ends the current JSON object. */
+    public SdkJsonGenerator endObject() {
+        try {
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    /** Begins a JSON array. */
+    public SdkJsonGenerator array() {
+        try {
+            generator.writeStartArray();
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    /** Ends the current JSON array. */
+    public SdkJsonGenerator endArray() {
+        try {
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    /** Writes the name of the next field of the current JSON object. */
+    public SdkJsonGenerator key(String key) {
+        try {
+            generator.writeFieldName(key);
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    /** Writes a string value. */
+    public SdkJsonGenerator value(String s) {
+        try {
+            generator.writeString(s);
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    /** Writes a boolean value. */
+    public SdkJsonGenerator value(boolean b) {
+        try {
+            generator.writeBoolean(b);
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    /** Writes a long value. */
+    public SdkJsonGenerator value(long l) {
+        try {
+            generator.writeNumber(l);
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    /** Writes a double value. */
+    public SdkJsonGenerator value(double d) {
+        try {
+            generator.writeNumber(d);
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a date value, as epoch seconds.
+     *
+     * @see JSONWriter#value(Date)
+     */
+    public SdkJsonGenerator value(Date date) {
+        try {
+            generator.writeNumber(DateUtils.formatServiceSpecificDate(date));
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a binary value, as a base64 encoded string. The position of the
+     * given buffer is left unchanged.
+     */
+    public SdkJsonGenerator value(ByteBuffer b) {
+        try {
+            if (b.hasArray()) {
+                generator.writeBinary(b.array(),
+                        b.arrayOffset() + b.position(), b.remaining());
+            } else {
+                ByteBuffer duplicate = b.duplicate();
+                byte[] binary = new byte[duplicate.remaining()];
+                duplicate.get(binary);
+                generator.writeBinary(binary);
+            }
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a boxed boolean or number value, or a string value for any other
+     * object; null is written as the JSON null.
+     */
+    public SdkJsonGenerator value(Object o) {
+        try {
+            if (o == null) {
+                generator.writeNull();
+            } else if (o instanceof Boolean) {
+                generator.writeBoolean((Boolean) o);
+            } else if (o instanceof Integer || o instanceof Long
+                    || o instanceof Short || o instanceof Byte) {
+                generator.writeNumber(((Number) o).longValue());
+            } else if (o instanceof Double || o instanceof Float) {
+                generator.writeNumber(((Number) o).doubleValue());
+            } else if (o instanceof Number) {
+                generator.writeNumber(o.toString());
+            } else if (o instanceof Date) {
+                return value((Date) o);
+            } else if (o instanceof ByteBuffer) {
+                return value((ByteBuffer) o);
+            } else {
+                generator.writeString(o.toString());
+            }
+        } catch (IOException e) {
+            throw failure(e);
+        }
+        return this;
+    }
+
+    /**
+     * Completes the JSON document and returns its UTF-8 encoded bytes. The
+     * returned array is owned by the caller; after this call, the scratch
+     * buffer of this generator is made available for reuse and no more
+     * content can be written.
+     */
+    public byte[] getBytes() {
+        if (bytes == null) {
+            try {
+                generator.close();
+            } catch (IOException e) {
+                throw failure(e);
+            }
+            bytes = out.toByteArray();
+            out.release();
+        }
+        return bytes;
+    }
+
+    /**
+     * Completes the JSON document and returns a repeatable input stream over
+     * its bytes, suitable as the content of a request.
+     */
+    public InputStream getContent() {
+        return new ByteArrayInputStream(getBytes());
+    }
+
+    private static AmazonClientException failure(IOException e) {
+        return new AmazonClientException("Unable to write JSON: " + e.getMessage(), e);
+    }
+
+    private static int maxPooledBufferSize() {
+        String size = System.getProperty(
+                SDKGlobalConfiguration.JSON_MAX_POOLED_BUFFER_SIZE_SYSTEM_PROPERTY);
+        if (size != null) {
+            try {
+                return Integer.parseInt(size);
+            } catch (NumberFormatException e) {
+                LogFactory.getLog(SdkJsonGenerator.class).warn("Unable to parse the "
+                        + SDKGlobalConfiguration.JSON_MAX_POOLED_BUFFER_SIZE_SYSTEM_PROPERTY
+                        + " system property: " + size, e);
+            }
+        }
+        return DEFAULT_MAX_POOLED_BUFFER_SIZE;
+    }
+
+    /**
+     * Output stream over the scratch buffer of the current thread; a fresh
+     * buffer is allocated if the one of the thread is already in use or has
+     * been reclaimed.
+     */
+    private static final class ScratchOutputStream extends OutputStream {
+        private byte[] buf;
+        private int count;
+
+        ScratchOutputStream() {
+            SoftReference<byte[]> ref = scratchBuffers.get();
+            byte[] pooled = ref == null ? null : ref.get();
+            if (pooled != null) {
+                // Taken out of the pool until released, in case another
+                // generator is created on this thread meanwhile.
+                scratchBuffers.remove();
+                buf = pooled;
+            } else {
+                buf = new byte[INITIAL_BUFFER_SIZE];
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        private void ensureCapacity(int minCapacity) {
+            if (minCapacity > buf.length) {
+                int newCapacity = Math.max(buf.length << 1, minCapacity);
+                byte[] grown = new byte[newCapacity];
+                System.arraycopy(buf, 0, grown, 0, count);
+                buf = grown;
+            }
+        }
+
+        byte[] toByteArray() {
+            byte[] copy = new byte[count];
+            System.arraycopy(buf, 0, copy, 0, count);
+            return copy;
+        }
+
+        void release() {
+            if (buf.length <= MAX_POOLED_BUFFER_SIZE) {
+                scratchBuffers.set(new SoftReference<byte[]>(buf));
+            }
+            buf = null;
+            count = 0;
+        }
+    }
+}
@@ -52,6 +52,7 @@ public class RequestClientOptionsTest {
         RequestClientOptions from = new RequestClientOptions();
         from.appendUserAgent("useragent");
         from.setReadLimit(1234);
+        from.setChunkSize(1024 * 1024);
         assertNotNull(from.getClientMarker(Marker.USER_AGENT));
         assertTrue(1234 == from.getReadLimit());
 
@@ -65,5 +66,11 @@ public class RequestClientOptionsTest {
         assertEquals(from.getClientMarker(Marker.USER_AGENT),
                 to.getClientMarker(Marker.USER_AGENT));
         assertTrue(1234 == to.getReadLimit());
+        assertEquals(1024 * 1024, to.getChunkSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void chunkSizeTooSmall() {
+        new RequestClientOptions().setChunkSize(RequestClientOptions.MINIMUM_CHUNK_SIZE - 1);
     }
 }
@@ -31,6 +31,7 @@ import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.SimpleTimeZone;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -139,6 +140,70 @@ public class AWS4SignerTest {
         assertNull(request.getHeaders().get("Authorization"));
     }
 
+    @Test
+    public void testCanonicalizedHeaderStringCompactsWhiteSpace() {
+        Request<?> request = new DefaultRequest<Void>("Foo");
+        request.addHeader("Host", "demo.us-east-1.amazonaws.com");
+        request.addHeader("x-amz-archive-description", " test \t\r\n test  ");
+        request.addHeader("X-Amz-Empty", null);
+
+        assertEquals("host:demo.us-east-1.amazonaws.com\n"
+                + "x-amz-archive-description: test test \n"
+                + "x-amz-empty:\n",
+                signer.getCanonicalizedHeaderString(request));
+    }
+
+    @Test
+    public void testSigningFromSeveralThreads() throws Exception {
+        final String expectedAuthorizationHeader =
+            "AWS4-HMAC-SHA256 Credential=access/19810216/us-east-1/demo/aws4_request, SignedHeaders=host;x-amz-archive-description;x-amz-date, Signature=77fe7c02927966018667f21d1dc3dfad9057e58401cbb9ed64f1b7868288e35a";
+        final AWSCredentials credentials = new BasicAWSCredentials("access", "secret");
+        Calendar c = new GregorianCalendar();
+        c.set(1981, 1, 16, 6, 30, 0);
+        c.setTimeZone(TimeZone.getTimeZone("UTC"));
+        signer.setOverrideDate(c.getTime());
+
+        final AtomicInteger mismatches = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100; j++) {
+                        Request<?> request = generateBasicRequest();
+                        signer.sign(request, credentials);
+                        if (!expectedAuthorizationHeader.equals(
+                                request.getHeaders().get("Authorization")))
+                            mismatches.incrementAndGet();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, mismatches.get());
+    }
+
+    @Test
+    public void testUnsignedPayloadOverHttps() throws Exception {
+        AWSCredentials credentials = new BasicAWSCredentials("access", "secret");
+        AWS4UnsignedPayloadSigner unsignedPayloadSigner = new AWS4UnsignedPayloadSigner();
+
+        Request<?> request = generateBasicRequest();
+        request.setEndpoint(URI.create("https://demo.us-east-1.amazonaws.com"));
+        unsignedPayloadSigner.sign(request, credentials);
+        assertEquals("UNSIGNED-PAYLOAD", request.getHeaders().get("x-amz-content-sha256"));
+        // The payload hasn't been read to be signed
+        assertEquals(20, request.getContent().available());
+
+        // The payload of requests sent over HTTP is still signed
+        request = generateBasicRequest();
+        unsignedPayloadSigner.sign(request, credentials);
+        assertNull(request.getHeaders().get("x-amz-content-sha256"));
+    }
+
     private Request<?> generateBasicRequest() {
         Request<?> request = new DefaultRequest<Void>("Foo");
         request.setContent(new ByteArrayInputStream("{\"TableName\": \"foo\"}".getBytes()));
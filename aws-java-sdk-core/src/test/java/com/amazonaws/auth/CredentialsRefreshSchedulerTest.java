@@ -0,0 +1,219 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+
+public class CredentialsRefreshSchedulerTest {
+
+    private static final long ONE_HOUR = 60 * 60 * 1000L;
+
+    private final CredentialsRefreshScheduler scheduler = CredentialsRefreshScheduler.getInstance();
+
+    /** Fetches new credentials valid for the given time, counting fetches. */
+    private static class CountingFetcher implements CredentialsFetcher {
+        private final AtomicInteger fetchCount = new AtomicInteger();
+        private final long validityMillis;
+        private volatile boolean failing;
+
+        CountingFetcher(long validityMillis) {
+            this.validityMillis = validityMillis;
+        }
+
+        @Override
+        public ExpiringCredentials fetchCredentials() {
+            if (failing) {
+                throw new AmazonClientException("fetch failed");
+            }
+            int count = fetchCount.incrementAndGet();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ExpiringCredentials(
+                    new BasicSessionCredentials("id" + count, "secret", "token"),
+                    new Date(System.currentTimeMillis() + validityMillis));
+        }
+    }
+
+    @Test
+    public void testSourcesWithEqualKeysAreShared() {
+        CountingFetcher fetcher = new CountingFetcher(ONE_HOUR);
+        RefreshingCredentials credentials = scheduler.register(
+                "testSourcesWithEqualKeysAreShared", fetcher, 60 * 1000);
+        RefreshingCredentials sameCredentials = scheduler.register(
+                "testSourcesWithEqualKeysAreShared", new CountingFetcher(ONE_HOUR), 60 * 1000);
+        RefreshingCredentials otherCredentials = scheduler.register(
+                "testSourcesWithEqualKeysAreShared-other", fetcher, 60 * 1000);
+        assertSame(credentials, sameCredentials);
+        assertNotSame(credentials, otherCredentials);
+
+        assertSame(credentials.getCredentials(), sameCredentials.getCredentials());
+        assertEquals(1, fetcher.fetchCount.get());
+    }
+
+    @Test
+    public void testUnusedCloseableFetcherIsClosed() {
+        ClosingFetcher fetcher = new ClosingFetcher();
+        RefreshingCredentials credentials = scheduler.register(
+                "testUnusedCloseableFetcherIsClosed", fetcher, 60 * 1000);
+        ClosingFetcher unusedFetcher = new ClosingFetcher();
+        assertSame(credentials, scheduler.register(
+                "testUnusedCloseableFetcherIsClosed", unusedFetcher, 60 * 1000));
+
+        assertEquals(0, fetcher.closeCount.get());
+        assertEquals(1, unusedFetcher.closeCount.get());
+    }
+
+    /** A closeable fetcher, counting how many times it is closed. */
+    private static class ClosingFetcher extends CountingFetcher implements Closeable {
+        private final AtomicInteger closeCount = new AtomicInteger();
+
+        ClosingFetcher() {
+            super(ONE_HOUR);
+        }
+
+        @Override
+        public void close() {
+            closeCount.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testConcurrentCallersFetchOnce() throws Exception {
+        CountingFetcher fetcher = new CountingFetcher(ONE_HOUR);
+        final RefreshingCredentials credentials = scheduler.register(
+                new Object(), fetcher, 60 * 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<AWSCredentials>> futures = new ArrayList<Future<AWSCredentials>>();
+            for (int i = 0; i < 10; i++) {
+                futures.add(executor.submit(new Callable<AWSCredentials>() {
+                    @Override
+                    public AWSCredentials call() {
+                        return credentials.getCredentials();
+                    }
+                }));
+            }
+            for (Future<AWSCredentials> future : futures) {
+                assertEquals("id1", future.get().getAWSAccessKeyId());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, fetcher.fetchCount.get());
+        assertEquals(1, credentials.getRefreshCount());
+        assertTrue(credentials.getLastRefreshLatencyMillis() >= 0);
+        assertTrue(credentials.getStalenessMillis() >= 0);
+    }
+
+    @Test
+    public void testCredentialsWithinExpiryThresholdAreFetched() {
+        CountingFetcher fetcher = new CountingFetcher(30 * 1000);
+        RefreshingCredentials credentials = scheduler.register(
+                new Object(), fetcher, 60 * 1000);
+        assertEquals("id1", credentials.getCredentials().getAWSAccessKeyId());
+        assertEquals("id2", credentials.getCredentials().getAWSAccessKeyId());
+        // A smaller threshold than the one registered applies to the call
+        assertEquals("id2", credentials.getCredentials(10 * 1000).getAWSAccessKeyId());
+
+        CountingFetcher longLivedFetcher = new CountingFetcher(30 * 1000);
+        credentials = scheduler.register(new Object(), longLivedFetcher, 10 * 1000);
+        assertEquals("id1", credentials.getCredentials().getAWSAccessKeyId());
+        assertEquals("id1", credentials.getCredentials().getAWSAccessKeyId());
+        assertEquals("id2", credentials.getCredentials(60 * 1000).getAWSAccessKeyId());
+    }
+
+    @Test
+    public void testRefresh() {
+        CountingFetcher fetcher = new CountingFetcher(ONE_HOUR);
+        RefreshingCredentials credentials = scheduler.register(
+                new Object(), fetcher, 60 * 1000);
+        assertNull(credentials.getCurrentCredentials());
+        assertEquals(-1, credentials.getStalenessMillis());
+        assertEquals(-1, credentials.getLastRefreshLatencyMillis());
+        assertEquals("id1", credentials.getCredentials().getAWSAccessKeyId());
+        credentials.refresh();
+        assertEquals("id2", credentials.getCurrentCredentials()
+                .getCredentials().getAWSAccessKeyId());
+        assertEquals("id2", credentials.getCredentials().getAWSAccessKeyId());
+        assertEquals(2, credentials.getRefreshCount());
+    }
+
+    @Test
+    public void testCredentialsFetchedAfter() {
+        CountingFetcher fetcher = new CountingFetcher(ONE_HOUR);
+        RefreshingCredentials credentials = scheduler.register(
+                new Object(), fetcher, 60 * 1000);
+        long before = System.currentTimeMillis() - 1;
+        ExpiringCredentials fetched = credentials.getCredentialsFetchedAfter(before);
+        assertEquals("id1", fetched.getCredentials().getAWSAccessKeyId());
+        assertSame(fetched, credentials.getCredentialsFetchedAfter(before));
+        assertEquals("id2", credentials.getCredentialsFetchedAfter(System.currentTimeMillis())
+                .getCredentials().getAWSAccessKeyId());
+    }
+
+    @Test
+    public void testFailedFetch() {
+        CountingFetcher fetcher = new CountingFetcher(ONE_HOUR);
+        RefreshingCredentials credentials = scheduler.register(
+                new Object(), fetcher, 60 * 1000);
+        fetcher.failing = true;
+        try {
+            credentials.getCredentials();
+            fail("Expected an AmazonClientException, but wasn't thrown");
+        } catch (AmazonClientException expected) {
+        }
+        assertEquals(1, credentials.getRefreshFailureCount());
+        assertEquals(0, credentials.getRefreshCount());
+
+        fetcher.failing = false;
+        assertEquals("id1", credentials.getCredentials().getAWSAccessKeyId());
+        assertEquals(1, credentials.getRefreshCount());
+    }
+
+    @Test
+    public void testJitter() {
+        assertEquals(0, scheduler.jitter(0));
+        for (int i = 0; i < 100; i++) {
+            long jitter = scheduler.jitter(1000);
+            assertTrue(jitter >= 0 && jitter < 1000);
+        }
+    }
+}
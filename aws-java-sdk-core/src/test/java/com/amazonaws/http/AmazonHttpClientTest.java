@@ -22,6 +22,10 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.http.ProtocolVersion;
 import org.apache.http.client.HttpClient;
@@ -41,6 +45,8 @@ import com.amazonaws.AmazonWebServiceResponse;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.DefaultRequest;
 import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.retry.RetryScheduler;
 
 public class AmazonHttpClientTest {
 
@@ -159,6 +165,98 @@ public class AmazonHttpClientTest {
         EasyMock.verify(httpClient);
     }
 
+    @Test
+    public void testExecuteAsyncRetryIOExceptionFromExecute() throws Exception {
+        IOException exception = new IOException("BOOM");
+
+        EasyMock.reset(httpClient);
+
+        EasyMock
+            .expect(httpClient.getConnectionManager())
+            .andReturn(null)
+            .anyTimes();
+
+        EasyMock
+            .expect(httpClient.execute(EasyMock.<HttpUriRequest>anyObject(),
+                                       EasyMock.<HttpContext>anyObject()))
+            .andThrow(exception)
+            .times(4);
+
+        EasyMock.replay(httpClient);
+
+        ExecutionContext context = new ExecutionContext();
+
+        Request<?> request = new DefaultRequest<Object>("testsvc");
+        request.setEndpoint(java.net.URI.create(
+                "http://testsvc.region.amazonaws.com"));
+        request.setContent(new ByteArrayInputStream(new byte[0]));
+
+        Future<Response<Object>> future =
+                client.executeAsync(request, null, null, context, null);
+        Assert.assertTrue(future.isDone());
+        try {
+
+            future.get();
+            Assert.fail("No exception when request repeatedly fails!");
+
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AmazonClientException);
+            Assert.assertSame(exception, e.getCause().getCause());
+        }
+
+        // Verify that we called execute 4 times.
+        EasyMock.verify(httpClient);
+    }
+
+    @Test
+    public void testExecuteAsyncSchedulesRetriesOnExecutor() throws Exception {
+        IOException exception = new IOException("BOOM");
+
+        EasyMock.reset(httpClient);
+
+        EasyMock
+            .expect(httpClient.getConnectionManager())
+            .andReturn(null)
+            .anyTimes();
+
+        EasyMock
+            .expect(httpClient.execute(EasyMock.<HttpUriRequest>anyObject(),
+                                       EasyMock.<HttpContext>anyObject()))
+            .andThrow(exception)
+            .times(4);
+
+        EasyMock.replay(httpClient);
+
+        ExecutionContext context = new ExecutionContext();
+
+        Request<?> request = new DefaultRequest<Object>("testsvc");
+        request.setEndpoint(java.net.URI.create(
+                "http://testsvc.region.amazonaws.com"));
+        request.setContent(new ByteArrayInputStream(new byte[0]));
+
+        RetryScheduler scheduler = RetryScheduler.getDefault();
+        long scheduledBefore = scheduler.getScheduledRetryCount();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Response<Object>> future = client.executeAsync(
+                    request, null, null, context, null, executor);
+            try {
+
+                future.get();
+                Assert.fail("No exception when request repeatedly fails!");
+
+            } catch (ExecutionException e) {
+                Assert.assertSame(exception, e.getCause().getCause());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // The three retries waited on the scheduler, not on the executor.
+        Assert.assertEquals(3, scheduler.getScheduledRetryCount() - scheduledBefore);
+        EasyMock.verify(httpClient);
+    }
+
     @Test
     public void testPutRetryNoCL() throws Exception {
         Request<?> request = new DefaultRequest<Object>(null, "testsvc");
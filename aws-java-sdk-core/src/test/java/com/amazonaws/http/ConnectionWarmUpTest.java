@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.ClientConfiguration;
+
+public class ConnectionWarmUpTest {
+    private ServerSocket serverSocket;
+    private final AtomicInteger acceptCount = new AtomicInteger();
+    private final List<Socket> accepted = new CopyOnWriteArrayList<Socket>();
+
+    @Before
+    public void startServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread("aws-java-sdk-test-acceptor") {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        accepted.add(serverSocket.accept());
+                        acceptCount.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    // server socket closed
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        serverSocket.close();
+        for (Socket socket : accepted)
+            socket.close();
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void opensConnectionsUpToMaxConnections() throws Exception {
+        URI endpoint = URI.create("http://localhost:" + serverSocket.getLocalPort());
+        AmazonHttpClient client = new AmazonHttpClient(
+                new ClientConfiguration().withMaxConnections(5));
+        try {
+            ConnectionWarmUpResult result = client.warmUpConnections(endpoint, 3);
+            assertEquals(3, result.getRequestedConnections());
+            assertEquals(3, result.getOpenConnections());
+            assertEquals(3, result.getNewConnections());
+
+            // The connections already open are reused
+            result = client.warmUpConnections(endpoint, 3);
+            assertEquals(3, result.getOpenConnections());
+            assertEquals(0, result.getNewConnections());
+
+            result = client.warmUpConnections(endpoint, 10);
+            assertEquals(5, result.getOpenConnections());
+            assertEquals(2, result.getNewConnections());
+            waitForAccepts(5);
+            assertEquals(5, acceptCount.get());
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void unreachableEndpoint() throws Exception {
+        ServerSocket closed = new ServerSocket(0);
+        URI endpoint = URI.create("http://localhost:" + closed.getLocalPort());
+        closed.close();
+        AmazonHttpClient client = new AmazonHttpClient(new ClientConfiguration());
+        try {
+            ConnectionWarmUpResult result = client.warmUpConnections(endpoint, 2);
+            assertEquals(2, result.getRequestedConnections());
+            assertEquals(0, result.getOpenConnections());
+            assertEquals(0, result.getNewConnections());
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    private void waitForAccepts(int count) throws InterruptedException {
+        while (acceptCount.get() < count)
+            Thread.sleep(10);
+    }
+}
@@ -29,6 +29,8 @@ import org.apache.http.conn.ClientConnectionRequest;
 import org.apache.http.conn.ManagedClientConnection;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -72,12 +74,64 @@ public class IdleConnectionReaperTest {
         }
     }
 
+    @Test(timeout = 10 * 1000)
+    public void maxIdleTimeOfConnectionManager() throws Exception {
+        TestClientConnectionManager m = new TestClientConnectionManager();
+        assertTrue(IdleConnectionReaper.registerConnectionManager(m, 2000));
+        try {
+            while (m.idleTimeMillis == 0)
+                Thread.sleep(100);
+            assertEquals(2000, m.idleTimeMillis);
+            assertTrue(m.expiredClosed);
+        } finally {
+            IdleConnectionReaper.removeConnectionManager(m);
+        }
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void reapedConnectionsArePolledOnce() throws Exception {
+        IdleConnectionReaper.pollReapedConnectionCount();
+        long reapedBefore = IdleConnectionReaper.getReapedConnectionCount();
+        PooledTestClientConnectionManager m = new PooledTestClientConnectionManager(3);
+        assertTrue(IdleConnectionReaper.registerConnectionManager(m, 2000));
+        try {
+            while (IdleConnectionReaper.getReapedConnectionCount() == reapedBefore)
+                Thread.sleep(100);
+        } finally {
+            IdleConnectionReaper.removeConnectionManager(m);
+        }
+        assertEquals(3, IdleConnectionReaper.pollReapedConnectionCount());
+        assertEquals(0, IdleConnectionReaper.pollReapedConnectionCount());
+    }
+
+    /** A connection manager whose idle connections are all closed at once. */
+    private static class PooledTestClientConnectionManager extends TestClientConnectionManager
+            implements ConnPoolControl<HttpRoute> {
+        private volatile int available;
+
+        PooledTestClientConnectionManager(int available) {
+            this.available = available;
+        }
+
+        @Override public void closeIdleConnections(long idletime, TimeUnit tunit) { available = 0; }
+        @Override public void setMaxTotal(int max) {}
+        @Override public int getMaxTotal() { return 10; }
+        @Override public void setDefaultMaxPerRoute(int max) {}
+        @Override public int getDefaultMaxPerRoute() { return 10; }
+        @Override public void setMaxPerRoute(HttpRoute route, int max) {}
+        @Override public int getMaxPerRoute(HttpRoute route) { return 10; }
+        @Override public PoolStats getTotalStats() { return new PoolStats(0, 0, available, 10); }
+        @Override public PoolStats getStats(HttpRoute route) { return getTotalStats(); }
+    }
+
     private static class TestClientConnectionManager implements ClientConnectionManager {
         @Override public void shutdown() {}
         @Override public ClientConnectionRequest requestConnection(HttpRoute route, Object state) { return null; }
         @Override public void releaseConnection(ManagedClientConnection conn, long validDuration, TimeUnit timeUnit) { }
         @Override public SchemeRegistry getSchemeRegistry() { return null; }
-        @Override public void closeIdleConnections(long idletime, TimeUnit tunit) {}
-        @Override public void closeExpiredConnections() { }
+        volatile long idleTimeMillis;
+        volatile boolean expiredClosed;
+        @Override public void closeIdleConnections(long idletime, TimeUnit tunit) { idleTimeMillis = tunit.toMillis(idletime); }
+        @Override public void closeExpiredConnections() { expiredClosed = true; }
     }
 }
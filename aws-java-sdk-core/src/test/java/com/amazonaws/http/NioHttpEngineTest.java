@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.ClientConfiguration;
+
+public class NioHttpEngineTest {
+
+    private static final int FIRST_CHUNK_LENGTH = 1000;
+    private static final int CONTENT_LENGTH = 1024 * 1024;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ServerSocket serverSocket;
+    private NioHttpEngine engine;
+
+    /**
+     * Starts a server answering a single request with the first bytes of its
+     * content, and the rest only once released.
+     */
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getByName("localhost"));
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    try {
+                        BufferedReader reader = new BufferedReader(
+                                new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                        String line;
+                        while ((line = reader.readLine()) != null && line.length() > 0) {
+                        }
+                        OutputStream out = socket.getOutputStream();
+                        out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + CONTENT_LENGTH
+                                + "\r\n\r\n").getBytes("UTF-8"));
+                        out.write(new byte[FIRST_CHUNK_LENGTH]);
+                        out.flush();
+                        release.await();
+                        out.write(new byte[CONTENT_LENGTH - FIRST_CHUNK_LENGTH]);
+                        out.flush();
+                    } finally {
+                        socket.close();
+                    }
+                } catch (Exception e) {
+                    // The client gave up on the response
+                }
+            }
+        }.start();
+        engine = new NioHttpEngine(new ClientConfiguration());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        release.countDown();
+        engine.shutdown();
+        serverSocket.close();
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testResponseIsStreamedToCaller() throws IOException {
+        HttpResponse response = engine.execute(newRequest(), new BasicHttpContext());
+
+        // Returned before the server has sent the whole content
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        assertEquals(CONTENT_LENGTH, response.getEntity().getContentLength());
+        InputStream content = response.getEntity().getContent();
+        assertEquals(FIRST_CHUNK_LENGTH, read(content, FIRST_CHUNK_LENGTH));
+
+        release.countDown();
+        assertEquals(CONTENT_LENGTH - FIRST_CHUNK_LENGTH, read(content, Integer.MAX_VALUE));
+        content.close();
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testAbortCancelsExchange() throws IOException {
+        HttpGet request = newRequest();
+        HttpResponse response = engine.execute(request, new BasicHttpContext());
+        InputStream content = response.getEntity().getContent();
+        assertEquals(FIRST_CHUNK_LENGTH, read(content, FIRST_CHUNK_LENGTH));
+
+        request.abort();
+        try {
+            read(content, Integer.MAX_VALUE);
+            fail("Expected the content of an aborted request to fail");
+        } catch (IOException expected) {
+        }
+    }
+
+    private HttpGet newRequest() {
+        return new HttpGet("http://localhost:" + serverSocket.getLocalPort() + "/");
+    }
+
+    /** Reads up to the given number of bytes, and returns how many were read. */
+    private static int read(InputStream content, int maxLength) throws IOException {
+        byte[] buffer = new byte[8192];
+        int total = 0;
+        int count;
+        while (total < maxLength
+                && (count = content.read(buffer, 0, Math.min(buffer.length, maxLength - total))) != -1) {
+            total += count;
+        }
+        return total;
+    }
+}
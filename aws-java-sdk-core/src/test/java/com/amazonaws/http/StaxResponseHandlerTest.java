@@ -0,0 +1,121 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.events.XMLEvent;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.transform.StaxUnmarshallerContext;
+import com.amazonaws.transform.Unmarshaller;
+import com.amazonaws.util.StringInputStream;
+
+public class StaxResponseHandlerTest {
+
+    private static final StaxResponseHandler<String> handler =
+        new StaxResponseHandler<String>(new ValueUnmarshaller());
+
+    @Test
+    public void testUnmarshallerContextIsReusedCleanly() throws Exception {
+        AmazonWebServiceResponse<String> first = handler.handle(response("one", "rid-1", true));
+        AmazonWebServiceResponse<String> second = handler.handle(response("two", null, false));
+
+        assertEquals("one:id-one", first.getResult());
+        assertEquals("rid-1", first.getRequestId());
+        assertEquals("two:null", second.getResult());
+        // No metadata carried over from the previous response
+        assertNull(second.getRequestId());
+        assertEquals("rid-1", first.getRequestId());
+    }
+
+    @Test
+    public void testConcurrentResponses() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<AmazonWebServiceResponse<String>>> futures =
+                new ArrayList<Future<AmazonWebServiceResponse<String>>>();
+            for (int i = 0; i < 200; i++) {
+                final String value = "value" + i;
+                futures.add(executor.submit(new Callable<AmazonWebServiceResponse<String>>() {
+                    @Override
+                    public AmazonWebServiceResponse<String> call() throws Exception {
+                        return handler.handle(response(value, "rid-" + value, true));
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                AmazonWebServiceResponse<String> response = futures.get(i).get();
+                assertEquals("value" + i + ":id-value" + i, response.getResult());
+                assertEquals("rid-value" + i, response.getRequestId());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static HttpResponse response(String value, String requestId,
+            boolean withAttribute) throws Exception {
+        StringBuilder xml = new StringBuilder("<TestResponse><TestResult>");
+        xml.append(withAttribute ? "<Value id=\"id-" + value + "\">" : "<Value>");
+        xml.append(value).append("</Value></TestResult>");
+        if (requestId != null) {
+            xml.append("<ResponseMetadata><RequestId>").append(requestId)
+               .append("</RequestId></ResponseMetadata>");
+        }
+        xml.append("</TestResponse>");
+
+        HttpResponse response = new HttpResponse(
+                new DefaultRequest<Object>("test"), null);
+        response.setContent(new StringInputStream(xml.toString()));
+        return response;
+    }
+
+    /** Unmarshalls "value:id" from TestResult/Value and its id attribute. */
+    private static class ValueUnmarshaller implements Unmarshaller<String, StaxUnmarshallerContext> {
+        @Override
+        public String unmarshall(StaxUnmarshallerContext context) throws Exception {
+            String value = null;
+            String id = null;
+            while (true) {
+                XMLEvent event = context.nextEvent();
+                if (event.isEndDocument())
+                    return value + ":" + id;
+                if (event.isAttribute() || event.isStartElement()) {
+                    if (context.testExpression("TestResult/Value", 2)) {
+                        value = context.readText();
+                    } else if (context.testExpression("TestResult/Value/@id", 2)) {
+                        id = context.readText();
+                    }
+                }
+            }
+        }
+    }
+}
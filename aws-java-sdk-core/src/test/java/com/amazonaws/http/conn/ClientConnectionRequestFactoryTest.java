@@ -14,6 +14,8 @@
  */
 package com.amazonaws.http.conn;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.concurrent.TimeUnit;
@@ -23,6 +25,10 @@ import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.conn.ManagedClientConnection;
 import org.junit.Test;
 
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
 public class ClientConnectionRequestFactoryTest {
     ClientConnectionRequest noop = new ClientConnectionRequest() {
         @Override
@@ -47,4 +53,23 @@ public class ClientConnectionRequestFactoryTest {
         ClientConnectionRequest wrapped = ClientConnectionRequestFactory.wrap(noop);
         ClientConnectionRequestFactory.wrap(wrapped);
     }
+
+    @Test
+    public void leaseTimeOfCurrentRequest() throws Exception {
+        ClientConnectionRequest wrapped = ClientConnectionRequestFactory.wrap(noop);
+        // No current request
+        wrapped.getConnection(0, TimeUnit.MILLISECONDS);
+
+        AWSRequestMetrics metrics = new AWSRequestMetricsFullSupport();
+        AWSRequestMetrics previous = CurrentRequestMetrics.set(metrics);
+        try {
+            wrapped.getConnection(0, TimeUnit.MILLISECONDS);
+            wrapped.abortRequest();
+        } finally {
+            CurrentRequestMetrics.set(previous);
+        }
+        assertNull(CurrentRequestMetrics.get());
+        assertEquals(1, metrics.getTimingInfo()
+                .getAllSubMeasurements(Field.HttpClientPoolLeaseTime.name()).size());
+    }
 }
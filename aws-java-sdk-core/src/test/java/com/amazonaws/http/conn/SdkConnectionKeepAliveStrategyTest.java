@@ -0,0 +1,52 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.Test;
+
+public class SdkConnectionKeepAliveStrategyTest {
+    @Test
+    public void keepAliveTimeoutCappedByMaxIdleTime() {
+        SdkConnectionKeepAliveStrategy strategy = new SdkConnectionKeepAliveStrategy(60 * 1000);
+        assertEquals(5 * 1000, strategy.getKeepAliveDuration(
+                response("timeout=5"), new BasicHttpContext()));
+        assertEquals(60 * 1000, strategy.getKeepAliveDuration(
+                response("timeout=120, max=100"), new BasicHttpContext()));
+        assertEquals(60 * 1000, strategy.getKeepAliveDuration(
+                response(null), new BasicHttpContext()));
+    }
+
+    @Test
+    public void noMaxIdleTime() {
+        SdkConnectionKeepAliveStrategy strategy = new SdkConnectionKeepAliveStrategy(-1);
+        assertEquals(120 * 1000, strategy.getKeepAliveDuration(
+                response("timeout=120"), new BasicHttpContext()));
+        assertEquals(-1, strategy.getKeepAliveDuration(
+                response(null), new BasicHttpContext()));
+    }
+
+    private static HttpResponse response(String keepAlive) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        if (keepAlive != null)
+            response.addHeader("Keep-Alive", keepAlive);
+        return response;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.apache.http.conn.DnsResolver;
+import org.junit.Test;
+
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+public class SdkDnsResolverTest {
+    private final InetAddress[] addresses = new InetAddress[0];
+    private final DnsResolver fixed = new DnsResolver() {
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            if ("unknown".equals(host))
+                throw new UnknownHostException(host);
+            return addresses;
+        }
+    };
+
+    @Test
+    public void noCurrentRequest() throws Exception {
+        assertSame(addresses, new SdkDnsResolver(fixed).resolve("localhost"));
+    }
+
+    @Test
+    public void resolutionTimeOfCurrentRequest() throws Exception {
+        SdkDnsResolver resolver = new SdkDnsResolver(fixed);
+        AWSRequestMetrics metrics = new AWSRequestMetricsFullSupport();
+        AWSRequestMetrics previous = CurrentRequestMetrics.set(metrics);
+        try {
+            assertSame(addresses, resolver.resolve("localhost"));
+            try {
+                resolver.resolve("unknown");
+            } catch (UnknownHostException expected) {
+            }
+        } finally {
+            CurrentRequestMetrics.set(previous);
+        }
+        assertNull(CurrentRequestMetrics.get());
+        assertEquals(2, metrics.getTimingInfo()
+                .getAllSubMeasurements(Field.HttpClientDnsResolutionTime.name()).size());
+    }
+}
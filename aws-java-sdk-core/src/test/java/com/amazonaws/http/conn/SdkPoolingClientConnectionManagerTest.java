@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+@SuppressWarnings("deprecation")
+public class SdkPoolingClientConnectionManagerTest {
+    private ServerSocket serverSocket;
+    private HttpRoute route;
+
+    @Before
+    public void startServer() throws Exception {
+        serverSocket = new ServerSocket(0);
+        route = new HttpRoute(new HttpHost("localhost", serverSocket.getLocalPort()));
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        serverSocket.close();
+        CurrentRequestMetrics.set(null);
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void staleConnectionReplacedAfterInactivity() throws Exception {
+        SdkPoolingClientConnectionManager cm = newConnectionManager(0);
+        try {
+            openAndRelease(cm);
+            // The server closes its end of the idle connection
+            serverSocket.accept().close();
+            Thread.sleep(100);
+
+            AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+            CurrentRequestMetrics.set(metrics);
+            ManagedClientConnection conn = lease(cm);
+            assertFalse(conn.isOpen());
+            assertEquals(1, metrics.getTimingInfo()
+                    .getCounter(Field.HttpClientStaleConnectionCount.name()).intValue());
+            cm.releaseConnection(conn, 0, TimeUnit.MILLISECONDS);
+        } finally {
+            cm.shutdown();
+        }
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void recentlyUsedConnectionNotValidated() throws Exception {
+        SdkPoolingClientConnectionManager cm = newConnectionManager(60 * 1000);
+        try {
+            openAndRelease(cm);
+            Socket socket = serverSocket.accept();
+            AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+            CurrentRequestMetrics.set(metrics);
+            ManagedClientConnection conn = lease(cm);
+            assertTrue(conn.isOpen());
+            assertNull(metrics.getTimingInfo()
+                    .getCounter(Field.HttpClientStaleConnectionCount.name()));
+            cm.releaseConnection(conn, 0, TimeUnit.MILLISECONDS);
+            socket.close();
+        } finally {
+            cm.shutdown();
+        }
+    }
+
+    private SdkPoolingClientConnectionManager newConnectionManager(int validateAfterInactivityMillis) {
+        return new SdkPoolingClientConnectionManager(
+                SchemeRegistryFactory.createDefault(), -1, TimeUnit.MILLISECONDS,
+                SystemDefaultDnsResolver.INSTANCE, validateAfterInactivityMillis);
+    }
+
+    private ManagedClientConnection lease(SdkPoolingClientConnectionManager cm) throws Exception {
+        return cm.requestConnection(route, null).getConnection(5, TimeUnit.SECONDS);
+    }
+
+    private void openAndRelease(SdkPoolingClientConnectionManager cm) throws Exception {
+        ManagedClientConnection conn = lease(cm);
+        conn.open(route, new BasicHttpContext(), new BasicHttpParams());
+        conn.markReusable();
+        cm.releaseConnection(conn, 0, TimeUnit.MILLISECONDS);
+    }
+}
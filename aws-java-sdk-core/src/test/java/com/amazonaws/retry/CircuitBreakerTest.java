@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import java.net.URI;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+    private static final URI ENDPOINT = URI.create("https://dynamodb.us-east-1.amazonaws.com");
+    private static final URI OTHER_ENDPOINT = URI.create("https://dynamodb.us-west-2.amazonaws.com");
+
+    @Test
+    public void testCircuitOpensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60 * 1000);
+        breaker.onFailure(ENDPOINT);
+        breaker.onFailure(ENDPOINT);
+        Assert.assertTrue(breaker.allowRetry(ENDPOINT));
+
+        breaker.onFailure(ENDPOINT);
+        Assert.assertTrue(breaker.isOpen(ENDPOINT));
+        Assert.assertFalse(breaker.allowRetry(ENDPOINT));
+        Assert.assertEquals(1, breaker.getDeniedRetryCount());
+
+        // Other endpoints are not affected
+        Assert.assertTrue(breaker.allowRetry(OTHER_ENDPOINT));
+        Assert.assertEquals(1, breaker.getOpenCircuitCount());
+    }
+
+    @Test
+    public void testSuccessClosesCircuit() {
+        CircuitBreaker breaker = new CircuitBreaker(1, 60 * 1000);
+        breaker.onFailure(ENDPOINT);
+        Assert.assertFalse(breaker.allowRetry(ENDPOINT));
+
+        breaker.onSuccess(ENDPOINT);
+        Assert.assertFalse(breaker.isOpen(ENDPOINT));
+        Assert.assertTrue(breaker.allowRetry(ENDPOINT));
+    }
+
+    @Test
+    public void testSingleProbeAfterOpenTime() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        breaker.onFailure(ENDPOINT);
+        Assert.assertFalse(breaker.allowRetry(ENDPOINT));
+
+        Thread.sleep(100);
+        Assert.assertTrue(breaker.allowRetry(ENDPOINT));
+        // Only one probe per open period
+        Assert.assertFalse(breaker.allowRetry(ENDPOINT));
+    }
+}
@@ -67,9 +67,12 @@ public class RetryPolicyTestBase {
     
     public static void injectMockHttpClient(AmazonHttpClient amazonHttpClient, HttpClient mockHttpClient) {
         try {
-            Field f = AmazonHttpClient.class.getDeclaredField("httpClient");
+            Field engineField = AmazonHttpClient.class.getDeclaredField("httpEngine");
+            engineField.setAccessible(true);
+            Object httpEngine = engineField.get(amazonHttpClient);
+            Field f = httpEngine.getClass().getDeclaredField("httpClient");
             f.setAccessible(true);
-            f.set(amazonHttpClient, mockHttpClient);
+            f.set(httpEngine, mockHttpClient);
         } catch (Exception e) {
             Assert.fail("Cannot inject the mock HttpClient object. " + e.getMessage());
         }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.http.AmazonHttpClient;
+import com.amazonaws.http.ExecutionContext;
+import com.amazonaws.util.AWSRequestMetrics;
+
+public class RetryTokenBucketTest extends RetryPolicyTestBase {
+
+    @Test
+    public void testRetriesDeniedOnceBucketIsDrained() {
+        RetryTokenBucket bucket = new RetryTokenBucket(12);
+        Assert.assertTrue(bucket.tryAcquireRetry());
+        Assert.assertTrue(bucket.tryAcquireRetry());
+        Assert.assertEquals(2, bucket.getAvailableTokens());
+
+        long totalDenied = RetryTokenBucket.getTotalDeniedRetryCount();
+        Assert.assertFalse(bucket.tryAcquireRetry());
+        Assert.assertEquals(1, bucket.getDeniedRetryCount());
+        Assert.assertEquals(totalDenied + 1, RetryTokenBucket.getTotalDeniedRetryCount());
+    }
+
+    @Test
+    public void testSuccessesRefillBucket() {
+        RetryTokenBucket bucket = new RetryTokenBucket(12);
+        bucket.tryAcquireRetry();
+        bucket.tryAcquireRetry();
+
+        bucket.onSuccess(false);
+        Assert.assertEquals(2 + RetryTokenBucket.NO_RETRY_INCREMENT,
+                bucket.getAvailableTokens());
+        bucket.onSuccess(true);
+        Assert.assertEquals(2 + RetryTokenBucket.NO_RETRY_INCREMENT
+                + RetryTokenBucket.RETRY_COST, bucket.getAvailableTokens());
+
+        // Never refilled beyond its capacity
+        bucket.onSuccess(true);
+        Assert.assertEquals(12, bucket.getAvailableTokens());
+    }
+
+    @Test
+    public void testClientStopsRetryingWhenBucketIsDrained() {
+        ClientConfiguration config = new ClientConfiguration()
+                .withRetryTokenBucket(true)
+                .withRetryTokenBucketCapacity(2 * RetryTokenBucket.RETRY_COST);
+        config.setRetryPolicy(new RetryPolicy(null,
+                RetryPolicy.BackoffStrategy.NO_DELAY, 5, false));
+        AmazonHttpClient client = new AmazonHttpClient(config);
+        IOException exception = new IOException("fake IOException");
+        injectMockHttpClient(client, new ThrowingExceptionHttpClient(exception));
+
+        ExecutionContext context = new ExecutionContext(true);
+        try {
+            client.execute(getSampleRequestWithRepeatableContent(originalRequest),
+                    null, errorResponseHandler, context);
+            Assert.fail("AmazonClientException is expected.");
+        } catch (AmazonClientException ace) {
+            Assert.assertSame(exception, ace.getCause());
+        }
+
+        // Only two of the five retries allowed by the policy could be paid for
+        Assert.assertEquals(3, context.getAwsRequestMetrics().getTimingInfo()
+                .getCounter(AWSRequestMetrics.Field.RequestCount.toString()).intValue());
+        Assert.assertEquals(1, client.getRetryTokenBucket().getDeniedRetryCount());
+        Assert.assertNotNull(RetryAdmin.getRegisteredMBeanName());
+    }
+}
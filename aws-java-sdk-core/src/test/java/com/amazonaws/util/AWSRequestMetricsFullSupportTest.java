@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.amazonaws.metrics.SimpleMetricType;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+public class AWSRequestMetricsFullSupportTest {
+    @Test
+    public void fieldPropertiesReadableByName() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        assertNull(metrics.getProperty(Field.StatusCode));
+        metrics.addProperty(Field.StatusCode, 500);
+        assertEquals(Arrays.<Object>asList(500), metrics.getProperty(Field.StatusCode));
+        metrics.addProperty("StatusCode", 200);
+        metrics.addProperty(Field.StatusCode, null);
+        assertEquals(Arrays.<Object>asList(500, 200, null), metrics.getProperty("StatusCode"));
+    }
+
+    @Test
+    public void fieldCountersReadableByName() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        TimingInfo timingInfo = metrics.getTimingInfo();
+        assertNull(timingInfo.getCounter(Field.RequestCount.name()));
+        metrics.incrementCounter(Field.RequestCount);
+        metrics.incrementCounter("RequestCount");
+        metrics.setCounter(Field.HttpClientPoolLeasedCount, 7);
+        assertEquals(2L, timingInfo.getCounter("RequestCount").longValue());
+        assertEquals(7L, timingInfo.getAllCounters().get("HttpClientPoolLeasedCount").longValue());
+        assertEquals(2, timingInfo.getAllCounters().size());
+    }
+
+    @Test
+    public void fieldEventsRecordedInOrder() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        TimingInfo timingInfo = metrics.getTimingInfo();
+        // Enough retries to grow the sub-measurements
+        for (int i = 0; i < 20; i++) {
+            metrics.startEvent(Field.HttpRequestTime);
+            metrics.endEvent(Field.HttpRequestTime);
+            metrics.startEvent("ResponseProcessingTime");
+            metrics.endEvent(Field.ResponseProcessingTime);
+        }
+        List<TimingInfo> timings = timingInfo.getAllSubMeasurements("HttpRequestTime");
+        assertEquals(20, timings.size());
+        for (int i = 1; i < timings.size(); i++) {
+            assertTrue(timings.get(i).getStartTimeNano() >= timings.get(i - 1).getEndTimeNano());
+        }
+        for (TimingInfo ti : timings) {
+            assertTrue(ti.isEndTimeKnown());
+            assertTrue(ti.getTimeTakenMillis() >= 0);
+        }
+        assertEquals(timings.get(0).getStartTimeNano(),
+                timingInfo.getSubMeasurement("HttpRequestTime").getStartTimeNano());
+        assertEquals(timings.get(19).getEndTimeNano(),
+                timingInfo.getLastSubMeasurement("HttpRequestTime").getEndTimeNano());
+        assertNull(timingInfo.getSubMeasurement("HttpRequestTime", 20));
+        assertEquals(20, timingInfo.getSubMeasurementsByName().get("ResponseProcessingTime").size());
+        assertNull(timingInfo.getAllSubMeasurements(Field.RequestSigningTime.name()));
+    }
+
+    @Test
+    public void eventNeverStarted() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        metrics.endEvent(Field.RequestSigningTime);
+        assertNull(metrics.getTimingInfo().getAllSubMeasurements("RequestSigningTime"));
+    }
+
+    @Test
+    public void otherMetricsKeptByName() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        SimpleMetricType custom = new SimpleMetricType() {
+            @Override public String name() { return "Custom"; }
+        };
+        metrics.addProperty(custom, "value");
+        metrics.incrementCounter(custom);
+        metrics.startEvent(custom);
+        metrics.endEvent(custom);
+        TimingInfo timingInfo = metrics.getTimingInfo();
+        assertEquals(Arrays.<Object>asList("value"), metrics.getProperty("Custom"));
+        assertEquals(1, timingInfo.getCounter("Custom").intValue());
+        assertEquals(1, timingInfo.getAllSubMeasurements("Custom").size());
+        assertEquals(1, timingInfo.getSubMeasurementsByName().size());
+    }
+}
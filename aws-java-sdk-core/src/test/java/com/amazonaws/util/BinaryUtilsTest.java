@@ -18,6 +18,7 @@
  */
 package com.amazonaws.util;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -145,4 +146,13 @@ public class BinaryUtilsTest {
         assertTrue(partial1.length == 3);
         assertTrue(Arrays.equals(new byte[]{2,3,4}, partial1));
     }
+
+    @Test
+    public void testHex() {
+        byte[] data = {0, 1, 15, 16, 127, -128, -1, (byte) 0xab};
+        String hex = BinaryUtils.toHex(data);
+        assertEquals("00010f107f80ffab", hex);
+        assertTrue(Arrays.equals(data, BinaryUtils.fromHex(hex)));
+        assertEquals("", BinaryUtils.toHex(new byte[0]));
+    }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util.json;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.StringUtils;
+
+public class SdkJsonGeneratorTest {
+
+    @Test
+    public void testSameDocumentAsJSONWriter() throws Exception {
+        ByteBuffer binary = ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5});
+        binary.position(1);
+        Date date = new Date(1420070400123L);
+
+        StringWriter stringWriter = new StringWriter();
+        JSONWriter jsonWriter = new JSONWriter(stringWriter);
+        jsonWriter.object();
+        jsonWriter.key("S").value("foo \"bar\"\n");
+        jsonWriter.key("N").value(Integer.valueOf(42));
+        jsonWriter.key("L").value(Long.MAX_VALUE);
+        jsonWriter.key("B").value(binary);
+        jsonWriter.key("Z").value(Boolean.TRUE);
+        jsonWriter.key("D").value(date);
+        jsonWriter.key("A").array().value("a").value("b").endArray();
+        jsonWriter.endObject();
+
+        SdkJsonGenerator generator = new SdkJsonGenerator();
+        generator.object();
+        generator.key("S").value("foo \"bar\"\n");
+        generator.key("N").value(Integer.valueOf(42));
+        generator.key("L").value(Long.MAX_VALUE);
+        generator.key("B").value(binary);
+        generator.key("Z").value(Boolean.TRUE);
+        generator.key("D").value(date);
+        generator.key("A").array().value("a").value("b").endArray();
+        generator.endObject();
+
+        assertEquals(stringWriter.toString(),
+                new String(generator.getBytes(), StringUtils.UTF8));
+        // The binary value is read without moving the buffer
+        assertEquals(1, binary.position());
+    }
+
+    @Test
+    public void testContentIsRepeatable() throws Exception {
+        SdkJsonGenerator generator = new SdkJsonGenerator();
+        generator.object().key("TableName").value("table").endObject();
+
+        InputStream content = generator.getContent();
+        assertTrue(content.markSupported());
+        content.mark(-1);
+        assertEquals("{\"TableName\":\"table\"}", IOUtils.toString(content));
+        content.reset();
+        assertEquals("{\"TableName\":\"table\"}", IOUtils.toString(content));
+    }
+
+    @Test
+    public void testScratchBufferReuseDoesNotAffectPreviousContent() {
+        SdkJsonGenerator first = new SdkJsonGenerator();
+        first.object().key("Key").value("first").endObject();
+        byte[] firstBytes = first.getBytes();
+        byte[] expected = firstBytes.clone();
+
+        SdkJsonGenerator second = new SdkJsonGenerator();
+        second.object().key("Key").value("second").endObject();
+        second.getBytes();
+
+        assertArrayEquals(expected, firstBytes);
+    }
+
+    @Test
+    public void testNestedGeneratorsOnSameThread() {
+        SdkJsonGenerator outer = new SdkJsonGenerator();
+        outer.object().key("Outer");
+        SdkJsonGenerator inner = new SdkJsonGenerator();
+        inner.object().key("Inner").value(1L).endObject();
+        outer.value(new String(inner.getBytes(), StringUtils.UTF8));
+        outer.endObject();
+
+        assertEquals("{\"Outer\":\"{\\\"Inner\\\":1}\"}",
+                new String(outer.getBytes(), StringUtils.UTF8));
+    }
+
+    @Test
+    public void testDocumentLargerThanPooledBuffer() {
+        char[] chars = new char[SdkJsonGenerator.MAX_POOLED_BUFFER_SIZE + 1];
+        java.util.Arrays.fill(chars, 'x');
+        String large = new String(chars);
+
+        SdkJsonGenerator generator = new SdkJsonGenerator();
+        generator.array().value(large).endArray();
+        byte[] bytes = generator.getBytes();
+
+        assertEquals(large.length() + 4, bytes.length);
+        assertEquals("[\"" + large + "\"]", new String(bytes, StringUtils.UTF8));
+    }
+}
@@ -28,6 +28,7 @@ import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 
 import com.amazonaws.services.dynamodbv2.model.*;
+import com.amazonaws.services.dynamodbv2.model.transform.*;
 
 /**
  * Asynchronous client for accessing AmazonDynamoDBv2.
@@ -426,6 +427,34 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
         super.shutdown();
         executorService.shutdownNow();
     }
+
+    /**
+     * Returns true if requests are executed as a chain of asynchronous
+     * attempts, so that no thread is held while a request is waiting for the
+     * network (with non-blocking I/O) or backing off before a retry (with
+     * scheduled retries); false if each request is executed on a thread of the
+     * executor service from start to end.
+     */
+    private boolean useAsyncExecution() {
+        return isNonBlocking() || clientConfiguration.useScheduledRetries();
+    }
+
+    /**
+     * Returns the executor from which the attempts of a request are sent; or
+     * null if they are sent from the I/O threads of the non-blocking transport.
+     */
+    private ExecutorService attemptExecutor() {
+        return isNonBlocking() ? null : executorService;
+    }
+
+    /**
+     * Returns the executor on which the async handlers are notified; or null
+     * if they are notified on the executor service, from which the attempts
+     * of a request are sent.
+     */
+    private ExecutorService handlerExecutor() {
+        return isNonBlocking() ? executorService : null;
+    }
             
     /**
      * <p>
@@ -472,6 +501,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<ScanResult> scanAsync(final ScanRequest scanRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(scanRequest, new ScanRequestMarshaller(),
+                    new ScanResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<ScanResult>() {
             public ScanResult call() throws Exception {
                 return scan(scanRequest);
@@ -530,6 +563,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final ScanRequest scanRequest,
             final AsyncHandler<ScanRequest, ScanResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(scanRequest, new ScanRequestMarshaller(),
+                    new ScanResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<ScanResult>() {
             public ScanResult call() throws Exception {
               ScanResult result;
@@ -591,6 +628,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<UpdateTableResult> updateTableAsync(final UpdateTableRequest updateTableRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(updateTableRequest, new UpdateTableRequestMarshaller(),
+                    new UpdateTableResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<UpdateTableResult>() {
             public UpdateTableResult call() throws Exception {
                 return updateTable(updateTableRequest);
@@ -650,6 +691,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final UpdateTableRequest updateTableRequest,
             final AsyncHandler<UpdateTableRequest, UpdateTableResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(updateTableRequest, new UpdateTableRequestMarshaller(),
+                    new UpdateTableResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<UpdateTableResult>() {
             public UpdateTableResult call() throws Exception {
               UpdateTableResult result;
@@ -706,6 +751,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<DeleteTableResult> deleteTableAsync(final DeleteTableRequest deleteTableRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(deleteTableRequest, new DeleteTableRequestMarshaller(),
+                    new DeleteTableResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<DeleteTableResult>() {
             public DeleteTableResult call() throws Exception {
                 return deleteTable(deleteTableRequest);
@@ -760,6 +809,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final DeleteTableRequest deleteTableRequest,
             final AsyncHandler<DeleteTableRequest, DeleteTableResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(deleteTableRequest, new DeleteTableRequestMarshaller(),
+                    new DeleteTableResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<DeleteTableResult>() {
             public DeleteTableResult call() throws Exception {
               DeleteTableResult result;
@@ -894,6 +947,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<BatchWriteItemResult> batchWriteItemAsync(final BatchWriteItemRequest batchWriteItemRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(batchWriteItemRequest, new BatchWriteItemRequestMarshaller(),
+                    new BatchWriteItemResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<BatchWriteItemResult>() {
             public BatchWriteItemResult call() throws Exception {
                 return batchWriteItem(batchWriteItemRequest);
@@ -1026,6 +1083,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final BatchWriteItemRequest batchWriteItemRequest,
             final AsyncHandler<BatchWriteItemRequest, BatchWriteItemResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(batchWriteItemRequest, new BatchWriteItemRequestMarshaller(),
+                    new BatchWriteItemResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<BatchWriteItemResult>() {
             public BatchWriteItemResult call() throws Exception {
               BatchWriteItemResult result;
@@ -1073,6 +1134,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<DescribeTableResult> describeTableAsync(final DescribeTableRequest describeTableRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(describeTableRequest, new DescribeTableRequestMarshaller(),
+                    new DescribeTableResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<DescribeTableResult>() {
             public DescribeTableResult call() throws Exception {
                 return describeTable(describeTableRequest);
@@ -1118,6 +1183,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final DescribeTableRequest describeTableRequest,
             final AsyncHandler<DescribeTableRequest, DescribeTableResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(describeTableRequest, new DescribeTableRequestMarshaller(),
+                    new DescribeTableResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<DescribeTableResult>() {
             public DescribeTableResult call() throws Exception {
               DescribeTableResult result;
@@ -1164,6 +1233,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<GetItemResult> getItemAsync(final GetItemRequest getItemRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(getItemRequest, new GetItemRequestMarshaller(),
+                    new GetItemResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<GetItemResult>() {
             public GetItemResult call() throws Exception {
                 return getItem(getItemRequest);
@@ -1208,6 +1281,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final GetItemRequest getItemRequest,
             final AsyncHandler<GetItemRequest, GetItemResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(getItemRequest, new GetItemRequestMarshaller(),
+                    new GetItemResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<GetItemResult>() {
             public GetItemResult call() throws Exception {
               GetItemResult result;
@@ -1262,6 +1339,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<DeleteItemResult> deleteItemAsync(final DeleteItemRequest deleteItemRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(deleteItemRequest, new DeleteItemRequestMarshaller(),
+                    new DeleteItemResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<DeleteItemResult>() {
             public DeleteItemResult call() throws Exception {
                 return deleteItem(deleteItemRequest);
@@ -1314,6 +1395,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final DeleteItemRequest deleteItemRequest,
             final AsyncHandler<DeleteItemRequest, DeleteItemResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(deleteItemRequest, new DeleteItemRequestMarshaller(),
+                    new DeleteItemResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<DeleteItemResult>() {
             public DeleteItemResult call() throws Exception {
               DeleteItemResult result;
@@ -1372,6 +1457,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<CreateTableResult> createTableAsync(final CreateTableRequest createTableRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(createTableRequest, new CreateTableRequestMarshaller(),
+                    new CreateTableResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<CreateTableResult>() {
             public CreateTableResult call() throws Exception {
                 return createTable(createTableRequest);
@@ -1428,6 +1517,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final CreateTableRequest createTableRequest,
             final AsyncHandler<CreateTableRequest, CreateTableResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(createTableRequest, new CreateTableRequestMarshaller(),
+                    new CreateTableResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<CreateTableResult>() {
             public CreateTableResult call() throws Exception {
               CreateTableResult result;
@@ -1491,6 +1584,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<QueryResult> queryAsync(final QueryRequest queryRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(queryRequest, new QueryRequestMarshaller(),
+                    new QueryResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<QueryResult>() {
             public QueryResult call() throws Exception {
                 return query(queryRequest);
@@ -1552,6 +1649,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final QueryRequest queryRequest,
             final AsyncHandler<QueryRequest, QueryResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(queryRequest, new QueryRequestMarshaller(),
+                    new QueryResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<QueryResult>() {
             public QueryResult call() throws Exception {
               QueryResult result;
@@ -1622,6 +1723,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<PutItemResult> putItemAsync(final PutItemRequest putItemRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(putItemRequest, new PutItemRequestMarshaller(),
+                    new PutItemResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<PutItemResult>() {
             public PutItemResult call() throws Exception {
                 return putItem(putItemRequest);
@@ -1690,6 +1795,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final PutItemRequest putItemRequest,
             final AsyncHandler<PutItemRequest, PutItemResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(putItemRequest, new PutItemRequestMarshaller(),
+                    new PutItemResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<PutItemResult>() {
             public PutItemResult call() throws Exception {
               PutItemResult result;
@@ -1729,6 +1838,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<ListTablesResult> listTablesAsync(final ListTablesRequest listTablesRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(listTablesRequest, new ListTablesRequestMarshaller(),
+                    new ListTablesResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<ListTablesResult>() {
             public ListTablesResult call() throws Exception {
                 return listTables(listTablesRequest);
@@ -1766,6 +1879,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final ListTablesRequest listTablesRequest,
             final AsyncHandler<ListTablesRequest, ListTablesResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(listTablesRequest, new ListTablesRequestMarshaller(),
+                    new ListTablesResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<ListTablesResult>() {
             public ListTablesResult call() throws Exception {
               ListTablesResult result;
@@ -1813,6 +1930,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<UpdateItemResult> updateItemAsync(final UpdateItemRequest updateItemRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(updateItemRequest, new UpdateItemRequestMarshaller(),
+                    new UpdateItemResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<UpdateItemResult>() {
             public UpdateItemResult call() throws Exception {
                 return updateItem(updateItemRequest);
@@ -1858,6 +1979,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final UpdateItemRequest updateItemRequest,
             final AsyncHandler<UpdateItemRequest, UpdateItemResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(updateItemRequest, new UpdateItemRequestMarshaller(),
+                    new UpdateItemResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<UpdateItemResult>() {
             public UpdateItemResult call() throws Exception {
               UpdateItemResult result;
@@ -1957,6 +2082,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<BatchGetItemResult> batchGetItemAsync(final BatchGetItemRequest batchGetItemRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(batchGetItemRequest, new BatchGetItemRequestMarshaller(),
+                    new BatchGetItemResultJsonUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<BatchGetItemResult>() {
             public BatchGetItemResult call() throws Exception {
                 return batchGetItem(batchGetItemRequest);
@@ -2054,6 +2183,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final BatchGetItemRequest batchGetItemRequest,
             final AsyncHandler<BatchGetItemRequest, BatchGetItemResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(batchGetItemRequest, new BatchGetItemRequestMarshaller(),
+                    new BatchGetItemResultJsonUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<BatchGetItemResult>() {
             public BatchGetItemResult call() throws Exception {
               BatchGetItemResult result;
@@ -3140,5 +3140,23 @@ public class AmazonDynamoDBClient extends AmazonWebServiceClient implements Amaz
                 errorResponseHandler, executionContext);
         return result;
     }
+
+    /**
+     * Marshals and executes the given request asynchronously over the
+     * transport of this client, sending its attempts from the given executor,
+     * if any, and notifying the handler on the given handler executor, if any.
+     */
+    <X, Y extends AmazonWebServiceRequest> java.util.concurrent.Future<X> invokeAsync(
+            Y originalRequest,
+            Marshaller<Request<Y>, Y> marshaller,
+            Unmarshaller<X, JsonUnmarshallerContext> unmarshaller,
+            AsyncHandler<Y, X> asyncHandler,
+            java.util.concurrent.Executor executor,
+            java.util.concurrent.Executor handlerExecutor) {
+        return invokeAsync(originalRequest, marshaller,
+                new JsonResponseHandler<X>(unmarshaller),
+                new JsonErrorResponseHandler(jsonErrorUnmarshallers),
+                awsCredentialsProvider, asyncHandler, executor, handlerExecutor);
+    }
 }
         
\ No newline at end of file
@@ -21,12 +21,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
 
@@ -37,7 +36,6 @@ import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.AmazonWebServiceRequest;
 import com.amazonaws.auth.AWSCredentialsProvider;
-import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.ConsistentReads;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.PaginationLoadingStrategy;
@@ -47,9 +45,7 @@ import com.amazonaws.services.dynamodbv2.model.AttributeAction;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.AttributeValueUpdate;
 import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
-import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
 import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
-import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
@@ -60,7 +56,6 @@ import com.amazonaws.services.dynamodbv2.model.DeleteRequest;
 import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
 import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
 import com.amazonaws.services.dynamodbv2.model.GetItemResult;
-import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
 import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
 import com.amazonaws.services.dynamodbv2.model.PutItemResult;
 import com.amazonaws.services.dynamodbv2.model.PutRequest;
@@ -1502,20 +1497,23 @@ public class DynamoDBMapper {
      *            {@link AmazonDynamoDB#batchWriteItem(BatchWriteItemRequest)}
      *            API.
      * @param config
-     *            Only {@link DynamoDBMapperConfig#getTableNameOverride()} is
+     *            Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getBatchConcurrency()} and
+     *            {@link DynamoDBMapperConfig#getRequestMetricCollector()} are
      *            considered; if specified, all objects in the two parameter
      *            lists will be considered to belong to the given table
      *            override. In particular, this method <b>always acts as if
      *            SaveBehavior.CLOBBER was specified</b> regardless of the value
-     *            of the config parameter.
+     *            of the config parameter. With a batch concurrency above 1,
+     *            that many requests are sent at once by as many threads, and
+     *            the items a request leaves unprocessed are written by later
+     *            requests once their table has backed off.
      * @return A list of failed batches which includes the unprocessed items and
      *         the exceptions causing the failure.
      */
     public List<FailedBatch> batchWrite(List<? extends Object> objectsToWrite, List<? extends Object> objectsToDelete, DynamoDBMapperConfig config) {
         config = mergeConfig(config);
 
-        List<FailedBatch> totalFailedBatches = new LinkedList<FailedBatch>();
-
         HashMap<String, List<WriteRequest>> requestItems = new HashMap<String, List<WriteRequest>>();
 
         ItemConverter converter = getConverter(config);
@@ -1576,51 +1574,9 @@ public class DynamoDBMapper {
         }
 
         // Break into chunks of 25 items and make service requests to DynamoDB
-        while ( !requestItems.isEmpty() ) {
-
-            HashMap<String, List<WriteRequest>> batch =
-                    new HashMap<String, List<WriteRequest>>();
-
-            int i = 0;
-
-            Iterator<Entry<String, List<WriteRequest>>> tableIter = requestItems.entrySet().iterator();
-            while ( tableIter.hasNext() && i < MAX_ITEMS_PER_BATCH ) {
-
-                Entry<String, List<WriteRequest>> tableRequest = tableIter.next();
-
-                batch.put(tableRequest.getKey(), new LinkedList<WriteRequest>());
-                Iterator<WriteRequest> writeRequestIter = tableRequest.getValue().iterator();
-
-                while ( writeRequestIter.hasNext() && i++ < MAX_ITEMS_PER_BATCH ) {
-                    WriteRequest writeRequest = writeRequestIter.next();
-                    batch.get(tableRequest.getKey()).add(writeRequest);
-                    writeRequestIter.remove();
-                }
-
-                // If we've processed all the write requests for this table,
-                // remove it from the parent iterator.
-                if ( !writeRequestIter.hasNext() ) {
-                    tableIter.remove();
-                }
-            }
-
-            List<FailedBatch> failedBatches = writeOneBatch(batch);
-            if (failedBatches != null) {
-                totalFailedBatches.addAll(failedBatches);
-
-                // If contains throttling exception, we do a backoff
-                if (containsThrottlingException(failedBatches)) {
-                    try {
-                        Thread.sleep(1000 * 2);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new AmazonClientException(e.getMessage(), e);
-                    }
-                }
-            }
-        }
-
-
+        List<FailedBatch> totalFailedBatches = new ParallelBatchWriteTask(
+                db, getBatchConcurrency(config), config.getRequestMetricCollector())
+                .write(requestItems);
 
         // Once the entire batch is processed, update assigned keys in memory
         for ( ValueUpdate update : inMemoryUpdates ) {
@@ -1631,118 +1587,13 @@ public class DynamoDBMapper {
     }
 
     /**
-     * Process one batch of requests(max 25). It will divide the batch if
-     * receives request too large exception(the total size of the request is beyond 1M).
-     */
-    private List<FailedBatch> writeOneBatch(Map<String, List<WriteRequest>> batch) {
-
-        List<FailedBatch> failedBatches = new LinkedList<FailedBatch>();
-        Map<String, List<WriteRequest>> firstHalfBatch = new HashMap<String, List<WriteRequest>>();
-        Map<String, List<WriteRequest>> secondHalfBatch = new HashMap<String, List<WriteRequest>>();
-        FailedBatch failedBatch = callUntilCompletion(batch);
-
-        if (failedBatch != null) {
-            // If the exception is request entity too large, we divide the batch
-            // into smaller parts.
-
-            if (failedBatch.getException() instanceof AmazonServiceException
-            && RetryUtils.isRequestEntityTooLargeException((AmazonServiceException) failedBatch.getException())) {
-
-                // If only one item left, the item size must beyond 64k, which
-                // exceedes the limit.
-
-                if (computeFailedBatchSize(failedBatch) == 1) {
-                    failedBatches.add(failedBatch);
-                } else {
-                    divideBatch(batch, firstHalfBatch, secondHalfBatch);
-                    failedBatches.addAll(writeOneBatch(firstHalfBatch));
-                    failedBatches.addAll(writeOneBatch(secondHalfBatch));
-                }
-
-            } else {
-                failedBatches.add(failedBatch);
-            }
-
-        }
-        return failedBatches;
-    }
-
-    /**
-     * Check whether there are throttling exception in the failed batches.
-     */
-    private boolean containsThrottlingException (List<FailedBatch> failedBatches) {
-        for (FailedBatch failedBatch : failedBatches) {
-           Exception e = failedBatch.getException();
-            if (e instanceof AmazonServiceException
-                    && RetryUtils.isThrottlingException((AmazonServiceException) e)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Divide the batch of objects to save into two smaller batches. Each contains half of the elements.
-     */
-    private void divideBatch(Map<String, List<WriteRequest>> batch, Map<String, List<WriteRequest>> firstHalfBatch, Map<String, List<WriteRequest>> secondHalfBatch) {
-        for (String key : batch.keySet()) {
-
-            List<WriteRequest> requests = batch.get(key);
-
-            List<WriteRequest> firstHalfRequests = requests.subList(0, requests.size() / 2);
-
-            List<WriteRequest> secondHalfRequests = requests.subList(requests.size() / 2, requests.size());
-
-            firstHalfBatch.put(key, firstHalfRequests);
-
-            secondHalfBatch.put(key, secondHalfRequests);
-
-        }
-
-    }
-
-    /**
-     * Count the total number of unprocessed items in the failed batch.
-     */
-
-    private int computeFailedBatchSize(FailedBatch failedBatch) {
-
-        int count = 0;
-
-        for (String tableName : failedBatch.getUnprocessedItems().keySet()) {
-            count += failedBatch.getUnprocessedItems().get(tableName).size();
-        }
-        return count;
-    }
-
-    /**
-     * Continue trying to process the batch until it finishes or an exception
-     * occurs.
+     * Returns the maximum number of requests in flight of a batch operation.
+     *
+     * @param config never null
      */
-
-    private FailedBatch callUntilCompletion(Map<String, List<WriteRequest>> batch) {
-        BatchWriteItemResult result = null;
-        int retries = 0;
-        FailedBatch failedBatch = null;
-        while (true) {
-            try {
-                result = db.batchWriteItem(applyBatchOperationUserAgent(
-                        new BatchWriteItemRequest().withRequestItems(batch)));
-            } catch (Exception e) {
-                failedBatch = new FailedBatch();
-                failedBatch.setUnprocessedItems(batch);
-                failedBatch.setException(e);
-                return failedBatch;
-            }
-            retries++;
-            batch = result.getUnprocessedItems();
-            if (batch.size() > 0) {
-                pauseExponentially(retries);
-            } else {
-                break;
-            }
-        }
-        return failedBatch;
+    private static int getBatchConcurrency(DynamoDBMapperConfig config) {
+        Integer concurrency = config.getBatchConcurrency();
+        return concurrency == null || concurrency < 1 ? 1 : concurrency;
     }
 
     /**
@@ -1767,8 +1618,10 @@ public class DynamoDBMapper {
      *            Key objects, corresponding to the class to fetch, with their
      *            primary key values set.
      * @param config
-     *            Only {@link DynamoDBMapperConfig#getTableNameOverride()} and
-     *            {@link DynamoDBMapperConfig#getConsistentReads()} are
+     *            Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getConsistentReads()},
+     *            {@link DynamoDBMapperConfig#getBatchConcurrency()} and
+     *            {@link DynamoDBMapperConfig#getRequestMetricCollector()} are
      *            considered.
      *
      * @return A map of the loaded objects. Each key in the map is the name of a
@@ -1785,10 +1638,10 @@ public class DynamoDBMapper {
             return new HashMap<String, List<Object>>();
         }
 
-        Map<String, KeysAndAttributes> requestItems = new HashMap<String, KeysAndAttributes>();
+        Map<String, List<Map<String, AttributeValue>>> keysByTableName =
+                new LinkedHashMap<String, List<Map<String, AttributeValue>>>();
         Map<String, Class<?>> classesByTableName = new HashMap<String, Class<?>>();
         Map<String, List<Object>> resultSet = new HashMap<String, List<Object>>();
-        int count = 0;
 
         ItemConverter converter = getConverter(config);
 
@@ -1798,26 +1651,29 @@ public class DynamoDBMapper {
             String tableName = getTableName(clazz, keyObject, config);
             classesByTableName.put(tableName, clazz);
 
-            if ( !requestItems.containsKey(tableName) ) {
-                requestItems.put(
-                        tableName,
-                        new KeysAndAttributes().withConsistentRead(consistentReads).withKeys(
-                                new LinkedList<Map<String, AttributeValue>>()));
+            if ( !keysByTableName.containsKey(tableName) ) {
+                keysByTableName.put(tableName, new LinkedList<Map<String, AttributeValue>>());
             }
 
-            requestItems.get(tableName).getKeys().add(
-                    getKey(converter, keyObject));
+            keysByTableName.get(tableName).add(getKey(converter, keyObject));
+        }
 
-            // Reach the maximum number which can be handled in a single batchGet
-            if ( ++count == 100 ) {
-                processBatchGetRequest(classesByTableName, requestItems, resultSet, config, converter);
-                requestItems.clear();
-                count = 0;
+        // Break into chunks of 100 keys and make service requests to DynamoDB
+        Map<String, List<Map<String, AttributeValue>>> responses = new ParallelBatchLoadTask(
+                db, getBatchConcurrency(config), consistentReads, config.getRequestMetricCollector())
+                .load(keysByTableName);
+
+        for ( String tableName : responses.keySet() ) {
+            List<Object> objects = new LinkedList<Object>();
+            Class<?> clazz = classesByTableName.get(tableName);
+
+            for ( Map<String, AttributeValue> item : responses.get(tableName) ) {
+                AttributeTransformer.Parameters<?> parameters =
+                    toParameters(item, clazz, tableName, config);
+                objects.add(privateMarshallIntoObject(converter, parameters));
             }
-        }
 
-        if ( count > 0 ) {
-            processBatchGetRequest(classesByTableName, requestItems, resultSet, config, converter);
+            resultSet.put(tableName, objects);
         }
 
         return resultSet;
@@ -1850,8 +1706,10 @@ public class DynamoDBMapper {
      * @param itemsToGet
      *            Map from class to load to list of primary key attributes.
      * @param config
-     *            Only {@link DynamoDBMapperConfig#getTableNameOverride()} and
-     *            {@link DynamoDBMapperConfig#getConsistentReads()} are
+     *            Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getConsistentReads()},
+     *            {@link DynamoDBMapperConfig#getBatchConcurrency()} and
+     *            {@link DynamoDBMapperConfig#getRequestMetricCollector()} are
      *            considered.
      *
      * @return A map of the loaded objects. Each key in the map is the name of a
@@ -1876,69 +1734,6 @@ public class DynamoDBMapper {
         return batchLoad(keys, config);
     }
 
-    /**
-     * @param config never null
-     */
-    private void processBatchGetRequest(
-            final Map<String, Class<?>> classesByTableName,
-            final Map<String, KeysAndAttributes> requestItems,
-            final Map<String, List<Object>> resultSet,
-            final DynamoDBMapperConfig config,
-            final ItemConverter converter) {
-
-        BatchGetItemResult batchGetItemResult = null;
-        BatchGetItemRequest batchGetItemRequest = new BatchGetItemRequest()
-            .withRequestMetricCollector(config.getRequestMetricCollector());
-        batchGetItemRequest.setRequestItems(requestItems);
-
-        int retries = 0;
-        int noOfItemsInOriginalRequest = requestItems.size();
-
-        do {
-            if ( batchGetItemResult != null ) {
-                retries++;
-
-                if (noOfItemsInOriginalRequest == batchGetItemResult
-                        .getUnprocessedKeys().size()){
-                    pauseExponentially(retries);
-                    if (retries > BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS) {
-                        throw new AmazonClientException(
-                                "Batch Get Item request to server hasn't received any data. "
-                                + "Please try again later.");
-                    }
-                }
-
-                batchGetItemRequest.setRequestItems(
-                        batchGetItemResult.getUnprocessedKeys());
-            }
-
-            batchGetItemResult = db.batchGetItem(
-                    applyBatchOperationUserAgent(batchGetItemRequest));
-
-            Map<String, List<Map<String, AttributeValue>>> responses = batchGetItemResult.getResponses();
-            for ( String tableName : responses.keySet() ) {
-                List<Object> objects = null;
-                if ( resultSet.get(tableName) != null ) {
-                    objects = resultSet.get(tableName);
-                } else {
-                    objects = new LinkedList<Object>();
-                }
-
-                Class<?> clazz = classesByTableName.get(tableName);
-
-                for ( Map<String, AttributeValue> item : responses.get(tableName) ) {
-                    AttributeTransformer.Parameters<?> parameters =
-                        toParameters(item, clazz, tableName, config);
-                    objects.add(privateMarshallIntoObject(converter, parameters));
-                }
-
-                resultSet.put(tableName, objects);
-            }
-            // To see whether there are unprocessed keys.
-        } while ( batchGetItemResult.getUnprocessedKeys() != null && batchGetItemResult.getUnprocessedKeys().size() > 0 );
-
-    }
-
     private final class ValueUpdate {
 
         private final Method method;
@@ -2916,25 +2711,6 @@ public class DynamoDBMapper {
         return schema.getConverter(params);
     }
 
-    private void pauseExponentially(int retries) {
-        if (retries == 0) {
-            return;
-        }
-
-        Random random = new Random();
-        long delay = 0;
-        long scaleFactor = 500 + random.nextInt(100);
-        delay = (long) (Math.pow(2, retries) * scaleFactor);
-        delay = Math.min(delay, MAX_BACKOFF_IN_MILLISECONDS);
-
-        try {
-            Thread.sleep(delay);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new AmazonClientException(e.getMessage(), e);
-        }
-    }
-
     /**
      * Returns a new map object that merges the two sets of expected value
      * conditions (user-specified or imposed by the internal implementation of
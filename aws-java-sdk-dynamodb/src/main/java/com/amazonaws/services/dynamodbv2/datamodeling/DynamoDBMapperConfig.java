@@ -50,6 +50,7 @@ public class DynamoDBMapperConfig {
         private PaginationLoadingStrategy paginationLoadingStrategy;
         private RequestMetricCollector requestMetricCollector;
         private ConversionSchema conversionSchema;
+        private Integer batchConcurrency;
 
         /**
          * Creates a new builder initialized with the {@link #DEFAULT} values.
@@ -63,6 +64,7 @@ public class DynamoDBMapperConfig {
             paginationLoadingStrategy = DEFAULT.getPaginationLoadingStrategy();
             requestMetricCollector = DEFAULT.getRequestMetricCollector();
             conversionSchema = DEFAULT.getConversionSchema();
+            batchConcurrency = DEFAULT.getBatchConcurrency();
         }
 
         /**
@@ -260,6 +262,30 @@ public class DynamoDBMapperConfig {
         }
 
 
+        /**
+         * @return the currently-configured batch concurrency
+         */
+        public Integer getBatchConcurrency() {
+            return batchConcurrency;
+        }
+
+        /**
+         * @param value the new batch concurrency
+         */
+        public void setBatchConcurrency(Integer value) {
+            batchConcurrency = value;
+        }
+
+        /**
+         * @param value the new batch concurrency
+         * @return this builder
+         */
+        public Builder withBatchConcurrency(Integer value) {
+            setBatchConcurrency(value);
+            return this;
+        }
+
+
         /**
          * Builds a new {@code DynamoDBMapperConfig} object.
          *
@@ -274,7 +300,8 @@ public class DynamoDBMapperConfig {
                     objectTableNameResolver,
                     paginationLoadingStrategy,
                     requestMetricCollector,
-                    conversionSchema);
+                    conversionSchema,
+                    batchConcurrency);
         }
     }
 
@@ -514,6 +541,7 @@ public class DynamoDBMapperConfig {
     private final PaginationLoadingStrategy paginationLoadingStrategy;
     private final RequestMetricCollector requestMetricCollector;
     private final ConversionSchema conversionSchema;
+    private final Integer batchConcurrency;
 
     /**
      * Legacy constructor, using default PaginationLoadingStrategy
@@ -596,6 +624,28 @@ public class DynamoDBMapperConfig {
             RequestMetricCollector requestMetricCollector,
             ConversionSchema conversionSchema) {
 
+        this(saveBehavior,
+                consistentReads,
+                tableNameOverride,
+                tableNameResolver,
+                objectTableNameResolver,
+                paginationLoadingStrategy,
+                requestMetricCollector,
+                conversionSchema,
+                null);
+    }
+
+    private DynamoDBMapperConfig(
+            SaveBehavior saveBehavior,
+            ConsistentReads consistentReads,
+            TableNameOverride tableNameOverride,
+            TableNameResolver tableNameResolver,
+            ObjectTableNameResolver objectTableNameResolver,
+            PaginationLoadingStrategy paginationLoadingStrategy,
+            RequestMetricCollector requestMetricCollector,
+            ConversionSchema conversionSchema,
+            Integer batchConcurrency) {
+
         this.saveBehavior = saveBehavior;
         this.consistentReads = consistentReads;
         this.tableNameOverride = tableNameOverride;
@@ -604,6 +654,7 @@ public class DynamoDBMapperConfig {
         this.paginationLoadingStrategy = paginationLoadingStrategy;
         this.requestMetricCollector = requestMetricCollector;
         this.conversionSchema = conversionSchema;
+        this.batchConcurrency = batchConcurrency;
     }
 
     /**
@@ -702,6 +753,7 @@ public class DynamoDBMapperConfig {
                     defaults.getPaginationLoadingStrategy();
             this.requestMetricCollector = defaults.getRequestMetricCollector();
             this.conversionSchema = defaults.getConversionSchema();
+            this.batchConcurrency = defaults.getBatchConcurrency();
 
         } else {
 
@@ -739,6 +791,10 @@ public class DynamoDBMapperConfig {
                     ? defaults.getConversionSchema()
                     : overrides.getConversionSchema();
 
+            this.batchConcurrency = (overrides.getBatchConcurrency() == null)
+                    ? defaults.getBatchConcurrency()
+                    : overrides.getBatchConcurrency();
+
         }
     }
 
@@ -815,9 +871,18 @@ public class DynamoDBMapperConfig {
         return conversionSchema;
     }
 
+    /**
+     * Returns the maximum number of requests a batch write or a batch load
+     * has in flight at once, or null if not specified.
+     */
+    public Integer getBatchConcurrency() {
+        return batchConcurrency;
+    }
+
     /**
      * Default configuration uses UPDATE behavior for saves and EVENTUALly
-     * consistent reads, with no table name override and lazy-loading strategy.
+     * consistent reads, with no table name override and lazy-loading strategy,
+     * and sends the requests of a batch operation one at a time.
      */
     public static final DynamoDBMapperConfig DEFAULT = new DynamoDBMapperConfig(
             SaveBehavior.UPDATE,
@@ -827,5 +892,6 @@ public class DynamoDBMapperConfig {
             null, // ObjectTableNameResolver
             PaginationLoadingStrategy.LAZY_LOADING,
             null,  // RequestMetricCollector
-            ConversionSchemas.DEFAULT);
+            ConversionSchemas.DEFAULT,
+            1);    // BatchConcurrency
 }
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2011-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+
+/**
+ * Loads the items of a batch load with requests of up to
+ * {@link #MAX_KEYS_PER_REQUEST} keys, keeping up to a given number of
+ * requests in flight.
+ * <p>
+ * The unprocessed keys of a request are put back with the keys still to load
+ * as soon as the request completes, so that they are folded into the next
+ * requests, and their table backs off meanwhile, see {@link TableBackoffs}.
+ * A table backs off once per round: the requests sent to it before its
+ * current backoff started may still leave keys unprocessed, and neither back
+ * it off again nor count as a round without progress. The load fails once a
+ * table goes through more than
+ * {@link DynamoDBMapper#BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS} consecutive rounds
+ * in which no key of it is processed, or when the first request fails once
+ * the client has retried it.
+ * <p>
+ * The requests are formed and their results handled by the calling thread
+ * only; the other threads only send the requests.
+ */
+class ParallelBatchLoadTask {
+
+    /** The max number of keys allowed in a BatchGetItem request */
+    static final int MAX_KEYS_PER_REQUEST = 100;
+
+    /** The maximum delay of the first backoff of a table */
+    static final long BACKOFF_BASE_IN_MILLISECONDS = 1000;
+
+    private final AmazonDynamoDB db;
+    private final int concurrency;
+    private final boolean consistentReads;
+    private final RequestMetricCollector requestMetricCollector;
+    private final TableBackoffs backoffs;
+
+    /** The keys still to load, by table. */
+    private final Map<String, LinkedList<Map<String, AttributeValue>>> pendingKeys =
+            new LinkedHashMap<String, LinkedList<Map<String, AttributeValue>>>();
+
+    /** The outcomes of the requests sent, in order of completion. */
+    private final BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<Outcome>();
+
+    /** The items loaded, by table. */
+    private final Map<String, List<Map<String, AttributeValue>>> items =
+            new HashMap<String, List<Map<String, AttributeValue>>>();
+
+    private int requestsInFlight;
+
+    /**
+     * The number of consecutive backoff rounds in which no key was processed,
+     * by table.
+     */
+    private final Map<String, Integer> roundsWithoutProgress = new HashMap<String, Integer>();
+
+    /**
+     * @param concurrency
+     *            the maximum number of requests in flight; with 1, the
+     *            requests are sent by the calling thread
+     * @param requestMetricCollector
+     *            the request metric collector of the requests, or null
+     */
+    ParallelBatchLoadTask(AmazonDynamoDB db, int concurrency, boolean consistentReads,
+            RequestMetricCollector requestMetricCollector) {
+        this(db, concurrency, consistentReads, requestMetricCollector, BACKOFF_BASE_IN_MILLISECONDS);
+    }
+
+    /**
+     * @param backoffBaseMillis
+     *            the maximum delay of the first backoff of a table
+     */
+    ParallelBatchLoadTask(AmazonDynamoDB db, int concurrency, boolean consistentReads,
+            RequestMetricCollector requestMetricCollector, long backoffBaseMillis) {
+        this.db = db;
+        this.concurrency = Math.max(1, concurrency);
+        this.consistentReads = consistentReads;
+        this.requestMetricCollector = requestMetricCollector;
+        this.backoffs = new TableBackoffs(backoffBaseMillis);
+    }
+
+    /**
+     * Loads the items of the given keys, by table.
+     *
+     * @return the items loaded, by table; the tables without any item are
+     *         left out
+     */
+    Map<String, List<Map<String, AttributeValue>>> load(
+            Map<String, List<Map<String, AttributeValue>>> keysByTable) {
+
+        for (Entry<String, List<Map<String, AttributeValue>>> entry : keysByTable.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                pendingKeys.put(entry.getKey(),
+                        new LinkedList<Map<String, AttributeValue>>(entry.getValue()));
+            }
+        }
+
+        ExecutorService executorService = concurrency > 1
+                ? Executors.newFixedThreadPool(concurrency)
+                : null;
+        try {
+            while (true) {
+                while (requestsInFlight < concurrency) {
+                    Map<String, KeysAndAttributes> requestItems = nextRequestItems(System.nanoTime());
+                    if (requestItems == null) {
+                        break;
+                    }
+                    send(requestItems, executorService);
+                }
+
+                long waitNanos = backoffs.nanosUntilFirstEnds(pendingKeys.keySet(), System.nanoTime());
+                Outcome outcome;
+                if (requestsInFlight == 0) {
+                    if (waitNanos < 0) {
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    continue;
+                } else if (waitNanos < 0 || requestsInFlight >= concurrency) {
+                    outcome = outcomes.take();
+                } else {
+                    outcome = outcomes.poll(waitNanos, TimeUnit.NANOSECONDS);
+                }
+
+                if (outcome != null) {
+                    requestsInFlight--;
+                    handle(outcome);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Returns the items of the next request, made of up to
+     * {@link #MAX_KEYS_PER_REQUEST} keys of the tables not backing off, or
+     * null if there is none.
+     */
+    private Map<String, KeysAndAttributes> nextRequestItems(long nowNanos) {
+        Map<String, KeysAndAttributes> requestItems = null;
+        int i = 0;
+        Iterator<Entry<String, LinkedList<Map<String, AttributeValue>>>> tableIter =
+                pendingKeys.entrySet().iterator();
+        while (tableIter.hasNext() && i < MAX_KEYS_PER_REQUEST) {
+            Entry<String, LinkedList<Map<String, AttributeValue>>> tableKeys = tableIter.next();
+            if (backoffs.isBackingOff(tableKeys.getKey(), nowNanos)) {
+                continue;
+            }
+
+            if (requestItems == null) {
+                requestItems = new HashMap<String, KeysAndAttributes>();
+            }
+            List<Map<String, AttributeValue>> keys = new LinkedList<Map<String, AttributeValue>>();
+            LinkedList<Map<String, AttributeValue>> remaining = tableKeys.getValue();
+            while (!remaining.isEmpty() && i++ < MAX_KEYS_PER_REQUEST) {
+                keys.add(remaining.removeFirst());
+            }
+            requestItems.put(tableKeys.getKey(),
+                    new KeysAndAttributes().withConsistentRead(consistentReads).withKeys(keys));
+            if (remaining.isEmpty()) {
+                tableIter.remove();
+            }
+        }
+        return requestItems;
+    }
+
+    private void send(final Map<String, KeysAndAttributes> requestItems, ExecutorService executorService) {
+        requestsInFlight++;
+        final Map<String, Integer> rounds = new HashMap<String, Integer>();
+        for (String tableName : requestItems.keySet()) {
+            rounds.put(tableName, backoffs.getRound(tableName));
+        }
+        Runnable call = new Runnable() {
+            @Override
+            public void run() {
+                Outcome outcome = new Outcome(requestItems, rounds);
+                try {
+                    BatchGetItemRequest request = new BatchGetItemRequest().withRequestItems(requestItems);
+                    request.setRequestMetricCollector(requestMetricCollector);
+                    outcome.result = db.batchGetItem(
+                            DynamoDBMapper.applyBatchOperationUserAgent(request));
+                } catch (Exception e) {
+                    outcome.exception = e;
+                } catch (Error e) {
+                    outcome.exception = new AmazonClientException("Error encountered", e);
+                    throw e;
+                } finally {
+                    outcomes.add(outcome);
+                }
+            }
+        };
+        if (executorService == null) {
+            call.run();
+        } else {
+            executorService.execute(call);
+        }
+    }
+
+    private void handle(Outcome outcome) {
+        if (outcome.exception instanceof RuntimeException) {
+            throw (RuntimeException) outcome.exception;
+        } else if (outcome.exception != null) {
+            throw new AmazonClientException(outcome.exception.getMessage(), outcome.exception);
+        }
+
+        Map<String, List<Map<String, AttributeValue>>> responses = outcome.result.getResponses();
+        if (responses != null) {
+            for (Entry<String, List<Map<String, AttributeValue>>> entry : responses.entrySet()) {
+                List<Map<String, AttributeValue>> tableItems = items.get(entry.getKey());
+                if (tableItems == null) {
+                    tableItems = new LinkedList<Map<String, AttributeValue>>();
+                    items.put(entry.getKey(), tableItems);
+                }
+                tableItems.addAll(entry.getValue());
+            }
+        }
+
+        Map<String, KeysAndAttributes> unprocessedKeys = outcome.result.getUnprocessedKeys();
+        if (unprocessedKeys == null) {
+            unprocessedKeys = new HashMap<String, KeysAndAttributes>();
+        }
+        for (Entry<String, KeysAndAttributes> entry : outcome.requestItems.entrySet()) {
+            String tableName = entry.getKey();
+            KeysAndAttributes unprocessed = unprocessedKeys.get(tableName);
+            if (unprocessed == null || unprocessed.getKeys() == null || unprocessed.getKeys().isEmpty()) {
+                backoffs.reset(tableName, outcome.rounds.get(tableName));
+                roundsWithoutProgress.remove(tableName);
+                continue;
+            }
+
+            LinkedList<Map<String, AttributeValue>> keys = pendingKeys.get(tableName);
+            if (keys == null) {
+                keys = new LinkedList<Map<String, AttributeValue>>();
+                pendingKeys.put(tableName, keys);
+            }
+            keys.addAll(0, unprocessed.getKeys());
+
+            boolean progress = unprocessed.getKeys().size() < entry.getValue().getKeys().size();
+            if (progress) {
+                roundsWithoutProgress.remove(tableName);
+            }
+            if (backoffs.backOff(tableName, outcome.rounds.get(tableName)) && !progress) {
+                Integer rounds = roundsWithoutProgress.get(tableName);
+                rounds = rounds == null ? 1 : rounds + 1;
+                if (rounds > DynamoDBMapper.BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS) {
+                    throw new AmazonClientException(
+                            "Batch Get Item request to server hasn't received any data. "
+                            + "Please try again later.");
+                }
+                roundsWithoutProgress.put(tableName, rounds);
+            }
+        }
+    }
+
+    /**
+     * The outcome of a request: either its result or the exception it failed
+     * with.
+     */
+    private static final class Outcome {
+        private final Map<String, KeysAndAttributes> requestItems;
+
+        /** The backoff round of each table when the request was sent. */
+        private final Map<String, Integer> rounds;
+
+        private BatchGetItemResult result;
+        private Exception exception;
+
+        Outcome(Map<String, KeysAndAttributes> requestItems, Map<String, Integer> rounds) {
+            this.requestItems = requestItems;
+            this.rounds = rounds;
+        }
+    }
+}
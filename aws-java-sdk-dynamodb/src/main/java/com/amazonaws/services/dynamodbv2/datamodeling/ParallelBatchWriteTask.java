@@ -0,0 +1,354 @@
+/*
+ * Copyright 2011-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+/**
+ * Writes the items of a batch write with requests of up to
+ * {@link DynamoDBMapper#MAX_ITEMS_PER_BATCH} items, keeping up to a given
+ * number of requests in flight.
+ * <p>
+ * The unprocessed items of a request are put back with the items still to
+ * write, so that a later request writes them, and their table backs off
+ * meanwhile, see {@link TableBackoffs}, as does the table of a throttled
+ * request; a table backs off once per round. A request rejected as too large
+ * is split in two. Any other failure, once the client has retried the request,
+ * is reported as a {@link FailedBatch}.
+ * <p>
+ * The requests are formed and their results handled by the calling thread
+ * only; the other threads only send the requests.
+ */
+class ParallelBatchWriteTask {
+
+    private static final Log log = LogFactory.getLog(ParallelBatchWriteTask.class);
+
+    /** The maximum delay of the first backoff of a table */
+    static final long BACKOFF_BASE_IN_MILLISECONDS = 100;
+
+    /** The minimum interval between two reports of the progress */
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AmazonDynamoDB db;
+    private final int concurrency;
+    private final RequestMetricCollector requestMetricCollector;
+    private final TableBackoffs backoffs = new TableBackoffs(BACKOFF_BASE_IN_MILLISECONDS);
+
+    /** The items still to write, by table. */
+    private final Map<String, LinkedList<WriteRequest>> pendingItems =
+            new LinkedHashMap<String, LinkedList<WriteRequest>>();
+
+    /** Batches to send as they are, such as the halves of a batch too large. */
+    private final LinkedList<Map<String, List<WriteRequest>>> pendingBatches =
+            new LinkedList<Map<String, List<WriteRequest>>>();
+
+    /** The outcomes of the requests sent, in order of completion. */
+    private final BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<Outcome>();
+
+    private final List<FailedBatch> failedBatches = new LinkedList<FailedBatch>();
+
+    private int requestsInFlight;
+    private long totalItems;
+    private long itemsWritten;
+    private long startNanos;
+    private long lastProgressNanos;
+
+    /**
+     * @param concurrency
+     *            the maximum number of requests in flight; with 1, the
+     *            requests are sent by the calling thread
+     * @param requestMetricCollector
+     *            the request metric collector of the requests, or null
+     */
+    ParallelBatchWriteTask(AmazonDynamoDB db, int concurrency,
+            RequestMetricCollector requestMetricCollector) {
+        this.db = db;
+        this.concurrency = Math.max(1, concurrency);
+        this.requestMetricCollector = requestMetricCollector;
+    }
+
+    /**
+     * Writes the given items and returns the batches that failed.
+     */
+    List<FailedBatch> write(Map<String, List<WriteRequest>> requestItems) {
+        for (Entry<String, List<WriteRequest>> entry : requestItems.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                pendingItems.put(entry.getKey(), new LinkedList<WriteRequest>(entry.getValue()));
+                totalItems += entry.getValue().size();
+            }
+        }
+
+        ExecutorService executorService = concurrency > 1
+                ? Executors.newFixedThreadPool(concurrency)
+                : null;
+        startNanos = lastProgressNanos = System.nanoTime();
+        try {
+            while (true) {
+                while (requestsInFlight < concurrency) {
+                    Map<String, List<WriteRequest>> batch = nextBatch(System.nanoTime());
+                    if (batch == null) {
+                        break;
+                    }
+                    send(batch, executorService);
+                }
+
+                long waitNanos = nanosUntilBackoffEnds(System.nanoTime());
+                Outcome outcome;
+                if (requestsInFlight == 0) {
+                    if (waitNanos < 0) {
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    continue;
+                } else if (waitNanos < 0 || requestsInFlight >= concurrency) {
+                    outcome = outcomes.take();
+                } else {
+                    outcome = outcomes.poll(waitNanos, TimeUnit.NANOSECONDS);
+                }
+
+                if (outcome != null) {
+                    requestsInFlight--;
+                    handle(outcome);
+                    reportProgress(false);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+        reportProgress(true);
+        return failedBatches;
+    }
+
+    /**
+     * Returns the next batch to send, made of up to
+     * {@link DynamoDBMapper#MAX_ITEMS_PER_BATCH} items of the tables not
+     * backing off, or null if there is none.
+     */
+    private Map<String, List<WriteRequest>> nextBatch(long nowNanos) {
+        if (!pendingBatches.isEmpty()) {
+            return pendingBatches.removeFirst();
+        }
+
+        Map<String, List<WriteRequest>> batch = null;
+        int i = 0;
+        Iterator<Entry<String, LinkedList<WriteRequest>>> tableIter = pendingItems.entrySet().iterator();
+        while (tableIter.hasNext() && i < DynamoDBMapper.MAX_ITEMS_PER_BATCH) {
+            Entry<String, LinkedList<WriteRequest>> tableItems = tableIter.next();
+            if (backoffs.isBackingOff(tableItems.getKey(), nowNanos)) {
+                continue;
+            }
+
+            if (batch == null) {
+                batch = new HashMap<String, List<WriteRequest>>();
+            }
+            List<WriteRequest> tableBatch = new LinkedList<WriteRequest>();
+            batch.put(tableItems.getKey(), tableBatch);
+            LinkedList<WriteRequest> items = tableItems.getValue();
+            while (!items.isEmpty() && i++ < DynamoDBMapper.MAX_ITEMS_PER_BATCH) {
+                tableBatch.add(items.removeFirst());
+            }
+            if (items.isEmpty()) {
+                tableIter.remove();
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Returns the time until the first backoff of a table with items still to
+     * write ends, zero if one already has, or -1 if no item is left to write.
+     */
+    private long nanosUntilBackoffEnds(long nowNanos) {
+        if (!pendingBatches.isEmpty()) {
+            return 0;
+        }
+        return backoffs.nanosUntilFirstEnds(pendingItems.keySet(), nowNanos);
+    }
+
+    private void send(final Map<String, List<WriteRequest>> batch, ExecutorService executorService) {
+        requestsInFlight++;
+        final Map<String, Integer> rounds = new HashMap<String, Integer>();
+        for (String tableName : batch.keySet()) {
+            rounds.put(tableName, backoffs.getRound(tableName));
+        }
+        Runnable call = new Runnable() {
+            @Override
+            public void run() {
+                Outcome outcome = new Outcome(batch, rounds);
+                try {
+                    BatchWriteItemRequest request = new BatchWriteItemRequest().withRequestItems(batch);
+                    request.setRequestMetricCollector(requestMetricCollector);
+                    outcome.result = db.batchWriteItem(
+                            DynamoDBMapper.applyBatchOperationUserAgent(request));
+                } catch (Exception e) {
+                    outcome.exception = e;
+                } catch (Error e) {
+                    outcome.exception = new AmazonClientException("Error encountered", e);
+                    throw e;
+                } finally {
+                    outcomes.add(outcome);
+                }
+            }
+        };
+        if (executorService == null) {
+            call.run();
+        } else {
+            executorService.execute(call);
+        }
+    }
+
+    private void handle(Outcome outcome) {
+        Map<String, List<WriteRequest>> batch = outcome.batch;
+        if (outcome.exception == null) {
+            Map<String, List<WriteRequest>> unprocessedItems = outcome.result.getUnprocessedItems();
+            if (unprocessedItems == null) {
+                unprocessedItems = new HashMap<String, List<WriteRequest>>();
+            }
+            itemsWritten += countItems(batch) - countItems(unprocessedItems);
+            for (String tableName : batch.keySet()) {
+                List<WriteRequest> unprocessed = unprocessedItems.get(tableName);
+                if (unprocessed == null || unprocessed.isEmpty()) {
+                    backoffs.reset(tableName, outcome.rounds.get(tableName));
+                } else {
+                    LinkedList<WriteRequest> items = pendingItems.get(tableName);
+                    if (items == null) {
+                        items = new LinkedList<WriteRequest>();
+                        pendingItems.put(tableName, items);
+                    }
+                    items.addAll(0, unprocessed);
+                    backoffs.backOff(tableName, outcome.rounds.get(tableName));
+                }
+            }
+            return;
+        }
+
+        Exception e = outcome.exception;
+        if (e instanceof AmazonServiceException
+                && RetryUtils.isRequestEntityTooLargeException((AmazonServiceException) e)
+                && countItems(batch) > 1) {
+            // The request is beyond 1 MB, try with half the items
+            Map<String, List<WriteRequest>> firstHalfBatch = new HashMap<String, List<WriteRequest>>();
+            Map<String, List<WriteRequest>> secondHalfBatch = new HashMap<String, List<WriteRequest>>();
+            for (Entry<String, List<WriteRequest>> entry : batch.entrySet()) {
+                List<WriteRequest> requests = entry.getValue();
+                int half = requests.size() / 2;
+                if (half > 0) {
+                    firstHalfBatch.put(entry.getKey(), requests.subList(0, half));
+                }
+                secondHalfBatch.put(entry.getKey(), requests.subList(half, requests.size()));
+            }
+            if (firstHalfBatch.isEmpty()) {
+                // Single items of several tables; split by table instead
+                for (Entry<String, List<WriteRequest>> entry : batch.entrySet()) {
+                    Map<String, List<WriteRequest>> tableBatch = new HashMap<String, List<WriteRequest>>();
+                    tableBatch.put(entry.getKey(), entry.getValue());
+                    pendingBatches.add(tableBatch);
+                }
+            } else {
+                pendingBatches.add(firstHalfBatch);
+                pendingBatches.add(secondHalfBatch);
+            }
+            return;
+        }
+
+        FailedBatch failedBatch = new FailedBatch();
+        failedBatch.setUnprocessedItems(batch);
+        failedBatch.setException(e);
+        failedBatches.add(failedBatch);
+        if (e instanceof AmazonServiceException
+                && RetryUtils.isThrottlingException((AmazonServiceException) e)) {
+            for (String tableName : batch.keySet()) {
+                backoffs.backOff(tableName, outcome.rounds.get(tableName));
+            }
+        }
+    }
+
+    /**
+     * Logs the number of items written and the throughput, at most every
+     * {@code PROGRESS_INTERVAL_NANOS} unless final.
+     */
+    private void reportProgress(boolean done) {
+        if (!log.isDebugEnabled()) {
+            return;
+        }
+        long nowNanos = System.nanoTime();
+        if (!done && nowNanos - lastProgressNanos < PROGRESS_INTERVAL_NANOS) {
+            return;
+        }
+        lastProgressNanos = nowNanos;
+        double seconds = Math.max(1, nowNanos - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        log.debug((done ? "Batch write done: " : "Batch write in progress: ")
+                + itemsWritten + " of " + totalItems + " items written at "
+                + String.format("%.1f", itemsWritten / seconds) + " items/s with "
+                + concurrency + " concurrent requests, "
+                + failedBatches.size() + " failed batches");
+    }
+
+    private static int countItems(Map<String, List<WriteRequest>> batch) {
+        int count = 0;
+        for (List<WriteRequest> requests : batch.values()) {
+            count += requests.size();
+        }
+        return count;
+    }
+
+    /**
+     * The outcome of a request: either its result or the exception it failed
+     * with.
+     */
+    private static final class Outcome {
+        private final Map<String, List<WriteRequest>> batch;
+
+        /** The backoff round of each table when the request was sent. */
+        private final Map<String, Integer> rounds;
+
+        private BatchWriteItemResult result;
+        private Exception exception;
+
+        Outcome(Map<String, List<WriteRequest>> batch, Map<String, Integer> rounds) {
+            this.batch = batch;
+            this.rounds = rounds;
+        }
+    }
+}
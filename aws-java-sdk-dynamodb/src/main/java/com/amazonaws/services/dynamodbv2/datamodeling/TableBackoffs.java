@@ -0,0 +1,136 @@
+/*
+ * Copyright 2011-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The backoffs of the tables of a batch operation, during which no request is
+ * sent to a table whose last request left items unprocessed. A table backs
+ * off for a time drawn between half and all of a delay that starts at a base
+ * delay and doubles with every consecutive backoff, capped at
+ * {@link DynamoDBMapper#MAX_BACKOFF_IN_MILLISECONDS}.
+ * <p>
+ * With several requests in flight, the responses to the requests sent before
+ * the current backoff of a table started belong to an earlier round: they
+ * neither back the table off again nor end its backoff, so that one round of
+ * throttling escalates the delay only once. The round of a table is taken
+ * with {@link #getRound(String)} when a request is sent.
+ * <p>
+ * Not thread-safe.
+ */
+class TableBackoffs {
+
+    private final Random random = new Random();
+
+    /** The maximum delay of the first backoff of a table */
+    private final long baseDelayMillis;
+
+    /** The number of consecutive backoffs, by table. */
+    private final Map<String, Integer> retries = new HashMap<String, Integer>();
+
+    /** The time until which no request is sent to a table, by table. */
+    private final Map<String, Long> untilNanos = new HashMap<String, Long>();
+
+    /** The number of backoffs ever started, by table. */
+    private final Map<String, Integer> rounds = new HashMap<String, Integer>();
+
+    /**
+     * @param baseDelayMillis
+     *            the maximum delay of the first backoff of a table
+     */
+    TableBackoffs(long baseDelayMillis) {
+        this.baseDelayMillis = baseDelayMillis;
+    }
+
+    /**
+     * Starts the next backoff of the given table, unless the request which
+     * left items unprocessed was sent before its current backoff started.
+     *
+     * @param sentRound
+     *            the round of the table when the request was sent
+     * @return whether a backoff was started
+     */
+    boolean backOff(String tableName, int sentRound) {
+        if (sentRound != getRound(tableName)) {
+            return false;
+        }
+        Integer tableRetries = retries.get(tableName);
+        tableRetries = tableRetries == null ? 0 : tableRetries + 1;
+        retries.put(tableName, tableRetries);
+
+        Integer tableRounds = rounds.get(tableName);
+        rounds.put(tableName, tableRounds == null ? 1 : tableRounds + 1);
+
+        long maxDelay = Math.min(DynamoDBMapper.MAX_BACKOFF_IN_MILLISECONDS,
+                baseDelayMillis << Math.min(tableRetries, 16));
+        long delay = maxDelay / 2 + (long) (random.nextDouble() * (maxDelay / 2));
+        untilNanos.put(tableName, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay));
+        return true;
+    }
+
+    /**
+     * Ends the backoffs of the given table, whose request went through,
+     * unless the request was sent before its current backoff started.
+     *
+     * @param sentRound
+     *            the round of the table when the request was sent
+     */
+    void reset(String tableName, int sentRound) {
+        if (sentRound != getRound(tableName)) {
+            return;
+        }
+        retries.remove(tableName);
+        untilNanos.remove(tableName);
+    }
+
+    /**
+     * Returns the number of backoffs ever started for the given table, which
+     * identifies its current backoff round: unlike the consecutive backoffs,
+     * it is never reset.
+     */
+    int getRound(String tableName) {
+        Integer tableRounds = rounds.get(tableName);
+        return tableRounds == null ? 0 : tableRounds;
+    }
+
+    /**
+     * Returns whether the given table is backing off.
+     */
+    boolean isBackingOff(String tableName, long nowNanos) {
+        Long until = untilNanos.get(tableName);
+        return until != null && until - nowNanos > 0;
+    }
+
+    /**
+     * Returns the time until the first of the given tables is no longer
+     * backing off, zero if one is not, or -1 if there is no table.
+     */
+    long nanosUntilFirstEnds(Collection<String> tableNames, long nowNanos) {
+        long waitNanos = -1;
+        for (String tableName : tableNames) {
+            Long until = untilNanos.get(tableName);
+            long tableWaitNanos = until == null ? 0 : Math.max(0, until - nowNanos);
+            if (waitNanos < 0 || tableWaitNanos < waitNanos) {
+                waitNanos = tableWaitNanos;
+            }
+        }
+        return waitNanos;
+    }
+}
@@ -137,6 +137,107 @@ public class AttributeValueJsonMarshaller {
         }
     }
 
+    /**
+     * Marshall the given parameter object, and output to a SdkJsonGenerator
+     */
+    public void marshall(AttributeValue attributeValue, SdkJsonGenerator jsonWriter) {
+        if (attributeValue == null) {
+            throw new AmazonClientException("Invalid argument passed to marshall(...)");
+        }
+
+        try {
+            jsonWriter.object();
+
+            if (attributeValue.getS() != null) {
+                jsonWriter.key("S").value(attributeValue.getS());
+            }
+            if (attributeValue.getN() != null) {
+                jsonWriter.key("N").value(attributeValue.getN());
+            }
+            if (attributeValue.getB() != null) {
+                jsonWriter.key("B").value(attributeValue.getB());
+            }
+
+            com.amazonaws.internal.ListWithAutoConstructFlag<String> sSList = (com.amazonaws.internal.ListWithAutoConstructFlag<String>)(attributeValue.getSS());
+            if (sSList != null && !(sSList.isAutoConstruct() && sSList.isEmpty())) {
+
+                jsonWriter.key("SS");
+                jsonWriter.array();
+
+                for (String sSListValue : sSList) {
+                    if (sSListValue != null) {
+                        jsonWriter.value(sSListValue);
+                    }
+                }
+                jsonWriter.endArray();
+            }
+
+            com.amazonaws.internal.ListWithAutoConstructFlag<String> nSList = (com.amazonaws.internal.ListWithAutoConstructFlag<String>)(attributeValue.getNS());
+            if (nSList != null && !(nSList.isAutoConstruct() && nSList.isEmpty())) {
+
+                jsonWriter.key("NS");
+                jsonWriter.array();
+
+                for (String nSListValue : nSList) {
+                    if (nSListValue != null) {
+                        jsonWriter.value(nSListValue);
+                    }
+                }
+                jsonWriter.endArray();
+            }
+
+            com.amazonaws.internal.ListWithAutoConstructFlag<java.nio.ByteBuffer> bSList = (com.amazonaws.internal.ListWithAutoConstructFlag<java.nio.ByteBuffer>)(attributeValue.getBS());
+            if (bSList != null && !(bSList.isAutoConstruct() && bSList.isEmpty())) {
+
+                jsonWriter.key("BS");
+                jsonWriter.array();
+
+                for (java.nio.ByteBuffer bSListValue : bSList) {
+                    if (bSListValue != null) {
+                        jsonWriter.value(bSListValue);
+                    }
+                }
+                jsonWriter.endArray();
+            }
+            if (attributeValue.getM() != null) {
+                jsonWriter.key("M");
+                jsonWriter.object();
+                for (Map.Entry<String, AttributeValue> mListValue : attributeValue.getM().entrySet()) {
+                    if (mListValue.getValue() != null) {
+                        jsonWriter.key(mListValue.getKey());
+
+                        AttributeValueJsonMarshaller.getInstance().marshall(mListValue.getValue(), jsonWriter);
+                    }
+                }
+                jsonWriter.endObject();
+            }
+
+            com.amazonaws.internal.ListWithAutoConstructFlag<AttributeValue> lList = (com.amazonaws.internal.ListWithAutoConstructFlag<AttributeValue>)(attributeValue.getL());
+            if (lList != null && !(lList.isAutoConstruct() && lList.isEmpty())) {
+
+                jsonWriter.key("L");
+                jsonWriter.array();
+
+                for (AttributeValue lListValue : lList) {
+                    if (lListValue != null) {
+                        AttributeValueJsonMarshaller.getInstance().marshall(lListValue, jsonWriter);
+                    }
+                }
+                jsonWriter.endArray();
+            }
+            if (attributeValue.isNULL() != null) {
+                jsonWriter.key("NULL").value(attributeValue.isNULL());
+            }
+            if (attributeValue.isBOOL() != null) {
+                jsonWriter.key("BOOL").value(attributeValue.isBOOL());
+            }
+
+            jsonWriter.endObject();
+        } catch(Throwable t) {
+            throw new AmazonClientException("Unable to marshall request to JSON: " + t.getMessage(), t);
+        }
+    }
+
     private static AttributeValueJsonMarshaller instance;
     public static AttributeValueJsonMarshaller getInstance() {
         if (instance == null) instance = new AttributeValueJsonMarshaller();
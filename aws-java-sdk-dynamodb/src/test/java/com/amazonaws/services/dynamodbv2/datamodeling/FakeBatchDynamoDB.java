@@ -0,0 +1,234 @@
+/*
+ * Copyright 2011-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+/**
+ * A fake DynamoDB for the tests of the batch tasks, answering BatchWriteItem
+ * and BatchGetItem requests. By default it leaves the first entry of every
+ * other request unprocessed; it can also reject large requests, throttle or
+ * leave everything unprocessed for the first requests, and hold the calls
+ * open until released, so that the number of calls in flight can be checked
+ * without relying on timing.
+ */
+class FakeBatchDynamoDB implements InvocationHandler {
+
+    /** Leave the first entry of every that many requests unprocessed; 0 for none. */
+    volatile int unprocessedEvery = 2;
+
+    /** The requests of more than that many entries are rejected as too large. */
+    volatile int maxItems = Integer.MAX_VALUE;
+
+    /** The number of first requests which leave every entry unprocessed. */
+    volatile int saturatedRequests;
+
+    /** The number of first requests which are throttled. */
+    volatile int throttledRequests;
+
+    /** The entries written or loaded, as "table:id". */
+    final Set<String> processed = Collections.synchronizedSet(new HashSet<String>());
+
+    /** The consistent read flags of the BatchGetItem requests. */
+    final Set<Boolean> consistentReads = Collections.synchronizedSet(new HashSet<Boolean>());
+
+    /** The time each request was received at, in order. */
+    final List<Long> requestNanos = Collections.synchronizedList(new ArrayList<Long>());
+
+    /** Released once by every call entering the fake. */
+    final Semaphore entered = new Semaphore(0);
+
+    final AtomicInteger requests = new AtomicInteger();
+
+    private volatile CountDownLatch gate;
+
+    AmazonDynamoDB proxy() {
+        return (AmazonDynamoDB) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { AmazonDynamoDB.class }, this);
+    }
+
+    /** Holds the calls open until {@link #release()}. */
+    void hold() {
+        gate = new CountDownLatch(1);
+    }
+
+    /** Lets the held calls, and the later ones, go through. */
+    void release() {
+        gate.countDown();
+    }
+
+    /**
+     * Returns whether the given number of calls enter the fake within the
+     * given time.
+     */
+    boolean awaitEntered(int calls, long timeoutMillis) throws InterruptedException {
+        return entered.tryAcquire(calls, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        entered.release();
+        CountDownLatch currentGate = gate;
+        if (currentGate != null) {
+            currentGate.await();
+        }
+
+        int request = requests.incrementAndGet();
+        requestNanos.add(System.nanoTime());
+        if (request <= throttledRequests) {
+            AmazonServiceException e = new AmazonServiceException("Rate exceeded");
+            e.setErrorCode("ProvisionedThroughputExceededException");
+            e.setStatusCode(400);
+            throw e;
+        }
+        boolean saturated = request <= saturatedRequests;
+        boolean leaveFirstUnprocessed = unprocessedEvery > 0 && request % unprocessedEvery == 0;
+
+        if (method.getName().equals("batchWriteItem")) {
+            return batchWriteItem((BatchWriteItemRequest) args[0], saturated, leaveFirstUnprocessed);
+        } else if (method.getName().equals("batchGetItem")) {
+            return batchGetItem((BatchGetItemRequest) args[0], saturated, leaveFirstUnprocessed);
+        }
+        throw new UnsupportedOperationException(method.getName());
+    }
+
+    private BatchWriteItemResult batchWriteItem(BatchWriteItemRequest request,
+            boolean saturated, boolean leaveFirstUnprocessed) {
+        int count = 0;
+        for (List<WriteRequest> items : request.getRequestItems().values()) {
+            count += items.size();
+        }
+        assertTrue(count <= DynamoDBMapper.MAX_ITEMS_PER_BATCH);
+        checkSize(count);
+
+        Map<String, List<WriteRequest>> unprocessed = new HashMap<String, List<WriteRequest>>();
+        for (Map.Entry<String, List<WriteRequest>> entry : request.getRequestItems().entrySet()) {
+            for (WriteRequest item : entry.getValue()) {
+                if (saturated || leaveFirstUnprocessed) {
+                    if (!unprocessed.containsKey(entry.getKey())) {
+                        unprocessed.put(entry.getKey(), new ArrayList<WriteRequest>());
+                    }
+                    unprocessed.get(entry.getKey()).add(item);
+                    leaveFirstUnprocessed = false;
+                } else {
+                    processed.add(entry.getKey() + ":" + item.getPutRequest().getItem().get("id").getS());
+                }
+            }
+        }
+        return new BatchWriteItemResult().withUnprocessedItems(unprocessed);
+    }
+
+    private BatchGetItemResult batchGetItem(BatchGetItemRequest request,
+            boolean saturated, boolean leaveFirstUnprocessed) {
+        int count = 0;
+        for (KeysAndAttributes keys : request.getRequestItems().values()) {
+            count += keys.getKeys().size();
+            consistentReads.add(keys.getConsistentRead());
+        }
+        assertTrue(count <= ParallelBatchLoadTask.MAX_KEYS_PER_REQUEST);
+        checkSize(count);
+
+        Map<String, List<Map<String, AttributeValue>>> responses =
+                new HashMap<String, List<Map<String, AttributeValue>>>();
+        Map<String, KeysAndAttributes> unprocessed = new HashMap<String, KeysAndAttributes>();
+        for (Map.Entry<String, KeysAndAttributes> entry : request.getRequestItems().entrySet()) {
+            List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+            for (Map<String, AttributeValue> key : entry.getValue().getKeys()) {
+                if (saturated || leaveFirstUnprocessed) {
+                    if (!unprocessed.containsKey(entry.getKey())) {
+                        unprocessed.put(entry.getKey(), new KeysAndAttributes()
+                                .withKeys(new ArrayList<Map<String, AttributeValue>>()));
+                    }
+                    unprocessed.get(entry.getKey()).getKeys().add(key);
+                    leaveFirstUnprocessed = false;
+                } else {
+                    processed.add(entry.getKey() + ":" + key.get("id").getS());
+                    items.add(key);
+                }
+            }
+            responses.put(entry.getKey(), items);
+        }
+        return new BatchGetItemResult().withResponses(responses).withUnprocessedKeys(unprocessed);
+    }
+
+    private void checkSize(int count) {
+        if (count > maxItems) {
+            AmazonServiceException e = new AmazonServiceException("Request too large");
+            e.setStatusCode(413);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the given number of put requests for each of the given number
+     * of tables, named "table0", "table1" and so on.
+     */
+    static Map<String, List<WriteRequest>> items(int tables, int itemsPerTable) {
+        Map<String, List<WriteRequest>> items = new HashMap<String, List<WriteRequest>>();
+        for (Map.Entry<String, List<Map<String, AttributeValue>>> entry : keys(tables, itemsPerTable).entrySet()) {
+            List<WriteRequest> tableItems = new ArrayList<WriteRequest>();
+            for (Map<String, AttributeValue> item : entry.getValue()) {
+                tableItems.add(new WriteRequest().withPutRequest(new PutRequest().withItem(item)));
+            }
+            items.put(entry.getKey(), tableItems);
+        }
+        return items;
+    }
+
+    /**
+     * Returns the given number of keys for each of the given number of
+     * tables, named "table0", "table1" and so on.
+     */
+    static Map<String, List<Map<String, AttributeValue>>> keys(int tables, int keysPerTable) {
+        Map<String, List<Map<String, AttributeValue>>> keys =
+                new HashMap<String, List<Map<String, AttributeValue>>>();
+        for (int t = 0; t < tables; t++) {
+            List<Map<String, AttributeValue>> tableKeys = new ArrayList<Map<String, AttributeValue>>();
+            for (int i = 0; i < keysPerTable; i++) {
+                Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+                key.put("id", new AttributeValue(Integer.toString(i)));
+                tableKeys.add(key);
+            }
+            keys.put("table" + t, tableKeys);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static com.amazonaws.services.dynamodbv2.datamodeling.FakeBatchDynamoDB.keys;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+public class ParallelBatchLoadTaskTest {
+
+    /** A short backoff base delay, to go through many rounds quickly. */
+    private static final long SHORT_BACKOFF_BASE_IN_MILLISECONDS = 1;
+
+    @Test(timeout = 30 * 1000)
+    public void loadsUnprocessedKeysInLaterRequests() {
+        FakeBatchDynamoDB fake = new FakeBatchDynamoDB();
+        Map<String, List<Map<String, AttributeValue>>> items =
+                new ParallelBatchLoadTask(fake.proxy(), 4, true, null, SHORT_BACKOFF_BASE_IN_MILLISECONDS)
+                        .load(keys(3, 500));
+
+        assertEquals(3, items.size());
+        for (List<Map<String, AttributeValue>> tableItems : items.values()) {
+            Set<String> ids = new HashSet<String>();
+            for (Map<String, AttributeValue> item : tableItems) {
+                ids.add(item.get("id").getS());
+            }
+            assertEquals(500, tableItems.size());
+            assertEquals(500, ids.size());
+        }
+        assertEquals(Collections.singleton(true), fake.consistentReads);
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void keepsAtMostConcurrencyRequestsInFlight() throws Exception {
+        final FakeBatchDynamoDB fake = new FakeBatchDynamoDB();
+        fake.unprocessedEvery = 0;
+        fake.hold();
+        final AtomicReference<Map<String, List<Map<String, AttributeValue>>>> items =
+                new AtomicReference<Map<String, List<Map<String, AttributeValue>>>>();
+        Thread loader = new Thread() {
+            @Override
+            public void run() {
+                items.set(new ParallelBatchLoadTask(fake.proxy(), 3, false, null).load(keys(2, 500)));
+            }
+        };
+        loader.start();
+
+        assertTrue(fake.awaitEntered(3, 10 * 1000));
+        assertFalse(fake.awaitEntered(1, 200));
+        fake.release();
+        loader.join();
+
+        assertEquals(500, items.get().get("table0").size());
+        assertEquals(500, items.get().get("table1").size());
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void backsOffTablesWithUnprocessedKeys() {
+        FakeBatchDynamoDB fake = new FakeBatchDynamoDB();
+        fake.unprocessedEvery = 0;
+        fake.saturatedRequests = 1;
+        Map<String, List<Map<String, AttributeValue>>> items =
+                new ParallelBatchLoadTask(fake.proxy(), 1, false, null).load(keys(1, 10));
+
+        // The keys left unprocessed are only sent again once the table has
+        // backed off for at least half the base delay
+        assertEquals(10, items.get("table0").size());
+        assertEquals(2, fake.requestNanos.size());
+        long gapMillis = TimeUnit.NANOSECONDS.toMillis(fake.requestNanos.get(1) - fake.requestNanos.get(0));
+        assertTrue("Sent after " + gapMillis + " ms",
+                gapMillis >= ParallelBatchLoadTask.BACKOFF_BASE_IN_MILLISECONDS / 2);
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void failsWhenNoKeyIsEverProcessed() {
+        FakeBatchDynamoDB fake = new FakeBatchDynamoDB();
+        fake.saturatedRequests = Integer.MAX_VALUE;
+        try {
+            new ParallelBatchLoadTask(fake.proxy(), 1, false, null, SHORT_BACKOFF_BASE_IN_MILLISECONDS)
+                    .load(keys(1, 10));
+            fail("Expected the load to fail");
+        } catch (AmazonClientException expected) {
+        }
+        assertEquals(DynamoDBMapper.BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS + 1, fake.requests.get());
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void countsRequestsWithoutProgressOncePerRound() {
+        // Every round sends the 4 requests of the table at once, before any
+        // of them completes: only the first one to complete counts, and the
+        // others complete long before the backoff of at least 10 ms ends. The
+        // requests of the last round may be cancelled once the load fails.
+        FakeBatchDynamoDB fake = new FakeBatchDynamoDB();
+        fake.saturatedRequests = Integer.MAX_VALUE;
+        try {
+            new ParallelBatchLoadTask(fake.proxy(), 4, false, null, 20)
+                    .load(keys(1, 4 * ParallelBatchLoadTask.MAX_KEYS_PER_REQUEST));
+            fail("Expected the load to fail");
+        } catch (AmazonClientException expected) {
+        }
+        int requests = fake.requests.get();
+        assertTrue("Sent " + requests + " requests",
+                requests > 4 * DynamoDBMapper.BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS
+                && requests <= 4 * (DynamoDBMapper.BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS + 1));
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void recoversAfterRoundsWithoutProgress() {
+        FakeBatchDynamoDB fake = new FakeBatchDynamoDB();
+        fake.unprocessedEvery = 0;
+        fake.saturatedRequests = DynamoDBMapper.BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS;
+        Map<String, List<Map<String, AttributeValue>>> items =
+                new ParallelBatchLoadTask(fake.proxy(), 1, false, null, SHORT_BACKOFF_BASE_IN_MILLISECONDS)
+                        .load(keys(2, 10));
+
+        assertEquals(10, items.get("table0").size());
+        assertEquals(10, items.get("table1").size());
+    }
+}
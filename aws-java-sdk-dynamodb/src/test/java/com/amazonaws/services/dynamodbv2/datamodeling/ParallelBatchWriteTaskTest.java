@@ -0,0 +1,109 @@
+/*
+ * Copyright 2011-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static com.amazonaws.services.dynamodbv2.datamodeling.FakeBatchDynamoDB.items;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+
+public class ParallelBatchWriteTaskTest {
+
+    @Test(timeout = 30 * 1000)
+    public void writesUnprocessedItemsInLaterRequests() {
+        FakeBatchDynamoDB fake = new FakeBatchDynamoDB();
+        List<FailedBatch> failed = new ParallelBatchWriteTask(fake.proxy(), 4, null)
+                .write(items(3, 100));
+
+        assertEquals(0, failed.size());
+        assertEquals(300, fake.processed.size());
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void keepsAtMostConcurrencyRequestsInFlight() throws Exception {
+        final FakeBatchDynamoDB fake = new FakeBatchDynamoDB();
+        fake.unprocessedEvery = 0;
+        fake.hold();
+        final AtomicReference<List<FailedBatch>> failed = new AtomicReference<List<FailedBatch>>();
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                failed.set(new ParallelBatchWriteTask(fake.proxy(), 3, null).write(items(2, 100)));
+            }
+        };
+        writer.start();
+
+        assertTrue(fake.awaitEntered(3, 10 * 1000));
+        assertFalse(fake.awaitEntered(1, 200));
+        fake.release();
+        writer.join();
+
+        assertEquals(0, failed.get().size());
+        assertEquals(200, fake.processed.size());
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void splitsRequestsTooLarge() {
+        FakeBatchDynamoDB fake = new FakeBatchDynamoDB();
+        fake.maxItems = 5;
+        List<FailedBatch> failed = new ParallelBatchWriteTask(fake.proxy(), 1, null)
+                .write(items(2, 30));
+
+        assertEquals(0, failed.size());
+        assertEquals(60, fake.processed.size());
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void reportsSingleItemsTooLarge() {
+        FakeBatchDynamoDB fake = new FakeBatchDynamoDB();
+        fake.maxItems = 0;
+        List<FailedBatch> failed = new ParallelBatchWriteTask(fake.proxy(), 2, null)
+                .write(items(1, 3));
+
+        assertEquals(3, failed.size());
+        for (FailedBatch batch : failed) {
+            assertEquals(413, ((AmazonServiceException) batch.getException()).getStatusCode());
+        }
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void backsOffThrottledTables() {
+        FakeBatchDynamoDB fake = new FakeBatchDynamoDB();
+        fake.unprocessedEvery = 0;
+        fake.throttledRequests = 1;
+        List<FailedBatch> failed = new ParallelBatchWriteTask(fake.proxy(), 1, null)
+                .write(items(1, 2 * DynamoDBMapper.MAX_ITEMS_PER_BATCH));
+
+        // The throttled batch is reported, and the other one is only sent
+        // once the table has backed off for at least half the base delay
+        assertEquals(1, failed.size());
+        assertEquals("ProvisionedThroughputExceededException",
+                ((AmazonServiceException) failed.get(0).getException()).getErrorCode());
+        assertEquals(DynamoDBMapper.MAX_ITEMS_PER_BATCH, failed.get(0).getUnprocessedItems().get("table0").size());
+        assertEquals(DynamoDBMapper.MAX_ITEMS_PER_BATCH, fake.processed.size());
+        assertEquals(2, fake.requestNanos.size());
+        long gapMillis = TimeUnit.NANOSECONDS.toMillis(fake.requestNanos.get(1) - fake.requestNanos.get(0));
+        assertTrue("Sent after " + gapMillis + " ms", gapMillis >= 50);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TableBackoffsTest {
+
+    private static final long BASE_IN_MILLISECONDS = 1000;
+
+    @Test
+    public void backsOffOncePerRound() {
+        TableBackoffs backoffs = new TableBackoffs(BASE_IN_MILLISECONDS);
+        // Four requests in flight, sent in the same round
+        int sentRound = backoffs.getRound("table");
+
+        assertTrue(backoffs.backOff("table", sentRound));
+        assertFalse(backoffs.backOff("table", sentRound));
+        assertFalse(backoffs.backOff("table", sentRound));
+        assertFalse(backoffs.backOff("table", sentRound));
+
+        // Still the first backoff: at most the base delay
+        assertEquals(sentRound + 1, backoffs.getRound("table"));
+        long waitNanos = backoffs.nanosUntilFirstEnds(Arrays.asList("table"), System.nanoTime());
+        assertTrue(waitNanos <= TimeUnit.MILLISECONDS.toNanos(BASE_IN_MILLISECONDS));
+    }
+
+    @Test
+    public void earlierRoundsDoNotEndTheBackoff() {
+        TableBackoffs backoffs = new TableBackoffs(BASE_IN_MILLISECONDS);
+        int sentRound = backoffs.getRound("table");
+        assertTrue(backoffs.backOff("table", sentRound));
+
+        backoffs.reset("table", sentRound);
+        assertTrue(backoffs.isBackingOff("table", System.nanoTime()));
+
+        backoffs.reset("table", backoffs.getRound("table"));
+        assertFalse(backoffs.isBackingOff("table", System.nanoTime()));
+    }
+
+    @Test
+    public void tablesBackOffIndependently() {
+        TableBackoffs backoffs = new TableBackoffs(BASE_IN_MILLISECONDS);
+        assertTrue(backoffs.backOff("table0", backoffs.getRound("table0")));
+
+        assertTrue(backoffs.isBackingOff("table0", System.nanoTime()));
+        assertFalse(backoffs.isBackingOff("table1", System.nanoTime()));
+        assertEquals(0, backoffs.nanosUntilFirstEnds(Arrays.asList("table0", "table1"), System.nanoTime()));
+        assertEquals(-1, backoffs.nanosUntilFirstEnds(Arrays.<String> asList(), System.nanoTime()));
+    }
+}
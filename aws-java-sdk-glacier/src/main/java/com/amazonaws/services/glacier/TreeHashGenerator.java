@@ -14,11 +14,10 @@
  */
 package com.amazonaws.services.glacier;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -37,6 +36,8 @@ import com.amazonaws.util.BinaryUtils;
  */
 public class TreeHashGenerator {
 
+    private static final int MB = 1024 * 1024;
+
 	/**
 	 * Calculates a hex encoded binary hash using a tree hashing algorithm for
 	 * the data in the specified file.
@@ -118,44 +119,59 @@ public class TreeHashGenerator {
          * one element. Any final odd-numbered parts at each step are carried
          * over to the next iteration as-is.
          */
-        List<byte[]> hashes = new ArrayList<byte[]>();
-        hashes.addAll(checksums);
-        while ( hashes.size() > 1 ) {
-            List<byte[]> treeHashes = new ArrayList<byte[]>();
-            for ( int i = 0; i < hashes.size() / 2; i++ ) {
-                byte[] firstPart = hashes.get(2 * i);
-                byte[] secondPart = hashes.get(2 * i + 1);
-                byte[] concatenation = new byte[firstPart.length + secondPart.length];
-                System.arraycopy(firstPart, 0, concatenation, 0, firstPart.length);
-                System.arraycopy(secondPart, 0, concatenation, firstPart.length, secondPart.length);
-                try {
-					treeHashes.add(computeSHA256Hash(concatenation));
-				} catch (Exception e) {
-					throw new AmazonClientException("Unable to compute hash", e);
-				}
+        MessageDigest messageDigest = newSHA256MessageDigest();
+        byte[][] hashes = checksums.toArray(new byte[checksums.size()][]);
+        int count = hashes.length;
+        while ( count > 1 ) {
+            // Each level is computed in place, over the first half of the array
+            int treeCount = 0;
+            for ( int i = 0; i + 1 < count; i += 2 ) {
+                messageDigest.update(hashes[i]);
+                messageDigest.update(hashes[i + 1]);
+                hashes[treeCount++] = messageDigest.digest();
             }
-            if ( hashes.size() % 2 == 1 ) {
-                treeHashes.add(hashes.get(hashes.size() - 1));
+            if ( count % 2 == 1 ) {
+                hashes[treeCount++] = hashes[count - 1];
             }
-            hashes = treeHashes;
+            count = treeCount;
         }
 
-        return BinaryUtils.toHex(hashes.get(0));
+        return BinaryUtils.toHex(hashes[0]);
+    }
+
+    /**
+     * Calculates a hex encoded binary hash using a tree hashing algorithm for
+     * the remaining bytes of the specified buffer, such as a memory-mapped
+     * region of a file. The bytes are hashed straight from the buffer, whose
+     * position is left untouched.
+     *
+     * @param data
+     *            The buffer containing the data to hash.
+     *
+     * @return The hex encoded binary tree hash for the data in the specified
+     *         buffer.
+     *
+     * @throws AmazonClientException
+     *             If problems were encountered calculating the hash.
+     */
+    public static String calculateTreeHash(ByteBuffer data) throws AmazonClientException {
+        MessageDigest messageDigest = newSHA256MessageDigest();
+        List<byte[]> checksums = new ArrayList<byte[]>();
+        ByteBuffer chunk = data.duplicate();
+        int end = chunk.limit();
+        do {
+            chunk.limit(Math.min(chunk.position() + MB, end));
+            messageDigest.update(chunk);
+            checksums.add(messageDigest.digest());
+        } while ( chunk.position() < end );
+        return calculateTreeHash(checksums);
     }
-    
 
-    private static byte[] computeSHA256Hash(byte[] data) throws NoSuchAlgorithmException, IOException {
-        BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(data));
+    private static MessageDigest newSHA256MessageDigest() {
         try {
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
-            byte[] buffer = new byte[16384];
-            int bytesRead = -1;
-            while ( (bytesRead = bis.read(buffer, 0, buffer.length)) != -1 ) {
-                messageDigest.update(buffer, 0, bytesRead);
-            }
-            return messageDigest.digest();
-        } finally {
-            try { bis.close(); } catch ( Exception e ) {}
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AmazonClientException("Unable to compute hash", e);
         }
     }
 }
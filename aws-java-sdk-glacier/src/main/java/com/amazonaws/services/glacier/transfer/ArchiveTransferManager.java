@@ -27,9 +27,20 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -62,6 +73,7 @@ import com.amazonaws.services.glacier.model.JobParameters;
 import com.amazonaws.services.glacier.model.UploadArchiveRequest;
 import com.amazonaws.services.glacier.model.UploadArchiveResult;
 import com.amazonaws.services.glacier.model.UploadMultipartPartRequest;
+import com.amazonaws.services.s3.internal.ByteBufferInputStream;
 import com.amazonaws.services.s3.internal.InputSubstream;
 import com.amazonaws.services.sns.AmazonSNSClient;
 import com.amazonaws.services.sqs.AmazonSQSClient;
@@ -87,6 +99,15 @@ public class ArchiveTransferManager {
     /** Default retry time when downloading in multiple chunks using range retrieval */
     private static final int DEFAULT_MAX_RETRIES = 3;
 
+    /**
+     * The maximum part size, in bytes, for a parallel upload, whose parts are
+     * memory-mapped.
+     */
+    private static final long MAXIMUM_PARALLEL_UPLOAD_PART_SIZE = 1024L * 1024 * 1024;
+
+    /** Number of times the upload of a part is attempted. */
+    private static final int MAX_PART_UPLOAD_TRIES = 5;
+
     /** Glacier client used for making all requests. */
     private final AmazonGlacier glacier;
 
@@ -317,6 +338,203 @@ public class ArchiveTransferManager {
         }
     }
 
+    /**
+     * Uploads the specified file to Amazon Glacier for archival storage in the
+     * specified vault in the specified user's account, with a multipart upload
+     * whose parts are uploaded in parallel by the specified number of threads.
+     * Each part is memory-mapped from the file, and its tree hash is computed
+     * by the thread uploading it; the tree hash of the archive is then
+     * combined from the tree hashes of the parts, without reading the file
+     * again. Files no larger than one part are uploaded directly.
+     *
+     * @param accountId
+     *            The ID for the account which owns the Glacier vault being
+     *            uploaded to. To use the same account the developer is using to
+     *            make requests to AWS, the value <code>"-"</code> can be used
+     *            instead of the full account ID.
+     * @param vaultName
+     *            The name of the vault to upload to.
+     * @param archiveDescription
+     *            The description of the new archive being uploaded.
+     * @param file
+     *            The file to upload to Amazon Glacier.
+     * @param partSize
+     *            The size, in bytes, of each part of the upload: a power of
+     *            two multiple of 1MB, up to 1GB.
+     * @param threadCount
+     *            The number of parts uploaded at once.
+     * @param progressListener
+     *            The optional progress listener for receiving updates about
+     *            the upload status; it is notified from several threads.
+     *
+     * @return The result of the upload, including the archive ID needed to
+     *         access the upload later.
+     *
+     * @throws AmazonServiceException
+     *             If any problems were encountered while communicating with
+     *             AWS.
+     * @throws AmazonClientException
+     *             If any problems were encountered inside the AWS SDK for Java
+     *             client code in making requests or processing responses from
+     *             AWS.
+     */
+    public UploadResult uploadInParallel(final String accountId,
+            final String vaultName, final String archiveDescription,
+            final File file, final long partSize, final int threadCount,
+            final ProgressListener progressListener) throws AmazonServiceException,
+            AmazonClientException {
+        if (partSize < MINIMUM_PART_SIZE
+                || partSize > MAXIMUM_PARALLEL_UPLOAD_PART_SIZE
+                || Long.bitCount(partSize / MINIMUM_PART_SIZE) != 1
+                || partSize % MINIMUM_PART_SIZE != 0) {
+            throw new IllegalArgumentException("The part size must be a power "
+                    + "of two multiple of 1MB, up to 1GB: " + partSize);
+        }
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("The thread count must be positive: " + threadCount);
+        }
+        if (file.length() <= partSize) {
+            return uploadInSinglePart(accountId, vaultName, archiveDescription,
+                    file, progressListener);
+        }
+
+        publishProgress(progressListener, ProgressEventType.TRANSFER_PREPARING_EVENT);
+        String uploadId = null;
+        try {
+            uploadId = initiateMultipartUpload(accountId, vaultName,
+                    archiveDescription, partSize);
+        } catch (Throwable t) {
+            publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
+            throw failure(t);
+        }
+        publishProgress(progressListener, ProgressEventType.TRANSFER_STARTED_EVENT);
+        RandomAccessFile input = null;
+        ExecutorService threadPool = newUploadThreadPool(threadCount);
+        List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+        try {
+            input = new RandomAccessFile(file, "r");
+            final FileChannel channel = input.getChannel();
+            final long fileLength = channel.size();
+            for (long position = 0; position < fileLength; position += partSize) {
+                final long partPosition = position;
+                final long length = Math.min(partSize, fileLength - position);
+                final String partUploadId = uploadId;
+                futures.add(threadPool.submit(new Callable<byte[]>() {
+                    public byte[] call() throws Exception {
+                        MappedByteBuffer part = channel.map(
+                                FileChannel.MapMode.READ_ONLY, partPosition, length);
+                        return uploadPart(accountId, vaultName, partUploadId,
+                                partPosition, part, progressListener);
+                    }
+                }));
+            }
+
+            List<byte[]> binaryChecksums = new ArrayList<byte[]>(futures.size());
+            for (Future<byte[]> future : futures) {
+                try {
+                    binaryChecksums.add(future.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause();
+                }
+            }
+            String checksum = TreeHashGenerator.calculateTreeHash(binaryChecksums);
+
+            CompleteMultipartUploadResult completeMultipartUploadResult =
+                glacier.completeMultipartUpload(new CompleteMultipartUploadRequest()
+                    .withAccountId(accountId)
+                    .withArchiveSize(Long.toString(fileLength))
+                    .withVaultName(vaultName)
+                    .withChecksum(checksum)
+                    .withUploadId(uploadId));
+
+            String artifactId = completeMultipartUploadResult.getArchiveId();
+            publishProgress(progressListener, ProgressEventType.TRANSFER_COMPLETED_EVENT);
+            return new UploadResult(artifactId);
+        } catch (Throwable t) {
+            for (Future<byte[]> future : futures) {
+                future.cancel(true);
+            }
+            awaitWorkers(threadPool);
+            publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
+            glacier.abortMultipartUpload(new AbortMultipartUploadRequest(accountId, vaultName, uploadId));
+            throw failure(t, "Unable to finish the upload");
+        } finally {
+            threadPool.shutdownNow();
+            closeQuietly(input, log);
+        }
+    }
+
+    /**
+     * Uploads the specified part of a multipart upload, and returns its
+     * binary tree hash.
+     */
+    private byte[] uploadPart(String accountId, String vaultName,
+            String uploadId, long position, ByteBuffer part,
+            ProgressListener progressListener) throws Exception {
+        String checksum = TreeHashGenerator.calculateTreeHash(part);
+        String range = "bytes " + position + "-" + (position + part.remaining() - 1) + "/*";
+        Exception failedException = null;
+        for (int tries = 0; tries < MAX_PART_UPLOAD_TRIES; tries++) {
+            if (Thread.currentThread().isInterrupted())
+                throw new InterruptedException();
+            try {
+                UploadMultipartPartRequest req = new UploadMultipartPartRequest()
+                    .withAccountId(accountId)
+                    .withChecksum(checksum)
+                    .withBody(new ByteBufferInputStream(part))
+                    .withRange(range)
+                    .withUploadId(uploadId)
+                    .withVaultName(vaultName)
+                    .withGeneralProgressListener(progressListener)
+                    ;
+                glacier.uploadMultipartPart(req);
+                return BinaryUtils.fromHex(checksum);
+            } catch (Exception e) {
+                failedException = e;
+            }
+        }
+        throw failedException;
+    }
+
+    private String initiateMultipartUpload(String accountId, String vaultName,
+            String archiveDescription, long partSize) {
+        InitiateMultipartUploadResult initiateResult = glacier.initiateMultipartUpload(new InitiateMultipartUploadRequest()
+            .withAccountId(accountId)
+            .withArchiveDescription(archiveDescription)
+            .withVaultName(vaultName)
+            .withPartSize(Long.toString(partSize)));
+        return initiateResult.getUploadId();
+    }
+
+    /**
+     * Interrupts the workers of the thread pool and waits for them to finish,
+     * so that no part is still being uploaded when the upload is aborted.
+     */
+    private static void awaitWorkers(ExecutorService threadPool) {
+        threadPool.shutdownNow();
+        try {
+            while (!threadPool.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.debug("Waiting for the parts being uploaded to be cancelled");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService newUploadThreadPool(int threadCount) {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private int threadCount = 1;
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setName("glacier-archive-transfer-manager-worker-" + threadCount++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        return Executors.newFixedThreadPool(threadCount, threadFactory);
+    }
+
     /**
      * Downloads an archive from Amazon Glacier in the specified vault for the
      * current user's account, and saves it to the specified file. Amazon
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.glacier;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.amazonaws.util.BinaryUtils;
+
+public class TreeHashGeneratorTest {
+
+    private static final int MB = 1024 * 1024;
+
+    private static final int[] LENGTHS = {
+        1, 1000, MB - 1, MB, MB + 1, 2 * MB, 3 * MB + 17, 4 * MB, 5 * MB - 1, 7 * MB + 123456 };
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void testBufferHashMatchesLegacyImplementation() throws Exception {
+        for (int length : LENGTHS) {
+            byte[] data = data(length);
+            String expected = legacyTreeHash(data);
+
+            assertEquals("length " + length, expected, TreeHashGenerator.calculateTreeHash(ByteBuffer.wrap(data)));
+            assertEquals("length " + length, expected,
+                    TreeHashGenerator.calculateTreeHash(new ByteArrayInputStream(data)));
+        }
+    }
+
+    @Test
+    public void testBufferHashOfUnalignedRegion() throws Exception {
+        byte[] data = data(6 * MB);
+        for (int offset : new int[] { 1, MB - 7, MB + 3 }) {
+            int length = 3 * MB + 11;
+            byte[] region = new byte[length];
+            System.arraycopy(data, offset, region, 0, length);
+            String expected = legacyTreeHash(region);
+
+            ByteBuffer heap = ByteBuffer.wrap(data, offset, length);
+            assertEquals(expected, TreeHashGenerator.calculateTreeHash(heap));
+            // The position of the buffer is left untouched
+            assertEquals(offset, heap.position());
+            assertEquals(offset + length, heap.limit());
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+            direct.put(data);
+            direct.position(offset);
+            direct.limit(offset + length);
+            assertEquals(expected, TreeHashGenerator.calculateTreeHash(direct));
+            assertEquals(offset, direct.position());
+        }
+    }
+
+    @Test
+    public void testChecksumsCombination() throws Exception {
+        for (int count = 1; count <= 9; count++) {
+            byte[] data = data(count * MB);
+            List<byte[]> checksums = new ArrayList<byte[]>();
+            for (int i = 0; i < count; i++) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(data, i * MB, MB);
+                checksums.add(digest.digest());
+            }
+            assertEquals(legacyTreeHash(data), TreeHashGenerator.calculateTreeHash(checksums));
+        }
+    }
+
+    /**
+     * Computes the tree hash of the given data the way the previous
+     * implementation did, combining each pair of hashes into a new array.
+     */
+    private static String legacyTreeHash(byte[] data) throws Exception {
+        List<byte[]> hashes = new ArrayList<byte[]>();
+        for (int offset = 0; offset < data.length; offset += MB) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data, offset, Math.min(MB, data.length - offset));
+            hashes.add(digest.digest());
+        }
+        while (hashes.size() > 1) {
+            List<byte[]> treeHashes = new ArrayList<byte[]>();
+            for (int i = 0; i < hashes.size() / 2; i++) {
+                byte[] firstPart = hashes.get(2 * i);
+                byte[] secondPart = hashes.get(2 * i + 1);
+                byte[] concatenation = new byte[firstPart.length + secondPart.length];
+                System.arraycopy(firstPart, 0, concatenation, 0, firstPart.length);
+                System.arraycopy(secondPart, 0, concatenation, firstPart.length, secondPart.length);
+                treeHashes.add(MessageDigest.getInstance("SHA-256").digest(concatenation));
+            }
+            if (hashes.size() % 2 == 1) {
+                treeHashes.add(hashes.get(hashes.size() - 1));
+            }
+            hashes = treeHashes;
+        }
+        return BinaryUtils.toHex(hashes.get(0));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.glacier.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.glacier.AmazonGlacierClient;
+import com.amazonaws.services.glacier.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.glacier.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.glacier.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.glacier.model.UploadMultipartPartRequest;
+import com.amazonaws.services.glacier.model.UploadMultipartPartResult;
+
+public class ArchiveTransferManagerTest {
+
+    private static final long PART_SIZE = 1024 * 1024;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("archive", ".tmp");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(3 * PART_SIZE);
+        } finally {
+            raf.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testFailedParallelUploadIsAbortedOnceWorkersFinish() throws Exception {
+        final CountDownLatch othersEntered = new CountDownLatch(2);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger inFlightAtAbort = new AtomicInteger(-1);
+        AmazonGlacierClient glacier = new AmazonGlacierClient(new BasicAWSCredentials("access", "secret")) {
+            @Override
+            public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+                return new InitiateMultipartUploadResult().withUploadId("upload");
+            }
+
+            @Override
+            public UploadMultipartPartResult uploadMultipartPart(UploadMultipartPartRequest request) {
+                inFlight.incrementAndGet();
+                try {
+                    if (request.getRange().startsWith("bytes 0-")) {
+                        // The first part fails once the others are in flight
+                        othersEntered.await();
+                        throw new AmazonServiceException("We encountered an internal error");
+                    }
+                    othersEntered.countDown();
+                    try {
+                        new CountDownLatch(1).await();
+                    } catch (InterruptedException e) {
+                        // Takes a while to be cancelled
+                        sleep(200);
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new AmazonClientException("Cancelled");
+                } catch (InterruptedException e) {
+                    throw new AmazonClientException("Interrupted", e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+
+            @Override
+            public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+                inFlightAtAbort.set(inFlight.get());
+            }
+        };
+        ArchiveTransferManager atm = new ArchiveTransferManager(glacier, new BasicAWSCredentials("access", "secret"));
+
+        try {
+            atm.uploadInParallel("-", "vault", "archive", file, PART_SIZE, 3, null);
+            fail("Expected the upload to fail");
+        } catch (AmazonClientException expected) {
+        }
+        assertEquals(0, inFlightAtAbort.get());
+    }
+
+    private static void sleep(long millis) {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        long remaining;
+        while ((remaining = end - System.nanoTime()) > 0) {
+            try {
+                Thread.sleep(TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+            } catch (InterruptedException e) {
+                // Keeps sleeping
+            }
+        }
+    }
+}
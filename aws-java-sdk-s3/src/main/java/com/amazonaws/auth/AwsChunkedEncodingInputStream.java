@@ -17,11 +17,16 @@ import static com.amazonaws.util.StringUtils.UTF8;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.RequestClientOptions;
 import com.amazonaws.internal.SdkInputStream;
 import com.amazonaws.util.BinaryUtils;
 
@@ -32,23 +37,35 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
 
     protected static final String DEFAULT_ENCODING = "UTF-8";
 
-    private static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+    private static final int DEFAULT_CHUNK_SIZE = RequestClientOptions.DEFAULT_CHUNK_SIZE;
     private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
 
     private static final String CLRF = "\r\n";
     private static final String CHUNK_STRING_TO_SIGN_PREFIX = "AWS4-HMAC-SHA256-PAYLOAD";
     private static final String CHUNK_SIGNATURE_HEADER = ";chunk-signature=";
     private static final int SIGNATURE_LENGTH = 64;
-    private static final byte[] FINAL_CHUNK = new byte[0];
+    /** Hex encoded SHA-256 hash of the empty non-signature extension. */
+    private static final String EMPTY_EXTENSION_HASH =
+            "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
 
     private InputStream is = null;
     private final int maxBufferSize;
+    private final int chunkSize;
     private final byte[] kSigning;
     private final String dateTime;
     private final String keyPath;
     private final String headerSignature;
     private String priorChunkSignature;
-    private final AWS4Signer aws4Signer;
+
+    /**
+     * Buffers of the data of the current chunk, and of the signed chunk, reused
+     * from chunk to chunk; allocated on the first read.
+     */
+    private byte[] chunkData;
+    private byte[] signedChunk;
+    /** Mac initialized with the signing key, reused for all the chunks. */
+    private Mac mac;
+    private MessageDigest sha256;
 
     /** Iterator on the current chunk that has been signed */
     private ChunkContentIterator currentChunkIterator;
@@ -71,19 +88,30 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
         this(in, DEFAULT_BUFFER_SIZE, kSigning, datetime, keyPath, headerSignature, aws4Signer);
     }
 
+    public AwsChunkedEncodingInputStream(InputStream in, int maxBufferSize,
+            byte[] kSigning, String datetime, String keyPath,
+            String headerSignature, AWS4Signer aws4Signer) {
+        this(in, maxBufferSize, DEFAULT_CHUNK_SIZE, kSigning, datetime,
+                keyPath, headerSignature, aws4Signer);
+    }
+
     /**
      * A wrapper of InputStream that implements pseudo-chunked-encoding.
      * Each chunk will be buffered for the calculation of the chunk signature
      * which is added at the head of each chunk.<br>
-     * The default chunk size cannot be customized, since we need to calculate
-     * the expected encoded stream length before reading the wrapped stream.<br>
+     * The expected encoded stream length, which must be known before reading
+     * the wrapped stream, depends on the chunk size: see
+     * {@link #calculateStreamContentLength(long, int)}.<br>
      * This class will use the mark() & reset() of the wrapped InputStream if they
      * are supported, otherwise it will create a buffer for bytes read from
      * the wrapped stream.
      * @param in
      * 			The original InputStream.
      * @param maxBufferSize
-     * 			Maximum number of bytes buffered by this class.
+     * 			Maximum number of bytes buffered by this class; at least the
+     * 			chunk size.
+     * @param chunkSize
+     * 			Size of the chunks, except the last ones.
      * @param kSigning
      * 			Signing key.
      * @param datetime
@@ -94,10 +122,11 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
      * 			The signature of the signed headers. This will be used for
      * 			calculating the signature of the first chunk.
      * @param aws4Signer
-     * 			The AWS4Signer used for hashing and signing.
+     * 			The AWS4Signer of the request; the chunks are hashed and
+     * 			signed with a digest and a Mac reused from chunk to chunk.
      */
     public AwsChunkedEncodingInputStream(InputStream in, int maxBufferSize,
-            byte[] kSigning, String datetime, String keyPath,
+            int chunkSize, byte[] kSigning, String datetime, String keyPath,
             String headerSignature, AWS4Signer aws4Signer) {
         if (in instanceof AwsChunkedEncodingInputStream) {
             // This could happen when the request is retried, and we need to re-calculate the signatures.
@@ -111,15 +140,18 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
             decodedStreamBuffer = null;
         }
 
-        if (maxBufferSize < DEFAULT_CHUNK_SIZE)
+        if (chunkSize < RequestClientOptions.MINIMUM_CHUNK_SIZE)
+            throw new IllegalArgumentException("Chunk size should not be less than "
+                    + RequestClientOptions.MINIMUM_CHUNK_SIZE);
+        if (maxBufferSize < chunkSize)
             throw new IllegalArgumentException("Max buffer size should not be less than chunk size");
         this.maxBufferSize = maxBufferSize;
+        this.chunkSize = chunkSize;
         this.kSigning = kSigning;
         this.dateTime = datetime;
         this.keyPath = keyPath;
         this.headerSignature = headerSignature;
         this.priorChunkSignature = headerSignature;
-        this.aws4Signer = aws4Signer;
     }
 
     @Override
@@ -249,13 +281,24 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
     }
 
     public static long calculateStreamContentLength(long originalLength) {
+        return calculateStreamContentLength(originalLength, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Returns the length of the chunk-encoded stream of the given length, in
+     * chunks of the given size.
+     */
+    public static long calculateStreamContentLength(long originalLength, int chunkSize) {
         if (originalLength < 0) {
             throw new IllegalArgumentException("Nonnegative content length expected.");
         }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Positive chunk size expected.");
+        }
 
-        long maxSizeChunks = originalLength / DEFAULT_CHUNK_SIZE;
-        long remainingBytes =  originalLength % DEFAULT_CHUNK_SIZE;
-        return maxSizeChunks * calculateSignedChunkLength(DEFAULT_CHUNK_SIZE)
+        long maxSizeChunks = originalLength / chunkSize;
+        long remainingBytes =  originalLength % chunkSize;
+        return maxSizeChunks * calculateSignedChunkLength(chunkSize)
                 + (remainingBytes > 0? calculateSignedChunkLength(remainingBytes) : 0)
                 + calculateSignedChunkLength(0);
     }
@@ -275,17 +318,21 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
      * 		Returns true if next chunk is the last empty chunk.
      */
     private boolean setUpNextChunk() throws IOException {
-        byte[] chunkData = new byte[DEFAULT_CHUNK_SIZE];
+        if (chunkData == null) {
+            chunkData = new byte[chunkSize];
+            signedChunk = new byte[(int) calculateSignedChunkLength(chunkSize)];
+        }
         int chunkSizeInBytes = 0;
-        while (chunkSizeInBytes < DEFAULT_CHUNK_SIZE) {
+        while (chunkSizeInBytes < chunkSize) {
             /** Read from the buffer of the decoded stream */
             if (null != decodedStreamBuffer
                     && decodedStreamBuffer.hasNext()) {
-                chunkData[chunkSizeInBytes++] = decodedStreamBuffer.next();
+                chunkSizeInBytes += decodedStreamBuffer.next(chunkData,
+                        chunkSizeInBytes, chunkSize - chunkSizeInBytes);
             }
             /** Read from the wrapped stream */
             else {
-                int bytesToRead = DEFAULT_CHUNK_SIZE - chunkSizeInBytes;
+                int bytesToRead = chunkSize - chunkSizeInBytes;
                 int count = is.read(chunkData, chunkSizeInBytes, bytesToRead);
                 if (count != -1) {
                     if (null != decodedStreamBuffer)
@@ -296,52 +343,45 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
                     break;
             }
         }
-        if (chunkSizeInBytes == 0){
-            byte[] signedFinalChunk = createSignedChunk(FINAL_CHUNK);
-            currentChunkIterator = new ChunkContentIterator(signedFinalChunk);
-            return true;
-        }
-        else {
-            if (chunkSizeInBytes < chunkData.length) {
-                byte[] temp = new byte[chunkSizeInBytes];
-                System.arraycopy(chunkData, 0, temp, 0, chunkSizeInBytes);
-                chunkData = temp;
-            }
-            byte[] signedChunkContent = createSignedChunk(chunkData);
-            currentChunkIterator = new ChunkContentIterator(signedChunkContent);
-            return false;
-        }
+        int signedChunkLength = createSignedChunk(chunkSizeInBytes);
+        currentChunkIterator = new ChunkContentIterator(signedChunk, signedChunkLength);
+        return chunkSizeInBytes == 0;
     }
 
-    private byte[] createSignedChunk(byte[] chunkData) {
-        StringBuilder chunkHeader = new StringBuilder();
-        // chunk-size
-        chunkHeader.append(Integer.toHexString(chunkData.length));
-        // nonsig-extension
-        String nonsigExtension = "";
-        // sig-extension
-        String chunkStringToSign =
-                CHUNK_STRING_TO_SIGN_PREFIX + "\n" +
-                dateTime + "\n" +
-                keyPath + "\n" +
-                priorChunkSignature + "\n" +
-                BinaryUtils.toHex(aws4Signer.hash(nonsigExtension)) + "\n" +
-                BinaryUtils.toHex(aws4Signer.hash(chunkData));
-        String chunkSignature = BinaryUtils.toHex(aws4Signer.sign(chunkStringToSign, kSigning, SigningAlgorithm.HmacSHA256));
-        priorChunkSignature = chunkSignature;
-        chunkHeader.append(nonsigExtension + CHUNK_SIGNATURE_HEADER + chunkSignature);
-        chunkHeader.append(CLRF);
-
+    /**
+     * Writes the signed chunk of the given number of bytes of chunk data into
+     * the signed chunk buffer, and returns its length.
+     */
+    private int createSignedChunk(int chunkDataLength) {
         try {
-            byte[] header = chunkHeader.toString().getBytes(UTF8);
-            byte[] trailer = CLRF.getBytes(UTF8);
-            byte[] signedChunk = new byte[header.length + chunkData.length + trailer.length];
-            System.arraycopy(header, 0, signedChunk, 0, header.length);
-            System.arraycopy(chunkData, 0, signedChunk, header.length, chunkData.length);
-            System.arraycopy(trailer, 0,
-                    signedChunk, header.length + chunkData.length,
-                    trailer.length);
-            return signedChunk;
+            if (mac == null) {
+                mac = Mac.getInstance(SigningAlgorithm.HmacSHA256.toString());
+                mac.init(new SecretKeySpec(kSigning, SigningAlgorithm.HmacSHA256.toString()));
+                sha256 = MessageDigest.getInstance("SHA-256");
+            }
+            sha256.update(chunkData, 0, chunkDataLength);
+            // sig-extension
+            String chunkStringToSign =
+                    CHUNK_STRING_TO_SIGN_PREFIX + "\n" +
+                    dateTime + "\n" +
+                    keyPath + "\n" +
+                    priorChunkSignature + "\n" +
+                    EMPTY_EXTENSION_HASH + "\n" +
+                    BinaryUtils.toHex(sha256.digest());
+            String chunkSignature = BinaryUtils.toHex(mac.doFinal(chunkStringToSign.getBytes(UTF8)));
+            priorChunkSignature = chunkSignature;
+
+            // chunk-size, with no nonsig-extension
+            byte[] header = (Integer.toHexString(chunkDataLength)
+                    + CHUNK_SIGNATURE_HEADER + chunkSignature + CLRF).getBytes(UTF8);
+            int length = 0;
+            System.arraycopy(header, 0, signedChunk, length, header.length);
+            length += header.length;
+            System.arraycopy(chunkData, 0, signedChunk, length, chunkDataLength);
+            length += chunkDataLength;
+            signedChunk[length++] = '\r';
+            signedChunk[length++] = '\n';
+            return length;
         } catch (Exception e) {
             throw new AmazonClientException("Unable to sign the chunked data. " + e.getMessage(), e);
         }
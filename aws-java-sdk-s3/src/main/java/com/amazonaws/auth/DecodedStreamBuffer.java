@@ -71,6 +71,17 @@ class DecodedStreamBuffer {
         return bufferArray[pos++];
     }
 
+    /**
+     * Copies the next buffered bytes, up to the given length, into the given
+     * array, and returns the number of bytes copied.
+     */
+    public int next(byte[] array, int offset, int length) {
+        int count = Math.min(length, byteBuffered - pos);
+        System.arraycopy(bufferArray, pos, array, offset, count);
+        pos += count;
+        return count;
+    }
+
     public void startReadBuffer() {
         if (bufferSizeOverflow) {
             throw new AmazonClientException(
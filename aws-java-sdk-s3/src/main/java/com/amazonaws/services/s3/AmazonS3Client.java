@@ -1419,7 +1419,8 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                  */
                 log.warn("No content length specified for stream data.  " +
                          "Stream contents will be buffered in memory and could result in " +
-                         "out of memory errors.");
+                         "out of memory errors.  TransferManager can upload such streams " +
+                         "in parts of bounded size instead.");
             } else {
                 final long expectedLength = contentLength.longValue();
                 if (expectedLength >= 0) {
@@ -3063,10 +3064,16 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                 } else {
                     v4Signer.setRegionName(regionOverride);
                 }
+                v4Signer.setPayloadSigningEnabled(clientOptions.isPayloadSigningEnabled());
                 return v4Signer;
             }
         }
 
+        if (signer instanceof AWSS3V4Signer) {
+            ((AWSS3V4Signer) signer).setPayloadSigningEnabled(
+                    clientOptions.isPayloadSigningEnabled());
+        }
+
         if (signer instanceof S3Signer) {
 
             // The old S3Signer needs a method and path passed to its
@@ -3700,7 +3707,8 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
         checkHttps(originalRequest);
         ExecutionContext executionContext = createExecutionContext(originalRequest);
         // Retry V4 auth errors
-        executionContext.setAuthErrorRetryStrategy(new S3V4AuthErrorRetryStrategy(bucket));
+        executionContext.setAuthErrorRetryStrategy(new S3V4AuthErrorRetryStrategy(bucket,
+                clientOptions.isPayloadSigningEnabled()));
         AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
         // Binds the request metrics to the current request.
         request.setAWSRequestMetrics(awsRequestMetrics);
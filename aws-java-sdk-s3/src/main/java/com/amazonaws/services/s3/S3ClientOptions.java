@@ -22,13 +22,20 @@ public class S3ClientOptions {
     /** The default setting for use of path-style access */
     public static final boolean DEFAULT_PATH_STYLE_ACCESS = false;
 
+    /** The default setting for signing the payload of requests sent over HTTPS */
+    public static final boolean DEFAULT_PAYLOAD_SIGNING_ENABLED = true;
+
     /** Flag for use of path-style access */
     private boolean pathStyleAccess = DEFAULT_PATH_STYLE_ACCESS;
 
+    /** Flag for signing the payload of requests sent over HTTPS */
+    private boolean payloadSigningEnabled = DEFAULT_PAYLOAD_SIGNING_ENABLED;
+
     public S3ClientOptions() {}
 
     public S3ClientOptions( S3ClientOptions other ) {
         this.pathStyleAccess = other.pathStyleAccess;
+        this.payloadSigningEnabled = other.payloadSigningEnabled;
     }
 
     /**
@@ -103,4 +110,60 @@ public class S3ClientOptions {
       return this;
     }
 
+    /**
+     * <p>
+     * Returns whether the client signs the payload of the requests sent over
+     * HTTPS with Signature Version 4.
+     * </p>
+     * <p>
+     * By default, the payload of all requests is signed. When disabled, the
+     * payload of the requests sent over HTTPS is left unsigned, its integrity
+     * being ensured by TLS and by the MD5 checks of uploads only: the payload
+     * is then read only once, when it is sent, instead of being hashed
+     * beforehand or signed chunk by chunk. The payload of the requests sent
+     * over HTTP is always signed.
+     * </p>
+     * @return True if the client signs the payload of all requests.
+     */
+    public boolean isPayloadSigningEnabled() {
+        return payloadSigningEnabled;
+    }
+
+    /**
+     * <p>
+     * Configures the client to sign the payload of the requests sent over
+     * HTTPS with Signature Version 4.
+     * </p>
+     * <p>
+     * By default, the payload of all requests is signed. When disabled, the
+     * payload of the requests sent over HTTPS is left unsigned, its integrity
+     * being ensured by TLS and by the MD5 checks of uploads only: the payload
+     * is then read only once, when it is sent, instead of being hashed
+     * beforehand or signed chunk by chunk. The payload of the requests sent
+     * over HTTP is always signed.
+     * </p>
+     * @param payloadSigningEnabled
+     *            True to sign the payload of all requests, false to leave the
+     *            payload of the requests sent over HTTPS unsigned.
+     */
+    public void setPayloadSigningEnabled(boolean payloadSigningEnabled) {
+        this.payloadSigningEnabled = payloadSigningEnabled;
+    }
+
+    /**
+     * <p>
+     * Configures the client to sign the payload of the requests sent over
+     * HTTPS with Signature Version 4.
+     * </p>
+     * @param payloadSigningEnabled
+     *            True to sign the payload of all requests.
+     *
+     * @return The updated S3ClientOptions object with the new payload signing
+     *         setting.
+     */
+    public S3ClientOptions withPayloadSigningEnabled(boolean payloadSigningEnabled) {
+        setPayloadSigningEnabled(payloadSigningEnabled);
+        return this;
+    }
+
 }
\ No newline at end of file
@@ -14,17 +14,22 @@
  */
 package com.amazonaws.services.s3.internal;
 
+import static com.amazonaws.auth.internal.SignerConstants.UNSIGNED_PAYLOAD;
+
 import java.io.IOException;
 import java.io.InputStream;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonWebServiceRequest;
 import com.amazonaws.ReadLimitInfo;
+import com.amazonaws.RequestClientOptions;
 import com.amazonaws.ResetException;
 import com.amazonaws.SignableRequest;
 import com.amazonaws.auth.AWS4Signer;
 import com.amazonaws.auth.AwsChunkedEncodingInputStream;
 import com.amazonaws.auth.internal.AWS4SignerRequestParams;
 import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.S3ClientOptions;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.util.BinaryUtils;
@@ -35,6 +40,15 @@ import com.amazonaws.util.BinaryUtils;
 public class AWSS3V4Signer extends AWS4Signer {
     private static final String CONTENT_SHA_256 = "STREAMING-AWS4-HMAC-SHA256-PAYLOAD";
 
+    /** Maximum number of bytes buffered to reset a chunk-encoded payload. */
+    private static final int MAX_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Whether the payload of the requests sent over HTTPS is signed; see
+     * {@link com.amazonaws.services.s3.S3ClientOptions#isPayloadSigningEnabled()}.
+     */
+    private volatile boolean payloadSigningEnabled = S3ClientOptions.DEFAULT_PAYLOAD_SIGNING_ENABLED;
+
     /**
      * Don't double-url-encode path elements; S3 expects path elements to be
      * encoded only once in the canonical URI.
@@ -43,15 +57,33 @@ public class AWSS3V4Signer extends AWS4Signer {
         super(false);
     }
 
+    /**
+     * Sets whether the payload of the requests sent over HTTPS is signed. If
+     * not, their payload is sent as is, and read only once; the payload of
+     * the requests sent over HTTP is always signed.
+     */
+    public void setPayloadSigningEnabled(boolean payloadSigningEnabled) {
+        this.payloadSigningEnabled = payloadSigningEnabled;
+    }
+
+    /**
+     * Returns whether the payload of the requests sent over HTTPS is signed.
+     */
+    public boolean isPayloadSigningEnabled() {
+        return payloadSigningEnabled;
+    }
+
     /**
      * If necessary, creates a chunk-encoding wrapper on the request payload.
      */
     @Override
     protected void processRequestPayload(SignableRequest<?> request, byte[] signature,
             byte[] signingKey, AWS4SignerRequestParams signerRequestParams) {
-        if (useChunkEncoding(request)) {
+        if (isPayloadSigned(request) && useChunkEncoding(request)) {
+            final int chunkSize = getChunkSize(request);
             AwsChunkedEncodingInputStream chunkEncodededStream = new AwsChunkedEncodingInputStream(
-                    request.getContent(), signingKey,
+                    request.getContent(), Math.max(MAX_BUFFER_SIZE, chunkSize),
+                    chunkSize, signingKey,
                     signerRequestParams.getFormattedSigningDateTime(),
                     signerRequestParams.getScope(),
                     BinaryUtils.toHex(signature), this);
@@ -61,12 +93,13 @@ public class AWSS3V4Signer extends AWS4Signer {
 
     @Override
     protected String calculateContentHashPresign(SignableRequest<?> request){
-        return "UNSIGNED-PAYLOAD";
+        return UNSIGNED_PAYLOAD;
     }
 
     /**
      * Returns the pre-defined header value and set other necessary headers if
-     * the request needs to be chunk-encoded. Otherwise calls the superclass
+     * the request needs to be chunk-encoded, or the unsigned payload value if
+     * the payload doesn't need to be signed. Otherwise calls the superclass
      * method which calculates the hash of the whole content for signing.
      */
     @Override
@@ -75,6 +108,11 @@ public class AWSS3V4Signer extends AWS4Signer {
         // we just set the header as "required", and AWS4Signer.sign() will be
         // notified to pick up the header value returned by this method.
         request.addHeader("x-amz-content-sha256", "required");
+        if (!isPayloadSigned(request)) {
+            // Sent as is over TLS: the content is neither hashed beforehand
+            // nor chunk-encoded
+            return UNSIGNED_PAYLOAD;
+        }
         if (useChunkEncoding(request)) {
             final String contentLength =
                 request.getHeaders().get(Headers.CONTENT_LENGTH);
@@ -106,12 +144,35 @@ public class AWSS3V4Signer extends AWS4Signer {
             request.addHeader(
                     Headers.CONTENT_LENGTH,
                     Long.toString(AwsChunkedEncodingInputStream
-                            .calculateStreamContentLength(originalContentLength)));
+                            .calculateStreamContentLength(originalContentLength,
+                                    getChunkSize(request))));
             return CONTENT_SHA_256;
         }
         return super.calculateContentHash(request);
     }
 
+    /**
+     * Determine whether the payload of the request is signed: it always is
+     * over plain HTTP, and over HTTPS only when payload signing is enabled.
+     */
+    private boolean isPayloadSigned(SignableRequest<?> request) {
+        return payloadSigningEnabled
+            || !"https".equalsIgnoreCase(request.getEndpoint().getScheme());
+    }
+
+    /**
+     * Returns the size of the chunks of the request payload, as configured in
+     * the client options of the original request.
+     */
+    private static int getChunkSize(SignableRequest<?> request) {
+        Object originalRequest = request.getOriginalRequestObject();
+        if (originalRequest instanceof AmazonWebServiceRequest) {
+            return ((AmazonWebServiceRequest) originalRequest)
+                    .getRequestClientOptions().getChunkSize();
+        }
+        return RequestClientOptions.DEFAULT_CHUNK_SIZE;
+    }
+
     /**
      * Determine whether to use aws-chunked for signing
      */
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.internal.SdkFilterInputStream;
+
+/**
+ * Input stream wrapper that replaces every carriage return (\r) in a UTF-8
+ * encoded XML document with the explicit character entity "&amp;#013;" as the
+ * document is read, to prevent the SAX parser from normalizing 0x0D characters
+ * in object keys into 0x0A. Since the replacement is done on the fly, the
+ * document can be parsed straight from the connection, in constant memory.
+ * <p>
+ * The replacement is done on the raw bytes, which is safe for UTF-8: the byte
+ * 0x0D never occurs within the encoding of another character.
+ * <p>
+ * Mark and reset are not supported.
+ */
+public class CarriageReturnEscapingInputStream extends SdkFilterInputStream {
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte[] ESCAPED_CARRIAGE_RETURN = {'&', '#', '0', '1', '3', ';'};
+
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+    /** Index of the next byte of a partially returned escape; ESCAPED_CARRIAGE_RETURN.length if none. */
+    private int escapeIndex = ESCAPED_CARRIAGE_RETURN.length;
+
+    public CarriageReturnEscapingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read = read(b, 0, 1);
+        return read == -1 ? -1 : (b[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        abortIfNeeded();
+        if (len == 0)
+            return 0;
+        int count = 0;
+        while (count < len) {
+            if (escapeIndex < ESCAPED_CARRIAGE_RETURN.length) {
+                b[off + count++] = ESCAPED_CARRIAGE_RETURN[escapeIndex++];
+                continue;
+            }
+            if (position == limit) {
+                // Don't block for more input once some bytes can be returned
+                if (count > 0)
+                    break;
+                int read = in.read(buffer, 0, buffer.length);
+                if (read == -1)
+                    return -1;
+                position = 0;
+                limit = read;
+                continue;
+            }
+            byte c = buffer[position++];
+            if (c == CARRIAGE_RETURN) {
+                escapeIndex = 0;
+            } else {
+                b[off + count++] = c;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0)
+            return 0;
+        byte[] skipped = new byte[(int) Math.min(n, 4096)];
+        long remaining = n;
+        while (remaining > 0) {
+            int read = read(skipped, 0, (int) Math.min(remaining, skipped.length));
+            if (read == -1)
+                break;
+            remaining -= read;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public int available() throws IOException {
+        abortIfNeeded();
+        return (ESCAPED_CARRIAGE_RETURN.length - escapeIndex) + (limit - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        // mark is not supported
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+}
@@ -30,6 +30,7 @@ import com.amazonaws.Request;
 import com.amazonaws.retry.internal.AuthErrorRetryStrategy;
 import com.amazonaws.retry.internal.AuthRetryParameters;
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.S3ClientOptions;
 
 /**
  * The internal implementation of AuthErrorRetryStrategy which automatically
@@ -47,6 +48,8 @@ public class S3V4AuthErrorRetryStrategy implements AuthErrorRetryStrategy {
 
     private final String bucketName;
 
+    private final boolean payloadSigningEnabled;
+
     private static final List<String> ERROR_CODES_AUTH_ERROR;
 
     private static final List<String> ERROR_MESSAGES_AUTH_ERROR;
@@ -63,7 +66,18 @@ public class S3V4AuthErrorRetryStrategy implements AuthErrorRetryStrategy {
     }
 
     public S3V4AuthErrorRetryStrategy(String bucketName) {
+        this(bucketName, S3ClientOptions.DEFAULT_PAYLOAD_SIGNING_ENABLED);
+    }
+
+    /**
+     * @param payloadSigningEnabled
+     *            whether the v4 signer of the retried request signs its
+     *            payload over HTTPS
+     */
+    public S3V4AuthErrorRetryStrategy(String bucketName,
+            boolean payloadSigningEnabled) {
         this.bucketName = bucketName;
+        this.payloadSigningEnabled = payloadSigningEnabled;
     }
 
     @Override
@@ -86,6 +100,7 @@ public class S3V4AuthErrorRetryStrategy implements AuthErrorRetryStrategy {
             AWSS3V4Signer v4Signer = new AWSS3V4Signer();
             v4Signer.setRegionName("us-east-1");
             v4Signer.setServiceName("s3");
+            v4Signer.setPayloadSigningEnabled(payloadSigningEnabled);
 
             URI bucketEndpoint = null;
             try {
@@ -0,0 +1,704 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.iterable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * Lists the objects of an Amazon S3 bucket with many <code>listObjects</code>
+ * request chains running at once, and merges their results into a single
+ * iteration of {@link S3ObjectSummary}s. For example:
+ *
+ * <pre class="brush: java">
+ * ParallelS3Objects.ListingIterator it = ParallelS3Objects
+ *         .withPrefix(s3, &quot;my-bucket&quot;, &quot;logs/&quot;)
+ *         .withParallelism(16)
+ *         .iterator();
+ * while (it.hasNext()) {
+ *     S3ObjectSummary summary = it.next();
+ *     ...
+ * }
+ * System.out.printf(&quot;%.0f keys/s\n&quot;, it.getKeysPerSecond());
+ * </pre>
+ * <p>
+ * The key space is split into partitions, each listed by its own chain of
+ * requests:
+ * <ul>
+ * <li>by default, the listed prefix is itself listed with the
+ * {@link #withDelimiter(String) delimiter}, and each prefix it finds one
+ * level below (such as "logs/2015/", "logs/2016/") makes a partition as soon
+ * as it is found; the objects directly under the listed prefix are returned by
+ * that first chain. A bucket without any such prefix is listed by that single
+ * chain.</li>
+ * <li>alternatively, the caller can supply the {@link KeyRange}s to list, for
+ * instance from a previous inventory of the bucket.</li>
+ * </ul>
+ * <p>
+ * The chains run on a bounded executor: at most
+ * {@link #withParallelism(int) parallelism} requests are in flight at a time.
+ * Backpressure is applied by the number of listed pages that have not yet been
+ * consumed: once {@link #withMaxBufferedPages(int) maxBufferedPages} pages are
+ * waiting to be consumed, no more requests are sent until the consumer catches
+ * up. No thread is held while a chain is paused.
+ * <p>
+ * Results are returned as soon as they are listed, in no particular order,
+ * unless {@link #withOrderedResults(boolean) ordered results} are requested,
+ * in which case they are returned in key order, as {@link S3Objects} would.
+ * <p>
+ * The iterator should be consumed until it has no more elements, or else be
+ * {@link ListingIterator#close() closed}, so that its executor is shut down
+ * and no more requests are sent. An iterator abandoned without being closed
+ * stops sending requests once its buffer is full; the threads of its own
+ * executor, which are daemon threads, then exit after being idle for
+ * {@link #IDLE_THREAD_TIMEOUT_SECONDS} seconds, so that nothing is left
+ * running once the iterator is no longer reachable.
+ */
+public class ParallelS3Objects implements Iterable<S3ObjectSummary> {
+    /** The default delimiter used to discover the prefixes to list in parallel. */
+    public static final String DEFAULT_DELIMITER = "/";
+
+    /** The default maximum number of requests in flight at a time. */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    /**
+     * The number of seconds after which an idle thread of the executor of an
+     * iteration exits, if no executor is supplied.
+     */
+    public static final int IDLE_THREAD_TIMEOUT_SECONDS = 5;
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+    private String prefix;
+    private String delimiter = DEFAULT_DELIMITER;
+    private List<KeyRange> keyRanges;
+    private Integer batchSize;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int maxBufferedPages;
+    private boolean orderedResults;
+    private ExecutorService executorService;
+
+    private ParallelS3Objects(AmazonS3 s3, String bucketName) {
+        this.s3 = s3;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Constructs an iterable that covers all the objects in an Amazon S3
+     * bucket.
+     *
+     * @param s3
+     *            The Amazon S3 client.
+     * @param bucketName
+     *            The bucket name.
+     * @return An iterable for object summaries.
+     */
+    public static ParallelS3Objects inBucket(AmazonS3 s3, String bucketName) {
+        return new ParallelS3Objects(s3, bucketName);
+    }
+
+    /**
+     * Constructs an iterable that covers the objects in an Amazon S3 bucket
+     * where the key begins with the given prefix.
+     *
+     * @param s3
+     *            The Amazon S3 client.
+     * @param bucketName
+     *            The bucket name.
+     * @param prefix
+     *            The prefix.
+     * @return An iterable for object summaries.
+     */
+    public static ParallelS3Objects withPrefix(AmazonS3 s3, String bucketName, String prefix) {
+        ParallelS3Objects objects = new ParallelS3Objects(s3, bucketName);
+        objects.prefix = prefix;
+        return objects;
+    }
+
+    /**
+     * Sets the delimiter used to discover the prefixes that are listed in
+     * parallel; null to list the whole key space in a single chain. Ignored
+     * if key ranges are supplied.
+     */
+    public ParallelS3Objects withDelimiter(String delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * Sets the key ranges to list in parallel, instead of discovering the
+     * prefixes with the delimiter. The ranges should not overlap; only the keys
+     * which also begin with the prefix, if any, are listed.
+     */
+    public ParallelS3Objects withKeyRanges(KeyRange... keyRanges) {
+        return withKeyRanges(Arrays.asList(keyRanges));
+    }
+
+    /**
+     * Sets the key ranges to list in parallel, instead of discovering the
+     * prefixes with the delimiter. The ranges should not overlap; only the keys
+     * which also begin with the prefix, if any, are listed.
+     */
+    public ParallelS3Objects withKeyRanges(List<KeyRange> keyRanges) {
+        this.keyRanges = keyRanges == null ? null : new ArrayList<KeyRange>(keyRanges);
+        return this;
+    }
+
+    /**
+     * Sets the batch size, i.e., how many {@link S3ObjectSummary}s will be
+     * fetched by each request.
+     */
+    public ParallelS3Objects withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of requests in flight at a time, which is also
+     * the size of the executor if none is supplied.
+     */
+    public ParallelS3Objects withParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of listed pages waiting to be consumed before
+     * requests are paused; twice the parallelism by default.
+     */
+    public ParallelS3Objects withMaxBufferedPages(int maxBufferedPages) {
+        if (maxBufferedPages < 1)
+            throw new IllegalArgumentException("maxBufferedPages must be positive");
+        this.maxBufferedPages = maxBufferedPages;
+        return this;
+    }
+
+    /**
+     * Sets whether the object summaries are returned in key order; false by
+     * default, in which case they are returned as soon as they are listed.
+     */
+    public ParallelS3Objects withOrderedResults(boolean orderedResults) {
+        this.orderedResults = orderedResults;
+        return this;
+    }
+
+    /**
+     * Sets the executor on which the requests are sent. The caller remains
+     * responsible for shutting it down; if none is set, each iteration runs on
+     * its own pool of {@link #withParallelism(int) parallelism} threads.
+     */
+    public ParallelS3Objects withExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+
+    public AmazonS3 getS3() {
+        return s3;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public List<KeyRange> getKeyRanges() {
+        return keyRanges == null ? null : Collections.unmodifiableList(keyRanges);
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getMaxBufferedPages() {
+        return maxBufferedPages > 0 ? maxBufferedPages : 2 * parallelism;
+    }
+
+    public boolean isOrderedResults() {
+        return orderedResults;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    @Override
+    public ListingIterator iterator() {
+        return new ListingIterator();
+    }
+
+    /**
+     * A range of keys to list: the keys strictly after
+     * <code>startAfter</code>, up to and including <code>endInclusive</code>.
+     * Either bound may be null for an open range, so that the ranges
+     * (null, "g"], ("g", "p"] and ("p", null] cover the whole key space.
+     */
+    public static final class KeyRange {
+        private final String startAfter;
+        private final String endInclusive;
+
+        public KeyRange(String startAfter, String endInclusive) {
+            if (startAfter != null && endInclusive != null
+                    && startAfter.compareTo(endInclusive) >= 0) {
+                throw new IllegalArgumentException("Empty key range ("
+                        + startAfter + ", " + endInclusive + "]");
+            }
+            this.startAfter = startAfter;
+            this.endInclusive = endInclusive;
+        }
+
+        public String getStartAfter() {
+            return startAfter;
+        }
+
+        public String getEndInclusive() {
+            return endInclusive;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + startAfter + ", " + endInclusive + "]";
+        }
+    }
+
+    /**
+     * Creates the daemon threads of the executor of an iteration; static so
+     * that the threads don't reference the iterator.
+     */
+    private static final class ListingThreadFactory implements ThreadFactory {
+        private static final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "java-sdk-s3-listing-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
+    /** A part of the key space listed by its own chain of requests. */
+    private static final class Partition {
+        final int index;
+        final String prefix;
+        /** Only set for the chain which discovers the other partitions. */
+        final String delimiter;
+        final String startAfter;
+        final String endInclusive;
+        /** Pages listed but not yet consumed, when results are ordered. */
+        final LinkedList<List<S3ObjectSummary>> pages = new LinkedList<List<S3ObjectSummary>>();
+        /** Only accessed by the single request of this partition in flight. */
+        ObjectListing lastListing;
+        boolean done;
+
+        Partition(int index, String prefix, String startAfter, String endInclusive) {
+            this(index, prefix, null, startAfter, endInclusive);
+        }
+
+        Partition(int index, String prefix, String delimiter, String startAfter, String endInclusive) {
+            this.index = index;
+            this.prefix = prefix;
+            this.delimiter = delimiter;
+            this.startAfter = startAfter;
+            this.endInclusive = endInclusive;
+        }
+    }
+
+    /**
+     * Iterator over the merged results of the listing, which also reports its
+     * progress. The progress can be read from any thread, but the iterator
+     * itself must only be used by a single thread.
+     */
+    public class ListingIterator implements Iterator<S3ObjectSummary> {
+        private final List<Partition> partitions = new ArrayList<Partition>();
+        private final PriorityQueue<Partition> runnable = new PriorityQueue<Partition>(11,
+            new Comparator<Partition>() {
+                @Override
+                public int compare(Partition a, Partition b) {
+                    return a.index < b.index ? -1 : (a.index == b.index ? 0 : 1);
+                }
+            });
+        /** Pages listed but not yet consumed, when results are not ordered. */
+        private final LinkedList<List<S3ObjectSummary>> readyPages = new LinkedList<List<S3ObjectSummary>>();
+        private final int maxBufferedPages = getMaxBufferedPages();
+        /**
+         * The chain listing the prefix with the delimiter, which discovers the
+         * other partitions; null if the partitions are known upfront.
+         */
+        private Partition root;
+
+        private final AtomicLong keysListed = new AtomicLong();
+        private final AtomicLong requestCount = new AtomicLong();
+        private volatile long startNanos;
+        private volatile long endNanos;
+
+        private Iterator<S3ObjectSummary> current = Collections.<S3ObjectSummary>emptyList().iterator();
+        private ExecutorService executor;
+        private boolean started;
+        private boolean closed;
+        private Throwable failure;
+        /** Index of the partition being consumed, when results are ordered. */
+        private int head;
+        private int running;
+        private int bufferedPages;
+
+        @Override
+        public boolean hasNext() {
+            if (current.hasNext())
+                return true;
+            List<S3ObjectSummary> page = nextPage();
+            if (page == null)
+                return false;
+            current = page.iterator();
+            return true;
+        }
+
+        @Override
+        public S3ObjectSummary next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return current.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Stops the listing: no more requests are sent, and the executor is
+         * shut down unless it was supplied by the caller.
+         */
+        public synchronized void close() {
+            if (closed)
+                return;
+            closed = true;
+            runnable.clear();
+            readyPages.clear();
+            for (Partition partition : partitions) {
+                partition.pages.clear();
+            }
+            current = Collections.<S3ObjectSummary>emptyList().iterator();
+            if (endNanos == 0)
+                endNanos = System.nanoTime();
+            if (executor != null && executor != executorService)
+                executor.shutdown();
+            notifyAll();
+        }
+
+        /** Returns the number of keys listed so far, consumed or not. */
+        public long getKeysListed() {
+            return keysListed.get();
+        }
+
+        /** Returns the number of list requests sent so far. */
+        public long getRequestCount() {
+            return requestCount.get();
+        }
+
+        /**
+         * Returns the number of keys listed per second since the listing
+         * started, up to now or to the end of the listing.
+         */
+        public double getKeysPerSecond() {
+            long start = startNanos;
+            if (start == 0)
+                return 0;
+            long end = endNanos == 0 ? System.nanoTime() : endNanos;
+            long elapsed = Math.max(1, end - start);
+            return keysListed.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        }
+
+        /** Returns the number of partitions the key space was split into. */
+        public synchronized int getPartitionCount() {
+            return partitions.size();
+        }
+
+        private synchronized List<S3ObjectSummary> nextPage() {
+            if (!started) {
+                started = true;
+                start();
+            }
+            for (;;) {
+                if (failure != null) {
+                    close();
+                    if (failure instanceof RuntimeException)
+                        throw (RuntimeException) failure;
+                    if (failure instanceof Error)
+                        throw (Error) failure;
+                    throw new AmazonClientException("Unable to list objects", failure);
+                }
+                if (closed)
+                    return null;
+                List<S3ObjectSummary> page = orderedResults ? pollOrderedPage() : readyPages.poll();
+                if (page != null) {
+                    bufferedPages--;
+                    schedule();
+                    return page;
+                }
+                if (isFinished()) {
+                    close();
+                    return null;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new AbortedException();
+                }
+            }
+        }
+
+        private List<S3ObjectSummary> pollOrderedPage() {
+            while (head < partitions.size()) {
+                Partition partition = partitions.get(head);
+                if (!partition.pages.isEmpty())
+                    return partition.pages.poll();
+                if (!partition.done)
+                    return null;
+                head++;
+                // The new head partition may run regardless of the buffer
+                schedule();
+            }
+            return null;
+        }
+
+        private boolean isFinished() {
+            if (orderedResults)
+                return head >= partitions.size() && (root == null || root.done);
+            return running == 0 && runnable.isEmpty() && readyPages.isEmpty();
+        }
+
+        /** Splits the key space into partitions and starts listing them. */
+        private void start() {
+            startNanos = System.nanoTime();
+            if (keyRanges != null) {
+                List<KeyRange> ranges = new ArrayList<KeyRange>(keyRanges);
+                Collections.sort(ranges, new Comparator<KeyRange>() {
+                    @Override
+                    public int compare(KeyRange a, KeyRange b) {
+                        if (a.getStartAfter() == null)
+                            return b.getStartAfter() == null ? 0 : -1;
+                        if (b.getStartAfter() == null)
+                            return 1;
+                        return a.getStartAfter().compareTo(b.getStartAfter());
+                    }
+                });
+                for (KeyRange range : ranges) {
+                    partitions.add(new Partition(partitions.size(), prefix,
+                            range.getStartAfter(), range.getEndInclusive()));
+                }
+            } else if (delimiter != null) {
+                // Sorts before all the partitions so that they are found early,
+                // unless results are ordered: the head partition must then
+                // come first, since it alone may run regardless of the buffer
+                root = new Partition(orderedResults ? Integer.MAX_VALUE : -1,
+                        prefix, delimiter, null, null);
+            } else {
+                partitions.add(new Partition(0, prefix, null, null));
+            }
+
+            executor = executorService;
+            if (executor == null) {
+                // Idle threads exit, so that an iterator abandoned without
+                // being closed doesn't keep its threads, nor itself, alive
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(parallelism, parallelism,
+                        IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(), new ListingThreadFactory());
+                pool.allowCoreThreadTimeOut(true);
+                executor = pool;
+            }
+            if (root != null)
+                runnable.add(root);
+            runnable.addAll(partitions);
+            schedule();
+        }
+
+        /**
+         * Adds a page listed by the root chain: each common prefix makes a
+         * partition, and each run of objects found directly under the prefix
+         * makes a partition which is already fully listed. The partitions are
+         * created in key order, since a key which isn't under a common prefix
+         * sorts before all the keys under that prefix if and only if it sorts
+         * before the prefix itself, and since the root chain lists its pages
+         * in key order. Must be called holding the lock.
+         */
+        private void addRootPage(List<S3ObjectSummary> summaries, List<String> commonPrefixes) {
+            if (!orderedResults && !summaries.isEmpty()) {
+                bufferedPages++;
+                readyPages.add(summaries);
+            }
+            int i = 0, j = 0;
+            while (i < summaries.size() || j < commonPrefixes.size()) {
+                if (j == commonPrefixes.size() || (i < summaries.size()
+                        && summaries.get(i).getKey().compareTo(commonPrefixes.get(j)) < 0)) {
+                    int runStart = i;
+                    while (i < summaries.size() && (j == commonPrefixes.size()
+                            || summaries.get(i).getKey().compareTo(commonPrefixes.get(j)) < 0)) {
+                        i++;
+                    }
+                    if (orderedResults) {
+                        Partition run = new Partition(partitions.size(), null, null, null);
+                        run.done = true;
+                        run.pages.add(new ArrayList<S3ObjectSummary>(summaries.subList(runStart, i)));
+                        bufferedPages++;
+                        partitions.add(run);
+                    }
+                } else {
+                    Partition partition = new Partition(partitions.size(), commonPrefixes.get(j++), null, null);
+                    partitions.add(partition);
+                    runnable.add(partition);
+                }
+            }
+        }
+
+        /**
+         * Sends the next requests of the runnable partitions, within the
+         * parallelism and buffer limits. Must be called holding the lock.
+         */
+        private void schedule() {
+            while (!closed && failure == null && running < parallelism) {
+                Partition next = runnable.peek();
+                if (next == null)
+                    break;
+                // Once the known partitions are consumed, the root chain must
+                // run for the listing to go on
+                boolean isHead = orderedResults && (next == root
+                        ? head >= partitions.size() : next.index == head);
+                if (!isHead && bufferedPages + running >= maxBufferedPages)
+                    break;
+                runnable.poll();
+                running++;
+                try {
+                    executor.execute(new ListingTask(next));
+                } catch (RejectedExecutionException e) {
+                    running--;
+                    failure = e;
+                    notifyAll();
+                }
+            }
+        }
+
+        private synchronized boolean isClosed() {
+            return closed || failure != null;
+        }
+
+        /** Sends the next request of a partition. */
+        private class ListingTask implements Runnable {
+            private final Partition partition;
+
+            ListingTask(Partition partition) {
+                this.partition = partition;
+            }
+
+            @Override
+            public void run() {
+                List<S3ObjectSummary> summaries = null;
+                List<String> commonPrefixes = null;
+                boolean more = false;
+                Throwable error = null;
+                if (!isClosed()) {
+                    try {
+                        ObjectListing listing = partition.lastListing == null
+                                ? s3.listObjects(new ListObjectsRequest()
+                                        .withBucketName(bucketName)
+                                        .withPrefix(partition.prefix)
+                                        .withDelimiter(partition.delimiter)
+                                        .withMarker(partition.startAfter)
+                                        .withMaxKeys(batchSize))
+                                : s3.listNextBatchOfObjects(partition.lastListing);
+                        requestCount.incrementAndGet();
+                        partition.lastListing = listing;
+                        summaries = listing.getObjectSummaries();
+                        commonPrefixes = listing.getCommonPrefixes();
+                        more = listing.isTruncated();
+                        if (partition.endInclusive != null) {
+                            int end = 0;
+                            while (end < summaries.size()
+                                    && summaries.get(end).getKey().compareTo(partition.endInclusive) <= 0) {
+                                end++;
+                            }
+                            if (end < summaries.size()) {
+                                summaries = new ArrayList<S3ObjectSummary>(summaries.subList(0, end));
+                                more = false;
+                            }
+                        }
+                        keysListed.addAndGet(summaries.size());
+                    } catch (Throwable t) {
+                        error = t;
+                    }
+                }
+                synchronized (ListingIterator.this) {
+                    running--;
+                    if (error != null) {
+                        if (failure == null)
+                            failure = error;
+                    } else if (!closed && summaries != null) {
+                        if (partition == root) {
+                            addRootPage(summaries, commonPrefixes);
+                        } else if (!summaries.isEmpty()) {
+                            bufferedPages++;
+                            if (orderedResults)
+                                partition.pages.add(summaries);
+                            else
+                                readyPages.add(summaries);
+                        }
+                        partition.done = !more;
+                        if (more)
+                            runnable.add(partition);
+                        schedule();
+                    }
+                    if (isFinished() && endNanos == 0)
+                        endNanos = System.nanoTime();
+                    ListingIterator.this.notifyAll();
+                }
+            }
+        }
+    }
+}
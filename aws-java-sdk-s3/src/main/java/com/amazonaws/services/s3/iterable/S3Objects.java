@@ -91,6 +91,20 @@ public class S3Objects implements Iterable<S3ObjectSummary> {
         return this;
     }
 
+    /**
+     * Returns an iterable that covers the same objects, but lists them with
+     * many requests in flight at once.
+     *
+     * @see ParallelS3Objects
+     */
+    public ParallelS3Objects inParallel() {
+        ParallelS3Objects objects = ParallelS3Objects.withPrefix(s3, bucketName, prefix);
+        if (batchSize != null) {
+            objects.withBatchSize(batchSize);
+        }
+        return objects;
+    }
+
     public Integer getBatchSize() {
         return batchSize;
     }
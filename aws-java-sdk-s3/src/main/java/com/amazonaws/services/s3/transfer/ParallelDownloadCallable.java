@@ -0,0 +1,341 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.internal.FileLocks;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.transfer.Transfer.TransferState;
+import com.amazonaws.services.s3.transfer.exception.FileLockException;
+import com.amazonaws.services.s3.transfer.internal.DownloadImpl;
+
+/**
+ * Downloads an object in parts, with ranged GET requests sent in parallel.
+ * The destination file is preallocated to the size of the object, and each
+ * part is written to its own region of the file with positional writes, so
+ * that the parts can complete in any order. The parts already completed by a
+ * resumed download are skipped.
+ * <p>
+ * The parts are taken from a shared queue by this callable and by helper
+ * tasks submitted to the thread pool of the transfer manager; since this
+ * callable also downloads parts itself, a download makes progress even when
+ * all the threads of the pool are busy.
+ * <p>
+ * If the download fails or is aborted, the preallocated file is deleted; it
+ * is only kept when the download is paused, to be resumed.
+ */
+final class ParallelDownloadCallable implements Callable<File> {
+    private static final Log log = LogFactory.getLog(ParallelDownloadCallable.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Number of helper tasks submitted when the size of the pool is unknown. */
+    private static final int DEFAULT_HELPER_COUNT = 9;
+
+    private final AmazonS3 s3;
+    private final ExecutorService threadPool;
+    private final CountDownLatch latch;
+    private final GetObjectRequest req;
+    private final DownloadImpl download;
+    private final File dstfile;
+    private final long objectLength;
+    private final long partSize;
+    private final String eTag;
+    private final boolean resumeExistingDownload;
+
+    private final ConcurrentLinkedQueue<Integer> pendingParts = new ConcurrentLinkedQueue<Integer>();
+    private volatile boolean stopped;
+    private FileChannel channel;
+
+    ParallelDownloadCallable(AmazonS3 s3, ExecutorService threadPool,
+            CountDownLatch latch, GetObjectRequest req, DownloadImpl download,
+            File dstfile, long objectLength, long partSize, String eTag,
+            boolean resumeExistingDownload) {
+        if (s3 == null || threadPool == null || latch == null || req == null
+                || dstfile == null || download == null || partSize <= 0)
+            throw new IllegalArgumentException();
+        this.s3 = s3;
+        this.threadPool = threadPool;
+        this.latch = latch;
+        this.req = req;
+        this.download = download;
+        this.dstfile = dstfile;
+        this.objectLength = objectLength;
+        this.partSize = partSize;
+        this.eTag = eTag;
+        this.resumeExistingDownload = resumeExistingDownload;
+    }
+
+    /**
+     * This method must return a non-null object, or else the existing
+     * implementation in {@link AbstractTransfer#waitForCompletion()}
+     * would block forever.
+     *
+     * @return the downloaded file
+     */
+    @Override
+    public File call() throws Exception {
+        List<Helper> helpers = new ArrayList<Helper>();
+        RandomAccessFile raf = null;
+        boolean completed = false;
+        try {
+            latch.await();
+            download.setState(TransferState.InProgress);
+            raf = openFile();
+            channel = raf.getChannel();
+
+            int partCount = (int) ((objectLength + partSize - 1) / partSize);
+            for (int partNumber = 1; partNumber <= partCount; partNumber++) {
+                pendingParts.add(partNumber);
+            }
+            for (int partNumber : download.getCompletedParts()) {
+                pendingParts.remove(partNumber);
+            }
+
+            int helperCount = Math.min(pendingParts.size() - 1, maxHelperCount());
+            for (int i = 0; i < helperCount; i++) {
+                Helper helper = new Helper();
+                helper.future = threadPool.submit(helper);
+                helpers.add(helper);
+            }
+            downloadPendingParts();
+            for (Helper helper : helpers) {
+                // Only wait for the helpers that have started: the others may
+                // be queued behind this very task, in a pool with no free thread
+                if (helper.started.compareAndSet(false, true))
+                    continue;
+                try {
+                    helper.future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception)
+                        throw (Exception) cause;
+                    throw (Error) cause;
+                }
+            }
+            if (isStopped()) {
+                throw new AmazonClientException("The download of "
+                        + req.getBucketName() + "/" + req.getKey()
+                        + " has been stopped before completion");
+            }
+            completed = true;
+            download.setState(TransferState.Completed);
+            return dstfile;
+        } catch (Throwable t) {
+            stopped = true;
+            for (Helper helper : helpers) {
+                helper.future.cancel(true);
+            }
+            // Downloads aren't allowed to move from canceled to failed
+            if (download.getState() != TransferState.Canceled) {
+                download.setState(TransferState.Failed);
+            }
+            if (t instanceof Exception)
+                throw (Exception) t;
+            else
+                throw (Error) t;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    log.debug("Unable to close " + dstfile, e);
+                }
+                // Unless the download can be resumed, don't leave a file of
+                // the expected length behind that looks complete
+                if (!completed && !download.isPaused() && !dstfile.delete()) {
+                    log.debug("Unable to delete " + dstfile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the destination file, preallocated to the size of the object. The
+     * content of the file is kept only when resuming a download whose parts
+     * have already been partly written.
+     */
+    private RandomAccessFile openFile() throws IOException {
+        File parentDirectory = dstfile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            if (!parentDirectory.mkdirs()) {
+                throw new AmazonClientException(
+                        "Unable to create directory in the path"
+                                + parentDirectory.getAbsolutePath());
+            }
+        }
+        if (!FileLocks.lock(dstfile)) {
+            throw new FileLockException("Fail to lock " + dstfile
+                    + " for parallel download");
+        }
+        try {
+            boolean resuming = resumeExistingDownload
+                    && download.getCompletedParts().length > 0;
+            if (resuming && dstfile.length() != objectLength) {
+                throw new AmazonClientException("Unable to resume the download of "
+                        + req.getBucketName() + "/" + req.getKey() + ": " + dstfile
+                        + " doesn't have the expected length " + objectLength);
+            }
+            RandomAccessFile raf = new RandomAccessFile(dstfile, "rw");
+            if (!resuming) {
+                raf.setLength(0);
+                raf.setLength(objectLength);
+            }
+            return raf;
+        } finally {
+            FileLocks.unlock(dstfile);
+        }
+    }
+
+    private int maxHelperCount() {
+        if (threadPool instanceof ThreadPoolExecutor) {
+            return Math.max(0, ((ThreadPoolExecutor) threadPool).getMaximumPoolSize() - 1);
+        }
+        return DEFAULT_HELPER_COUNT;
+    }
+
+    private long firstByte(int partNumber) {
+        return (partNumber - 1) * partSize;
+    }
+
+    private long lastByte(int partNumber) {
+        return Math.min(partNumber * partSize, objectLength) - 1;
+    }
+
+    /** Task downloading parts from the thread pool, unless it starts too late. */
+    private final class Helper implements Callable<Void> {
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile Future<?> future;
+
+        @Override
+        public Void call() throws Exception {
+            if (started.compareAndSet(false, true))
+                downloadPendingParts();
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether the parts still to download should be left alone,
+     * because the download has failed, or has been paused or aborted.
+     */
+    private boolean isStopped() {
+        return stopped || download.isPartsStopped();
+    }
+
+    /** Downloads parts until there is none left, or the download is stopped. */
+    private void downloadPendingParts() throws Exception {
+        try {
+            Integer partNumber;
+            while (!isStopped() && (partNumber = pendingParts.poll()) != null) {
+                downloadPart(partNumber);
+            }
+        } catch (Exception e) {
+            stopped = true;
+            throw e;
+        } catch (Error e) {
+            stopped = true;
+            throw e;
+        }
+    }
+
+    private void downloadPart(int partNumber) throws IOException {
+        long firstByte = firstByte(partNumber);
+        long lastByte = lastByte(partNumber);
+        GetObjectRequest partRequest = new GetObjectRequest(req.getBucketName(),
+                req.getKey(), req.getVersionId())
+            .withRange(firstByte, lastByte)
+            .withResponseHeaders(req.getResponseHeaders())
+            .withSSECustomerKey(req.getSSECustomerKey())
+            .withGeneralProgressListener(req.getGeneralProgressListener());
+        partRequest.setRequesterPays(req.isRequesterPays());
+        if (eTag != null) {
+            // Make sure all the parts are of the same object
+            partRequest.withMatchingETagConstraint(eTag);
+        }
+        TransferManager.appendMultipartUserAgent(partRequest);
+
+        S3Object s3Object = s3.getObject(partRequest);
+        if (s3Object == null) {
+            throw new AmazonClientException("Unable to download part "
+                    + partNumber + " of " + req.getBucketName() + "/"
+                    + req.getKey() + ": the object has changed during the download");
+        }
+        S3ObjectInputStream content = s3Object.getObjectContent();
+        if (!download.partStarted(content)) {
+            content.abort();
+            return;
+        }
+        try {
+            long position = firstByte;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = content.read(buffer)) > -1) {
+                if (isStopped()) {
+                    content.abort();
+                    return;
+                }
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 0, bytesRead);
+                while (bb.hasRemaining()) {
+                    position += channel.write(bb, position);
+                }
+            }
+            if (position != lastByte + 1) {
+                throw new AmazonClientException("Unable to download part "
+                        + partNumber + " of " + req.getBucketName() + "/"
+                        + req.getKey() + ": expected " + (lastByte - firstByte + 1)
+                        + " bytes but received " + (position - firstByte));
+            }
+        } catch (IOException e) {
+            content.abort();
+            if (isStopped()) {
+                // The content has been aborted along with the download
+                return;
+            }
+            throw new AmazonClientException(
+                    "Unable to store object contents to disk: " + e.getMessage(), e);
+        } finally {
+            download.partEnded(content);
+            try {
+                content.close();
+            } catch (IOException e) {
+                log.debug("Unable to close the content of part " + partNumber, e);
+            }
+        }
+        download.partCompleted(partNumber);
+    }
+}
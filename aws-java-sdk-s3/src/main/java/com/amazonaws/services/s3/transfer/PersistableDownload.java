@@ -63,10 +63,35 @@ public final class PersistableDownload extends PersistableTransfer {
     @JsonProperty
     private final String file;
 
+    /**
+     * Size of the parts of a parallel download; 0 if the object is downloaded
+     * with a single request.
+     */
+    @JsonProperty
+    private final long partSize;
+
+    /**
+     * ETag of the object being downloaded in parallel, which must not change
+     * for the download to be resumed.
+     */
+    @JsonProperty
+    private final String eTag;
+
+    /** Part numbers of the parts of a parallel download already written to the file. */
+    @JsonProperty
+    private final int[] completedParts;
+
     public PersistableDownload() {
         this(null, null, null, null, null, false, null);
     }
 
+    public PersistableDownload(String bucketName, String key, String versionId,
+            long[] range, ResponseHeaderOverrides responseHeaders,
+            boolean isRequesterPays, String file) {
+        this(bucketName, key, versionId, range, responseHeaders,
+                isRequesterPays, file, 0, null, null);
+    }
+
     public PersistableDownload(
             @JsonProperty(value = "bucketName") String bucketName,
             @JsonProperty(value = "key") String key,
@@ -74,7 +99,10 @@ public final class PersistableDownload extends PersistableTransfer {
             @JsonProperty(value = "range") long[] range,
             @JsonProperty(value = "responseHeaders") ResponseHeaderOverrides responseHeaders,
             @JsonProperty(value = "isRequesterPays") boolean isRequesterPays,
-            @JsonProperty(value = "file") String file) {
+            @JsonProperty(value = "file") String file,
+            @JsonProperty(value = "partSize") long partSize,
+            @JsonProperty(value = "eTag") String eTag,
+            @JsonProperty(value = "completedParts") int[] completedParts) {
         this.bucketName = bucketName;
         this.key = key;
         this.versionId = versionId;
@@ -82,6 +110,9 @@ public final class PersistableDownload extends PersistableTransfer {
         this.responseHeaders = responseHeaders;
         this.isRequesterPays = isRequesterPays;
         this.file = file;
+        this.partSize = partSize;
+        this.eTag = eTag;
+        this.completedParts = completedParts == null ? null : completedParts.clone();
     }
 
     /**
@@ -134,6 +165,29 @@ public final class PersistableDownload extends PersistableTransfer {
         return file;
     }
 
+    /**
+     * Returns the size of the parts of a parallel download; 0 if the object
+     * is downloaded with a single request.
+     */
+    long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Returns the ETag of the object being downloaded in parallel.
+     */
+    String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Returns the part numbers of the parts of a parallel download already
+     * written to the file.
+     */
+    int[] getCompletedParts() {
+        return completedParts == null ? null : completedParts.clone();
+    }
+
     String getPauseType() {
         return pauseType;
     }
@@ -59,6 +59,7 @@ import com.amazonaws.services.s3.model.MultipartUploadListing;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.transfer.Transfer.TransferState;
 import com.amazonaws.services.s3.transfer.exception.FileLockException;
@@ -743,6 +744,20 @@ public class TransferManager {
             final File file, final TransferStateChangeListener stateListener,
             final S3ProgressListener s3progressListener,
             final boolean resumeExistingDownload)
+    {
+        return doDownload(getObjectRequest, file, stateListener,
+                s3progressListener, resumeExistingDownload, null);
+    }
+
+    /**
+     * Same as above, but resumes the parts of the specified parallel download
+     * that haven't been completed yet, if any.
+     */
+    private Download doDownload(final GetObjectRequest getObjectRequest,
+            final File file, final TransferStateChangeListener stateListener,
+            final S3ProgressListener s3progressListener,
+            final boolean resumeExistingDownload,
+            final PersistableDownload persistableDownload)
     {
         appendSingleObjectUserAgent(getObjectRequest);
         String description = "Downloading from " + getObjectRequest.getBucketName() + "/" + getObjectRequest.getKey();
@@ -763,6 +778,7 @@ public class TransferManager {
 
         long startingByte = 0;
         long lastByte;
+        ObjectMetadata objectMetadata = null;
 
         long[] range = getObjectRequest.getRange();
 		if (range != null
@@ -776,10 +792,20 @@ public class TransferManager {
                 getObjectMetadataRequest.setSSECustomerKey(getObjectRequest.getSSECustomerKey());
             if (getObjectRequest.getVersionId() != null)
                 getObjectMetadataRequest.setVersionId(getObjectRequest.getVersionId());
-            final ObjectMetadata objectMetadata = s3.getObjectMetadata(getObjectMetadataRequest);
+            objectMetadata = s3.getObjectMetadata(getObjectMetadataRequest);
 
             lastByte = objectMetadata.getContentLength() - 1;
         }
+
+        if (objectMetadata != null
+                && (persistableDownload != null && persistableDownload.getPartSize() > 0
+                    || !resumeExistingDownload
+                        && TransferManagerUtils.shouldUseMultipartDownload(
+                                s3, getObjectRequest, objectMetadata, configuration))) {
+            return doParallelDownload(getObjectRequest, file, description,
+                    transferProgress, listenerChain, stateListener,
+                    objectMetadata, persistableDownload);
+        }
         final long origStartingByte = startingByte;
         // We still pass the unfiltered listener chain into DownloadImpl
         final DownloadImpl download = new DownloadImpl(description,
@@ -831,6 +857,63 @@ public class TransferManager {
         return download;
     }
 
+    /**
+     * Downloads the specified object in several parts, with ranged GET
+     * requests sent in parallel, resuming the specified download if any.
+     */
+    private Download doParallelDownload(final GetObjectRequest getObjectRequest,
+            final File file, final String description,
+            final TransferProgress transferProgress,
+            final S3ProgressListenerChain listenerChain,
+            final TransferStateChangeListener stateListener,
+            final ObjectMetadata objectMetadata,
+            final PersistableDownload persistableDownload)
+    {
+        final long objectLength = objectMetadata.getContentLength();
+        final String eTag = objectMetadata.getETag();
+        long partSize;
+        int[] completedParts = null;
+        boolean resumeExistingDownload = false;
+        if (persistableDownload != null && persistableDownload.getPartSize() > 0
+                && eTag != null && eTag.equals(persistableDownload.getETag())) {
+            partSize = persistableDownload.getPartSize();
+            completedParts = persistableDownload.getCompletedParts();
+            resumeExistingDownload = true;
+        } else {
+            // The object has changed since the download was paused, so none
+            // of the parts already downloaded can be kept
+            partSize = TransferManagerUtils.calculateDownloadPartSize(
+                    objectMetadata, configuration);
+        }
+
+        // The parts are ranges of the object, so its metadata is the one
+        // returned for the whole object
+        final S3Object s3Object = new S3Object();
+        s3Object.setBucketName(getObjectRequest.getBucketName());
+        s3Object.setKey(getObjectRequest.getKey());
+        s3Object.setObjectMetadata(objectMetadata);
+        final DownloadImpl download = new DownloadImpl(description,
+                transferProgress, listenerChain, s3Object, stateListener,
+                getObjectRequest, file, partSize, eTag, completedParts);
+        transferProgress.setTotalBytesToTransfer(objectLength);
+        if (completedParts != null) {
+            for (int partNumber : completedParts) {
+                long firstByte = (partNumber - 1) * partSize;
+                transferProgress.updateProgress(
+                        Math.min(partNumber * partSize, objectLength) - firstByte);
+            }
+        }
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        Future<?> future = threadPool.submit(
+            new ParallelDownloadCallable(s3, threadPool, latch,
+                getObjectRequest, download, file, objectLength, partSize,
+                eTag, resumeExistingDownload));
+        download.setMonitor(new DownloadMonitor(download, future));
+        latch.countDown();
+        return download;
+    }
+
     /**
      * Downloads all objects in the virtual directory designated by the
      * keyPrefix given to the destination directory given. All virtual
@@ -1546,7 +1629,7 @@ public class TransferManager {
         request.setResponseHeaders(persistableDownload.getResponseHeaders());
 
         return doDownload(request, new File(persistableDownload.getFile()), null, null,
-                APPEND_MODE);
+                APPEND_MODE, persistableDownload);
     }
 
     /**
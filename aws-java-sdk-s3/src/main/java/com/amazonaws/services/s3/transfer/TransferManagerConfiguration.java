@@ -39,6 +39,15 @@ public class TransferManagerConfiguration {
     /** Default minimum size of each part for multi-part copy. */
     private static final long DEFAULT_MINIMUM_COPY_PART_SIZE = 100 * MB;
 
+    /** Default minimum size of each part for multi-part downloads. */
+    private static final long DEFAULT_MINIMUM_DOWNLOAD_PART_SIZE = 16 * MB;
+
+    /** Default size threshold for when to use multi-part downloads: never. */
+    private static final long DEFAULT_MULTIPART_DOWNLOAD_THRESHOLD = Long.MAX_VALUE;
+
+    /** Default number of part buffers of an upload from a stream of unknown length. */
+    private static final int DEFAULT_STREAM_UPLOAD_BUFFER_COUNT = 4;
+
     /**
      * The minimum part size for upload parts. Decreasing the minimum part size
      * will cause multipart uploads to be split into a larger number of smaller
@@ -77,6 +86,35 @@ public class TransferManagerConfiguration {
      */
     private long multipartCopyPartSize = DEFAULT_MINIMUM_COPY_PART_SIZE;
 
+    /**
+     * The minimum size in bytes of each part of a multi-part download. Objects
+     * uploaded in multiple parts are split along the boundaries of their
+     * parts, merged as needed to reach this size.
+     */
+    private long minimumDownloadPartSize = DEFAULT_MINIMUM_DOWNLOAD_PART_SIZE;
+
+    /**
+     * The size threshold, in bytes, for when to use multi-part downloads.
+     * Objects of this size or more are downloaded with several ranged requests
+     * in parallel, each written to its own region of the file; smaller objects
+     * are downloaded with a single connection. Disabled by default.
+     */
+    private long multipartDownloadThreshold = DEFAULT_MULTIPART_DOWNLOAD_THRESHOLD;
+
+    /**
+     * The number of part buffers, of the minimum upload part size each, used
+     * to upload a stream of unknown length. One buffer is filled from the
+     * stream while the others are uploaded in parallel, so the memory used by
+     * such an upload is bounded by the part size times this count.
+     */
+    private int streamUploadBufferCount = DEFAULT_STREAM_UPLOAD_BUFFER_COUNT;
+
+    /**
+     * Whether the part buffers of an upload from a stream of unknown length
+     * are allocated outside of the heap.
+     */
+    private boolean streamUploadBuffersDirect = false;
+
     /**
      * Returns the minimum part size for upload parts.
      * Decreasing the minimum part size causes
@@ -192,4 +230,101 @@ public class TransferManagerConfiguration {
     public void setMultipartCopyThreshold(long multipartCopyThreshold) {
         this.multipartCopyThreshold = multipartCopyThreshold;
     }
+
+    /**
+     * Returns the minimum size in bytes of each part of a multi-part download.
+     *
+     * @return The minimum size in bytes of each part of a multi-part download.
+     */
+    public long getMinimumDownloadPartSize() {
+        return minimumDownloadPartSize;
+    }
+
+    /**
+     * Sets the minimum size in bytes of each part of a multi-part download.
+     * Objects uploaded in multiple parts are split along the boundaries of
+     * their parts, merged as needed to reach this size.
+     *
+     * @param minimumDownloadPartSize
+     *            The minimum size in bytes of each part of a multi-part
+     *            download.
+     */
+    public void setMinimumDownloadPartSize(long minimumDownloadPartSize) {
+        this.minimumDownloadPartSize = minimumDownloadPartSize;
+    }
+
+    /**
+     * Returns the size threshold in bytes for when to use multi-part
+     * downloads.
+     *
+     * @return The size threshold in bytes for when to use multi-part
+     *         downloads.
+     */
+    public long getMultipartDownloadThreshold() {
+        return multipartDownloadThreshold;
+    }
+
+    /**
+     * Sets the size threshold in bytes for when to use multi-part downloads.
+     * Objects of this size or more are downloaded with several ranged requests
+     * in parallel, each written to its own region of a preallocated file,
+     * while smaller objects are downloaded with a single connection. Ranged,
+     * client-side encrypted and resumed single-part downloads always use a
+     * single connection.
+     *
+     * @param multipartDownloadThreshold
+     *            The size threshold in bytes for when to use multi-part
+     *            downloads.
+     */
+    public void setMultipartDownloadThreshold(long multipartDownloadThreshold) {
+        this.multipartDownloadThreshold = multipartDownloadThreshold;
+    }
+
+    /**
+     * Returns the number of part buffers used to upload a stream of unknown
+     * length.
+     *
+     * @return The number of part buffers used to upload a stream of unknown
+     *         length.
+     */
+    public int getStreamUploadBufferCount() {
+        return streamUploadBufferCount;
+    }
+
+    /**
+     * Sets the number of part buffers used to upload a stream of unknown
+     * length. Such a stream is read into buffers of the minimum upload part
+     * size, each uploaded as a part as soon as it is full while the next one
+     * is filled; the memory used by the upload is bounded by the part size
+     * times this count, however long the stream is.
+     *
+     * @param streamUploadBufferCount
+     *            The number of part buffers used to upload a stream of unknown
+     *            length.
+     */
+    public void setStreamUploadBufferCount(int streamUploadBufferCount) {
+        this.streamUploadBufferCount = streamUploadBufferCount;
+    }
+
+    /**
+     * Returns whether the part buffers used to upload a stream of unknown
+     * length are allocated outside of the heap.
+     *
+     * @return True if the part buffers are direct buffers.
+     */
+    public boolean isStreamUploadBuffersDirect() {
+        return streamUploadBuffersDirect;
+    }
+
+    /**
+     * Sets whether the part buffers used to upload a stream of unknown length
+     * are allocated outside of the heap, with
+     * {@link java.nio.ByteBuffer#allocateDirect(int)}.
+     *
+     * @param streamUploadBuffersDirect
+     *            True to allocate direct part buffers.
+     */
+    public void setStreamUploadBuffersDirect(boolean streamUploadBuffersDirect) {
+        this.streamUploadBuffersDirect = streamUploadBuffersDirect;
+    }
 }
\ No newline at end of file
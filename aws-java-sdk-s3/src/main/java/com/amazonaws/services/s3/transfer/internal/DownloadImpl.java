@@ -16,12 +16,17 @@ package com.amazonaws.services.s3.transfer.internal;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressListenerChain;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.transfer.Download;
 import com.amazonaws.services.s3.transfer.PersistableDownload;
 import com.amazonaws.services.s3.transfer.TransferProgress;
@@ -35,13 +40,52 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     private final PersistableDownload persistableDownload;
 
+    private final GetObjectRequest getObjectRequest;
+    private final File file;
+
+    /** Size of the parts of a parallel download; 0 if not downloaded in parallel. */
+    private final long partSize;
+    /** ETag of the object downloaded in parallel. */
+    private final String eTag;
+    /** Part numbers of the parts already written to the file; guarded by this. */
+    private final SortedSet<Integer> completedParts = new TreeSet<Integer>();
+    /** Contents of the parts being downloaded in parallel; guarded by this. */
+    private final Set<S3ObjectInputStream> partContents = new HashSet<S3ObjectInputStream>();
+    /** Whether the parts still to download should be left alone; guarded by this. */
+    private boolean partsStopped;
+    /** Whether the download has been paused, to be resumed later; guarded by this. */
+    private boolean paused;
+
     public DownloadImpl(String description, TransferProgress transferProgress,
             ProgressListenerChain progressListenerChain, S3Object s3Object,
             TransferStateChangeListener listener,
             GetObjectRequest getObjectRequest, File file) {
+        this(description, transferProgress, progressListenerChain, s3Object,
+                listener, getObjectRequest, file, 0, null, null);
+    }
+
+    /**
+     * Constructs the download of an object in parts of the given size,
+     * downloaded in parallel; some of them may have been completed by a
+     * previous download that is being resumed.
+     */
+    public DownloadImpl(String description, TransferProgress transferProgress,
+            ProgressListenerChain progressListenerChain, S3Object s3Object,
+            TransferStateChangeListener listener,
+            GetObjectRequest getObjectRequest, File file,
+            long partSize, String eTag, int[] completedParts) {
         super(description, transferProgress, progressListenerChain, listener);
         this.s3Object = s3Object;
-        this.persistableDownload = captureDownloadState(getObjectRequest, file);
+        this.getObjectRequest = getObjectRequest;
+        this.file = file;
+        this.partSize = partSize;
+        this.eTag = eTag;
+        if (completedParts != null) {
+            for (int partNumber : completedParts) {
+                this.completedParts.add(partNumber);
+            }
+        }
+        this.persistableDownload = captureDownloadState();
         S3ProgressPublisher.publishTransferPersistable(progressListenerChain,
                 persistableDownload);
     }
@@ -82,9 +126,10 @@ public class DownloadImpl extends AbstractTransfer implements Download {
 
         this.monitor.getFuture().cancel(true);
 
-        if ( s3Object != null ) {
+        if ( s3Object != null && s3Object.getObjectContent() != null ) {
               s3Object.getObjectContent().abort();
         }
+        stopParts();
         setState(TransferState.Canceled);
     }
 
@@ -95,6 +140,7 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     public synchronized void abortWithoutNotifyingStateChangeListener() throws IOException {
         this.monitor.getFuture().cancel(true);
+        stopParts();
         this.state = TransferState.Canceled;
     }
 
@@ -122,19 +168,84 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      * Returns the captured state of the download; or null if it should not be
      * captured (for security reason).
      */
-    private PersistableDownload captureDownloadState(
-            final GetObjectRequest getObjectRequest, final File file) {
+    private PersistableDownload captureDownloadState() {
         if (getObjectRequest.getSSECustomerKey() == null) {
             return new PersistableDownload(
                     getObjectRequest.getBucketName(),
                     getObjectRequest.getKey(), getObjectRequest.getVersionId(),
                     getObjectRequest.getRange(),
                     getObjectRequest.getResponseHeaders(),
-                    getObjectRequest.isRequesterPays(), file.getAbsolutePath());
+                    getObjectRequest.isRequesterPays(), file.getAbsolutePath(),
+                    partSize, eTag, partSize > 0 ? getCompletedParts() : null);
         }
         return null;
     }
 
+    /**
+     * Records that a part of a parallel download has been written to the
+     * file, so that it isn't downloaded again if the download is resumed.
+     */
+    public synchronized void partCompleted(int partNumber) {
+        completedParts.add(partNumber);
+    }
+
+    /**
+     * Records that the content of a part of a parallel download is being
+     * read, so that it can be aborted along with the download.
+     *
+     * @return false if the download has already been stopped, in which case
+     *         the content should be aborted by the caller.
+     */
+    public synchronized boolean partStarted(S3ObjectInputStream content) {
+        if (partsStopped)
+            return false;
+        partContents.add(content);
+        return true;
+    }
+
+    /** Records that the content of a part is no longer being read. */
+    public synchronized void partEnded(S3ObjectInputStream content) {
+        partContents.remove(content);
+    }
+
+    /**
+     * Returns whether the parts of a parallel download still to download
+     * should be left alone, because the download has been paused or aborted.
+     */
+    public synchronized boolean isPartsStopped() {
+        return partsStopped;
+    }
+
+    /**
+     * Returns whether the download has been paused, in which case the parts
+     * already written to the file are kept to be resumed.
+     */
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /** Stops the parallel download of the parts, aborting those in flight. */
+    private synchronized void stopParts() {
+        partsStopped = true;
+        for (S3ObjectInputStream content : partContents) {
+            content.abort();
+        }
+        partContents.clear();
+    }
+
+    /**
+     * Returns the part numbers of the parts of a parallel download already
+     * written to the file.
+     */
+    public synchronized int[] getCompletedParts() {
+        int[] parts = new int[completedParts.size()];
+        int i = 0;
+        for (Integer partNumber : completedParts) {
+            parts[i++] = partNumber;
+        }
+        return parts;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -144,12 +255,19 @@ public class DownloadImpl extends AbstractTransfer implements Download {
     public PersistableDownload pause() throws PauseException {
         boolean forceCancel = true;
         TransferState currentState = getState();
+        synchronized (this) {
+            // Keeps the parts already written to the file, unless the
+            // download can't be resumed
+            paused = persistableDownload != null;
+            stopParts();
+        }
         this.monitor.getFuture().cancel(true);
 
         if (persistableDownload == null) {
             throw new PauseException(TransferManagerUtils.determinePauseStatus(
                     currentState, forceCancel));
         }
-        return persistableDownload;
+        // The parts completed so far need not be downloaded again
+        return partSize > 0 ? captureDownloadState() : persistableDownload;
     }
 }
\ No newline at end of file
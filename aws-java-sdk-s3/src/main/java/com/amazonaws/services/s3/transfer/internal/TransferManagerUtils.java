@@ -21,7 +21,11 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Encryption;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.transfer.PauseStatus;
 import com.amazonaws.services.s3.transfer.Transfer.TransferState;
@@ -164,6 +168,100 @@ public class TransferManagerUtils {
                 configuration.getMultipartCopyPartSize());
     }
 
+    /**
+     * Returns true if the specified object should be downloaded in several
+     * parts in parallel, rather than with a single request.
+     *
+     * @param s3
+     *            The client used for the download.
+     * @param getObjectRequest
+     *            The request containing all the details of the download.
+     * @param objectMetadata
+     *            The metadata of the object to download.
+     * @param configuration
+     *            Configuration settings controlling how transfer manager
+     *            processes requests.
+     */
+    public static boolean shouldUseMultipartDownload(AmazonS3 s3,
+            GetObjectRequest getObjectRequest, ObjectMetadata objectMetadata,
+            TransferManagerConfiguration configuration) {
+        // The parts of client-side encrypted objects can't be decrypted
+        // independently
+        if (s3 instanceof AmazonS3Encryption)
+            return false;
+        if (getObjectRequest.getRange() != null)
+            return false;
+        return objectMetadata.getContentLength() >= configuration.getMultipartDownloadThreshold()
+            && objectMetadata.getContentLength() > configuration.getMinimumDownloadPartSize();
+    }
+
+    /**
+     * Returns the part size, in bytes, of a multi-part download of the
+     * specified object. If the object was uploaded in multiple parts, the
+     * download parts are aligned on the boundaries of the upload parts: the
+     * number of upload parts is found in the ETag of the object, and their
+     * size is assumed to be the roundest size consistent with that number.
+     *
+     * @param objectMetadata
+     *            The metadata of the object to download.
+     * @param configuration
+     *            Configuration values to use when calculating size.
+     */
+    public static long calculateDownloadPartSize(ObjectMetadata objectMetadata,
+            TransferManagerConfiguration configuration) {
+        long contentLength = objectMetadata.getContentLength();
+        long minimumPartSize = Math.max(1, configuration.getMinimumDownloadPartSize());
+        int uploadPartCount = getMultipartUploadPartCount(objectMetadata.getETag());
+        if (uploadPartCount < 2)
+            return minimumPartSize;
+        long uploadPartSize = guessUploadPartSize(contentLength, uploadPartCount);
+        if (uploadPartSize <= 0)
+            return minimumPartSize;
+        // Merge consecutive upload parts to reach the minimum part size
+        long multiple = (minimumPartSize + uploadPartSize - 1) / uploadPartSize;
+        return uploadPartSize * multiple;
+    }
+
+    /**
+     * Returns the number of parts found in a multipart upload ETag, such as
+     * "d41d8cd98f00b204e9800998ecf8427e-38"; or 0 if there is none.
+     */
+    private static int getMultipartUploadPartCount(String eTag) {
+        if (eTag == null)
+            return 0;
+        int dash = eTag.lastIndexOf('-');
+        if (dash < 0)
+            return 0;
+        String count = eTag.substring(dash + 1);
+        if (count.endsWith("\""))
+            count = count.substring(0, count.length() - 1);
+        try {
+            return Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the part size P for which an object of the given length is made
+     * of the given number N of parts, i.e. (N - 1) * P < length <= N * P,
+     * preferring a power of two MB, then a whole number of MB; or 0 if there is
+     * no such part size.
+     */
+    private static long guessUploadPartSize(long contentLength, int partCount) {
+        long lowest = (contentLength + partCount - 1) / partCount;
+        long highest = (contentLength - 1) / (partCount - 1);
+        if (lowest > highest)
+            return 0;
+        final long mb = 1024 * 1024;
+        for (long size = mb; size <= highest; size <<= 1) {
+            if (size >= lowest)
+                return size;
+        }
+        long wholeMb = (lowest + mb - 1) / mb * mb;
+        return wholeMb <= highest ? wholeMb : lowest;
+    }
+
     /**
      * Determines the pause status based on the current state of transfer.
      */
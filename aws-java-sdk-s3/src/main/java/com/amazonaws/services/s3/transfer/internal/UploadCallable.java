@@ -15,24 +15,35 @@
 package com.amazonaws.services.s3.transfer.internal;
 
 import static com.amazonaws.event.SDKProgressPublisher.publishProgress;
+import static com.amazonaws.services.s3.internal.Constants.MAXIMUM_UPLOAD_PARTS;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressListenerChain;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Encryption;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.internal.ByteBufferInputStream;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
@@ -40,6 +51,7 @@ import com.amazonaws.services.s3.model.EncryptedInitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.EncryptedPutObjectRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PartListing;
 import com.amazonaws.services.s3.model.PartSummary;
@@ -63,7 +75,9 @@ public class UploadCallable implements Callable<UploadResult> {
 
     private static final Log log = LogFactory.getLog(UploadCallable.class);
     private final TransferManagerConfiguration configuration;
-    private final List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
+    /** Also modified by the upload monitor, which cancels them. */
+    private final List<Future<PartETag>> futures = Collections
+            .synchronizedList(new ArrayList<Future<PartETag>>());
     private final ProgressListenerChain listener;
     private final TransferProgress transferProgress;
 
@@ -75,6 +89,11 @@ public class UploadCallable implements Callable<UploadResult> {
 
     private PersistableUpload persistableUpload;
 
+    /** True if the upload is from a stream of unknown length. */
+    private final boolean isStreamUpload;
+    /** True once a stream of unknown length is being uploaded in parts. */
+    private volatile boolean isStreamUploadedInParts;
+
     public UploadCallable(TransferManager transferManager,
             ExecutorService threadPool, UploadImpl upload,
             PutObjectRequest origReq,
@@ -89,6 +108,7 @@ public class UploadCallable implements Callable<UploadResult> {
         this.upload = upload;
         this.multipartUploadId = uploadId;
         this.transferProgress = transferProgress;
+        this.isStreamUpload = isUploadOfUnknownLength();
     }
 
     List<Future<PartETag>> getFutures() {
@@ -112,12 +132,16 @@ public class UploadCallable implements Callable<UploadResult> {
      * @return True if this UploadCallable is processing a multipart upload.
      */
     public boolean isMultipartUpload() {
+        if (isStreamUpload)
+            return isStreamUploadedInParts;
         return TransferManagerUtils.shouldUseMultipartUpload(origReq, configuration);
     }
 
     public UploadResult call() throws Exception {
         upload.setState(TransferState.InProgress);
-        if ( isMultipartUpload() ) {
+        if (isStreamUpload) {
+            return uploadStream();
+        } else if ( isMultipartUpload() ) {
             publishProgress(listener, ProgressEventType.TRANSFER_STARTED_EVENT);
             return uploadInParts();
         } else {
@@ -125,6 +149,20 @@ public class UploadCallable implements Callable<UploadResult> {
         }
     }
 
+    /**
+     * Returns true if the request is an upload from a stream whose length
+     * hasn't been specified, which would have to be buffered whole in memory
+     * to be uploaded in one chunk. The parts of client-side encrypted uploads
+     * must be uploaded in series, so these uploads are excluded.
+     */
+    private boolean isUploadOfUnknownLength() {
+        return origReq.getInputStream() != null
+            && origReq.getFile() == null
+            && (origReq.getMetadata() == null
+                || origReq.getMetadata().getRawMetadataValue(Headers.CONTENT_LENGTH) == null)
+            && !(s3 instanceof AmazonS3Encryption);
+    }
+
     /**
      * Uploads the given request in a single chunk and returns the result.
      */
@@ -139,6 +177,198 @@ public class UploadCallable implements Callable<UploadResult> {
         return uploadResult;
     }
 
+    /**
+     * Uploads a stream of unknown length. The stream is read into a bounded
+     * number of reusable part buffers; a stream that fits into the first
+     * buffer is uploaded in one chunk, otherwise each buffer is uploaded as a
+     * part, in parallel, as soon as it is full.
+     */
+    private UploadResult uploadStream() throws Exception {
+        InputStream input = origReq.getInputStream();
+        long partSize = configuration.getMinimumUploadPartSize();
+        if (partSize <= 0 || partSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Unable to upload a stream of "
+                    + "unknown length in parts of " + partSize + " bytes");
+        }
+        int bufferCount = Math.max(1, configuration.getStreamUploadBufferCount());
+        Deque<StreamPart> partsInFlight = new ArrayDeque<StreamPart>();
+        try {
+            ByteBuffer buffer = newPartBuffer((int) partSize);
+            boolean isLastPart = fill(input, buffer);
+            if (isLastPart) {
+                // Small enough to be sent in one chunk, with a known length
+                if (origReq.getMetadata() == null)
+                    origReq.setMetadata(new ObjectMetadata());
+                origReq.getMetadata().setContentLength(buffer.remaining());
+                origReq.setInputStream(new ByteBufferInputStream(buffer));
+                return uploadInOneChunk();
+            }
+
+            isStreamUploadedInParts = true;
+            publishProgress(listener, ProgressEventType.TRANSFER_STARTED_EVENT);
+            multipartUploadId = initiateMultipartUpload(origReq, false);
+
+            List<PartETag> partETags = new ArrayList<PartETag>();
+            int partNumber = 1;
+            while (true) {
+                if (threadPool.isShutdown()) throw new CancellationException("TransferManager has been shutdown");
+                if (partNumber > MAXIMUM_UPLOAD_PARTS) {
+                    throw new AmazonClientException("Unable to upload a stream "
+                            + "longer than " + MAXIMUM_UPLOAD_PARTS + " parts of "
+                            + partSize + " bytes; please increase the minimum upload part size");
+                }
+                StreamPart part = new StreamPart(buffer, new FutureTask<PartETag>(
+                        new UploadPartCallable(s3, newUploadPartRequest(partNumber++, buffer, isLastPart))));
+                partsInFlight.add(part);
+                futures.add(part.task);
+                threadPool.execute(part.task);
+                if (isLastPart)
+                    break;
+
+                if (partsInFlight.size() < bufferCount) {
+                    buffer = newPartBuffer((int) partSize);
+                } else {
+                    // All the buffers are in flight; reuse the oldest one
+                    StreamPart oldest = partsInFlight.remove();
+                    partETags.add(oldest.await());
+                    buffer = oldest.buffer;
+                }
+                isLastPart = fill(input, buffer);
+                if (!buffer.hasRemaining()) {
+                    // The stream ended on a part boundary
+                    break;
+                }
+            }
+            while (!partsInFlight.isEmpty()) {
+                partETags.add(partsInFlight.remove().await());
+            }
+            return completeMultipartUpload(partETags);
+        } catch (Exception e) {
+            for (StreamPart part : partsInFlight) {
+                part.task.cancel(true);
+            }
+            if (multipartUploadId != null) {
+                publishProgress(listener, ProgressEventType.TRANSFER_FAILED_EVENT);
+                performAbortMultipartUpload();
+            }
+            throw e;
+        } finally {
+            try {input.close(); } catch (Exception e) {
+                log.warn("Unable to cleanly close input stream: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private ByteBuffer newPartBuffer(int partSize) {
+        return configuration.isStreamUploadBuffersDirect()
+                ? ByteBuffer.allocateDirect(partSize)
+                : ByteBuffer.allocate(partSize);
+    }
+
+    /**
+     * Fills the specified buffer from the specified stream, and flips it.
+     * Returns true if the end of the stream has been reached.
+     */
+    private static boolean fill(InputStream input, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        if (buffer.hasArray()) {
+            byte[] bytes = buffer.array();
+            while (buffer.hasRemaining()) {
+                int count = input.read(bytes, buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                if (count == -1) {
+                    buffer.flip();
+                    return true;
+                }
+                buffer.position(buffer.position() + count);
+            }
+        } else {
+            byte[] bytes = new byte[Math.min(buffer.capacity(), 64 * 1024)];
+            while (buffer.hasRemaining()) {
+                int count = input.read(bytes, 0, Math.min(bytes.length, buffer.remaining()));
+                if (count == -1) {
+                    buffer.flip();
+                    return true;
+                }
+                buffer.put(bytes, 0, count);
+            }
+        }
+        buffer.flip();
+        return false;
+    }
+
+    private UploadPartRequest newUploadPartRequest(int partNumber, ByteBuffer buffer, boolean isLastPart) {
+        UploadPartRequest req = new UploadPartRequest()
+            .withBucketName(origReq.getBucketName())
+            .withKey(origReq.getKey())
+            .withUploadId(multipartUploadId)
+            .withInputStream(new ByteBufferInputStream(buffer))
+            .withPartNumber(partNumber)
+            .withPartSize(buffer.remaining());
+        TransferManager.appendMultipartUserAgent(req);
+
+        if (origReq.getSSECustomerKey() != null) req.setSSECustomerKey(origReq.getSSECustomerKey());
+
+        req.setLastPart(isLastPart);
+
+        req.withGeneralProgressListener(origReq.getGeneralProgressListener())
+           .withRequestMetricCollector(origReq.getRequestMetricCollector())
+           ;
+        return req;
+    }
+
+    /**
+     * A part of a stream being uploaded from the thread pool, and the buffer
+     * holding its content until the upload is complete.
+     */
+    private static final class StreamPart {
+        private final ByteBuffer buffer;
+        private final FutureTask<PartETag> task;
+
+        private StreamPart(ByteBuffer buffer, FutureTask<PartETag> task) {
+            this.buffer = buffer;
+            this.task = task;
+        }
+
+        /**
+         * Waits for the part to be uploaded; if its upload hasn't started yet,
+         * it is run right away in the calling thread, so that the upload
+         * progresses even when the thread pool has no free thread.
+         */
+        private PartETag await() throws Exception {
+            task.run();
+            try {
+                return task.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception)
+                    throw (Exception) cause;
+                throw (Error) cause;
+            }
+        }
+    }
+
+    /**
+     * Completes the multipart upload with the specified parts, and returns
+     * the result.
+     */
+    private UploadResult completeMultipartUpload(List<PartETag> partETags) {
+        CompleteMultipartUploadRequest req = 
+            new CompleteMultipartUploadRequest(
+                origReq.getBucketName(), origReq.getKey(), multipartUploadId,
+                    partETags)
+            .withGeneralProgressListener(origReq.getGeneralProgressListener())
+            .withRequestMetricCollector(origReq.getRequestMetricCollector())
+            ;
+        CompleteMultipartUploadResult res = s3.completeMultipartUpload(req);
+
+        UploadResult uploadResult = new UploadResult();
+        uploadResult.setBucketName(res.getBucketName());
+        uploadResult.setKey(res.getKey());
+        uploadResult.setETag(res.getETag());
+        uploadResult.setVersionId(res.getVersionId());
+        return uploadResult;
+    }
+
     /**
      * Captures the state of the upload.
      */
@@ -256,21 +486,7 @@ public class UploadCallable implements Callable<UploadResult> {
             partETags.add(s3.uploadPart(uploadPartRequest).getPartETag());
         }
 
-        CompleteMultipartUploadRequest req = 
-            new CompleteMultipartUploadRequest(
-                origReq.getBucketName(), origReq.getKey(), multipartUploadId,
-                    partETags)
-            .withGeneralProgressListener(origReq.getGeneralProgressListener())
-            .withRequestMetricCollector(origReq.getRequestMetricCollector())
-            ;
-        CompleteMultipartUploadResult res = s3.completeMultipartUpload(req);
-
-        UploadResult uploadResult = new UploadResult();
-        uploadResult.setBucketName(res.getBucketName());
-        uploadResult.setKey(res.getKey());
-        uploadResult.setETag(res.getETag());
-        uploadResult.setVersionId(res.getVersionId());
-        return uploadResult;
+        return completeMultipartUpload(partETags);
     }
 
     /**
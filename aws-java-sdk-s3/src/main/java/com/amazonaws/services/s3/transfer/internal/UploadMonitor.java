@@ -195,7 +195,14 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
         for (Future<PartETag> f : futures) {
             f.cancel(true);
         }
-        multipartUploadCallable.getFutures().clear();
+        // The parts of a stream upload, still being submitted
+        List<Future<PartETag>> callableFutures = multipartUploadCallable.getFutures();
+        synchronized (callableFutures) {
+            for (Future<PartETag> f : callableFutures) {
+                f.cancel(true);
+            }
+            callableFutures.clear();
+        }
         futures.clear();
     }
 
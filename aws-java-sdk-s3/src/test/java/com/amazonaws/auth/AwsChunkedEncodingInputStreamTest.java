@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.amazonaws.RequestClientOptions;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * Checks the encoded output of {@link AwsChunkedEncodingInputStream} byte for
+ * byte against the implementation it replaced.
+ */
+public class AwsChunkedEncodingInputStreamTest {
+
+    private static final int MAX_BUFFER_SIZE = 256 * 1024;
+    private static final String DATE_TIME = "20150830T123600Z";
+    private static final String KEY_PATH = "20150830/us-east-1/s3/aws4_request";
+    private static final String HEADER_SIGNATURE =
+            "4f232c4386841ef735655705268965c44a0e4690baa4adea153f7db9fa80a0a9";
+    private static final Pattern CHUNK_SIGNATURE = Pattern.compile(";chunk-signature=([0-9a-f]{64})\r\n");
+
+    private static final int[] CHUNK_SIZES = {
+        RequestClientOptions.MINIMUM_CHUNK_SIZE, 16 * 1024 + 3, RequestClientOptions.DEFAULT_CHUNK_SIZE };
+
+    private final AWS4Signer signer = new AWS4Signer();
+    private final byte[] kSigning = signer.hash("signing key");
+
+    private static byte[] payload(int length) {
+        byte[] payload = new byte[length];
+        new Random(length).nextBytes(payload);
+        return payload;
+    }
+
+    /**
+     * Returns payload lengths smaller than, equal to and larger than one and
+     * several chunks of the given size.
+     */
+    private static int[] payloadLengths(int chunkSize) {
+        return new int[] { 0, 1, chunkSize - 1, chunkSize, chunkSize + 1, 3 * chunkSize, 3 * chunkSize + 17 };
+    }
+
+    private AwsChunkedEncodingInputStream encoding(InputStream in, int chunkSize) {
+        return new AwsChunkedEncodingInputStream(in, MAX_BUFFER_SIZE, chunkSize, kSigning, DATE_TIME, KEY_PATH,
+                HEADER_SIGNATURE, signer);
+    }
+
+    private LegacyAwsChunkedEncodingInputStream legacyEncoding(InputStream in, int chunkSize) {
+        return new LegacyAwsChunkedEncodingInputStream(in, MAX_BUFFER_SIZE, chunkSize, kSigning, DATE_TIME,
+                KEY_PATH, HEADER_SIGNATURE, signer);
+    }
+
+    @Test
+    public void testEncodingMatchesLegacyImplementation() throws IOException {
+        for (int chunkSize : CHUNK_SIZES) {
+            for (int length : payloadLengths(chunkSize)) {
+                byte[] payload = payload(length);
+                byte[] expected = read(legacyEncoding(new ByteArrayInputStream(payload), chunkSize), 8192);
+                byte[] actual = read(encoding(new ByteArrayInputStream(payload), chunkSize), 1000);
+
+                String message = "chunk size " + chunkSize + ", payload length " + length;
+                assertArrayEquals(message, expected, actual);
+                assertEquals(message, AwsChunkedEncodingInputStream.calculateStreamContentLength(length, chunkSize),
+                        actual.length);
+                // A chunk per full chunk size, and a last empty one
+                List<String> signatures = chunkSignatures(actual);
+                assertEquals(message, chunkSignatures(expected), signatures);
+                assertEquals(message, (length + chunkSize - 1) / chunkSize + 1, signatures.size());
+            }
+        }
+    }
+
+    @Test
+    public void testSingleByteReads() throws IOException {
+        byte[] payload = payload(RequestClientOptions.MINIMUM_CHUNK_SIZE + 100);
+        int chunkSize = RequestClientOptions.MINIMUM_CHUNK_SIZE;
+        byte[] expected = read(legacyEncoding(new ByteArrayInputStream(payload), chunkSize), 8192);
+
+        InputStream encoding = encoding(new ByteArrayInputStream(payload), chunkSize);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        int b;
+        while ((b = encoding.read()) != -1) {
+            actual.write(b);
+        }
+        assertArrayEquals(expected, actual.toByteArray());
+    }
+
+    @Test
+    public void testResetOfMarkSupportedStream() throws IOException {
+        for (int chunkSize : CHUNK_SIZES) {
+            for (int length : payloadLengths(chunkSize)) {
+                byte[] payload = payload(length);
+                assertResetMatchesLegacy(new ByteArrayInputStream(payload), new ByteArrayInputStream(payload),
+                        chunkSize);
+            }
+        }
+    }
+
+    @Test
+    public void testResetOfBufferedStream() throws IOException {
+        int chunkSize = RequestClientOptions.MINIMUM_CHUNK_SIZE;
+        for (int length : payloadLengths(chunkSize)) {
+            byte[] payload = payload(length);
+            assertResetMatchesLegacy(new UnmarkableInputStream(payload), new UnmarkableInputStream(payload),
+                    chunkSize);
+        }
+    }
+
+    /**
+     * Reads part of the encoded streams, resets them, and then checks that
+     * they are encoded again the same way, including when wrapped by the
+     * stream of a retry.
+     */
+    private void assertResetMatchesLegacy(InputStream in, InputStream legacyIn, int chunkSize) throws IOException {
+        AwsChunkedEncodingInputStream encoding = encoding(in, chunkSize);
+        LegacyAwsChunkedEncodingInputStream legacyEncoding = legacyEncoding(legacyIn, chunkSize);
+        encoding.mark(MAX_BUFFER_SIZE);
+        legacyEncoding.mark(MAX_BUFFER_SIZE);
+        encoding.read(new byte[chunkSize + 500]);
+        legacyEncoding.read(new byte[chunkSize + 500]);
+        encoding.reset();
+        legacyEncoding.reset();
+
+        byte[] expected = read(legacyEncoding, 8192);
+        assertArrayEquals(expected, read(encoding, 777));
+
+        encoding.reset();
+        assertArrayEquals(expected, read(encoding(encoding, chunkSize), 4096));
+    }
+
+    private static byte[] read(InputStream in, int readSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[readSize];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<String> chunkSignatures(byte[] encoded) {
+        List<String> signatures = new ArrayList<String>();
+        Matcher matcher = CHUNK_SIGNATURE.matcher(new String(encoded, StringUtils.UTF8));
+        while (matcher.find()) {
+            signatures.add(matcher.group(1));
+        }
+        return signatures;
+    }
+
+    /** A stream which doesn't support mark, so that the encoding buffers it. */
+    private static class UnmarkableInputStream extends FilterInputStream {
+        UnmarkableInputStream(byte[] content) {
+            super(new ByteArrayInputStream(content));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
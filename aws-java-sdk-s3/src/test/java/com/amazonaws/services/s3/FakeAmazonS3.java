@@ -0,0 +1,427 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.methods.HttpGet;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+
+/**
+ * An in-memory fake of Amazon S3 for the tests of the transfer and listing
+ * utilities, with a single bucket whose name is ignored. The calls to one
+ * method can be held open until released, so that tests can act while
+ * requests are in flight without relying on timing, and the calls to one
+ * method can be made to fail. The reads of the object contents returned can
+ * be held open the same way, by holding the calls to the method {@code read}.
+ */
+public class FakeAmazonS3 implements InvocationHandler {
+
+    /** The content of the objects, by key. */
+    public final ConcurrentMap<String, byte[]> objects = new ConcurrentHashMap<String, byte[]>();
+
+    /** The names of the methods called, in order. */
+    public final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+    /** The first argument of every call, usually the request, in order. */
+    public final List<Object> requests = Collections.synchronizedList(new ArrayList<Object>());
+
+    /** Released once by every held call entering the fake. */
+    public final Semaphore entered = new Semaphore(0);
+
+    /**
+     * The number of held calls interrupted, or held reads aborted, while
+     * waiting to be released.
+     */
+    public final AtomicInteger interrupted = new AtomicInteger();
+
+    /** The parts of the multipart uploads in progress, by upload id. */
+    private final ConcurrentMap<String, ConcurrentSkipListMap<Integer, byte[]>> uploads =
+            new ConcurrentHashMap<String, ConcurrentSkipListMap<Integer, byte[]>>();
+
+    private final AtomicInteger uploadCount = new AtomicInteger();
+    private final ConcurrentMap<String, AtomicInteger> callCounts = new ConcurrentHashMap<String, AtomicInteger>();
+
+    private volatile String heldMethod;
+    private volatile int holdAfterCalls;
+    private volatile CountDownLatch gate;
+    private volatile String failingMethod;
+    private volatile int failAfterCalls;
+
+    public AmazonS3 proxy() {
+        return (AmazonS3) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { AmazonS3.class }, this);
+    }
+
+    /** Holds the calls to the given method open until {@link #release()}. */
+    public void hold(String methodName) {
+        hold(methodName, 0);
+    }
+
+    /**
+     * Holds the calls to the given method open until {@link #release()},
+     * once the given number of calls to it have gone through.
+     */
+    public void hold(String methodName, int afterCalls) {
+        gate = new CountDownLatch(1);
+        holdAfterCalls = afterCalls;
+        heldMethod = methodName;
+    }
+
+    /** Lets the held calls, and the later ones, go through. */
+    public void release() {
+        gate.countDown();
+    }
+
+    /**
+     * Returns whether the given number of held calls enter the fake within
+     * the given time.
+     */
+    public boolean awaitEntered(int count, long timeoutMillis) throws InterruptedException {
+        return entered.tryAcquire(count, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Makes the calls to the given method fail with an internal error, once
+     * the given number of calls to it have gone through.
+     */
+    public void failOn(String methodName, int afterCalls) {
+        failAfterCalls = afterCalls;
+        failingMethod = methodName;
+    }
+
+    /** Returns the number of calls made to the given method. */
+    public int callCount(String methodName) {
+        AtomicInteger count = callCounts.get(methodName);
+        return count == null ? 0 : count.get();
+    }
+
+    /** Returns the number of multipart uploads neither completed nor aborted. */
+    public int uploadsInProgress() {
+        return uploads.size();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        calls.add(name);
+        requests.add(args == null ? null : args[0]);
+        int call = count(name);
+
+        if (name.equals(heldMethod) && call > holdAfterCalls) {
+            entered.release();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+                throw new AmazonServiceException("Interrupted", e);
+            }
+        }
+        if (name.equals(failingMethod) && call > failAfterCalls) {
+            AmazonServiceException e = new AmazonServiceException("We encountered an internal error");
+            e.setErrorCode("InternalError");
+            e.setStatusCode(500);
+            throw e;
+        }
+
+        try {
+            return getClass().getMethod(name, method.getParameterTypes()).invoke(this, args);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException(name);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private int count(String methodName) {
+        callCounts.putIfAbsent(methodName, new AtomicInteger());
+        return callCounts.get(methodName).incrementAndGet();
+    }
+
+    public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+        return metadata(request.getKey());
+    }
+
+    /**
+     * Returns the object, or the requested range of it, or null if it
+     * doesn't match the ETag constraints of the request.
+     */
+    public S3Object getObject(GetObjectRequest request) {
+        byte[] content = objects.get(request.getKey());
+        if (content == null) {
+            AmazonServiceException e = new AmazonServiceException("The specified key does not exist.");
+            e.setErrorCode("NoSuchKey");
+            e.setStatusCode(404);
+            throw e;
+        }
+        ObjectMetadata metadata = metadata(request.getKey());
+        if (!request.getMatchingETagConstraints().isEmpty()
+                && !request.getMatchingETagConstraints().contains(metadata.getETag())) {
+            return null;
+        }
+        long[] range = request.getRange();
+        int offset = 0;
+        int length = content.length;
+        if (range != null) {
+            offset = (int) range[0];
+            length = (int) Math.min(range[1] + 1, content.length) - offset;
+            metadata.setContentLength(length);
+            metadata.setHeader(Headers.CONTENT_RANGE,
+                    "bytes " + offset + "-" + (offset + length - 1) + "/" + content.length);
+        }
+
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName(request.getBucketName());
+        s3Object.setKey(request.getKey());
+        s3Object.setObjectMetadata(metadata);
+        s3Object.setObjectContent(new S3ObjectInputStream(
+                new Content(content, offset, length), new HttpGet(), false));
+        return s3Object;
+    }
+
+    private ObjectMetadata metadata(String key) {
+        byte[] content = objects.get(key);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        metadata.setHeader(Headers.ETAG, BinaryUtils.toHex(Md5Utils.computeMD5Hash(content)));
+        return metadata;
+    }
+
+    /**
+     * The content of an object, whose reads are held open like the calls to
+     * the method {@code read} when it is held, until the content is closed.
+     */
+    private final class Content extends InputStream {
+        private final InputStream in;
+        private volatile boolean closed;
+
+        Content(byte[] buf, int offset, int length) {
+            in = new ByteArrayInputStream(buf, offset, length);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if ("read".equals(heldMethod) && count("read") > holdAfterCalls) {
+                entered.release();
+                try {
+                    while (!gate.await(10, TimeUnit.MILLISECONDS)) {
+                        if (closed) {
+                            interrupted.incrementAndGet();
+                            throw new IOException("Aborted");
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    interrupted.incrementAndGet();
+                    throw new IOException("Interrupted");
+                }
+            }
+            if (closed) {
+                throw new IOException("Aborted");
+            }
+            return in.read(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    public PutObjectResult putObject(PutObjectRequest request) throws IOException {
+        InputStream input = request.getFile() != null
+                ? new FileInputStream(request.getFile())
+                : request.getInputStream();
+        try {
+            objects.put(request.getKey(), read(input, Long.MAX_VALUE));
+        } finally {
+            input.close();
+        }
+        PutObjectResult result = new PutObjectResult();
+        result.setETag("etag");
+        return result;
+    }
+
+    public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+        String uploadId = "upload" + uploadCount.incrementAndGet();
+        uploads.put(uploadId, new ConcurrentSkipListMap<Integer, byte[]>());
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setUploadId(uploadId);
+        return result;
+    }
+
+    public UploadPartResult uploadPart(UploadPartRequest request) throws IOException {
+        InputStream input;
+        if (request.getFile() != null) {
+            input = new FileInputStream(request.getFile());
+            long skipped = 0;
+            while (skipped < request.getFileOffset()) {
+                skipped += input.skip(request.getFileOffset() - skipped);
+            }
+        } else {
+            input = request.getInputStream();
+        }
+        byte[] content = read(input, request.getPartSize());
+        if (request.getFile() != null) {
+            input.close();
+        }
+        uploads.get(request.getUploadId()).put(request.getPartNumber(), content);
+
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag("etag" + request.getPartNumber());
+        return result;
+    }
+
+    public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request)
+            throws IOException {
+        Map<Integer, byte[]> parts = uploads.remove(request.getUploadId());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        int partNumber = 0;
+        for (PartETag partETag : request.getPartETags()) {
+            if (partETag.getPartNumber() <= partNumber) {
+                throw new AmazonServiceException("The list of parts was not in ascending order");
+            }
+            partNumber = partETag.getPartNumber();
+            content.write(parts.get(partNumber));
+        }
+        objects.put(request.getKey(), content.toByteArray());
+
+        CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setETag("etag");
+        return result;
+    }
+
+    public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+        uploads.remove(request.getUploadId());
+    }
+
+    /**
+     * Lists the keys after the marker in key order, rolling up those which
+     * contain the delimiter after the prefix into common prefixes. The keys
+     * and common prefixes together count against the max keys of the
+     * request, 1000 by default.
+     */
+    public ObjectListing listObjects(ListObjectsRequest request) {
+        String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+        String delimiter = request.getDelimiter();
+        String marker = request.getMarker();
+        int maxKeys = request.getMaxKeys() == null ? 1000 : request.getMaxKeys();
+
+        ObjectListing listing = new ObjectListing();
+        listing.setBucketName(request.getBucketName());
+        listing.setPrefix(request.getPrefix());
+        listing.setDelimiter(delimiter);
+        listing.setMarker(marker);
+        listing.setMaxKeys(maxKeys);
+        List<String> commonPrefixes = new ArrayList<String>();
+        String last = null;
+        for (String key : new TreeSet<String>(objects.keySet())) {
+            if (!key.startsWith(prefix) || (marker != null && key.compareTo(marker) <= 0))
+                continue;
+            int index = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+            String commonPrefix = index < 0 ? null : key.substring(0, index + delimiter.length());
+            if (commonPrefix != null && (commonPrefix.equals(last) || commonPrefix.equals(marker)))
+                continue;
+            if (listing.getObjectSummaries().size() + commonPrefixes.size() == maxKeys) {
+                listing.setTruncated(true);
+                listing.setNextMarker(last);
+                break;
+            }
+            if (commonPrefix != null) {
+                commonPrefixes.add(commonPrefix);
+                last = commonPrefix;
+            } else {
+                S3ObjectSummary summary = new S3ObjectSummary();
+                summary.setBucketName(request.getBucketName());
+                summary.setKey(key);
+                summary.setSize(objects.get(key).length);
+                listing.getObjectSummaries().add(summary);
+                last = key;
+            }
+        }
+        listing.setCommonPrefixes(commonPrefixes);
+        return listing;
+    }
+
+    public ObjectListing listNextBatchOfObjects(ObjectListing previousListing) {
+        return listObjects(new ListObjectsRequest(previousListing.getBucketName(),
+                previousListing.getPrefix(), previousListing.getNextMarker(),
+                previousListing.getDelimiter(), previousListing.getMaxKeys()));
+    }
+
+    private static byte[] read(InputStream input, long maxLength) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        long remaining = maxLength;
+        int count;
+        while (remaining > 0
+                && (count = input.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+            content.write(buffer, 0, count);
+            remaining -= count;
+        }
+        return content.toByteArray();
+    }
+}
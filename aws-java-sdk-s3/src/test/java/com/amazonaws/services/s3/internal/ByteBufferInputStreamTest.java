@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ByteBufferInputStreamTest {
+
+    private static ByteBuffer buffer(boolean direct) {
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(10) : ByteBuffer.allocate(10);
+        for (int i = 0; i < 10; i++) {
+            buffer.put((byte) (i + 250));
+        }
+        buffer.flip();
+        buffer.position(2);
+        return buffer;
+    }
+
+    @Test
+    public void testReadsRemainingBytes() throws IOException {
+        for (boolean direct : new boolean[] { false, true }) {
+            ByteBuffer buffer = buffer(direct);
+            ByteBufferInputStream input = new ByteBufferInputStream(buffer);
+
+            assertEquals(8, input.available());
+            assertEquals(252, input.read());
+            byte[] bytes = new byte[10];
+            assertEquals(0, input.read(bytes, 0, 0));
+            assertEquals(7, input.read(bytes, 1, 9));
+            assertArrayEquals(new byte[] { 0, (byte) 253, (byte) 254, (byte) 255, 0, 1, 2, 3, 0, 0 }, bytes);
+            assertEquals(-1, input.read());
+            assertEquals(-1, input.read(bytes, 0, 1));
+            assertEquals(0, input.available());
+
+            // The buffer itself is left untouched
+            assertEquals(2, buffer.position());
+            assertEquals(10, buffer.limit());
+        }
+    }
+
+    @Test
+    public void testSkip() {
+        ByteBufferInputStream input = new ByteBufferInputStream(buffer(false));
+
+        assertEquals(0, input.skip(-1));
+        assertEquals(3, input.skip(3));
+        assertEquals(255, input.read());
+        assertEquals(4, input.skip(100));
+        assertEquals(-1, input.read());
+    }
+
+    @Test
+    public void testMarkAndReset() {
+        ByteBufferInputStream input = new ByteBufferInputStream(buffer(true));
+        assertTrue(input.markSupported());
+
+        // Without a mark, reset goes back to the start of the stream
+        input.skip(5);
+        input.reset();
+        assertEquals(252, input.read());
+
+        input.mark(0);
+        input.skip(3);
+        input.reset();
+        assertEquals(253, input.read());
+        assertEquals(6, input.available());
+    }
+}
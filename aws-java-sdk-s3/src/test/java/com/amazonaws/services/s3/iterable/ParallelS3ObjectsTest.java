@@ -0,0 +1,252 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.iterable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.FakeAmazonS3;
+import com.amazonaws.services.s3.iterable.ParallelS3Objects.KeyRange;
+import com.amazonaws.services.s3.iterable.ParallelS3Objects.ListingIterator;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+public class ParallelS3ObjectsTest {
+
+    private final FakeAmazonS3 s3 = new FakeAmazonS3();
+
+    /**
+     * Puts objects under several prefixes, with objects directly under the
+     * listed prefix sorting before, between and after them, and returns
+     * their keys in order.
+     */
+    private List<String> putObjects(String prefix) {
+        List<String> keys = new ArrayList<String>();
+        for (String dir : new String[] { "a", "b/", "c", "d/", "d0", "e/" }) {
+            if (dir.endsWith("/")) {
+                for (int i = 0; i < 7; i++) {
+                    keys.add(prefix + dir + i);
+                }
+            } else {
+                keys.add(prefix + dir);
+            }
+        }
+        for (String key : keys) {
+            s3.objects.put(key, new byte[1]);
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    private static List<String> keys(Iterable<S3ObjectSummary> summaries) {
+        List<String> keys = new ArrayList<String>();
+        for (S3ObjectSummary summary : summaries) {
+            keys.add(summary.getKey());
+        }
+        return keys;
+    }
+
+    private static List<String> sorted(List<String> keys) {
+        List<String> sorted = new ArrayList<String>(keys);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testUnorderedResultsCoverAllKeysOnce() {
+        List<String> expected = putObjects("");
+        for (int parallelism : new int[] { 1, 3, 16 }) {
+            ParallelS3Objects objects = ParallelS3Objects.inBucket(s3.proxy(), "bucket")
+                    .withBatchSize(2)
+                    .withParallelism(parallelism);
+
+            assertEquals(expected, sorted(keys(objects)));
+        }
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testOrderedResultsAreInKeyOrder() {
+        List<String> expected = putObjects("logs/");
+        s3.objects.put("other", new byte[1]);
+        for (int parallelism : new int[] { 1, 3, 16 }) {
+            ParallelS3Objects objects = ParallelS3Objects.withPrefix(s3.proxy(), "bucket", "logs/")
+                    .withBatchSize(2)
+                    .withParallelism(parallelism)
+                    .withMaxBufferedPages(1)
+                    .withOrderedResults(true);
+
+            assertEquals(expected, keys(objects));
+        }
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testCommonPrefixesArePartitions() {
+        List<String> expected = putObjects("");
+        ListingIterator it = ParallelS3Objects.inBucket(s3.proxy(), "bucket")
+                .withBatchSize(2)
+                .withOrderedResults(true)
+                .iterator();
+        List<String> keys = new ArrayList<String>();
+        while (it.hasNext()) {
+            keys.add(it.next().getKey());
+        }
+
+        assertEquals(expected, keys);
+        assertEquals(expected.size(), it.getKeysListed());
+        // "b/", "d/" and "e/", and the runs "a", "c" and "d0" in between
+        assertEquals(6, it.getPartitionCount());
+        assertEquals(s3.callCount("listObjects") + s3.callCount("listNextBatchOfObjects"),
+                it.getRequestCount());
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testWithoutDelimiterListsInSingleChain() {
+        List<String> expected = putObjects("");
+        ListingIterator it = ParallelS3Objects.inBucket(s3.proxy(), "bucket")
+                .withDelimiter(null)
+                .withBatchSize(5)
+                .iterator();
+        List<String> keys = new ArrayList<String>();
+        while (it.hasNext()) {
+            keys.add(it.next().getKey());
+        }
+
+        assertEquals(expected, keys);
+        assertEquals(1, it.getPartitionCount());
+        assertEquals(1, s3.callCount("listObjects"));
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testKeyRangeBoundaries() {
+        List<String> expected = new ArrayList<String>();
+        for (int i = 10; i < 30; i++) {
+            s3.objects.put("k" + i, new byte[1]);
+            s3.objects.put("other" + i, new byte[1]);
+            expected.add("k" + i);
+        }
+        // Out of order, with bounds on existing keys and between keys
+        List<KeyRange> ranges = Arrays.asList(
+                new KeyRange("k15", "k205"),
+                new KeyRange(null, "k15"),
+                new KeyRange("k205", null));
+        for (boolean ordered : new boolean[] { false, true }) {
+            ParallelS3Objects objects = ParallelS3Objects.withPrefix(s3.proxy(), "bucket", "k")
+                    .withKeyRanges(ranges)
+                    .withBatchSize(3)
+                    .withOrderedResults(ordered);
+
+            List<String> keys = keys(objects);
+            assertEquals(expected, ordered ? keys : sorted(keys));
+        }
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testEmptyBucket() {
+        ListingIterator it = ParallelS3Objects.inBucket(s3.proxy(), "bucket").iterator();
+
+        assertFalse(it.hasNext());
+        assertEquals(0, it.getKeysListed());
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testCloseStopsRequests() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            s3.objects.put(String.format("key%03d", i), new byte[1]);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ListingIterator it = ParallelS3Objects.inBucket(s3.proxy(), "bucket")
+                .withDelimiter(null)
+                .withKeyRanges(new KeyRange(null, "key050"), new KeyRange("key050", null))
+                .withBatchSize(1)
+                .withParallelism(2)
+                .withMaxBufferedPages(2)
+                .withExecutorService(executor)
+                .iterator();
+
+        assertTrue(it.hasNext());
+        it.next();
+        it.close();
+        assertFalse(it.hasNext());
+
+        // The supplied executor is left to the caller to shut down
+        assertFalse(executor.isShutdown());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        // The buffer stopped the requests well before the end of the listing
+        long requestCount = s3.callCount("listObjects") + s3.callCount("listNextBatchOfObjects");
+        assertTrue(requestCount <= 1 + 2 + 2);
+        assertEquals(requestCount, it.getRequestCount());
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testErrorIsPropagated() {
+        putObjects("");
+        s3.failOn("listNextBatchOfObjects", 3);
+        for (boolean ordered : new boolean[] { false, true }) {
+            ListingIterator it = ParallelS3Objects.inBucket(s3.proxy(), "bucket")
+                    .withBatchSize(1)
+                    .withOrderedResults(ordered)
+                    .iterator();
+            try {
+                while (it.hasNext()) {
+                    it.next();
+                }
+                fail("Expected the listing to fail");
+            } catch (AmazonServiceException expected) {
+                assertEquals("InternalError", expected.getErrorCode());
+            }
+        }
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void testThreadsOfAbandonedIteratorExit() throws Exception {
+        putObjects("");
+        ListingIterator it = ParallelS3Objects.inBucket(s3.proxy(), "bucket")
+                .withBatchSize(1)
+                .withMaxBufferedPages(2)
+                .iterator();
+        assertTrue(it.hasNext());
+        assertTrue(listingThreadCount() > 0);
+
+        // Neither consumed nor closed
+        it = null;
+        while (listingThreadCount() > 0) {
+            Thread.sleep(100);
+        }
+    }
+
+    private static int listingThreadCount() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("java-sdk-s3-listing-") && thread.isAlive()) {
+                assertTrue(thread.isDaemon());
+                count++;
+            }
+        }
+        return count;
+    }
+}
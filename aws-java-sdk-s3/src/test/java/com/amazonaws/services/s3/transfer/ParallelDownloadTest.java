@@ -0,0 +1,189 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.FakeAmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.transfer.Transfer.TransferState;
+
+/**
+ * Tests the downloads of objects in parts, with ranged GET requests sent in
+ * parallel from a pool of four threads.
+ */
+public class ParallelDownloadTest {
+
+    private static final int PART_SIZE = 1000;
+    private static final int PART_COUNT = 10;
+    private static final int OBJECT_LENGTH = (PART_COUNT - 1) * PART_SIZE + 123;
+
+    private final FakeAmazonS3 s3 = new FakeAmazonS3();
+    private final TransferManager tm = new TransferManager(s3.proxy(), Executors.newFixedThreadPool(4));
+    private byte[] content;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMultipartDownloadThreshold(PART_SIZE + 1);
+        configuration.setMinimumDownloadPartSize(PART_SIZE);
+        tm.setConfiguration(configuration);
+
+        content = new byte[OBJECT_LENGTH];
+        new Random().nextBytes(content);
+        s3.objects.put("key", content);
+        file = File.createTempFile("download", ".tmp");
+    }
+
+    @After
+    public void tearDown() {
+        tm.shutdownNow();
+        file.delete();
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testPartsAreDownloadedWithRangedRequests() throws Exception {
+        Download download = tm.download("bucket", "key", file);
+        download.waitForCompletion();
+
+        assertEquals(TransferState.Completed, download.getState());
+        assertArrayEquals(content, readFile());
+        String eTag = s3.getObjectMetadata(new GetObjectMetadataRequest("bucket", "key")).getETag();
+        List<String> ranges = new ArrayList<String>();
+        for (GetObjectRequest request : getObjectRequests()) {
+            ranges.add(Arrays.toString(request.getRange()));
+            assertEquals(Arrays.asList(eTag), request.getMatchingETagConstraints());
+        }
+        assertEquals(PART_COUNT, ranges.size());
+        for (int partNumber = 1; partNumber <= PART_COUNT; partNumber++) {
+            long firstByte = (partNumber - 1) * PART_SIZE;
+            long lastByte = Math.min(partNumber * PART_SIZE, OBJECT_LENGTH) - 1;
+            assertTrue(ranges.contains(Arrays.toString(new long[] { firstByte, lastByte })));
+        }
+
+        // The metadata is the one of the whole object, not of a part
+        assertEquals(OBJECT_LENGTH, download.getObjectMetadata().getContentLength());
+        assertNull(download.getObjectMetadata().getRawMetadataValue(Headers.CONTENT_RANGE));
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testResumedDownloadOnlyFetchesMissingParts() throws Exception {
+        s3.hold("getObject", 2);
+        Download download = tm.download("bucket", "key", file);
+        // Two parts completed, and the four threads held on the next ones
+        assertTrue(s3.awaitEntered(4, 5 * 1000));
+
+        PersistableDownload persistableDownload = download.pause();
+        assertEquals(2, persistableDownload.getCompletedParts().length);
+        while (s3.interrupted.get() < 4 || !download.isDone()) {
+            Thread.sleep(10);
+        }
+        assertTrue(file.exists());
+        assertEquals(OBJECT_LENGTH, file.length());
+        s3.release();
+
+        int requestCount = getObjectRequests().size();
+        Download resumed = tm.resumeDownload(persistableDownload);
+        resumed.waitForCompletion();
+
+        assertEquals(TransferState.Completed, resumed.getState());
+        assertArrayEquals(content, readFile());
+        List<GetObjectRequest> requests = getObjectRequests();
+        assertEquals(PART_COUNT - 2, requests.size() - requestCount);
+        for (GetObjectRequest request : requests.subList(requestCount, requests.size())) {
+            int partNumber = (int) (request.getRange()[0] / PART_SIZE) + 1;
+            for (int completedPart : persistableDownload.getCompletedParts()) {
+                assertFalse(partNumber == completedPart);
+            }
+        }
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testAbortStopsPartsInFlight() throws Exception {
+        s3.hold("read");
+        Download download = tm.download("bucket", "key", file);
+        // The four threads are reading the content of a part each
+        assertTrue(s3.awaitEntered(4, 5 * 1000));
+
+        download.abort();
+        while (s3.interrupted.get() < 4 || file.exists()) {
+            Thread.sleep(10);
+        }
+        s3.release();
+
+        assertEquals(TransferState.Canceled, download.getState());
+        assertEquals(4, s3.callCount("getObject"));
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testFailedDownloadDeletesFile() throws Exception {
+        s3.failOn("getObject", 3);
+        Download download = tm.download("bucket", "key", file);
+
+        try {
+            download.waitForCompletion();
+            fail("Expected the download to fail");
+        } catch (Exception expected) {
+        }
+        while (file.exists()) {
+            Thread.sleep(10);
+        }
+        assertEquals(TransferState.Failed, download.getState());
+    }
+
+    private List<GetObjectRequest> getObjectRequests() {
+        List<GetObjectRequest> requests = new ArrayList<GetObjectRequest>();
+        synchronized (s3.requests) {
+            for (Object request : s3.requests) {
+                if (request instanceof GetObjectRequest) {
+                    requests.add((GetObjectRequest) request);
+                }
+            }
+        }
+        return requests;
+    }
+
+    private byte[] readFile() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            return bytes;
+        } finally {
+            raf.close();
+        }
+    }
+}
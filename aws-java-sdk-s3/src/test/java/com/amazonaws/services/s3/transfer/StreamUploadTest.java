@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.FakeAmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+/**
+ * Tests the uploads of streams of unknown length, which are read into a
+ * bounded number of part buffers.
+ */
+public class StreamUploadTest {
+
+    private static final int PART_SIZE = 1000;
+
+    private final FakeAmazonS3 s3 = new FakeAmazonS3();
+    private final ExecutorService threadPool = Executors.newFixedThreadPool(4);
+    private final TransferManager tm = new TransferManager(s3.proxy(), threadPool);
+
+    public StreamUploadTest() {
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMinimumUploadPartSize(PART_SIZE);
+        configuration.setStreamUploadBufferCount(2);
+        tm.setConfiguration(configuration);
+    }
+
+    @After
+    public void tearDown() {
+        tm.shutdownNow();
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testStreamShorterThanPartIsUploadedInOneChunk() throws Exception {
+        byte[] content = upload(PART_SIZE - 1);
+
+        assertArrayEquals(content, s3.objects.get("key"));
+        assertEquals(1, s3.callCount("putObject"));
+        assertEquals(0, s3.callCount("initiateMultipartUpload"));
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testStreamEndingOnPartBoundary() throws Exception {
+        byte[] content = upload(3 * PART_SIZE);
+
+        assertArrayEquals(content, s3.objects.get("key"));
+        assertEquals(3, s3.callCount("uploadPart"));
+        assertEquals(1, s3.callCount("completeMultipartUpload"));
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testStreamEndingJustBeforePartBoundary() throws Exception {
+        byte[] content = upload(3 * PART_SIZE - 1);
+
+        assertArrayEquals(content, s3.objects.get("key"));
+        assertEquals(3, s3.callCount("uploadPart"));
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testStreamEndingJustAfterPartBoundary() throws Exception {
+        byte[] content = upload(3 * PART_SIZE + 1);
+
+        assertArrayEquals(content, s3.objects.get("key"));
+        assertEquals(4, s3.callCount("uploadPart"));
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testStreamUploadedFromDirectBuffers() throws Exception {
+        tm.getConfiguration().setStreamUploadBuffersDirect(true);
+        byte[] content = upload(5 * PART_SIZE + PART_SIZE / 2);
+
+        assertArrayEquals(content, s3.objects.get("key"));
+        assertEquals(6, s3.callCount("uploadPart"));
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testAbortCancelsPartsInFlight() throws Exception {
+        s3.hold("uploadPart");
+        Upload upload = tm.upload("bucket", "key", new ByteArrayInputStream(content(10 * PART_SIZE)),
+                new ObjectMetadata());
+
+        // Both buffers are in flight: the stream isn't read any further
+        assertTrue(s3.awaitEntered(2, 5 * 1000));
+        upload.abort();
+
+        try {
+            upload.waitForCompletion();
+            fail("Expected the upload to be canceled");
+        } catch (Exception expected) {
+        }
+        while (s3.interrupted.get() < 2 || s3.uploadsInProgress() > 0) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, s3.callCount("uploadPart"));
+        assertEquals(0, s3.callCount("completeMultipartUpload"));
+        assertTrue(s3.callCount("abortMultipartUpload") >= 1);
+        s3.release();
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testFailedPartAbortsUpload() throws Exception {
+        s3.failOn("uploadPart", 2);
+        Upload upload = tm.upload("bucket", "key", new ByteArrayInputStream(content(10 * PART_SIZE)),
+                new ObjectMetadata());
+
+        try {
+            upload.waitForCompletion();
+            fail("Expected the upload to fail");
+        } catch (AmazonClientException expected) {
+        }
+        assertEquals(0, s3.callCount("completeMultipartUpload"));
+        assertEquals(0, s3.uploadsInProgress());
+        assertEquals(null, s3.objects.get("key"));
+    }
+
+    /**
+     * Uploads a random content of the given length from a stream of unknown
+     * length, which returns few bytes at a time, and returns the content.
+     */
+    private byte[] upload(int length) throws Exception {
+        byte[] content = content(length);
+        InputStream input = new FilterInputStream(new ByteArrayInputStream(content)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 77));
+            }
+        };
+        tm.upload("bucket", "key", input, new ObjectMetadata()).waitForCompletion();
+        return content;
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+}
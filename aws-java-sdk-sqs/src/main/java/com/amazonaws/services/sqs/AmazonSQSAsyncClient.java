@@ -28,6 +28,7 @@ import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 
 import com.amazonaws.services.sqs.model.*;
+import com.amazonaws.services.sqs.model.transform.*;
 
 /**
  * Asynchronous client for accessing AmazonSQS.
@@ -324,6 +325,34 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
         super.shutdown();
         executorService.shutdownNow();
     }
+
+    /**
+     * Returns true if requests are executed as a chain of asynchronous
+     * attempts, so that no thread is held while a request is waiting for the
+     * network (with non-blocking I/O) or backing off before a retry (with
+     * scheduled retries); false if each request is executed on a thread of the
+     * executor service from start to end.
+     */
+    private boolean useAsyncExecution() {
+        return isNonBlocking() || clientConfiguration.useScheduledRetries();
+    }
+
+    /**
+     * Returns the executor from which the attempts of a request are sent; or
+     * null if they are sent from the I/O threads of the non-blocking transport.
+     */
+    private ExecutorService attemptExecutor() {
+        return isNonBlocking() ? null : executorService;
+    }
+
+    /**
+     * Returns the executor on which the async handlers are notified; or null
+     * if they are notified on the executor service, from which the attempts
+     * of a request are sent.
+     */
+    private ExecutorService handlerExecutor() {
+        return isNonBlocking() ? executorService : null;
+    }
             
     /**
      * <p>
@@ -356,6 +385,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<Void> setQueueAttributesAsync(final SetQueueAttributesRequest setQueueAttributesRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(setQueueAttributesRequest, new SetQueueAttributesRequestMarshaller(),
+                    null, null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
                 setQueueAttributes(setQueueAttributesRequest);
@@ -401,6 +434,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final SetQueueAttributesRequest setQueueAttributesRequest,
             final AsyncHandler<SetQueueAttributesRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(setQueueAttributesRequest, new SetQueueAttributesRequestMarshaller(),
+                    null, asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
               try {
@@ -460,6 +497,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<ChangeMessageVisibilityBatchResult> changeMessageVisibilityBatchAsync(final ChangeMessageVisibilityBatchRequest changeMessageVisibilityBatchRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(changeMessageVisibilityBatchRequest, new ChangeMessageVisibilityBatchRequestMarshaller(),
+                    new ChangeMessageVisibilityBatchResultStaxUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<ChangeMessageVisibilityBatchResult>() {
             public ChangeMessageVisibilityBatchResult call() throws Exception {
                 return changeMessageVisibilityBatch(changeMessageVisibilityBatchRequest);
@@ -518,6 +559,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final ChangeMessageVisibilityBatchRequest changeMessageVisibilityBatchRequest,
             final AsyncHandler<ChangeMessageVisibilityBatchRequest, ChangeMessageVisibilityBatchResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(changeMessageVisibilityBatchRequest, new ChangeMessageVisibilityBatchRequestMarshaller(),
+                    new ChangeMessageVisibilityBatchResultStaxUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<ChangeMessageVisibilityBatchResult>() {
             public ChangeMessageVisibilityBatchResult call() throws Exception {
               ChangeMessageVisibilityBatchResult result;
@@ -595,6 +640,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<Void> changeMessageVisibilityAsync(final ChangeMessageVisibilityRequest changeMessageVisibilityRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(changeMessageVisibilityRequest, new ChangeMessageVisibilityRequestMarshaller(),
+                    null, null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
                 changeMessageVisibility(changeMessageVisibilityRequest);
@@ -671,6 +720,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final ChangeMessageVisibilityRequest changeMessageVisibilityRequest,
             final AsyncHandler<ChangeMessageVisibilityRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(changeMessageVisibilityRequest, new ChangeMessageVisibilityRequestMarshaller(),
+                    null, asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
               try {
@@ -717,6 +770,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<GetQueueUrlResult> getQueueUrlAsync(final GetQueueUrlRequest getQueueUrlRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(getQueueUrlRequest, new GetQueueUrlRequestMarshaller(),
+                    new GetQueueUrlResultStaxUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<GetQueueUrlResult>() {
             public GetQueueUrlResult call() throws Exception {
                 return getQueueUrl(getQueueUrlRequest);
@@ -762,6 +819,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final GetQueueUrlRequest getQueueUrlRequest,
             final AsyncHandler<GetQueueUrlRequest, GetQueueUrlResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(getQueueUrlRequest, new GetQueueUrlRequestMarshaller(),
+                    new GetQueueUrlResultStaxUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<GetQueueUrlResult>() {
             public GetQueueUrlResult call() throws Exception {
               GetQueueUrlResult result;
@@ -801,6 +862,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<Void> removePermissionAsync(final RemovePermissionRequest removePermissionRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(removePermissionRequest, new RemovePermissionRequestMarshaller(),
+                    null, null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
                 removePermission(removePermissionRequest);
@@ -839,6 +904,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final RemovePermissionRequest removePermissionRequest,
             final AsyncHandler<RemovePermissionRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(removePermissionRequest, new RemovePermissionRequestMarshaller(),
+                    null, asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
               try {
@@ -936,6 +1005,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<GetQueueAttributesResult> getQueueAttributesAsync(final GetQueueAttributesRequest getQueueAttributesRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(getQueueAttributesRequest, new GetQueueAttributesRequestMarshaller(),
+                    new GetQueueAttributesResultStaxUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<GetQueueAttributesResult>() {
             public GetQueueAttributesResult call() throws Exception {
                 return getQueueAttributes(getQueueAttributesRequest);
@@ -1032,6 +1105,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final GetQueueAttributesRequest getQueueAttributesRequest,
             final AsyncHandler<GetQueueAttributesRequest, GetQueueAttributesResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(getQueueAttributesRequest, new GetQueueAttributesRequestMarshaller(),
+                    new GetQueueAttributesResultStaxUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<GetQueueAttributesResult>() {
             public GetQueueAttributesResult call() throws Exception {
               GetQueueAttributesResult result;
@@ -1106,6 +1183,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<SendMessageBatchResult> sendMessageBatchAsync(final SendMessageBatchRequest sendMessageBatchRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(sendMessageBatchRequest, new SendMessageBatchRequestMarshaller(),
+                    new SendMessageBatchResultStaxUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<SendMessageBatchResult>() {
             public SendMessageBatchResult call() throws Exception {
                 return sendMessageBatch(sendMessageBatchRequest);
@@ -1178,6 +1259,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final SendMessageBatchRequest sendMessageBatchRequest,
             final AsyncHandler<SendMessageBatchRequest, SendMessageBatchResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(sendMessageBatchRequest, new SendMessageBatchRequestMarshaller(),
+                    new SendMessageBatchResultStaxUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<SendMessageBatchResult>() {
             public SendMessageBatchResult call() throws Exception {
               SendMessageBatchResult result;
@@ -1227,6 +1312,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<Void> purgeQueueAsync(final PurgeQueueRequest purgeQueueRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(purgeQueueRequest, new PurgeQueueRequestMarshaller(),
+                    null, null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
                 purgeQueue(purgeQueueRequest);
@@ -1275,6 +1364,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final PurgeQueueRequest purgeQueueRequest,
             final AsyncHandler<PurgeQueueRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(purgeQueueRequest, new PurgeQueueRequestMarshaller(),
+                    null, asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
               try {
@@ -1318,6 +1411,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<ListDeadLetterSourceQueuesResult> listDeadLetterSourceQueuesAsync(final ListDeadLetterSourceQueuesRequest listDeadLetterSourceQueuesRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(listDeadLetterSourceQueuesRequest, new ListDeadLetterSourceQueuesRequestMarshaller(),
+                    new ListDeadLetterSourceQueuesResultStaxUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<ListDeadLetterSourceQueuesResult>() {
             public ListDeadLetterSourceQueuesResult call() throws Exception {
                 return listDeadLetterSourceQueues(listDeadLetterSourceQueuesRequest);
@@ -1360,6 +1457,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final ListDeadLetterSourceQueuesRequest listDeadLetterSourceQueuesRequest,
             final AsyncHandler<ListDeadLetterSourceQueuesRequest, ListDeadLetterSourceQueuesResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(listDeadLetterSourceQueuesRequest, new ListDeadLetterSourceQueuesRequestMarshaller(),
+                    new ListDeadLetterSourceQueuesResultStaxUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<ListDeadLetterSourceQueuesResult>() {
             public ListDeadLetterSourceQueuesResult call() throws Exception {
               ListDeadLetterSourceQueuesResult result;
@@ -1417,6 +1518,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<Void> deleteQueueAsync(final DeleteQueueRequest deleteQueueRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(deleteQueueRequest, new DeleteQueueRequestMarshaller(),
+                    null, null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
                 deleteQueue(deleteQueueRequest);
@@ -1473,6 +1578,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final DeleteQueueRequest deleteQueueRequest,
             final AsyncHandler<DeleteQueueRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(deleteQueueRequest, new DeleteQueueRequestMarshaller(),
+                    null, asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
               try {
@@ -1521,6 +1630,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<SendMessageResult> sendMessageAsync(final SendMessageRequest sendMessageRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(sendMessageRequest, new SendMessageRequestMarshaller(),
+                    new SendMessageResultStaxUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<SendMessageResult>() {
             public SendMessageResult call() throws Exception {
                 return sendMessage(sendMessageRequest);
@@ -1568,6 +1681,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final SendMessageRequest sendMessageRequest,
             final AsyncHandler<SendMessageRequest, SendMessageResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(sendMessageRequest, new SendMessageRequestMarshaller(),
+                    new SendMessageResultStaxUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<SendMessageResult>() {
             public SendMessageResult call() throws Exception {
               SendMessageResult result;
@@ -1673,6 +1790,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<ReceiveMessageResult> receiveMessageAsync(final ReceiveMessageRequest receiveMessageRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(receiveMessageRequest, new ReceiveMessageRequestMarshaller(),
+                    new ReceiveMessageResultStaxUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<ReceiveMessageResult>() {
             public ReceiveMessageResult call() throws Exception {
                 return receiveMessage(receiveMessageRequest);
@@ -1776,6 +1897,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final ReceiveMessageRequest receiveMessageRequest,
             final AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(receiveMessageRequest, new ReceiveMessageRequestMarshaller(),
+                    new ReceiveMessageResultStaxUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<ReceiveMessageResult>() {
             public ReceiveMessageResult call() throws Exception {
               ReceiveMessageResult result;
@@ -1816,6 +1941,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<ListQueuesResult> listQueuesAsync(final ListQueuesRequest listQueuesRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(listQueuesRequest, new ListQueuesRequestMarshaller(),
+                    new ListQueuesResultStaxUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<ListQueuesResult>() {
             public ListQueuesResult call() throws Exception {
                 return listQueues(listQueuesRequest);
@@ -1854,6 +1983,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final ListQueuesRequest listQueuesRequest,
             final AsyncHandler<ListQueuesRequest, ListQueuesResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(listQueuesRequest, new ListQueuesRequestMarshaller(),
+                    new ListQueuesResultStaxUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<ListQueuesResult>() {
             public ListQueuesResult call() throws Exception {
               ListQueuesResult result;
@@ -1911,6 +2044,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<DeleteMessageBatchResult> deleteMessageBatchAsync(final DeleteMessageBatchRequest deleteMessageBatchRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(deleteMessageBatchRequest, new DeleteMessageBatchRequestMarshaller(),
+                    new DeleteMessageBatchResultStaxUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<DeleteMessageBatchResult>() {
             public DeleteMessageBatchResult call() throws Exception {
                 return deleteMessageBatch(deleteMessageBatchRequest);
@@ -1966,6 +2103,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final DeleteMessageBatchRequest deleteMessageBatchRequest,
             final AsyncHandler<DeleteMessageBatchRequest, DeleteMessageBatchResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(deleteMessageBatchRequest, new DeleteMessageBatchRequestMarshaller(),
+                    new DeleteMessageBatchResultStaxUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<DeleteMessageBatchResult>() {
             public DeleteMessageBatchResult call() throws Exception {
               DeleteMessageBatchResult result;
@@ -2039,6 +2180,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<CreateQueueResult> createQueueAsync(final CreateQueueRequest createQueueRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(createQueueRequest, new CreateQueueRequestMarshaller(),
+                    new CreateQueueResultStaxUnmarshaller(), null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<CreateQueueResult>() {
             public CreateQueueResult call() throws Exception {
                 return createQueue(createQueueRequest);
@@ -2110,6 +2255,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final CreateQueueRequest createQueueRequest,
             final AsyncHandler<CreateQueueRequest, CreateQueueResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(createQueueRequest, new CreateQueueRequestMarshaller(),
+                    new CreateQueueResultStaxUnmarshaller(), asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<CreateQueueResult>() {
             public CreateQueueResult call() throws Exception {
               CreateQueueResult result;
@@ -2174,6 +2323,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<Void> addPermissionAsync(final AddPermissionRequest addPermissionRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(addPermissionRequest, new AddPermissionRequestMarshaller(),
+                    null, null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
                 addPermission(addPermissionRequest);
@@ -2237,6 +2390,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final AddPermissionRequest addPermissionRequest,
             final AsyncHandler<AddPermissionRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(addPermissionRequest, new AddPermissionRequestMarshaller(),
+                    null, asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
               try {
@@ -2296,6 +2453,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
      */
     public Future<Void> deleteMessageAsync(final DeleteMessageRequest deleteMessageRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(deleteMessageRequest, new DeleteMessageRequestMarshaller(),
+                    null, null, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
                 deleteMessage(deleteMessageRequest);
@@ -2355,6 +2516,10 @@ public class AmazonSQSAsyncClient extends AmazonSQSClient
             final DeleteMessageRequest deleteMessageRequest,
             final AsyncHandler<DeleteMessageRequest, Void> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (useAsyncExecution()) {
+            return invokeAsync(deleteMessageRequest, new DeleteMessageRequestMarshaller(),
+                    null, asyncHandler, attemptExecutor(), handlerExecutor());
+        }
         return executorService.submit(new Callable<Void>() {
             public Void call() throws Exception {
               try {
@@ -2421,5 +2421,32 @@ public class AmazonSQSClient extends AmazonWebServiceClient implements AmazonSQS
         DefaultErrorResponseHandler errorResponseHandler = new DefaultErrorResponseHandler(exceptionUnmarshallers);
         return client.execute(request, responseHandler, errorResponseHandler, executionContext);
     }
+
+    /**
+     * Marshals and executes the given request asynchronously over the
+     * transport of this client, sending its attempts from the given executor,
+     * if any, and notifying the handler on the given handler executor, if any.
+     */
+    <X, Y extends AmazonWebServiceRequest> java.util.concurrent.Future<X> invokeAsync(
+            Y originalRequest,
+            final Marshaller<Request<Y>, Y> marshaller,
+            Unmarshaller<X, StaxUnmarshallerContext> unmarshaller,
+            AsyncHandler<Y, X> asyncHandler,
+            java.util.concurrent.Executor executor,
+            java.util.concurrent.Executor handlerExecutor) {
+        Marshaller<Request<Y>, Y> privateParametersMarshaller = new Marshaller<Request<Y>, Y>() {
+            public Request<Y> marshall(Y in) throws Exception {
+                Request<Y> request = marshaller.marshall(in);
+                for (Entry<String, String> entry : in.copyPrivateRequestParameters().entrySet()) {
+                    request.addParameter(entry.getKey(), entry.getValue());
+                }
+                return request;
+            }
+        };
+        return invokeAsync(originalRequest, privateParametersMarshaller,
+                new StaxResponseHandler<X>(unmarshaller),
+                new DefaultErrorResponseHandler(exceptionUnmarshallers),
+                awsCredentialsProvider, asyncHandler, executor, handlerExecutor);
+    }
 }
         
\ No newline at end of file
@@ -18,6 +18,7 @@ package com.amazonaws.services.sqs.buffered;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 
 import com.amazonaws.AmazonClientException;
@@ -77,6 +78,11 @@ import com.amazonaws.util.VersionInfoUtils;
  * store in a temporary buffer. Future receiveMessage calls will be satisfied from the buffer, and
  * only if the buffer is empty will the calling thread have to wait for the messages to be fetched.
  * The size of the buffer and the maximum number of threads used for prefetching are configurable. <br>
+ * The batches and the pre-fetches of all the queues are run on an executor, which is an unbounded
+ * thread pool shared by all the clients unless one is supplied to the client. A bounded executor
+ * keeps the number of threads fixed however many queues are in use; it should have enough threads
+ * for the long polls of the pre-fetches, which hold a thread for up to
+ * {@link QueueBufferConfig#getLongPollWaitTimeoutSeconds()} each. <br>
  * AmazonSQSBufferedAsyncClient is thread-safe.<br>
  */
 public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
@@ -87,17 +93,30 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
     private final CachingMap buffers = new CachingMap(16, (float) 0.75, true);
     private final AmazonSQSAsync realSQS;
     private final QueueBufferConfig bufferConfigExemplar;
+    private final Executor executor;
 
     public AmazonSQSBufferedAsyncClient(AmazonSQSAsync paramRealSQS) {
         this(paramRealSQS, new QueueBufferConfig());
     }
 
+    public AmazonSQSBufferedAsyncClient(AmazonSQSAsync paramRealSQS, QueueBufferConfig config) {
+        this(paramRealSQS, config, null);
+    }
+
     // route all future constructors to the most general one, because validation
     // happens here
-    public AmazonSQSBufferedAsyncClient(AmazonSQSAsync paramRealSQS, QueueBufferConfig config) {
+    /**
+     * @param paramExecutor
+     *            the executor to run the batches and the pre-fetches of all the queues on, or null
+     *            to use the thread pool shared by all the clients. The executor is owned by the
+     *            caller and is not shut down with the client.
+     */
+    public AmazonSQSBufferedAsyncClient(AmazonSQSAsync paramRealSQS, QueueBufferConfig config,
+                                        Executor paramExecutor) {
         config.validate();
         realSQS = paramRealSQS;
         bufferConfigExemplar = config;
+        executor = paramExecutor == null ? QueueBuffer.executor : paramExecutor;
     }
 
     /*
@@ -340,7 +359,7 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
         QueueBuffer toReturn = buffers.get(qUrl);
         if (null == toReturn) {
             QueueBufferConfig config = new QueueBufferConfig(bufferConfigExemplar);
-            toReturn = new QueueBuffer(config, qUrl, realSQS);
+            toReturn = new QueueBuffer(config, qUrl, realSQS, executor);
             buffers.put(qUrl, toReturn);
         }
         return toReturn;
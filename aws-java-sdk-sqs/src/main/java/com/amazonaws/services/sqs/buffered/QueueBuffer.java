@@ -15,8 +15,11 @@
 package com.amazonaws.services.sqs.buffered;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -52,6 +55,7 @@ class QueueBuffer {
     private final SendQueueBuffer sendBuffer;
     private final ReceiveQueueBuffer receiveBuffer;
     private final AmazonSQSAsync realSqs;
+    private final Executor bufferExecutor;
     QueueBufferConfig config;
 
     /**
@@ -60,13 +64,60 @@ class QueueBuffer {
      * for each queue. The DaemonThreadFactory creates daemon threads, which means they won't block
      * the JVM from exiting if only they are still around.
      */
-    static ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory());;
+    static ExecutorService executor = Executors.newCachedThreadPool(
+            new DaemonThreadFactory("SQSQueueBufferWorkerThread-"));
+
+    /**
+     * This timer closes the outbound batches of all queue buffers once they have been open for
+     * long enough, so that an open batch does not hold a thread of the executor while it waits for
+     * more requests.
+     */
+    static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new DaemonThreadFactory("SQSQueueBufferTimerThread-"));
 
     QueueBuffer(QueueBufferConfig paramConfig, String url, AmazonSQSAsync sqs) {
+        this(paramConfig, url, sqs, executor);
+    }
+
+    /**
+     * @param paramExecutor
+     *            the executor to run the batch sends and the pre-fetches of the buffer on
+     */
+    QueueBuffer(QueueBufferConfig paramConfig, String url, AmazonSQSAsync sqs, Executor paramExecutor) {
         realSqs = sqs;
         config = paramConfig;
-        sendBuffer = new SendQueueBuffer(sqs, executor, paramConfig, url);
-        receiveBuffer = new ReceiveQueueBuffer(sqs, executor, paramConfig, url);
+        bufferExecutor = paramExecutor;
+        sendBuffer = new SendQueueBuffer(sqs, paramExecutor, timer, paramConfig, url);
+        receiveBuffer = new ReceiveQueueBuffer(sqs, paramExecutor, paramConfig, url);
+    }
+
+    /**
+     * @return the executor the batches, the pre-fetches and the callbacks of the buffer run on
+     */
+    Executor getExecutor() {
+        return bufferExecutor;
+    }
+
+    /**
+     * Runs the callback of a future on the executor of the buffer. If a caller-supplied executor
+     * rejects it, the callback runs on the shared executor instead, or else on the calling thread,
+     * so that it is never lost and the rejection does not fail the other futures of the batch.
+     */
+    void executeCallback(Runnable callback) {
+        try {
+            bufferExecutor.execute(callback);
+            return;
+        } catch (RejectedExecutionException ree) {
+            if (bufferExecutor != executor) {
+                try {
+                    executor.execute(callback);
+                    return;
+                } catch (RejectedExecutionException ignored) {
+                    // run it here
+                }
+            }
+        }
+        callback.run();
     }
 
     /**
@@ -239,13 +290,18 @@ class QueueBuffer {
      * executor threads are the only ones left in the process.
      */
     private static class DaemonThreadFactory implements ThreadFactory {
-        static AtomicInteger threadCount = new AtomicInteger(0);
+        private final AtomicInteger threadCount = new AtomicInteger(0);
+        private final String namePrefix;
+
+        DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
 
         public Thread newThread(Runnable r) {
             int threadNumber = threadCount.addAndGet(1);
             Thread thread = new Thread(r);
             thread.setDaemon(true);
-            thread.setName("SQSQueueBufferWorkerThread-" + threadNumber);
+            thread.setName(namePrefix + threadNumber);
             return thread;
         }
 
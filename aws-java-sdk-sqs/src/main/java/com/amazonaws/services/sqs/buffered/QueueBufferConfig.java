@@ -110,6 +110,16 @@ public class QueueBufferConfig {
 
     public static final int LONGPOLL_WAIT_TIMEOUT_SECONDS_DEFAULT = 20;
 
+    /**
+     * Whether the number of receive batches pre-fetched should adapt to the rate at which messages
+     * are consumed and to the time a receive call takes, instead of being fixed by
+     * maxInflightReceiveBatches and maxDoneReceiveBatches, which then become upper bounds.
+     */
+    private boolean adaptivePrefetching;
+
+    /** false */
+    public static final boolean ADAPTIVE_PREFETCHING_DEFAULT = false;
+
     public QueueBufferConfig(long maxBatchOpenMs, int maxInflightOutboundBatches, int maxInflightReceiveBatches,
             int maxDoneReceiveBatches, boolean paramLongPoll, long maxBatchSizeBytes, int visibilityTimeout,
             int longPollTimeout, int maxBatch) {
@@ -123,6 +133,7 @@ public class QueueBufferConfig {
         this.visibilityTimeoutSeconds = visibilityTimeout;
         this.longPollWaitTimeoutSeconds = longPollTimeout;
         this.maxBatchSize = maxBatch;
+        this.adaptivePrefetching = ADAPTIVE_PREFETCHING_DEFAULT;
     }
 
     public QueueBufferConfig() {
@@ -142,6 +153,7 @@ public class QueueBufferConfig {
         maxInflightOutboundBatches = other.maxInflightOutboundBatches;
         maxInflightReceiveBatches = other.maxInflightReceiveBatches;
         visibilityTimeoutSeconds = other.visibilityTimeoutSeconds;
+        adaptivePrefetching = other.adaptivePrefetching;
     }
 
     @Override
@@ -150,7 +162,8 @@ public class QueueBufferConfig {
                 + longPoll + ", maxInflightOutboundBatches=" + maxInflightOutboundBatches
                 + ", maxInflightReceiveBatches=" + maxInflightReceiveBatches + ", maxDoneReceiveBatches="
                 + maxDoneReceiveBatches + ", maxBatchSizeBytes=" + maxBatchSizeBytes + ", visibilityTimeoutSeconds="
-                + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds=" + longPollWaitTimeoutSeconds + "]";
+                + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds=" + longPollWaitTimeoutSeconds
+                + ", adaptivePrefetching=" + adaptivePrefetching + "]";
     }
 
     /**
@@ -365,6 +378,35 @@ public class QueueBufferConfig {
         return this;
     }
 
+    /**
+     * Whether the number of receive batches pre-fetched adapts to the rate at which messages are
+     * consumed and to the time a receive call takes. In that mode, maxInflightReceiveBatches and
+     * maxDoneReceiveBatches are upper bounds, about twice as many messages as are consumed during
+     * a receive call are pre-fetched, but no more than can be consumed in half the visibility
+     * timeout, and pre-fetched messages that are not expected to be consumed before their
+     * visibility timeout expires are released back to the queue.
+     */
+    public boolean isAdaptivePrefetching() {
+        return adaptivePrefetching;
+    }
+
+    /**
+     * Whether the number of receive batches pre-fetched adapts to the rate at which messages are
+     * consumed and to the time a receive call takes. In that mode, maxInflightReceiveBatches and
+     * maxDoneReceiveBatches are upper bounds, about twice as many messages as are consumed during
+     * a receive call are pre-fetched, but no more than can be consumed in half the visibility
+     * timeout, and pre-fetched messages that are not expected to be consumed before their
+     * visibility timeout expires are released back to the queue.
+     */
+    public void setAdaptivePrefetching(boolean adaptivePrefetching) {
+        this.adaptivePrefetching = adaptivePrefetching;
+    }
+
+    public QueueBufferConfig withAdaptivePrefetching(boolean adaptivePrefetching) {
+        this.adaptivePrefetching = adaptivePrefetching;
+        return this;
+    }
+
     /**
      * Specifies the maximum number of entries the bufferinc client will put in a single batch
      * request.
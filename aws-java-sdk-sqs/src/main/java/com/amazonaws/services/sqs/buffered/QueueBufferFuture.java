@@ -15,7 +15,6 @@
 
 package com.amazonaws.services.sqs.buffered;
 
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -56,50 +55,50 @@ class QueueBufferFuture<Req extends AmazonWebServiceRequest, Res> implements Fut
     /**
      * Report that the task this future represents has succeeded.
      */
-    public synchronized void setSuccess(Res paramResult) {
-        if (done)
-            return; // can't mark done twice
-        result = paramResult;
-        done = true;
-        notifyAll();
+    public void setSuccess(Res paramResult) {
+        if (!complete(paramResult, null))
+            return;
 
-        // if we have a callback to call, schedule
-        // it on a different thread. Who knows what this
-        // thread is doing.
         if (callback != null && issuingBuffer != null) {
-            QueueBuffer.executor.submit(new Callable<Void>() {
-                public Void call() throws Exception {
+            issuingBuffer.executeCallback(new Runnable() {
+                public void run() {
                     callback.onSuccess(result);
-                    return null;
                 }
             });
-
         }
     }
 
     /**
      * Report that the task this future represents has failed.
      */
-    public synchronized void setFailure(Exception paramE) {
-        if (done)
-            return; // can't mark done twice
-        e = paramE;
-        done = true;
-        notifyAll();
+    public void setFailure(Exception paramE) {
+        if (!complete(null, paramE))
+            return;
 
-        // if we have a callback to call, schedule
-        // it on a different thread. Who knows what this
-        // thread is doing.
         if (callback != null && issuingBuffer != null) {
-            QueueBuffer.executor.submit(new Callable<Void>() {
-                public Void call() throws Exception {
+            issuingBuffer.executeCallback(new Runnable() {
+                public void run() {
                     callback.onError(e);
-                    return null;
                 }
             });
-
         }
+    }
 
+    /**
+     * Marks the future done, with either a result or an exception. The callback, if any, is then
+     * scheduled by the caller without holding the lock of the future, on a different thread since
+     * who knows what this thread is doing.
+     *
+     * @return false if the future was already done, since it can't be marked done twice
+     */
+    private synchronized boolean complete(Res paramResult, Exception paramE) {
+        if (done)
+            return false;
+        result = paramResult;
+        e = paramE;
+        done = true;
+        notifyAll();
+        return true;
     }
 
     @Override
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import com.amazonaws.metrics.ServiceMetricType;
+
+/**
+ * Service metrics of the queue buffers of {@link AmazonSQSBufferedAsyncClient}.
+ * These metrics are not collected by default, and can be enabled via
+ * {@link com.amazonaws.metrics.AwsSdkMetrics#add(com.amazonaws.metrics.MetricType)}.
+ */
+public enum QueueBufferMetric implements ServiceMetricType {
+    /**
+     * Time taken to send an outbound batch to SQS, including the retries of
+     * its failed entries.
+     */
+    SQSBufferedFlushTime,
+    /**
+     * Time an outbound batch waits, once closed, for a thread of the executor
+     * of the buffered client to send it; it grows with the number of batches
+     * queued ahead of it.
+     */
+    SQSBufferedFlushWaitTime,
+    /**
+     * Time taken by a receive call pre-fetching messages, including the
+     * time it waits for messages when long polling.
+     */
+    SQSBufferedReceiveTime,
+    ;
+
+    @Override public String getServiceName() { return "AmazonSQS"; }
+}
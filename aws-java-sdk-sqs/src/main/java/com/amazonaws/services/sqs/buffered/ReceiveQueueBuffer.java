@@ -17,15 +17,19 @@ package com.amazonaws.services.sqs.buffered;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.metrics.ServiceLatencyProvider;
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
@@ -45,6 +49,10 @@ import com.amazonaws.services.sqs.model.ReceiveMessageResult;
  * list to modify the list - Threads must hold the monitor of the "finishedTasks" list to modify the
  * list - If you need to lock both futures and finishedTasks, lock futures first and finishedTasks
  * second
+ * <p>
+ * With adaptive pre-fetching, the rate at which messages are consumed and the time a receive call
+ * takes are tracked under the "finishedTasks" monitor and determine the number of batches
+ * pre-fetched, within the configured maximums.
  */
 public class ReceiveQueueBuffer {
 
@@ -64,6 +72,18 @@ public class ReceiveQueueBuffer {
 
     private static Log log = LogFactory.getLog(ReceiveQueueBuffer.class);
 
+    /** The weight of the latest sample in the moving averages of the adaptive pre-fetching. */
+    private static final double SAMPLE_WEIGHT = 0.2;
+
+    /** The minimum interval over which the rate of consumption is sampled. */
+    private static final long RATE_SAMPLE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * How many times the messages consumed during a receive call are pre-fetched, so that the
+     * pre-fetching can catch up with consumers starved by too few batches.
+     */
+    private static final double PREFETCH_HEADROOM = 2;
+
     private final QueueBufferConfig config;
 
     private final String qUrl;
@@ -101,6 +121,31 @@ public class ReceiveQueueBuffer {
     /** finished batches are stored in this list. */
     private LinkedList<ReceiveMessageBatchTask> finishedTasks = new LinkedList<ReceiveMessageBatchTask>();
 
+    /**
+     * Moving average of the number of messages consumed per second, or -1 before the first
+     * sample. Synchronized by {@code finishedTasks}.
+     */
+    private double consumptionRate = -1;
+
+    /** Messages consumed in the current sample. Synchronized by {@code finishedTasks}. */
+    private int consumedInSample;
+
+    /** Start of the current sample. Synchronized by {@code finishedTasks}. */
+    private long sampleStartNanos = System.nanoTime();
+
+    /**
+     * Moving average of the duration of the receive calls that returned messages, or -1 before
+     * the first one. Synchronized by {@code finishedTasks}.
+     */
+    private double receiveNanos = -1;
+
+    /**
+     * The number of in flight and done receive batches chosen by the adaptive pre-fetching.
+     * Synchronized by {@code finishedTasks}.
+     */
+    private int adaptiveInflightBatches = 1;
+    private int adaptiveDoneBatches = 1;
+
     ReceiveQueueBuffer(AmazonSQS paramSQS, Executor paramExecutor, QueueBufferConfig paramConfig, String url) {
         config = paramConfig;
         executor = paramExecutor;
@@ -222,6 +267,10 @@ public class ReceiveQueueBuffer {
             finishedTasks.removeFirst();
         }
         result.setMessages(messages);
+        if (config.isAdaptivePrefetching()) {
+            consumedInSample += numRetrieved;
+            sampleConsumptionRate(System.nanoTime());
+        }
 
         // if after the above runs the exception is not null,
         // the finished batch has encountered an error, and we will
@@ -288,8 +337,26 @@ public class ReceiveQueueBuffer {
             return;
         }
 
-        int desiredBatches = config.getMaxDoneReceiveBatches();
-        desiredBatches = desiredBatches < 1 ? 1 : desiredBatches;
+        int desiredBatches;
+        int maxInflightBatches;
+        List<ReceiveMessageBatchTask> expiringTasks = null;
+
+        synchronized (finishedTasks) {
+            if (config.isAdaptivePrefetching()) {
+                adaptPrefetching();
+                expiringTasks = removeExpiringTasks();
+                desiredBatches = adaptiveDoneBatches;
+                maxInflightBatches = adaptiveInflightBatches;
+            } else {
+                desiredBatches = config.getMaxDoneReceiveBatches();
+                maxInflightBatches = config.getMaxInflightReceiveBatches();
+            }
+            desiredBatches = desiredBatches < 1 ? 1 : desiredBatches;
+        }
+
+        if (expiringTasks != null && !expiringTasks.isEmpty()) {
+            release(expiringTasks);
+        }
 
         synchronized (finishedTasks) {
             if (finishedTasks.size() >= desiredBatches)
@@ -314,7 +381,7 @@ public class ReceiveQueueBuffer {
                 visibilityTimeoutNanos = TimeUnit.NANOSECONDS.convert(visibilityTimeoutSeconds, TimeUnit.SECONDS);
             }
 
-            int max = config.getMaxInflightReceiveBatches();
+            int max = maxInflightBatches;
             // must allow at least one inflight receive task, or receive won't
             // work at all.
             max = max > 0 ? max : 1;
@@ -332,11 +399,163 @@ public class ReceiveQueueBuffer {
         }
     }
 
+    /**
+     * Folds the messages consumed since the start of the current sample into the consumption rate,
+     * if the sample is long enough. This method assumes that you are holding the finishedTasks
+     * lock when invoking it.
+     */
+    private void sampleConsumptionRate(long nowNanos) {
+        long elapsedNanos = nowNanos - sampleStartNanos;
+        if (elapsedNanos < RATE_SAMPLE_INTERVAL_NANOS) {
+            return;
+        }
+        consumptionRate = movingAverage(consumptionRate, rate(consumedInSample, elapsedNanos));
+        consumedInSample = 0;
+        sampleStartNanos = nowNanos;
+    }
+
+    /**
+     * Chooses the number of in flight and done receive batches from the consumption rate and the
+     * duration of the receive calls, so that about {@code PREFETCH_HEADROOM} times the messages
+     * consumed during a receive call are pre-fetched, but no more than can be consumed in half the
+     * visibility timeout. This method assumes that you are holding the finishedTasks lock when
+     * invoking it.
+     */
+    private void adaptPrefetching() {
+        sampleConsumptionRate(System.nanoTime());
+
+        int batches = 1;
+        if (consumptionRate > 0 && receiveNanos > 0) {
+            double messages = PREFETCH_HEADROOM * consumptionRate * receiveNanos / TimeUnit.SECONDS.toNanos(1);
+            long visibilityNanos = getVisibilityTimeoutNanos();
+            if (visibilityNanos > 0) {
+                messages = Math.min(messages, consumptionRate * visibilityNanos / TimeUnit.SECONDS.toNanos(2));
+            }
+            batches = (int) Math.min(Integer.MAX_VALUE, Math.ceil(messages / Math.max(1, config.getMaxBatchSize())));
+        }
+        int inflight = Math.max(1, Math.min(batches, config.getMaxInflightReceiveBatches()));
+        int done = Math.max(1, Math.min(batches, config.getMaxDoneReceiveBatches()));
+
+        if (inflight != adaptiveInflightBatches || done != adaptiveDoneBatches) {
+            adaptiveInflightBatches = inflight;
+            adaptiveDoneBatches = done;
+            if (log.isDebugEnabled()) {
+                log.debug("Queue " + qUrl + " now pre-fetches " + inflight + " inflight and " + done
+                        + " done receive batches, consuming " + consumptionRate + " messages/s");
+            }
+        }
+    }
+
+    /**
+     * Returns the number of messages consumed per second, given the messages consumed over the
+     * given time.
+     */
+    static double rate(int consumed, long elapsedNanos) {
+        return consumed * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * Folds the given sample into the given exponentially weighted moving average, which is
+     * negative before the first sample.
+     */
+    static double movingAverage(double average, double sample) {
+        return average < 0 ? sample : average + SAMPLE_WEIGHT * (sample - average);
+    }
+
+    /**
+     * Returns whether a done batch becomes visible again to other consumers before its messages
+     * start being consumed, that is before the messages ahead of it in the buffer are consumed
+     * at the given rate. The head batch, with no message ahead of it, is always consumed in time.
+     *
+     * @param messagesAhead
+     *            the number of messages of the batches to be consumed before this one
+     * @param nanosUntilDeadline
+     *            the time until the visibility timeout of the batch expires
+     * @param consumptionRate
+     *            the number of messages consumed per second
+     */
+    static boolean isExpiringBeforeConsumed(int messagesAhead, long nanosUntilDeadline, double consumptionRate) {
+        if (messagesAhead == 0 || consumptionRate <= 0) {
+            return false;
+        }
+        double nanosUntilConsumed = messagesAhead * (double) TimeUnit.SECONDS.toNanos(1) / consumptionRate;
+        return nanosUntilDeadline < nanosUntilConsumed;
+    }
+
+    /**
+     * Removes the done batches, except the head one, whose messages are not expected to start
+     * being consumed, at the current consumption rate, before their visibility timeout expires.
+     * This method assumes that you are holding the finishedTasks lock when invoking it.
+     *
+     * @return the batches removed; never null
+     */
+    private List<ReceiveMessageBatchTask> removeExpiringTasks() {
+        List<ReceiveMessageBatchTask> expiring = new ArrayList<ReceiveMessageBatchTask>();
+        if (consumptionRate <= 0) {
+            return expiring;
+        }
+        long nowNanos = System.nanoTime();
+        int messagesAhead = 0;
+        for (Iterator<ReceiveMessageBatchTask> it = finishedTasks.iterator(); it.hasNext();) {
+            ReceiveMessageBatchTask task = it.next();
+            if (task.getException() != null) {
+                continue;
+            }
+            int size = task.size();
+            if (size > 0
+                    && isExpiringBeforeConsumed(messagesAhead, task.getVisibilityDeadlineNanos() - nowNanos,
+                            consumptionRate)) {
+                it.remove();
+                expiring.add(task);
+            } else {
+                messagesAhead += size;
+            }
+        }
+        return expiring;
+    }
+
+    /**
+     * Nacks the messages of the given batches, each in a single call, so that other consumers
+     * can receive them before their visibility timeout expires.
+     */
+    private void release(final List<ReceiveMessageBatchTask> tasks) {
+        if (log.isDebugEnabled()) {
+            log.debug("Queue " + qUrl + " releases " + tasks.size()
+                    + " receive batches that would expire before being consumed");
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (ReceiveMessageBatchTask task : tasks) {
+                        task.clear();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The messages become visible again when their visibility timeout expires.
+            log.warn("Unable to release receive batches for queue " + qUrl, e);
+        }
+    }
+
+    /**
+     * @return the visibility timeout of the received messages, or -1 if still unknown
+     */
+    private long getVisibilityTimeoutNanos() {
+        if (config.getVisibilityTimeoutSeconds() > 0) {
+            return TimeUnit.SECONDS.toNanos(config.getVisibilityTimeoutSeconds());
+        }
+        return visibilityTimeoutNanos;
+    }
+
     /**
      * This method is called by the batches after they have finished retrieving the messages.
      */
     void reportBatchFinished(ReceiveMessageBatchTask batch) {
         synchronized (finishedTasks) {
+            if (config.isAdaptivePrefetching() && batch.getException() == null && !batch.isEmpty()) {
+                receiveNanos = movingAverage(receiveNanos, batch.getReceiveNanos());
+            }
             finishedTasks.addLast(batch);
             if (log.isTraceEnabled()) {
                 log.info("Queue " + qUrl + " now has " + finishedTasks.size() + " receive results cached ");
@@ -395,6 +614,7 @@ public class ReceiveQueueBuffer {
         private List<Message> messages;
         private long visibilityDeadlineNano;
         private boolean open = false;
+        private long receiveDurationNanos;
         private ReceiveQueueBuffer parentBuffer;
 
         /**
@@ -416,6 +636,25 @@ public class ReceiveQueueBuffer {
             return messages.isEmpty();
         }
 
+        synchronized int size() {
+            if (!open) {
+                throw new IllegalStateException("batch is not open");
+            }
+
+            return messages.size();
+        }
+
+        synchronized long getVisibilityDeadlineNanos() {
+            return visibilityDeadlineNano;
+        }
+
+        /**
+         * @return the time taken by the receive call of the batch
+         */
+        synchronized long getReceiveNanos() {
+            return receiveDurationNanos;
+        }
+
         /**
          * @return the exception that was thrown during execution, or null if there was no exception
          */
@@ -512,7 +751,11 @@ public class ReceiveQueueBuffer {
                     request.withWaitTimeSeconds(config.getLongPollWaitTimeoutSeconds());
                 }
 
+                ServiceLatencyProvider latency = new ServiceLatencyProvider(QueueBufferMetric.SQSBufferedReceiveTime);
+                long startNanos = System.nanoTime();
                 messages = sqsClient.receiveMessage(request).getMessages();
+                receiveDurationNanos = System.nanoTime() - startNanos;
+                AwsSdkMetrics.getServiceMetricCollector().collectLatency(latency.endTiming());
             } catch (AmazonClientException e) {
                 exception = e;
             } finally {
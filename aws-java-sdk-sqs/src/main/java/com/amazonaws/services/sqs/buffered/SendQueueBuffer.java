@@ -16,7 +16,11 @@ package com.amazonaws.services.sqs.buffered;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -25,6 +29,8 @@ import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.metrics.ServiceLatencyProvider;
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
@@ -51,6 +57,13 @@ import com.amazonaws.services.sqs.model.SendMessageResult;
  * (creating such a batch if there currently isn't one outstanding). When the outstanding batch
  * becomes full, or when a configurable timeout expires, the buffer makes a call to SQS to execute
  * the current batch. <br>
+ * An open batch holds no thread: it is closed by the request that fills it, or by a timer shared
+ * by all the buffers, and only then handed over to the executor to be sent. <br>
+ * Deletes and visibility changes, which a consumer typically issues from many threads, are thus
+ * coalesced per queue into batch calls. The entries of a batch that failed on the service side are
+ * retried together in a batch made only of them, rather than one call per entry, after a short
+ * jittered backoff. The retry waits on the timer, not on a thread of the executor, and no longer
+ * counts as an in-flight batch; {@link #flush()} still waits for it. <br>
  * Internally, the batch objects maintain a list of futures corresponding to the requests added to
  * them. When a batch completes, it loads the results into the futures and marks the futures as
  * complete.
@@ -58,6 +71,20 @@ import com.amazonaws.services.sqs.model.SendMessageResult;
 public class SendQueueBuffer {
     private static Log log = LogFactory.getLog(SendQueueBuffer.class);
 
+    /**
+     * The number of times the entries of a delete or change visibility batch that failed on the
+     * service side are retried, in a batch made only of them.
+     */
+    private static final int FAILED_ENTRIES_MAX_RETRIES = 3;
+
+    /**
+     * The maximum delay before the first retry of the failed entries of a batch, which doubles
+     * with every retry; the actual delay is drawn between half and all of it.
+     */
+    private static final long FAILED_ENTRIES_RETRY_BASE_DELAY_MS = 50;
+
+    private static final Random random = new Random();
+
     // Interface to support event notifications with a parameter.
     private interface Listener<T> {
         void invoke(T o);
@@ -79,6 +106,11 @@ public class SendQueueBuffer {
      */
     private final Executor executor;
 
+    /**
+     * The timer closing the batches held open for longer than {@code maxBatchOpenMs}.
+     */
+    private final ScheduledExecutorService timer;
+
     /**
      * Object used to serialize sendMessage calls.
      */
@@ -127,9 +159,21 @@ public class SendQueueBuffer {
      */
     private final Semaphore inflightChangeMessageVisibilityBatches;
 
-    SendQueueBuffer(AmazonSQS sqsClient, Executor executor, QueueBufferConfig paramConfig, String url) {
+    /**
+     * The DeleteMessage batches whose failed entries wait to be retried.
+     */
+    private final PendingRetries pendingDeleteMessageRetries = new PendingRetries();
+
+    /**
+     * The ChangeMessageVisibility batches whose failed entries wait to be retried.
+     */
+    private final PendingRetries pendingChangeMessageVisibilityRetries = new PendingRetries();
+
+    SendQueueBuffer(AmazonSQS sqsClient, Executor executor, ScheduledExecutorService timer,
+                    QueueBufferConfig paramConfig, String url) {
         this.sqsClient = sqsClient;
         this.executor = executor;
+        this.timer = timer;
         this.config = paramConfig;
         qUrl = url;
         int maxBatch = config.getMaxInflightOutboundBatches();
@@ -207,10 +251,12 @@ public class SendQueueBuffer {
             synchronized (deleteMessageLock) {
                 inflightDeleteMessageBatches.acquire(config.getMaxInflightOutboundBatches());
                 inflightDeleteMessageBatches.release(config.getMaxInflightOutboundBatches());
+                pendingDeleteMessageRetries.awaitNone();
             }
             synchronized (changeMessageVisibilityLock) {
                 inflightChangeMessageVisibilityBatches.acquire(config.getMaxInflightOutboundBatches());
                 inflightChangeMessageVisibilityBatches.release(config.getMaxInflightOutboundBatches());
+                pendingChangeMessageVisibilityRetries.awaitNone();
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -270,7 +316,7 @@ public class SendQueueBuffer {
                     }
 
                     theFuture = openOutboundBatchTask[0].addRequest(request, callback);
-                    executor.execute(openOutboundBatchTask[0]);
+                    openOutboundBatchTask[0].startTimer();
                     if (null == theFuture) {
                         // this can happen only if the request itself is flawed,
                         // so that it can't be added to any batch, even a brand
@@ -294,9 +340,9 @@ public class SendQueueBuffer {
      * Task to send a batch of outbound requests to SQS.
      * <p>
      * The batch task is constructed open and accepts requests until full, or until
-     * {@code maxBatchOpenMs} elapses. At that point, the batch closes and the collected requests
-     * are assembled into a single batch request to SQS. Specialized for each type of outbound
-     * request.
+     * {@code maxBatchOpenMs} elapses. At that point, the batch closes, is submitted to the executor,
+     * and the collected requests are assembled into a single batch request to SQS. Specialized for
+     * each type of outbound request.
      * <p>
      * Instances of this class (and subclasses) are thread-safe.
      * 
@@ -312,6 +358,15 @@ public class SendQueueBuffer {
 
         private boolean closed;
 
+        /** Whether the batch has been submitted to the executor. Synchronized by {@code this}. */
+        private boolean submitted;
+
+        /** Closes the batch once {@code maxBatchOpenMs} elapses. Synchronized by {@code this}. */
+        private ScheduledFuture<?> timeout;
+
+        /** Measures the time between the submission of the batch and its execution. */
+        private ServiceLatencyProvider flushWait;
+
         private volatile Listener<OutboundBatchTask<R, Result>> onCompleted;
 
         public OutboundBatchTask() {
@@ -329,24 +384,80 @@ public class SendQueueBuffer {
          * @return the future that can be used to get the results of the execution, or null if the
          *         addition failed.
          */
-        public synchronized QueueBufferFuture<R, Result> addRequest(R request, QueueBufferCallback<R, Result> callback) {
+        public QueueBufferFuture<R, Result> addRequest(R request, QueueBufferCallback<R, Result> callback) {
 
-            if (closed) {
-                return null;
-            }
+            QueueBufferFuture<R, Result> theFuture;
+            synchronized (this) {
+                if (closed) {
+                    return null;
+                }
 
-            QueueBufferFuture<R, Result> theFuture = addIfAllowed(request, callback);
+                theFuture = addIfAllowed(request, callback);
 
-            // if the addition did not work, or this addition made us full,
-            // we can close the request.
-            if ((null == theFuture) || isFull()) {
+                // if the addition did not work, or this addition made us full,
+                // we can close the request.
+                if ((null != theFuture) && !isFull()) {
+                    return theFuture;
+                }
                 closed = true;
-                notify();
             }
-
+            submit();
             return theFuture;
         }
 
+        /**
+         * Schedules the batch to be closed and submitted once {@code maxBatchOpenMs} elapses,
+         * unless it has been already.
+         */
+        void startTimer() {
+            synchronized (this) {
+                if (submitted) {
+                    return;
+                }
+                try {
+                    timeout = timer.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            synchronized (OutboundBatchTask.this) {
+                                closed = true;
+                            }
+                            submit();
+                        }
+                    }, config.getMaxBatchOpenMs(), TimeUnit.MILLISECONDS);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    log.debug("Unable to schedule the batch, sending it right away", e);
+                    closed = true;
+                }
+            }
+            submit();
+        }
+
+        /**
+         * Submits the closed batch to the executor, unless it has been already.
+         */
+        private void submit() {
+            synchronized (this) {
+                if (submitted) {
+                    return;
+                }
+                submitted = true;
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+                flushWait = new ServiceLatencyProvider(QueueBufferMetric.SQSBufferedFlushWaitTime);
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                try {
+                    failAll(new AmazonClientException("The executor rejected the batch", e));
+                } finally {
+                    notifyCompleted();
+                }
+            }
+        }
+
         /**
          * Adds the request to the batch if capacity allows it. Called by {@code addRequest} with a
          * lock on {@code this} held.
@@ -416,32 +527,25 @@ public class SendQueueBuffer {
         public final void run() {
             try {
 
-                long deadlineMs = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS)
-                        + config.getMaxBatchOpenMs() + 1;
-                long t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-
                 List<R> requests;
                 List<QueueBufferFuture<R, Result>> futures;
 
                 synchronized (this) {
-                    while (!closed && (t < deadlineMs)) {
-                        t = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-
-                        // zero means "wait forever", can't have that.
-                        long toWait = Math.max(1, deadlineMs - t);
-                        wait(toWait);
-                    }
-
-                    closed = true;
-
                     requests = new ArrayList<R>(this.requests);
                     futures = new ArrayList<QueueBufferFuture<R, Result>>(this.futures);
                 }
 
-                process(requests, futures);
+                AwsSdkMetrics.getServiceMetricCollector().collectLatency(flushWait.endTiming());
+                ServiceLatencyProvider flushTime = new ServiceLatencyProvider(
+                        QueueBufferMetric.SQSBufferedFlushTime);
+                try {
+                    process(requests, futures);
+                } finally {
+                    if (!requests.isEmpty()) {
+                        AwsSdkMetrics.getServiceMetricCollector().collectLatency(flushTime.endTiming());
+                    }
+                }
 
-            } catch (InterruptedException e) {
-                failAll(e);
             } catch (AmazonClientException e) {
                 failAll(e);
             } catch (RuntimeException e) {
@@ -451,12 +555,16 @@ public class SendQueueBuffer {
                 failAll(new AmazonClientException("Error encountered", e));
                 throw e;
             } finally {
-                // make a copy of the listener since it (theoretically) can be
-                // modified from the outside.
-                Listener<OutboundBatchTask<R, Result>> listener = onCompleted;
-                if (listener != null) {
-                    listener.invoke(this);
-                }
+                notifyCompleted();
+            }
+        }
+
+        private void notifyCompleted() {
+            // make a copy of the listener since it (theoretically) can be
+            // modified from the outside.
+            Listener<OutboundBatchTask<R, Result>> listener = onCompleted;
+            if (listener != null) {
+                listener.invoke(this);
             }
         }
 
@@ -533,22 +641,125 @@ public class SendQueueBuffer {
 
     }
 
-    private class DeleteMessageBatchTask extends OutboundBatchTask<DeleteMessageRequest, Void> {
+    /**
+     * Task to send a batch of outbound requests whose entries that failed on the service side are
+     * retried in a batch made only of them.
+     * <p>
+     * The retry is scheduled on the timer after a short jittered backoff, so that the retries of
+     * the batches failed together are spread out, and only then sent on the executor: no thread is
+     * held while the retry waits. The in-flight permit of the batch is released once its first
+     * attempt completes, so that new batches are not held back by the retry; the retry is counted
+     * by {@code pendingRetries} instead, which {@link SendQueueBuffer#flush()} waits for.
+     */
+    private abstract class RetryingBatchTask<R extends AmazonWebServiceRequest> extends OutboundBatchTask<R, Void> {
+
+        private final PendingRetries pendingRetries;
+
+        RetryingBatchTask(PendingRetries pendingRetries) {
+            this.pendingRetries = pendingRetries;
+        }
+
+        /**
+         * Sends the requests of the given indexes in a single batch call, and completes the
+         * futures of the entries that succeeded.
+         *
+         * @return the entries that failed, identified by the index of their request
+         */
+        protected abstract List<BatchResultErrorEntry> sendBatch(List<R> requests, List<Integer> indexes,
+                                                                 List<QueueBufferFuture<R, Void>> futures);
 
         @Override
-        protected void process(List<DeleteMessageRequest> requests,
-                               List<QueueBufferFuture<DeleteMessageRequest, Void>> futures) {
+        protected final void process(List<R> requests, List<QueueBufferFuture<R, Void>> futures) {
 
             if (requests.isEmpty()) {
                 return;
             }
 
+            attempt(requests, futures, allIndexes(requests), 0);
+        }
+
+        private void attempt(List<R> requests, List<QueueBufferFuture<R, Void>> futures, List<Integer> indexes,
+                             int retries) {
+            List<Integer> toRetry = failOrRetry(sendBatch(requests, indexes, futures), futures, retries);
+            if (!toRetry.isEmpty()) {
+                scheduleRetry(requests, futures, toRetry, retries + 1);
+            }
+        }
+
+        /**
+         * Schedules the retry of the given entries after a jittered backoff, which doubles with
+         * every retry. The entries fail if the timer or the executor rejects the retry.
+         */
+        private void scheduleRetry(final List<R> requests, final List<QueueBufferFuture<R, Void>> futures,
+                                   final List<Integer> indexes, final int retries) {
+            long maxDelayMs = FAILED_ENTRIES_RETRY_BASE_DELAY_MS << (retries - 1);
+            long delayMs = maxDelayMs / 2 + (long) (random.nextDouble() * (maxDelayMs / 2));
+            if (log.isDebugEnabled()) {
+                log.debug("Retrying " + indexes.size() + " failed entries of a batch in " + delayMs + " ms");
+            }
+
+            final Runnable retry = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        attempt(requests, futures, indexes, retries);
+                    } catch (AmazonClientException e) {
+                        failEntries(futures, indexes, e);
+                    } catch (RuntimeException e) {
+                        failEntries(futures, indexes, e);
+                        throw e;
+                    } catch (Error e) {
+                        failEntries(futures, indexes, new AmazonClientException("Error encountered", e));
+                        throw e;
+                    } finally {
+                        pendingRetries.decrement();
+                    }
+                }
+            };
+            pendingRetries.increment();
+            try {
+                timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            executor.execute(retry);
+                        } catch (RejectedExecutionException e) {
+                            try {
+                                failEntries(futures, indexes, new AmazonClientException(
+                                        "The executor rejected the retry of the failed entries of a batch", e));
+                            } finally {
+                                pendingRetries.decrement();
+                            }
+                        }
+                    }
+                }, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                try {
+                    failEntries(futures, indexes, new AmazonClientException(
+                            "Unable to schedule the retry of the failed entries of a batch", e));
+                } finally {
+                    pendingRetries.decrement();
+                }
+            }
+        }
+    }
+
+    private class DeleteMessageBatchTask extends RetryingBatchTask<DeleteMessageRequest> {
+
+        DeleteMessageBatchTask() {
+            super(pendingDeleteMessageRetries);
+        }
+
+        @Override
+        protected List<BatchResultErrorEntry> sendBatch(List<DeleteMessageRequest> requests, List<Integer> indexes,
+                                                        List<QueueBufferFuture<DeleteMessageRequest, Void>> futures) {
+
             DeleteMessageBatchRequest batchRequest = new DeleteMessageBatchRequest().withQueueUrl(qUrl);
             ResultConverter.appendUserAgent(batchRequest, AmazonSQSBufferedAsyncClient.USER_AGENT);
 
             List<DeleteMessageBatchRequestEntry> entries = new ArrayList<DeleteMessageBatchRequestEntry>(
-                    requests.size());
-            for (int i = 0, n = requests.size(); i < n; i++) {
+                    indexes.size());
+            for (int i : indexes) {
                 entries.add(new DeleteMessageBatchRequestEntry().withId(Integer.toString(i)).withReceiptHandle(
                         requests.get(i).getReceiptHandle()));
             }
@@ -561,40 +772,28 @@ public class SendQueueBuffer {
                 futures.get(index).setSuccess(null);
             }
 
-            for (BatchResultErrorEntry errorEntry : batchResult.getFailed()) {
-                int index = Integer.parseInt(errorEntry.getId());
-                if (errorEntry.isSenderFault()) {
-                    futures.get(index).setFailure(ResultConverter.convert(errorEntry));
-                } else {
-                    try {
-                        // retry.
-                        sqsClient.deleteMessage(requests.get(index));
-                        futures.get(index).setSuccess(null);
-                    } catch (AmazonClientException ace) {
-                        futures.get(index).setFailure(ace);
-                    }
-                }
-            }
+            return batchResult.getFailed();
         }
     }
 
-    private class ChangeMessageVisibilityBatchTask extends OutboundBatchTask<ChangeMessageVisibilityRequest, Void> {
+    private class ChangeMessageVisibilityBatchTask extends RetryingBatchTask<ChangeMessageVisibilityRequest> {
 
-        @Override
-        protected void process(List<ChangeMessageVisibilityRequest> requests,
-                               List<QueueBufferFuture<ChangeMessageVisibilityRequest, Void>> futures) {
+        ChangeMessageVisibilityBatchTask() {
+            super(pendingChangeMessageVisibilityRetries);
+        }
 
-            if (requests.isEmpty()) {
-                return;
-            }
+        @Override
+        protected List<BatchResultErrorEntry> sendBatch(List<ChangeMessageVisibilityRequest> requests,
+                                                        List<Integer> indexes,
+                                                        List<QueueBufferFuture<ChangeMessageVisibilityRequest, Void>> futures) {
 
             ChangeMessageVisibilityBatchRequest batchRequest = new ChangeMessageVisibilityBatchRequest()
                     .withQueueUrl(qUrl);
             ResultConverter.appendUserAgent(batchRequest, AmazonSQSBufferedAsyncClient.USER_AGENT);
 
             List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<ChangeMessageVisibilityBatchRequestEntry>(
-                    requests.size());
-            for (int i = 0, n = requests.size(); i < n; i++) {
+                    indexes.size());
+            for (int i : indexes) {
                 entries.add(new ChangeMessageVisibilityBatchRequestEntry().withId(Integer.toString(i))
                         .withReceiptHandle(requests.get(i).getReceiptHandle())
                         .withVisibilityTimeout(requests.get(i).getVisibilityTimeout()));
@@ -608,21 +807,74 @@ public class SendQueueBuffer {
                 futures.get(index).setSuccess(null);
             }
 
-            for (BatchResultErrorEntry errorEntry : batchResult.getFailed()) {
-                int index = Integer.parseInt(errorEntry.getId());
-                if (errorEntry.isSenderFault()) {
-                    futures.get(index).setFailure(ResultConverter.convert(errorEntry));
-                } else {
-                    try {
-                        // retry.
-                        sqsClient.changeMessageVisibility(requests.get(index));
-                        futures.get(index).setSuccess(null);
-                    } catch (AmazonClientException ace) {
-                        futures.get(index).setFailure(ace);
-                    }
-                }
+            return batchResult.getFailed();
+        }
+    }
+
+    /**
+     * Counts the batches of one type whose failed entries wait to be retried.
+     */
+    private static final class PendingRetries {
+        private int count;
+
+        synchronized void increment() {
+            count++;
+        }
+
+        synchronized void decrement() {
+            if (--count == 0) {
+                notifyAll();
             }
+        }
 
+        /**
+         * Waits until no batch waits to be retried.
+         */
+        synchronized void awaitNone() throws InterruptedException {
+            while (count > 0) {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * @return the indexes of all the given requests
+     */
+    private static List<Integer> allIndexes(List<?> requests) {
+        List<Integer> indexes = new ArrayList<Integer>(requests.size());
+        for (int i = 0, n = requests.size(); i < n; i++) {
+            indexes.add(i);
+        }
+        return indexes;
+    }
+
+    /**
+     * Fails the futures of the failed entries of a batch that are not to be retried, which are
+     * the entries failed by the sender's fault, or all of them once the retries are exhausted.
+     *
+     * @return the indexes of the entries to retry; never null
+     */
+    private static List<Integer> failOrRetry(List<BatchResultErrorEntry> failed,
+                                             List<? extends QueueBufferFuture<?, ?>> futures, int retries) {
+        List<Integer> toRetry = new ArrayList<Integer>(failed.size());
+        for (BatchResultErrorEntry errorEntry : failed) {
+            int index = Integer.parseInt(errorEntry.getId());
+            if (errorEntry.isSenderFault() || retries >= FAILED_ENTRIES_MAX_RETRIES) {
+                futures.get(index).setFailure(ResultConverter.convert(errorEntry));
+            } else {
+                toRetry.add(index);
+            }
+        }
+        return toRetry;
+    }
+
+    /**
+     * Fails the futures of the given indexes.
+     */
+    private static void failEntries(List<? extends QueueBufferFuture<?, ?>> futures, List<Integer> indexes,
+                                Exception e) {
+        for (int index : indexes) {
+            futures.get(index).setFailure(e);
         }
     }
 
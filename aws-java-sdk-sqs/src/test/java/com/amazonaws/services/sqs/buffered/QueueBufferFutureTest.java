@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+
+public class QueueBufferFutureTest {
+
+    /** An executor which rejects every task, as a saturated bounded executor would. */
+    private static final Executor REJECTING_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            throw new RejectedExecutionException("saturated");
+        }
+    };
+
+    @Test(timeout = 10 * 1000)
+    public void testCallbackRunsWhenExecutorRejectsIt() throws Exception {
+        final CountDownLatch called = new CountDownLatch(1);
+        QueueBufferFuture<SendMessageRequest, SendMessageResult> future =
+                new QueueBufferFuture<SendMessageRequest, SendMessageResult>(
+                        new QueueBufferCallback<SendMessageRequest, SendMessageResult>(
+                                new AsyncHandler<SendMessageRequest, SendMessageResult>() {
+                                    @Override
+                                    public void onSuccess(SendMessageRequest request, SendMessageResult result) {
+                                        called.countDown();
+                                    }
+
+                                    @Override
+                                    public void onError(Exception exception) {
+                                    }
+                                }, new SendMessageRequest()));
+        future.setBuffer(new QueueBuffer(new QueueBufferConfig(), "url", null, REJECTING_EXECUTOR));
+
+        SendMessageResult result = new SendMessageResult().withMessageId("id");
+        future.setSuccess(result);
+
+        assertTrue(called.await(5, TimeUnit.SECONDS));
+        assertEquals("id", future.get().getMessageId());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ReceiveQueueBufferTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testRate() {
+        assertEquals(10.0, ReceiveQueueBuffer.rate(20, 2 * SECOND), 1e-9);
+        assertEquals(0.1, ReceiveQueueBuffer.rate(10, 100 * SECOND), 1e-9);
+        assertEquals(0.0, ReceiveQueueBuffer.rate(0, SECOND), 1e-9);
+    }
+
+    @Test
+    public void testMovingAverage() {
+        // The first sample is taken as is
+        assertEquals(5.0, ReceiveQueueBuffer.movingAverage(-1, 5), 1e-9);
+        assertEquals(0.0, ReceiveQueueBuffer.movingAverage(-1, 0), 1e-9);
+        // Later samples are weighted by a fifth
+        assertEquals(12.0, ReceiveQueueBuffer.movingAverage(10, 20), 1e-9);
+        assertEquals(8.0, ReceiveQueueBuffer.movingAverage(10, 0), 1e-9);
+    }
+
+    @Test
+    public void testHeadBatchIsNeverExpiring() {
+        // 0.1 messages/s, with a visibility timeout of 30s: the head batch of 10 messages would
+        // take 100s to consume, but it is kept since its consumption has already started
+        assertFalse(ReceiveQueueBuffer.isExpiringBeforeConsumed(0, 30 * SECOND, 0.1));
+        assertFalse(ReceiveQueueBuffer.isExpiringBeforeConsumed(0, 0, 0.1));
+    }
+
+    @Test
+    public void testBatchExpiringBeforeItsConsumptionStarts() {
+        // 10 messages ahead at 0.1 messages/s start being consumed in 100s
+        assertTrue(ReceiveQueueBuffer.isExpiringBeforeConsumed(10, 30 * SECOND, 0.1));
+        assertFalse(ReceiveQueueBuffer.isExpiringBeforeConsumed(10, 101 * SECOND, 0.1));
+        // 10 messages ahead at 1 message/s start being consumed in 10s, whatever the batch size
+        assertFalse(ReceiveQueueBuffer.isExpiringBeforeConsumed(10, 11 * SECOND, 1));
+        assertTrue(ReceiveQueueBuffer.isExpiringBeforeConsumed(10, 9 * SECOND, 1));
+    }
+
+    @Test
+    public void testNothingExpiresWithoutConsumptionRate() {
+        assertFalse(ReceiveQueueBuffer.isExpiringBeforeConsumed(10, SECOND, 0));
+        assertFalse(ReceiveQueueBuffer.isExpiringBeforeConsumed(10, SECOND, -1));
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2012-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResult;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResultEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageRequest;
+
+public class SendQueueBufferTest {
+
+    private static final String QUEUE_URL = "http://queue";
+
+    private final FakeSQS sqs = new FakeSQS();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        sqs.gate.countDown();
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    private SendQueueBuffer buffer(Executor executor, QueueBufferConfig config) {
+        return new SendQueueBuffer(sqs.proxy(), executor, timer, config, QUEUE_URL);
+    }
+
+    private static QueueBufferConfig config(int maxBatchSize, long maxBatchOpenMs) {
+        return new QueueBufferConfig()
+                .withMaxBatchSize(maxBatchSize)
+                .withMaxBatchOpenMs(maxBatchOpenMs)
+                .withMaxInflightOutboundBatches(1);
+    }
+
+    private static Future<Void> delete(SendQueueBuffer buffer, String receiptHandle) {
+        return buffer.deleteMessage(new DeleteMessageRequest(QUEUE_URL, receiptHandle), null);
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testTimerClosesPartialBatch() throws Exception {
+        SendQueueBuffer buffer = buffer(executor, config(10, 50));
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (String handle : new String[] { "a", "b", "c" }) {
+            futures.add(delete(buffer, handle));
+        }
+
+        for (Future<Void> future : futures) {
+            assertNull(future.get());
+        }
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c")), sqs.batches);
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testFullBatchIsSentWithoutWaitingForTimer() throws Exception {
+        SendQueueBuffer buffer = buffer(executor, config(2, 60 * 1000));
+        Future<Void> a = delete(buffer, "a");
+        Future<Void> b = delete(buffer, "b");
+
+        assertNull(a.get());
+        assertNull(b.get());
+        assertEquals(Arrays.asList(Arrays.asList("a", "b")), sqs.batches);
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testPartialBatchIsSentRightAwayIfTimerRejectsIt() throws Exception {
+        timer.shutdown();
+        SendQueueBuffer buffer = buffer(executor, config(10, 60 * 1000));
+
+        assertNull(delete(buffer, "a").get());
+        assertEquals(1, sqs.batches.size());
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testFailedEntriesAreRetriedInBatch() throws Exception {
+        SendQueueBuffer buffer = buffer(executor, config(4, 60 * 1000));
+        Future<Void> ok = delete(buffer, "ok");
+        Future<Void> fail1 = delete(buffer, "fail1");
+        Future<Void> fail2 = delete(buffer, "fail2");
+        Future<Void> sender = delete(buffer, "sender");
+
+        assertNull(ok.get());
+        assertNull(fail1.get());
+        assertNull(fail2.get());
+        try {
+            sender.get();
+            fail("Expected the entry failed by the sender's fault not to be retried");
+        } catch (ExecutionException expected) {
+            assertEquals("SenderFault", ((AmazonServiceException) expected.getCause()).getErrorCode());
+        }
+        assertEquals(Arrays.asList(
+                Arrays.asList("ok", "fail1", "fail2", "sender"),
+                Arrays.asList("fail1", "fail2"),
+                Arrays.asList("fail2")), sqs.batches);
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testFailedVisibilityChangesAreRetriedInBatch() throws Exception {
+        SendQueueBuffer buffer = buffer(executor, config(2, 60 * 1000));
+        Future<Void> ok = buffer.changeMessageVisibility(
+                new ChangeMessageVisibilityRequest(QUEUE_URL, "ok", 10), null);
+        Future<Void> fail1 = buffer.changeMessageVisibility(
+                new ChangeMessageVisibilityRequest(QUEUE_URL, "fail1", 10), null);
+
+        assertNull(ok.get());
+        assertNull(fail1.get());
+        assertEquals(Arrays.asList(Arrays.asList("ok", "fail1"), Arrays.asList("fail1")), sqs.batches);
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testEntriesFailOnceRetriesAreExhausted() throws Exception {
+        SendQueueBuffer buffer = buffer(executor, config(1, 60 * 1000));
+
+        try {
+            delete(buffer, "fail9").get();
+            fail("Expected the entry to fail");
+        } catch (ExecutionException expected) {
+            assertEquals("InternalError", ((AmazonServiceException) expected.getCause()).getErrorCode());
+        }
+        assertEquals(4, sqs.batches.size());
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testRetryReleasesPermitAndIsFlushed() throws Exception {
+        final SendQueueBuffer buffer = buffer(executor, config(1, 60 * 1000));
+        Future<Void> held = delete(buffer, "fail1-hold");
+        // The retry is held in flight
+        assertTrue(sqs.entered.tryAcquire(5, TimeUnit.SECONDS));
+
+        // With a single permit, the next batch is only sent if the retried
+        // batch gave its permit back
+        assertNull(delete(buffer, "b").get());
+
+        Thread flush = new Thread() {
+            @Override
+            public void run() {
+                buffer.flush();
+            }
+        };
+        flush.start();
+        flush.join(200);
+        assertTrue(flush.isAlive());
+
+        sqs.gate.countDown();
+        flush.join();
+        assertTrue(held.isDone());
+        assertNull(held.get());
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testRejectedBatchFailsAndReleasesPermit() throws Exception {
+        Executor rejecting = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        };
+        SendQueueBuffer buffer = buffer(rejecting, config(1, 60 * 1000));
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                delete(buffer, "a").get();
+                fail("Expected the batch to be rejected");
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof AmazonClientException);
+            }
+        }
+        buffer.flush();
+        assertEquals(0, sqs.batches.size());
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testRejectedRetryFailsEntries() throws Exception {
+        final AtomicInteger executions = new AtomicInteger();
+        Executor rejectingRetries = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (executions.incrementAndGet() > 1) {
+                    throw new RejectedExecutionException();
+                }
+                executor.execute(command);
+            }
+        };
+        SendQueueBuffer buffer = buffer(rejectingRetries, config(2, 60 * 1000));
+        Future<Void> ok = delete(buffer, "ok");
+        Future<Void> fail1 = delete(buffer, "fail1");
+
+        assertNull(ok.get());
+        try {
+            fail1.get();
+            fail("Expected the retry to be rejected");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof AmazonClientException);
+        }
+        buffer.flush();
+        assertEquals(1, sqs.batches.size());
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void testRetryRejectedByTimerFailsEntries() throws Exception {
+        final SendQueueBuffer buffer = buffer(executor, config(1, 60 * 1000));
+        sqs.beforeBatch = new Runnable() {
+            @Override
+            public void run() {
+                timer.shutdown();
+            }
+        };
+
+        try {
+            delete(buffer, "fail1").get();
+            fail("Expected the retry to be rejected");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof AmazonClientException);
+        }
+        buffer.flush();
+        assertEquals(1, sqs.batches.size());
+    }
+
+    /**
+     * A fake of the batch calls of Amazon SQS, whose outcome for each entry depends on its receipt
+     * handle: "failN" fails on the service side for the first N attempts, "sender" always fails by
+     * the sender's fault, and "hold" holds the retries in flight until the gate is opened.
+     */
+    private static class FakeSQS implements InvocationHandler {
+        /** The receipt handles of the entries of each batch call, in order. */
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+        final CountDownLatch gate = new CountDownLatch(1);
+        final Semaphore entered = new Semaphore(0);
+        volatile Runnable beforeBatch;
+        private final ConcurrentMap<String, AtomicInteger> attempts = new ConcurrentHashMap<String, AtomicInteger>();
+
+        AmazonSQS proxy() {
+            return (AmazonSQS) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { AmazonSQS.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (beforeBatch != null) {
+                beforeBatch.run();
+            }
+            List<String> ids = new ArrayList<String>();
+            List<String> handles = new ArrayList<String>();
+            if (args[0] instanceof DeleteMessageBatchRequest) {
+                for (DeleteMessageBatchRequestEntry entry : ((DeleteMessageBatchRequest) args[0]).getEntries()) {
+                    ids.add(entry.getId());
+                    handles.add(entry.getReceiptHandle());
+                }
+            } else if (args[0] instanceof ChangeMessageVisibilityBatchRequest) {
+                for (ChangeMessageVisibilityBatchRequestEntry entry
+                        : ((ChangeMessageVisibilityBatchRequest) args[0]).getEntries()) {
+                    ids.add(entry.getId());
+                    handles.add(entry.getReceiptHandle());
+                }
+            } else {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            batches.add(handles);
+
+            List<String> successful = new ArrayList<String>();
+            List<BatchResultErrorEntry> failed = new ArrayList<BatchResultErrorEntry>();
+            for (int i = 0; i < ids.size(); i++) {
+                String handle = handles.get(i);
+                attempts.putIfAbsent(handle, new AtomicInteger());
+                int attempt = attempts.get(handle).incrementAndGet();
+                if (handle.contains("hold") && attempt > 1) {
+                    entered.release();
+                    gate.await();
+                }
+                if (handle.startsWith("sender")) {
+                    failed.add(new BatchResultErrorEntry().withId(ids.get(i)).withSenderFault(true)
+                            .withCode("SenderFault"));
+                } else if (handle.startsWith("fail") && attempt <= handle.charAt(4) - '0') {
+                    failed.add(new BatchResultErrorEntry().withId(ids.get(i)).withSenderFault(false)
+                            .withCode("InternalError"));
+                } else {
+                    successful.add(ids.get(i));
+                }
+            }
+
+            if (args[0] instanceof DeleteMessageBatchRequest) {
+                List<DeleteMessageBatchResultEntry> entries = new ArrayList<DeleteMessageBatchResultEntry>();
+                for (String id : successful) {
+                    entries.add(new DeleteMessageBatchResultEntry().withId(id));
+                }
+                return new DeleteMessageBatchResult().withSuccessful(entries).withFailed(failed);
+            }
+            List<ChangeMessageVisibilityBatchResultEntry> entries = new ArrayList<ChangeMessageVisibilityBatchResultEntry>();
+            for (String id : successful) {
+                entries.add(new ChangeMessageVisibilityBatchResultEntry().withId(id));
+            }
+            return new ChangeMessageVisibilityBatchResult().withSuccessful(entries).withFailed(failed);
+        }
+    }
+}
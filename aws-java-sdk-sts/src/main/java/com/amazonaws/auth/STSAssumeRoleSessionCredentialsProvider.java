@@ -15,12 +15,10 @@
 
 package com.amazonaws.auth;
 
-import java.util.Date;
+import java.util.Arrays;
 
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.internal.StaticCredentialsProvider;
-import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
-import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClient;
 import com.amazonaws.services.securitytoken.model.AssumeRoleRequest;
 import com.amazonaws.services.securitytoken.model.AssumeRoleResult;
 import com.amazonaws.services.securitytoken.model.Credentials;
@@ -29,6 +27,15 @@ import com.amazonaws.services.securitytoken.model.Credentials;
  * AWSCredentialsProvider implementation that uses the AWS Security Token
  * Service to assume a Role and create temporary, short-lived sessions to use
  * for authentication.
+ * <p>
+ * Sessions are registered with the {@link CredentialsRefreshScheduler}, and
+ * renewed in the background some time before they expire, while
+ * {@link #getCredentials()} keeps returning the credentials of the current
+ * session; callers only wait for a new session when there is none yet, or when
+ * the current one is about to expire because it couldn't be renewed in time.
+ * Providers assuming the same role, with the same session name, external id,
+ * endpoint, long lived credentials and client configuration instance share
+ * their sessions.
  */
 public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsProvider {
 
@@ -38,14 +45,23 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsPr
     /** Time before expiry within which credentials will be renewed. */
     private static final int EXPIRY_TIME_MILLIS = 60 * 1000;
 
-    /** The client for starting STS sessions. */
-    private final AWSSecurityTokenService securityTokenService;
+    /**
+     * The credentials provider for the long lived AWS credentials; or null to
+     * use the default credentials provider chain.
+     */
+    private final AWSCredentialsProvider longLivedCredentialsProvider;
+
+    /** The client configuration of the STS client; or null for the default. */
+    private final ClientConfiguration clientConfiguration;
 
-    /** The current session credentials. */
-    private AWSSessionCredentials sessionCredentials;
+    /**
+     * Identifies the caller assuming the role: the access key id of the long
+     * lived credentials, or their provider.
+     */
+    private final Object longLivedIdentity;
 
-    /** The expiration time for the current session credentials. */
-    private Date sessionCredentialsExpiration;
+    /** The sessions of the role, possibly shared with other providers. */
+    private volatile RefreshingCredentials sessions;
 
     /** The arn of the role to be assumed. */
     private String roleArn;
@@ -89,7 +105,7 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsPr
      */
     public STSAssumeRoleSessionCredentialsProvider(AWSCredentials longLivedCredentials, String roleArn,
             String roleSessionName) {
-        this(longLivedCredentials, roleArn, roleSessionName, new ClientConfiguration());
+        this(longLivedCredentials, roleArn, roleSessionName, (ClientConfiguration) null);
     }
 
     /**
@@ -187,32 +203,16 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsPr
         //roleExternalId may be null
         this.roleExternalId = builder.roleExternalId;
         
-        AWSCredentialsProvider longLivedCredentialsProvider = null;
         if (builder.longLivedCredentials != null) {
             longLivedCredentialsProvider = new StaticCredentialsProvider(builder.longLivedCredentials);
-        } else if (builder.longLivedCredentialsProvider != null) {
-            longLivedCredentialsProvider = builder.longLivedCredentialsProvider;
-        }
-        
-        
-        if (longLivedCredentialsProvider == null) {
-            if (builder.clientConfiguration == null) {
-                securityTokenService = new AWSSecurityTokenServiceClient();
-            } else {
-                securityTokenService = new AWSSecurityTokenServiceClient(builder.clientConfiguration);
-            }
+            longLivedIdentity = builder.longLivedCredentials.getAWSAccessKeyId();
         } else {
-            if (builder.clientConfiguration == null) {
-                securityTokenService = new AWSSecurityTokenServiceClient(longLivedCredentialsProvider);
-            } else {
-                securityTokenService = new AWSSecurityTokenServiceClient(longLivedCredentialsProvider, builder.clientConfiguration);
-            }
-        }
-        
-        if (builder.serviceEndpoint != null) {
-            securityTokenService.setEndpoint(builder.serviceEndpoint);
+            longLivedCredentialsProvider = builder.longLivedCredentialsProvider;
+            longLivedIdentity = builder.longLivedCredentialsProvider;
         }
-        
+        clientConfiguration = builder.clientConfiguration;
+
+        startUsingEndpoint(builder.serviceEndpoint);
     }
 
     /**
@@ -225,64 +225,94 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsPr
      * "sts.cn-north-1.amazonaws.com.cn" when you are requesting session
      * credentials for services in China(Beijing) region or "sts.us-gov-west-1.amazonaws.com" for GovCloud.
      * <p></p>
-     * Setting this invalidates existing session credentials.
+     * Setting this invalidates existing session credentials, unless they were
+     * started with the same endpoint.
      */
     public void setSTSClientEndpoint(String endpoint) {
-        securityTokenService.setEndpoint(endpoint);
-        sessionCredentials = null;
+        startUsingEndpoint(endpoint);
+    }
+
+    /**
+     * Returns the sessions of the role, with their refresh statistics. They
+     * may be shared with other providers.
+     */
+    public RefreshingCredentials getRefreshingCredentials() {
+        return sessions;
     }
 
-    
     @Override
     public AWSCredentials getCredentials() {
-        if (needsNewSession()) {
-            startSession();
-        }
-        return sessionCredentials;
+        return sessions.getCredentials();
     }
 
     @Override
     public void refresh() {
-        startSession();
+        sessions.refresh();
     }
 
     /**
-     * Starts a new session by sending a request to the AWS Security Token
-     * Service (STS) to assume a Role using the long lived AWS credentials. This
-     * class then vends the short lived session credentials for the assumed Role
-     * sent back from STS.
+     * Registers the sessions started with the given endpoint. The endpoint of
+     * registered sessions is never changed, since they may be shared with
+     * other providers; the STS client of the sessions previously used is shut
+     * down once no provider uses them anymore.
+     *
+     * @param endpoint
+     *            The STS endpoint; or null for the default one.
      */
-    private void startSession() {
-        AssumeRoleRequest assumeRoleRequest = new AssumeRoleRequest()
-            .withRoleArn(roleArn).withDurationSeconds(DEFAULT_DURATION_SECONDS)
-            .withRoleSessionName(roleSessionName);
-        if (roleExternalId != null) {
-            assumeRoleRequest = assumeRoleRequest.withExternalId(roleExternalId);
-        }
-        AssumeRoleResult assumeRoleResult = securityTokenService.assumeRole(assumeRoleRequest);
-        Credentials stsCredentials = assumeRoleResult.getCredentials();
-
-        sessionCredentials = new BasicSessionCredentials(stsCredentials.getAccessKeyId(),
-                stsCredentials.getSecretAccessKey(), stsCredentials.getSessionToken());
-        sessionCredentialsExpiration = stsCredentials.getExpiration();
+    private synchronized void startUsingEndpoint(String endpoint) {
+        // ClientConfiguration doesn't override equals, so providers only share
+        // sessions if they use the same configuration instance
+        Object sourceKey = Arrays.asList("AssumeRole", roleArn, roleSessionName,
+                roleExternalId, endpoint, longLivedIdentity, clientConfiguration);
+        sessions = CredentialsRefreshScheduler.getInstance().register(sourceKey,
+                new AssumeRoleFetcher(longLivedCredentialsProvider, clientConfiguration,
+                        endpoint, roleArn, roleSessionName, roleExternalId),
+                EXPIRY_TIME_MILLIS);
     }
 
     /**
-     * Returns true if a new STS session needs to be started. A new STS session
-     * is needed when no session has been started yet, or if the last session is
-     * within {@link #EXPIRY_TIME_MILLIS} seconds of expiring.
-     * 
-     * @return True if a new STS session needs to be started.
+     * Starts new sessions by sending a request to the AWS Security Token
+     * Service (STS) to assume a Role using the long lived AWS credentials.
+     * This class then vends the short lived session credentials for the
+     * assumed Role sent back from STS.
      */
-    private boolean needsNewSession() {
-        if (sessionCredentials == null) {
-            return true;
+    private static final class AssumeRoleFetcher extends SecurityTokenServiceFetcher {
+        private final String roleArn;
+        private final String roleSessionName;
+        private final String roleExternalId;
+
+        AssumeRoleFetcher(AWSCredentialsProvider longLivedCredentialsProvider,
+                ClientConfiguration clientConfiguration, String endpoint,
+                String roleArn, String roleSessionName, String roleExternalId) {
+            super(longLivedCredentialsProvider, clientConfiguration, endpoint);
+            this.roleArn = roleArn;
+            this.roleSessionName = roleSessionName;
+            this.roleExternalId = roleExternalId;
+        }
+
+        @Override
+        public ExpiringCredentials fetchCredentials() {
+            AssumeRoleRequest assumeRoleRequest = new AssumeRoleRequest()
+                .withRoleArn(roleArn).withDurationSeconds(DEFAULT_DURATION_SECONDS)
+                .withRoleSessionName(roleSessionName);
+            if (roleExternalId != null) {
+                assumeRoleRequest = assumeRoleRequest.withExternalId(roleExternalId);
+            }
+            AssumeRoleResult assumeRoleResult = getClient().assumeRole(assumeRoleRequest);
+            Credentials stsCredentials = assumeRoleResult.getCredentials();
+
+            return new ExpiringCredentials(new BasicSessionCredentials(
+                    stsCredentials.getAccessKeyId(), stsCredentials.getSecretAccessKey(),
+                    stsCredentials.getSessionToken()), stsCredentials.getExpiration());
+        }
+
+        @Override
+        public String toString() {
+            return "role " + roleArn;
         }
-        long timeRemaining = sessionCredentialsExpiration.getTime() - System.currentTimeMillis();
-        return timeRemaining < EXPIRY_TIME_MILLIS;
     }
-    
-    
+
+
     /**
      * Provides a builder pattern to avoid combinatorial explosion of the number of parameters that are passed
      * to constructors. The builder introspects which parameters have been set and calls the appropriate constructor.
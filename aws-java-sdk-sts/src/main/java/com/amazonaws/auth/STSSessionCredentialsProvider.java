@@ -15,11 +15,10 @@
 
 package com.amazonaws.auth;
 
-import java.util.Date;
+import java.util.Arrays;
 
 import com.amazonaws.ClientConfiguration;
-import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
-import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClient;
+import com.amazonaws.internal.StaticCredentialsProvider;
 import com.amazonaws.services.securitytoken.model.Credentials;
 import com.amazonaws.services.securitytoken.model.GetSessionTokenRequest;
 import com.amazonaws.services.securitytoken.model.GetSessionTokenResult;
@@ -27,20 +26,34 @@ import com.amazonaws.services.securitytoken.model.GetSessionTokenResult;
 /**
  * AWSCredentialsProvider implementation that uses the AWS Security Token
  * Service to create temporary, short-lived sessions to use for authentication.
+ * <p>
+ * Sessions are registered with the {@link CredentialsRefreshScheduler}, and
+ * renewed in the background some time before they expire. Providers using the
+ * same long lived credentials, endpoint and client configuration instance
+ * share their sessions.
  */
 public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
 
     /** Default duration for started sessions */
     public static final int DEFAULT_DURATION_SECONDS = 3600;
 
-    /** The client for starting STS sessions */
-    private final AWSSecurityTokenService securityTokenService;
+    /** Time before expiry within which credentials will be renewed. */
+    private static final int EXPIRY_TIME_MILLIS = 60 * 1000;
 
-    /** The current session credentials */
-    private AWSSessionCredentials sessionCredentials;
+    /** The credentials provider for the long lived AWS credentials */
+    private final AWSCredentialsProvider longLivedCredentialsProvider;
 
-    /** The expiration time for the current session credentials */
-    private Date sessionCredentialsExpiration;
+    /** The client configuration of the STS client; or null for the default */
+    private final ClientConfiguration clientConfiguration;
+
+    /**
+     * Identifies the caller starting sessions: the access key id of the long
+     * lived credentials, or their provider
+     */
+    private final Object longLivedIdentity;
+
+    /** The sessions, possibly shared with other providers */
+    private volatile RefreshingCredentials sessions;
 
 
     /**
@@ -54,7 +67,7 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
      *            The main AWS credentials for a user's account.
      */
     public STSSessionCredentialsProvider(AWSCredentials longLivedCredentials) {
-        this(longLivedCredentials, new ClientConfiguration());
+        this(longLivedCredentials, (ClientConfiguration) null);
     }
 
     /**
@@ -70,7 +83,10 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
      *            Client configuration connection parameters.
      */
     public STSSessionCredentialsProvider(AWSCredentials longLivedCredentials, ClientConfiguration clientConfiguration) {
-        securityTokenService = new AWSSecurityTokenServiceClient(longLivedCredentials, clientConfiguration);
+        this.longLivedCredentialsProvider = new StaticCredentialsProvider(longLivedCredentials);
+        this.clientConfiguration = clientConfiguration;
+        this.longLivedIdentity = longLivedCredentials.getAWSAccessKeyId();
+        startUsingEndpoint(null);
     }
 
     /**
@@ -85,7 +101,7 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
      *            account.
      */
     public STSSessionCredentialsProvider(AWSCredentialsProvider longLivedCredentialsProvider) {
-        securityTokenService = new AWSSecurityTokenServiceClient(longLivedCredentialsProvider);
+        this(longLivedCredentialsProvider, null);
     }
 
     /**
@@ -102,7 +118,10 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
      *            Client configuration connection parameters.
      */
     public STSSessionCredentialsProvider(AWSCredentialsProvider longLivedCredentialsProvider, ClientConfiguration clientConfiguration) {
-        securityTokenService = new AWSSecurityTokenServiceClient(longLivedCredentialsProvider, clientConfiguration);
+        this.longLivedCredentialsProvider = longLivedCredentialsProvider;
+        this.clientConfiguration = clientConfiguration;
+        this.longLivedIdentity = longLivedCredentialsProvider;
+        startUsingEndpoint(null);
     }
 
     /**
@@ -115,54 +134,79 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
      * "sts.cn-north-1.amazonaws.com.cn" when you are requesting session
      * credentials for services in China(Beijing) region or "sts.us-gov-west-1.amazonaws.com" for GovCloud.
      * <p></p>
-     * Setting this invalidates existing session credentials.
+     * Setting this invalidates existing session credentials, unless they were
+     * started with the same endpoint.
      */
     public void setSTSClientEndpoint(String endpoint) {
-        securityTokenService.setEndpoint(endpoint);
-        sessionCredentials = null;
+        startUsingEndpoint(endpoint);
+    }
+
+    /**
+     * Returns the sessions, with their refresh statistics. They may be shared
+     * with other providers.
+     */
+    public RefreshingCredentials getRefreshingCredentials() {
+        return sessions;
     }
 
     @Override
     public AWSCredentials getCredentials() {
-        if (needsNewSession()) startSession();
-
-        return sessionCredentials;
+        return sessions.getCredentials();
     }
 
     @Override
     public void refresh() {
-        startSession();
+        sessions.refresh();
     }
 
     /**
-     * Starts a new session by sending a request to the AWS Security Token
-     * Service (STS) with the long lived AWS credentials. This class then vends
-     * the short lived session credentials sent back from STS.
+     * Registers the sessions started with the given endpoint. The endpoint of
+     * registered sessions is never changed, since they may be shared with
+     * other providers; the STS client of the sessions previously used is shut
+     * down once no provider uses them anymore.
+     *
+     * @param endpoint
+     *            The STS endpoint; or null for the default one.
      */
-    private void startSession() {
-        GetSessionTokenResult sessionTokenResult = securityTokenService
-                .getSessionToken(new GetSessionTokenRequest().withDurationSeconds(DEFAULT_DURATION_SECONDS));
-        Credentials stsCredentials = sessionTokenResult.getCredentials();
-
-        sessionCredentials = new BasicSessionCredentials(
-                stsCredentials.getAccessKeyId(),
-                stsCredentials.getSecretAccessKey(),
-                stsCredentials.getSessionToken());
-        sessionCredentialsExpiration = stsCredentials.getExpiration();
+    private synchronized void startUsingEndpoint(String endpoint) {
+        // ClientConfiguration doesn't override equals, so providers only share
+        // sessions if they use the same configuration instance
+        Object sourceKey = Arrays.asList("GetSessionToken", endpoint, longLivedIdentity,
+                clientConfiguration);
+        sessions = CredentialsRefreshScheduler.getInstance().register(sourceKey,
+                new SessionTokenFetcher(longLivedCredentialsProvider, clientConfiguration, endpoint),
+                EXPIRY_TIME_MILLIS);
     }
 
     /**
-     * Returns true if a new STS session needs to be started. A new STS session
-     * is needed when no session has been started yet, or if the last session is
-     * within 60 seconds of expiring.
-     *
-     * @return True if a new STS session needs to be started.
+     * Starts new sessions by sending a request to the AWS Security Token
+     * Service (STS) with the long lived AWS credentials. This class then vends
+     * the short lived session credentials sent back from STS.
      */
-    private boolean needsNewSession() {
-        if (sessionCredentials == null) return true;
-
-        long timeRemaining = sessionCredentialsExpiration.getTime() - System.currentTimeMillis();
-        return timeRemaining < (60 * 1000);
+    private static final class SessionTokenFetcher extends SecurityTokenServiceFetcher {
+
+        SessionTokenFetcher(AWSCredentialsProvider longLivedCredentialsProvider,
+                ClientConfiguration clientConfiguration, String endpoint) {
+            super(longLivedCredentialsProvider, clientConfiguration, endpoint);
+        }
+
+        @Override
+        public ExpiringCredentials fetchCredentials() {
+            GetSessionTokenResult sessionTokenResult = getClient()
+                    .getSessionToken(new GetSessionTokenRequest().withDurationSeconds(DEFAULT_DURATION_SECONDS));
+            Credentials stsCredentials = sessionTokenResult.getCredentials();
+
+            return new ExpiringCredentials(new BasicSessionCredentials(
+                    stsCredentials.getAccessKeyId(),
+                    stsCredentials.getSecretAccessKey(),
+                    stsCredentials.getSessionToken()),
+                    stsCredentials.getExpiration());
+        }
+
+        @Override
+        public String toString() {
+            return "session token";
+        }
     }
 
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2011-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.auth;
+
+import java.io.Closeable;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
+import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClient;
+
+/**
+ * Fetches credentials from the AWS Security Token Service (STS) with a client
+ * of its own. The client is only created when credentials are first fetched,
+ * so that a fetcher discarded by {@link CredentialsRefreshScheduler} because
+ * its source is already registered never creates one, and it is shut down
+ * when the fetcher is closed, once its source is no longer used.
+ */
+abstract class SecurityTokenServiceFetcher implements CredentialsFetcher, Closeable {
+
+    /**
+     * The credentials provider for the long lived AWS credentials; or null to
+     * use the default credentials provider chain.
+     */
+    private final AWSCredentialsProvider longLivedCredentialsProvider;
+
+    /** The client configuration of the STS client; or null for the default. */
+    private final ClientConfiguration clientConfiguration;
+
+    /** The STS endpoint; or null for the default one. */
+    private final String endpoint;
+
+    private AWSSecurityTokenServiceClient client;
+    private boolean closed;
+
+    SecurityTokenServiceFetcher(AWSCredentialsProvider longLivedCredentialsProvider,
+            ClientConfiguration clientConfiguration, String endpoint) {
+        this.longLivedCredentialsProvider = longLivedCredentialsProvider;
+        this.clientConfiguration = clientConfiguration;
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Returns the STS client, creating it on first use.
+     *
+     * @throws IllegalStateException
+     *             If the fetcher has been closed.
+     */
+    protected synchronized AWSSecurityTokenService getClient() {
+        if (closed) {
+            throw new IllegalStateException("The credentials fetcher has been closed");
+        }
+        if (client == null) {
+            ClientConfiguration config = clientConfiguration == null
+                    ? new ClientConfiguration() : clientConfiguration;
+            if (longLivedCredentialsProvider == null) {
+                client = new AWSSecurityTokenServiceClient(config);
+            } else {
+                client = new AWSSecurityTokenServiceClient(longLivedCredentialsProvider, config);
+            }
+            if (endpoint != null) {
+                client.setEndpoint(endpoint);
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Shuts down the STS client, if it was created.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (client != null) {
+            client.shutdown();
+            client = null;
+        }
+    }
+}
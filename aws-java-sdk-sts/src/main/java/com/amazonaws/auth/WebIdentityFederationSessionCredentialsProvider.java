@@ -15,8 +15,6 @@
 
 package com.amazonaws.auth;
 
-import java.util.Date;
-
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClient;
@@ -27,6 +25,10 @@ import com.amazonaws.services.securitytoken.model.Credentials;
 /**
  * AWSCredentialsProvider implementation that uses the AWS Security Token
  * Service to create temporary, short-lived sessions to use for authentication.
+ * <p>
+ * Sessions are registered with the {@link CredentialsRefreshScheduler}, and
+ * renewed in the background some time before they come within the refresh
+ * threshold.
  */
 public class WebIdentityFederationSessionCredentialsProvider implements AWSCredentialsProvider {
 
@@ -36,21 +38,19 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSCrede
     /** Default threshold for refreshing session credentials */
     public static final int DEFAULT_THRESHOLD_SECONDS = 500;
 
-    /** The client for starting STS sessions */
-    private final AWSSecurityTokenService securityTokenService;
-
-    /** The current session credentials */
-    private AWSSessionCredentials sessionCredentials;
+    /**
+     * The sessions of this provider; not shared with other providers, since
+     * the web identity token and session duration are specific to each.
+     */
+    private final RefreshingCredentials sessions;
 
-    /** The expiration time for the current session credentials */
-    private Date sessionCredentialsExpiration;
+    /**
+     * Starts the sessions; it also holds the session duration and the subject
+     * returned by STS, so that it doesn't need to reference this provider.
+     */
+    private final WebIdentityFetcher fetcher;
 
-    private final String wifToken;
-    private final String wifProvider;
-    private final String roleArn;
-    private int sessionDuration;
-    private int refreshThreshold;
-    private String subjectFromWIF;
+    private volatile int refreshThreshold;
 
     /**
      * Constructs a new WebIdentityFederationSessionCredentialsProvider, which will use the
@@ -107,24 +107,27 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSCrede
      *            Preconfigured STS client to make requests with
      */
     public WebIdentityFederationSessionCredentialsProvider(String wifToken, String wifProvider, String roleArn, AWSSecurityTokenService stsClient) {
-        this.securityTokenService = stsClient; 
-        this.wifProvider = wifProvider;
-        this.wifToken = wifToken;
-        this.roleArn = roleArn;
-        this.sessionDuration = DEFAULT_DURATION_SECONDS;
+        this.fetcher = new WebIdentityFetcher(stsClient, wifToken, wifProvider, roleArn);
         this.refreshThreshold = DEFAULT_THRESHOLD_SECONDS;
+        this.sessions = CredentialsRefreshScheduler.getInstance().register(
+                new Object(), fetcher, DEFAULT_THRESHOLD_SECONDS * 1000L);
     }
 
     @Override
     public AWSCredentials getCredentials() {
-        if (needsNewSession()) startSession();
-
-        return sessionCredentials;
+        return sessions.getCredentials(refreshThreshold * 1000L);
     }
 
     @Override
     public void refresh() {
-        startSession();
+        sessions.refresh();
+    }
+
+    /**
+     * Returns the sessions of this provider, with their refresh statistics.
+     */
+    public RefreshingCredentials getRefreshingCredentials() {
+        return sessions;
     }
 
    /**
@@ -138,7 +141,7 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSCrede
      *              provider
      */
     public void setSessionDuration(int sessionDuration) {
-        this.sessionDuration = sessionDuration;
+        fetcher.sessionDuration = sessionDuration;
     }
 
    /**
@@ -170,7 +173,7 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSCrede
      * @return The duration for session credentials created by this provider
      */
     public int getSessionDuration() {
-        return this.sessionDuration;
+        return fetcher.sessionDuration;
     }
 
 
@@ -233,44 +236,60 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSCrede
      * @return The identifier returned from Identity Provider
      */
     public String getSubjectFromWIF() {
-        return this.subjectFromWIF;
+        return fetcher.subjectFromWIF;
     }
 
     /**
-     * Starts a new session by sending a request to the AWS Security Token
-     * Service (STS) with the long lived AWS credentials. This class then vends
-     * the short lived session credentials sent back from STS.
+     * Starts new sessions by sending a request to the AWS Security Token
+     * Service (STS) with the web identity token. This class then vends the
+     * short lived session credentials sent back from STS.
+     * <p>
+     * It is referenced by the {@link CredentialsRefreshScheduler}, so it must
+     * not reference the provider: the provider, and with it its sessions,
+     * would otherwise never be garbage collected, and the sessions would be
+     * renewed forever.
      */
-    private void startSession() {
-        AssumeRoleWithWebIdentityResult sessionTokenResult = securityTokenService
-                .assumeRoleWithWebIdentity(new AssumeRoleWithWebIdentityRequest().withWebIdentityToken(wifToken)
-                        .withProviderId(wifProvider)
-                        .withRoleArn(roleArn)
-                        .withRoleSessionName("ProviderSession")
-                        .withDurationSeconds(this.sessionDuration));
-        Credentials stsCredentials = sessionTokenResult.getCredentials();
+    private static final class WebIdentityFetcher implements CredentialsFetcher {
+        private final AWSSecurityTokenService securityTokenService;
+        private final String wifToken;
+        private final String wifProvider;
+        private final String roleArn;
+        private volatile int sessionDuration = DEFAULT_DURATION_SECONDS;
 
-        subjectFromWIF = sessionTokenResult.getSubjectFromWebIdentityToken();
+        /** Written by the thread fetching the credentials, possibly in the background. */
+        private volatile String subjectFromWIF;
 
-        sessionCredentials = new BasicSessionCredentials(
-                stsCredentials.getAccessKeyId(),
-                stsCredentials.getSecretAccessKey(),
-                stsCredentials.getSessionToken());
-        sessionCredentialsExpiration = stsCredentials.getExpiration();
-    }
+        WebIdentityFetcher(AWSSecurityTokenService securityTokenService,
+                String wifToken, String wifProvider, String roleArn) {
+            this.securityTokenService = securityTokenService;
+            this.wifToken = wifToken;
+            this.wifProvider = wifProvider;
+            this.roleArn = roleArn;
+        }
 
-    /**
-     * Returns true if a new STS session needs to be started. A new STS session
-     * is needed when no session has been started yet, or if the last session is
-     * within the configured refresh threshold.
-     *
-     * @return True if a new STS session needs to be started.
-     */
-    private boolean needsNewSession() {
-        if (sessionCredentials == null) return true;
+        @Override
+        public ExpiringCredentials fetchCredentials() {
+            AssumeRoleWithWebIdentityResult sessionTokenResult = securityTokenService
+                    .assumeRoleWithWebIdentity(new AssumeRoleWithWebIdentityRequest().withWebIdentityToken(wifToken)
+                            .withProviderId(wifProvider)
+                            .withRoleArn(roleArn)
+                            .withRoleSessionName("ProviderSession")
+                            .withDurationSeconds(sessionDuration));
+            Credentials stsCredentials = sessionTokenResult.getCredentials();
+
+            subjectFromWIF = sessionTokenResult.getSubjectFromWebIdentityToken();
+
+            return new ExpiringCredentials(new BasicSessionCredentials(
+                    stsCredentials.getAccessKeyId(),
+                    stsCredentials.getSecretAccessKey(),
+                    stsCredentials.getSessionToken()),
+                    stsCredentials.getExpiration());
+        }
 
-        long timeRemaining = sessionCredentialsExpiration.getTime() - System.currentTimeMillis();
-        return timeRemaining < (this.refreshThreshold * 1000);
+        @Override
+        public String toString() {
+            return "web identity role " + roleArn;
+        }
     }
 
 }
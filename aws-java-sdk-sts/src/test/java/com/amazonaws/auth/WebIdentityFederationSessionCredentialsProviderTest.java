@@ -0,0 +1,105 @@
+/*
+ * Copyright 2011-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
+import com.amazonaws.services.securitytoken.model.AssumeRoleWithWebIdentityRequest;
+import com.amazonaws.services.securitytoken.model.AssumeRoleWithWebIdentityResult;
+import com.amazonaws.services.securitytoken.model.Credentials;
+
+public class WebIdentityFederationSessionCredentialsProviderTest {
+
+    /** A fake STS answering AssumeRoleWithWebIdentity with one hour sessions. */
+    private static class FakeSecurityTokenService implements InvocationHandler {
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile AssumeRoleWithWebIdentityRequest lastRequest;
+
+        AWSSecurityTokenService proxy() {
+            return (AWSSecurityTokenService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { AWSSecurityTokenService.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (!method.getName().equals("assumeRoleWithWebIdentity")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            lastRequest = (AssumeRoleWithWebIdentityRequest) args[0];
+            int request = requests.incrementAndGet();
+            return new AssumeRoleWithWebIdentityResult()
+                    .withSubjectFromWebIdentityToken("subject" + request)
+                    .withCredentials(new Credentials()
+                            .withAccessKeyId("id" + request)
+                            .withSecretAccessKey("secret")
+                            .withSessionToken("token")
+                            .withExpiration(new Date(System.currentTimeMillis() + 60 * 60 * 1000L)));
+        }
+    }
+
+    @Test
+    public void testSessionsAreStartedWithTheWebIdentity() {
+        FakeSecurityTokenService sts = new FakeSecurityTokenService();
+        WebIdentityFederationSessionCredentialsProvider provider =
+                new WebIdentityFederationSessionCredentialsProvider("wifToken", "wifProvider", "roleArn", sts.proxy())
+                        .withSessionDuration(900);
+
+        AWSCredentials credentials = provider.getCredentials();
+
+        assertEquals("id1", credentials.getAWSAccessKeyId());
+        assertEquals("subject1", provider.getSubjectFromWIF());
+        assertEquals("wifToken", sts.lastRequest.getWebIdentityToken());
+        assertEquals("wifProvider", sts.lastRequest.getProviderId());
+        assertEquals("roleArn", sts.lastRequest.getRoleArn());
+        assertEquals(Integer.valueOf(900), sts.lastRequest.getDurationSeconds());
+    }
+
+    @Test(timeout = 30 * 1000)
+    public void testSourceIsUnregisteredOnceProviderIsUnreachable() throws InterruptedException {
+        CredentialsRefreshScheduler scheduler = CredentialsRefreshScheduler.getInstance();
+        int sourceCount = scheduler.getSourceCount();
+        WeakReference<WebIdentityFederationSessionCredentialsProvider> provider = startSession();
+        assertEquals(sourceCount + 1, scheduler.getSourceCount());
+
+        while (provider.get() != null || scheduler.getSourceCount() > sourceCount) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(scheduler.getSourceCount() <= sourceCount);
+    }
+
+    /**
+     * Starts a session with a new provider, and returns a weak reference to
+     * the provider, which is no longer referenced otherwise.
+     */
+    private static WeakReference<WebIdentityFederationSessionCredentialsProvider> startSession() {
+        WebIdentityFederationSessionCredentialsProvider provider =
+                new WebIdentityFederationSessionCredentialsProvider("wifToken", "wifProvider", "roleArn",
+                        new FakeSecurityTokenService().proxy());
+        provider.getCredentials();
+        return new WeakReference<WebIdentityFederationSessionCredentialsProvider>(provider);
+    }
+}